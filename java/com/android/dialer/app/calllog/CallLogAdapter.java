@@ -31,6 +31,7 @@ import android.provider.CallLog;
 import android.provider.ContactsContract.CommonDataKinds.Phone;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.RecyclerView.ViewHolder;
 import android.telecom.PhoneAccountHandle;
@@ -39,6 +40,7 @@ import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.SparseArray;
+import android.util.SparseBooleanArray;
 import android.view.ActionMode;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -55,7 +57,6 @@ import androidx.annotation.WorkerThread;
 import com.android.contacts.common.ContactsUtils;
 import com.android.dialer.app.R;
 import com.android.dialer.app.calllog.CallLogFragment.CallLogFragmentListener;
-import com.android.dialer.app.calllog.CallLogGroupBuilder.GroupCreator;
 import com.android.dialer.app.calllog.calllogcache.CallLogCache;
 import com.android.dialer.app.contactinfo.ContactInfoCache;
 import com.android.dialer.app.voicemail.VoicemailPlaybackPresenter;
@@ -63,13 +64,13 @@ import com.android.dialer.app.voicemail.VoicemailPlaybackPresenter.OnVoicemailDe
 import com.android.dialer.blocking.FilteredNumberAsyncQueryHandler;
 import com.android.dialer.calldetails.CallDetailsEntries;
 import com.android.dialer.calldetails.CallDetailsEntries.CallDetailsEntry;
-import com.android.dialer.calllogutils.CallbackActionHelper.CallbackAction;
 import com.android.dialer.calllogutils.PhoneCallDetails;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.FragmentUtils.FragmentUtilListener;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.common.concurrent.AsyncTaskExecutor;
 import com.android.dialer.common.concurrent.AsyncTaskExecutors;
+import com.android.dialer.common.concurrent.ThreadUtil;
 import com.android.dialer.contacts.ContactsComponent;
 import com.android.dialer.logging.ContactSource;
 import com.android.dialer.logging.ContactSource.Type;
@@ -81,12 +82,12 @@ import com.android.dialer.phonenumberutil.PhoneNumberHelper;
 import com.android.dialer.telecom.TelecomUtil;
 import com.android.dialer.util.PermissionsUtil;
 import java.util.ArrayList;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 
 /** Adapter class to fill in data for the Call Log. */
 public class CallLogAdapter extends GroupingListAdapter
-    implements GroupCreator, OnVoicemailDeletedListener {
+    implements OnVoicemailDeletedListener {
 
   // Types of activities the call log adapter is used for
   public static final int ACTIVITY_TYPE_CALL_LOG = 1;
@@ -102,6 +103,9 @@ public class CallLogAdapter extends GroupingListAdapter
 
   public static final String LOAD_DATA_TASK_IDENTIFIER = "load_data";
 
+  /** Number of rows past the visible ones whose contact info is requested while scrolling. */
+  private static final int PREFETCH_LOOKAHEAD = 20;
+
   protected final Activity activity;
   protected final VoicemailPlaybackPresenter voicemailPlaybackPresenter;
   /** Cache for repeated requests to Telecom/Telephony. */
@@ -121,6 +125,12 @@ public class CallLogAdapter extends GroupingListAdapter
 
   private final AsyncTaskExecutor asyncTaskExecutor = AsyncTaskExecutors.createAsyncTaskExecutor();
   private ContactInfoCache contactInfoCache;
+  /** Rows bound since the last load task was submitted, which are loaded by the next one. */
+  private final List<PendingLoad> pendingLoads = new ArrayList<>();
+  /** Latest load of each view holder which hasn't been rendered yet, pending or submitted. */
+  private final ArrayMap<CallLogListItemViewHolder, PendingLoad> unrenderedLoads = new ArrayMap<>();
+  /** Positions whose contact info was prefetched since the cursor changed. */
+  private final SparseBooleanArray prefetchedPositions = new SparseBooleanArray();
   // Tracks the position of the currently expanded list item.
   private int currentlyExpandedPosition = RecyclerView.NO_POSITION;
   // Tracks the rowId of the currently expanded list item, so the position can be updated if there
@@ -322,9 +332,53 @@ public class CallLogAdapter extends GroupingListAdapter
         }
       };
 
+  /** Requests the contact info of the rows about to be scrolled into view. */
+  private final RecyclerView.OnScrollListener prefetchScrollListener =
+      new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+          if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+          }
+          LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+          int first = layoutManager.findFirstVisibleItemPosition();
+          int last = layoutManager.findLastVisibleItemPosition();
+          if (first == RecyclerView.NO_POSITION) {
+            return;
+          }
+          if (dy >= 0) {
+            prefetchContactInfo(last + 1, Math.min(last + PREFETCH_LOOKAHEAD, getItemCount() - 1));
+          } else {
+            prefetchContactInfo(Math.max(first - PREFETCH_LOOKAHEAD, 0), first - 1);
+          }
+        }
+      };
+
   @Nullable
   public RecyclerView.OnScrollListener getOnScrollListener() {
-    return null;
+    return prefetchScrollListener;
+  }
+
+  @MainThread
+  private void prefetchContactInfo(int from, int to) {
+    for (int position = from; position <= to; position++) {
+      if (prefetchedPositions.get(position) || getItemViewType(position) != VIEW_TYPE_CALLLOG) {
+        continue;
+      }
+      prefetchedPositions.put(position, true);
+      Cursor c = (Cursor) getItem(position);
+      if (c == null) {
+        continue;
+      }
+      String number = c.getString(CallLogQuery.NUMBER);
+      if (!PhoneNumberHelper.canPlaceCallsTo(number, c.getInt(CallLogQuery.NUMBER_PRESENTATION))) {
+        continue;
+      }
+      contactInfoCache.prefetch(
+          number + c.getString(CallLogQuery.POST_DIAL_DIGITS),
+          c.getString(CallLogQuery.COUNTRY_ISO),
+          ContactInfoHelper.getContactInfo(c));
+    }
   }
 
   private void checkMarkCallLogEntry(CallLogListItemViewHolder viewHolder) {
@@ -393,28 +447,6 @@ public class CallLogAdapter extends GroupingListAdapter
 
   private CallLogListItemViewHolder.OnClickListener blockReportSpamListener;
 
-  /**
-   * Map, keyed by call ID, used to track the callback action for a call. Calls associated with the
-   * same callback action will be put into the same primary call group in {@link
-   * com.android.dialer.app.calllog.CallLogGroupBuilder}. This information is used to set the
-   * callback icon and trigger the corresponding action.
-   */
-  private final Map<Long, Integer> callbackActions = new ArrayMap<>();
-
-  /**
-   * Map, keyed by call ID, used to track the day group for a call. As call log entries are put into
-   * the primary call groups in {@link com.android.dialer.app.calllog.CallLogGroupBuilder}, they are
-   * also assigned a secondary "day group". This map tracks the day group assigned to all calls in
-   * the call log. This information is used to trigger the display of a day group header above the
-   * call log entry at the start of a day group. Note: Multiple calls are grouped into a single
-   * primary "call group" in the call log, and the cursor used to bind rows includes all of these
-   * calls. When determining if a day group change has occurred it is necessary to look at the last
-   * entry in the call log to determine its day group. This map provides a means of determining the
-   * previous day group without having to reverse the cursor to the start of the previous day call
-   * log entry.
-   */
-  private final Map<Long, Integer> dayGroups = new ArrayMap<>();
-
   private boolean loading = true;
 
   public CallLogAdapter(
@@ -455,7 +487,7 @@ public class CallLogAdapter extends GroupingListAdapter
         new PhoneCallDetailsHelper(this.activity, resources, this.callLogCache);
     callLogListItemHelper =
         new CallLogListItemHelper(phoneCallDetailsHelper, resources, this.callLogCache);
-    callLogGroupBuilder = new CallLogGroupBuilder(this);
+    callLogGroupBuilder = new CallLogGroupBuilder();
     this.filteredNumberAsyncQueryHandler = Assert.isNotNull(filteredNumberAsyncQueryHandler);
 
     blockReportSpamListener =
@@ -594,9 +626,25 @@ public class CallLogAdapter extends GroupingListAdapter
 
   @Override
   protected void addGroups(Cursor cursor) {
+    prefetchedPositions.clear();
     callLogGroupBuilder.addGroups(cursor);
   }
 
+  @Override
+  protected int getGroupCount() {
+    return callLogGroupBuilder.getGroupCount();
+  }
+
+  @Override
+  protected int getGroupCursorPosition(int groupIndex) {
+    return callLogGroupBuilder.getGroupCursorPosition(groupIndex);
+  }
+
+  @Override
+  protected int getGroupItemCount(int groupIndex) {
+    return callLogGroupBuilder.getGroupSize(groupIndex);
+  }
+
   @Override
   public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
     if (viewType == VIEW_TYPE_ALERT) {
@@ -661,10 +709,20 @@ public class CallLogAdapter extends GroupingListAdapter
     if (viewHolder.getItemViewType() == VIEW_TYPE_CALLLOG) {
       CallLogListItemViewHolder views = (CallLogListItemViewHolder) viewHolder;
       updateCheckMarkedStatusOfEntry(views);
+      cancelLoad(views);
+    }
+  }
 
-      if (views.asyncTask != null) {
-        views.asyncTask.cancel(true);
-      }
+  /**
+   * Cancels the load of a view holder which is recycled or bound again. A pending load is dropped,
+   * a submitted one is skipped by its task if it hasn't been loaded yet, and is not rendered.
+   */
+  @MainThread
+  private void cancelLoad(CallLogListItemViewHolder viewHolder) {
+    PendingLoad load = unrenderedLoads.remove(viewHolder);
+    if (load != null) {
+      load.cancelled = true;
+      pendingLoads.remove(load);
     }
   }
 
@@ -697,6 +755,8 @@ public class CallLogAdapter extends GroupingListAdapter
     updateCheckMarkedStatusOfEntry(views);
 
     views.isLoaded = false;
+    int callbackAction = callLogGroupBuilder.getCallbackAction(c.getPosition());
+    int dayGroup = callLogGroupBuilder.getDayGroup(c.getPosition());
     int groupSize = getGroupSize(position);
     CallDetailsEntries callDetailsEntries = createCallDetailsEntries(c, groupSize);
     PhoneCallDetails details = createPhoneCallDetails(c, groupSize, views);
@@ -711,7 +771,7 @@ public class CallLogAdapter extends GroupingListAdapter
     if (currentlyExpandedRowId == views.rowId) {
       views.inflateActionViewStub();
     }
-    loadAndRender(views, views.rowId, details, callDetailsEntries);
+    loadAndRender(views, views.rowId, callbackAction, dayGroup, details, callDetailsEntries);
   }
 
   private void updateCheckMarkedStatusOfEntry(CallLogListItemViewHolder views) {
@@ -735,6 +795,8 @@ public class CallLogAdapter extends GroupingListAdapter
   private void loadAndRender(
       final CallLogListItemViewHolder viewHolder,
       final long rowId,
+      final int callbackAction,
+      final int dayGroup,
       final PhoneCallDetails details,
       final CallDetailsEntries callDetailsEntries) {
     LogUtil.d("CallLogAdapter.loadAndRender", "position: %d", viewHolder.getAdapterPosition());
@@ -744,37 +806,98 @@ public class CallLogAdapter extends GroupingListAdapter
     viewHolder.isBlocked = false;
 
     viewHolder.setDetailedPhoneDetails(callDetailsEntries);
-    final AsyncTask<Void, Void, Boolean> loadDataTask =
-        new AsyncTask<Void, Void, Boolean>() {
+    cancelLoad(viewHolder);
+    PendingLoad load = new PendingLoad(viewHolder, rowId, callbackAction, dayGroup, details);
+    unrenderedLoads.put(viewHolder, load);
+    pendingLoads.add(load);
+    if (pendingLoads.size() == 1) {
+      // Load all the rows bound in this frame together
+      ThreadUtil.postOnUiThread(this::submitPendingLoads);
+    }
+  }
+
+  /** A row waiting for its data to be loaded in the background. */
+  private static final class PendingLoad {
+    final CallLogListItemViewHolder viewHolder;
+    final long rowId;
+    /** Grouping of the row when it was bound, as its cursor position may change meanwhile. */
+    final int callbackAction;
+
+    final int dayGroup;
+    final PhoneCallDetails details;
+    /** Set on the main thread once the view holder is recycled or bound again. */
+    volatile boolean cancelled;
+
+    PendingLoad(
+        CallLogListItemViewHolder viewHolder,
+        long rowId,
+        int callbackAction,
+        int dayGroup,
+        PhoneCallDetails details) {
+      this.viewHolder = viewHolder;
+      this.rowId = rowId;
+      this.callbackAction = callbackAction;
+      this.dayGroup = dayGroup;
+      this.details = details;
+    }
+  }
+
+  /**
+   * Loads the data of all pending rows with a single task, whose contact lookups the {@link
+   * ContactInfoCache} batches, and renders them together once loaded. Rows cancelled while the task
+   * runs are skipped; the task itself always runs to completion.
+   */
+  @MainThread
+  private void submitPendingLoads() {
+    if (pendingLoads.isEmpty()) {
+      return;
+    }
+    final List<PendingLoad> loads = new ArrayList<>(pendingLoads);
+    pendingLoads.clear();
+    final AsyncTask<Void, Void, boolean[]> loadDataTask =
+        new AsyncTask<Void, Void, boolean[]>() {
           @Override
-          protected Boolean doInBackground(Void... params) {
-            viewHolder.isBlocked = BlockedNumberContract.canCurrentUserBlockNumbers(activity) &&
-                    BlockedNumberContract.isBlocked(activity, viewHolder.number);
-            details.isBlocked = viewHolder.isBlocked;
-            if (isCancelled()) {
-              return false;
+          protected boolean[] doInBackground(Void... params) {
+            boolean[] loaded = new boolean[loads.size()];
+            boolean canBlock = BlockedNumberContract.canCurrentUserBlockNumbers(activity);
+            for (int i = 0; i < loads.size(); i++) {
+              PendingLoad load = loads.get(i);
+              if (load.cancelled) {
+                continue;
+              }
+              load.viewHolder.isBlocked =
+                  canBlock && BlockedNumberContract.isBlocked(activity, load.viewHolder.number);
+              load.details.isBlocked = load.viewHolder.isBlocked;
+              loaded[i] = loadData(load.viewHolder, load.rowId, load.details);
             }
-            return !isCancelled() && loadData(viewHolder, rowId, details);
+            return loaded;
           }
 
           @Override
-          protected void onPostExecute(Boolean success) {
-            viewHolder.isLoaded = true;
-            if (success) {
-              viewHolder.callbackAction = getCallbackAction(viewHolder.rowId);
-              int currentDayGroup = getDayGroup(viewHolder.rowId);
-              if (currentDayGroup != details.previousGroup) {
-                viewHolder.dayGroupHeaderVisibility = View.VISIBLE;
-                viewHolder.dayGroupHeaderText = getGroupDescription(currentDayGroup);
-              } else {
-                viewHolder.dayGroupHeaderVisibility = View.GONE;
+          protected void onPostExecute(boolean[] loaded) {
+            for (int i = 0; i < loads.size(); i++) {
+              PendingLoad load = loads.get(i);
+              CallLogListItemViewHolder viewHolder = load.viewHolder;
+              if (load.cancelled || viewHolder.rowId != load.rowId) {
+                // Recycled or rebound, e.g. to a hidden row, which a later load renders if needed
+                continue;
+              }
+              unrenderedLoads.remove(viewHolder);
+              viewHolder.isLoaded = true;
+              if (loaded[i]) {
+                viewHolder.callbackAction = load.callbackAction;
+                if (load.dayGroup != load.details.previousGroup) {
+                  viewHolder.dayGroupHeaderVisibility = View.VISIBLE;
+                  viewHolder.dayGroupHeaderText = getGroupDescription(load.dayGroup);
+                } else {
+                  viewHolder.dayGroupHeaderVisibility = View.GONE;
+                }
+                render(viewHolder, load.details, load.rowId);
               }
-              render(viewHolder, details, rowId);
             }
           }
         };
 
-    viewHolder.asyncTask = loadDataTask;
     asyncTaskExecutor.submit(LOAD_DATA_TASK_IDENTIFIER, loadDataTask);
   }
 
@@ -1096,7 +1219,7 @@ public class CallLogAdapter extends GroupingListAdapter
       cursor.moveToPosition(startingPosition);
       return CallLogGroupBuilder.DAY_GROUP_NONE;
     }
-    int result = getDayGroup(cursor.getLong(CallLogQuery.ID));
+    int result = callLogGroupBuilder.getDayGroup(cursor.getPosition());
     cursor.moveToPosition(startingPosition);
     return result;
   }
@@ -1105,38 +1228,6 @@ public class CallLogAdapter extends GroupingListAdapter
     while (cursor.moveToPrevious() && hiddenRowIds.contains(cursor.getLong(CallLogQuery.ID))) {}
   }
 
-  /**
-   * Given a call ID, look up its callback action. Callback action data are populated in {@link
-   * com.android.dialer.app.calllog.CallLogGroupBuilder}.
-   *
-   * @param callId The call ID to retrieve the callback action.
-   * @return The callback action for the call.
-   */
-  @MainThread
-  private int getCallbackAction(long callId) {
-    Integer result = callbackActions.get(callId);
-    if (result != null) {
-      return result;
-    }
-    return CallbackAction.NONE;
-  }
-
-  /**
-   * Given a call ID, look up the day group the call belongs to. Day group data are populated in
-   * {@link com.android.dialer.app.calllog.CallLogGroupBuilder}.
-   *
-   * @param callId The call ID to retrieve the day group.
-   * @return The day group for the call.
-   */
-  @MainThread
-  private int getDayGroup(long callId) {
-    Integer result = dayGroups.get(callId);
-    if (result != null) {
-      return result;
-    }
-    return CallLogGroupBuilder.DAY_GROUP_NONE;
-  }
-
   /**
    * Returns the call types for the given number of items in the cursor.
    *
@@ -1173,37 +1264,6 @@ public class CallLogAdapter extends GroupingListAdapter
     return features;
   }
 
-  /**
-   * Stores the callback action associated with a call in the call log.
-   *
-   * @param rowId The row ID of the current call.
-   * @param callbackAction The current call's callback action.
-   */
-  @Override
-  @MainThread
-  public void setCallbackAction(long rowId, @CallbackAction int callbackAction) {
-    callbackActions.put(rowId, callbackAction);
-  }
-
-  /**
-   * Stores the day group associated with a call in the call log.
-   *
-   * @param rowId The row ID of the current call.
-   * @param dayGroup The day group the call belongs in.
-   */
-  @Override
-  @MainThread
-  public void setDayGroup(long rowId, int dayGroup) {
-    dayGroups.put(rowId, dayGroup);
-  }
-
-  /** Clears the day group associations on re-bind of the call log. */
-  @Override
-  @MainThread
-  public void clearDayGroups() {
-    dayGroups.clear();
-  }
-
   /**
    * Retrieves the call Ids represented by the current call log row.
    *
@@ -27,9 +27,11 @@ import androidx.annotation.Nullable;
 import com.android.contacts.common.util.DateUtils;
 import com.android.dialer.calllogutils.CallbackActionHelper;
 import com.android.dialer.calllogutils.CallbackActionHelper.CallbackAction;
+import com.android.dialer.common.LogUtil;
 import com.android.dialer.compat.telephony.TelephonyManagerCompat;
 import com.android.dialer.phonenumbercache.CallLogQuery;
 import com.android.dialer.phonenumberutil.PhoneNumberHelper;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -38,6 +40,13 @@ import java.util.Objects;
  * grouped via the primary grouping, to "day groups". The day groups provide a means of identifying
  * the calls which occurred "Today", "Yesterday", "Last week", or "Other".
  *
+ * <p>The groups are kept in int arrays indexed by the sequence number of each call, which grows
+ * from the oldest call to the newest one. The call log is sorted by date, newest first, so calls
+ * added since the previous cursor are appended to the arrays and calls that fell off the end of
+ * the cursor are dropped from their start. Regrouping a cursor that only differs from the previous
+ * one by such calls therefore costs a constant time per new call rather than a pass over the whole
+ * call log.
+ *
  * <p>This class is meant to be used in conjunction with {@link GroupingListAdapter}.
  */
 public class CallLogGroupBuilder {
@@ -57,18 +66,60 @@ public class CallLogGroupBuilder {
   /** Instance of the time object used for time calculations. */
   private static final Time TIME = new Time();
 
-  /** The object on which the groups are created. */
-  private final GroupCreator groupCreator;
+  private static final int INITIAL_CAPACITY = 64;
+
+  /** Row IDs of the calls, indexed by sequence number minus {@link #rowOffset}. */
+  private long[] rowIds = new long[INITIAL_CAPACITY];
+  /** Sequence number of the group of each call, indexed like {@link #rowIds}. */
+  private int[] rowGroups = new int[INITIAL_CAPACITY];
+  /** Sequence number of the call stored at index 0 of the row arrays. */
+  private int rowOffset;
+  /** Sequence number of the oldest call in the cursor. */
+  private int rowStart;
+  /** Sequence number following the one of the newest call in the cursor. */
+  private int rowEnd;
+
+  /** Sequence number of the oldest call of each group, indexed minus {@link #groupOffset}. */
+  private int[] groupFirstRows = new int[INITIAL_CAPACITY];
+  /** Day group of each group, which is the one of its newest call. */
+  private int[] groupDayGroups = new int[INITIAL_CAPACITY];
+  /** Callback action of each group, which is shared by all of its calls. */
+  private int[] groupCallbackActions = new int[INITIAL_CAPACITY];
+  /** Sequence number of the group stored at index 0 of the group arrays. */
+  private int groupOffset;
+  /** Sequence number of the oldest group in the cursor. */
+  private int groupStart;
+  /** Sequence number following the one of the newest group in the cursor. */
+  private int groupEnd;
 
-  public CallLogGroupBuilder(GroupCreator groupCreator) {
-    this.groupCreator = groupCreator;
-  }
+  /**
+   * Values of the newest call, which the next call added is compared with. Only the newest group
+   * can grow, so the values of the other groups don't need to be kept.
+   */
+  private String headNumber;
+
+  private String headPostDialDigits;
+  private String headViaNumber;
+  private String headAccountComponentName;
+  private String headAccountId;
+  private int headCallType;
+  private int headFeatures;
+
+  /** Time at which the day groups were computed, so that they are recomputed the next day. */
+  private long dayGroupsTime;
 
   /**
-   * Finds all groups of adjacent entries in the call log which should be grouped together and calls
-   * {@link GroupCreator#addGroup(int, int)} on {@link #groupCreator} for each of them.
+   * Finds all groups of adjacent entries in the call log which should be grouped together.
+   *
+   * <p>For entries that are not grouped with others, a group of size one is created.
    *
-   * <p>For entries that are not grouped with others, we do not need to create a group of size one.
+   * <p>If {@code cursor} holds the calls of the previous cursor, with newer calls before them and
+   * possibly without the oldest ones, only the newer calls are grouped. Otherwise all calls are.
+   * The grouping only depends on columns that don't change once a call is logged, so the calls
+   * are not compared with their previous values.
+   *
+   * <p>Numbers are matched loosely with {@link PhoneNumberUtils#compare(String, String)}, which
+   * isn't transitive, so each call is compared with the call just before it.
    *
    * <p>It assumes that the cursor will not change during its execution.
    *
@@ -76,111 +127,200 @@ public class CallLogGroupBuilder {
    */
   public void addGroups(Cursor cursor) {
     final int count = cursor.getCount();
-    if (count == 0) {
-      return;
+    // Get current system time, used for calculating which day group calls belong to.
+    long currentTime = System.currentTimeMillis();
+
+    int newCount = count == 0 ? -1 : getNewCallCount(cursor, currentTime);
+    if (newCount < 0) {
+      LogUtil.v("CallLogGroupBuilder.addGroups", "grouping %d calls", count);
+      rowOffset = rowStart = rowEnd = 0;
+      groupOffset = groupStart = groupEnd = 0;
+      newCount = count;
     }
+    dayGroupsTime = currentTime;
 
-    // Clear any previous day grouping information.
-    groupCreator.clearDayGroups();
+    // Drop the calls, and then the groups, which are no longer in the cursor.
+    rowStart = rowEnd + newCount - count;
+    while (groupStart < groupEnd && getGroupEnd(groupStart) <= rowStart) {
+      groupStart++;
+    }
+    if (groupStart < groupEnd) {
+      int index = groupStart - groupOffset;
+      groupFirstRows[index] = Math.max(groupFirstRows[index], rowStart);
+    }
 
-    // Get current system time, used for calculating which day group calls belong to.
-    long currentTime = System.currentTimeMillis();
-    cursor.moveToFirst();
-
-    // Determine the day group for the first call in the cursor.
-    final long firstDate = cursor.getLong(CallLogQuery.DATE);
-    final long firstRowId = cursor.getLong(CallLogQuery.ID);
-    int groupDayGroup = getDayGroup(firstDate, currentTime);
-    groupCreator.setDayGroup(firstRowId, groupDayGroup);
-
-    // Determine the callback action for the first call in the cursor.
-    String groupNumber = cursor.getString(CallLogQuery.NUMBER);
-    String groupAccountComponentName = cursor.getString(CallLogQuery.ACCOUNT_COMPONENT_NAME);
-    int groupFeatures = cursor.getInt(CallLogQuery.FEATURES);
-    int groupCallbackAction = CallbackActionHelper.getCallbackAction(groupNumber, groupFeatures);
-    groupCreator.setCallbackAction(firstRowId, groupCallbackAction);
-
-    // Instantiate other group values to those of the first call in the cursor.
-    String groupAccountId = cursor.getString(CallLogQuery.ACCOUNT_ID);
-    String groupPostDialDigits = cursor.getString(CallLogQuery.POST_DIAL_DIGITS);
-    String groupViaNumbers = cursor.getString(CallLogQuery.VIA_NUMBER);
-    int groupCallType = cursor.getInt(CallLogQuery.CALL_TYPE);
-    int groupSize = 1;
-
-    String number;
-    String numberPostDialDigits;
-    String numberViaNumbers;
-    int callType;
-    int callFeatures;
-    String accountComponentName;
-    String accountId;
-    int callbackAction;
-
-    while (cursor.moveToNext()) {
-      // Obtain the values for the current call to group.
-      number = cursor.getString(CallLogQuery.NUMBER);
-      numberPostDialDigits = cursor.getString(CallLogQuery.POST_DIAL_DIGITS);
-      numberViaNumbers = cursor.getString(CallLogQuery.VIA_NUMBER);
-      callType = cursor.getInt(CallLogQuery.CALL_TYPE);
-      callFeatures = cursor.getInt(CallLogQuery.FEATURES);
-      accountComponentName = cursor.getString(CallLogQuery.ACCOUNT_COMPONENT_NAME);
-      accountId = cursor.getString(CallLogQuery.ACCOUNT_ID);
-      callbackAction = CallbackActionHelper.getCallbackAction(number, callFeatures);
-
-      final boolean isSameNumber = equalNumbers(groupNumber, number);
-      final boolean isSamePostDialDigits = groupPostDialDigits.equals(numberPostDialDigits);
-      final boolean isSameViaNumbers = groupViaNumbers.equals(numberViaNumbers);
-      final boolean isSameAccount =
-          isSameAccount(groupAccountComponentName, accountComponentName, groupAccountId, accountId);
-      final boolean isSameCallbackAction = (groupCallbackAction == callbackAction);
-
-      // Group calls with the following criteria:
-      // (1) Calls with the same number, account, and callback action should be in the same group;
-      // (2) Never group voice mails; and
-      // (3) Only group blocked calls with other blocked calls.
-      // (4) Only group calls that were assisted dialed with other calls that were assisted dialed.
-      if (isSameNumber
-          && isSameAccount
-          && isSamePostDialDigits
-          && isSameViaNumbers
-          && isSameCallbackAction
-          && areBothNotVoicemail(callType, groupCallType)
-          && (areBothNotBlocked(callType, groupCallType) || areBothBlocked(callType, groupCallType))
-          && meetsAssistedDialingGroupingCriteria(groupFeatures, callFeatures)) {
-        // Increment the size of the group to include the current call, but do not create
-        // the group until finding a call that does not match.
-        groupSize++;
-      } else {
-        // The call group has changed. Determine the day group for the new call group.
-        final long date = cursor.getLong(CallLogQuery.DATE);
-        groupDayGroup = getDayGroup(date, currentTime);
-
-        // Create a group for the previous group of calls, which does not include the
-        // current call.
-        groupCreator.addGroup(cursor.getPosition() - groupSize, groupSize);
-
-        // Start a new group; it will include at least the current call.
-        groupSize = 1;
-
-        // Update the group values to those of the current call.
-        groupNumber = number;
-        groupPostDialDigits = numberPostDialDigits;
-        groupViaNumbers = numberViaNumbers;
-        groupCallType = callType;
-        groupAccountComponentName = accountComponentName;
-        groupAccountId = accountId;
-        groupCallbackAction = callbackAction;
-        groupFeatures = callFeatures;
-      }
+    // Add the new calls, from the oldest to the newest.
+    for (int position = newCount - 1; position >= 0; position--) {
+      cursor.moveToPosition(position);
+      addCall(cursor, currentTime);
+    }
+  }
+
+  /** Returns the number of groups in the last cursor passed to {@link #addGroups(Cursor)}. */
+  public int getGroupCount() {
+    return groupEnd - groupStart;
+  }
+
+  /** Returns the cursor position of the first call of the group at {@code listPosition}. */
+  public int getGroupCursorPosition(int listPosition) {
+    return rowEnd - getGroupEnd(groupEnd - 1 - listPosition);
+  }
+
+  /** Returns the number of calls in the group at {@code listPosition}. */
+  public int getGroupSize(int listPosition) {
+    int group = groupEnd - 1 - listPosition;
+    return getGroupEnd(group) - groupFirstRows[group - groupOffset];
+  }
+
+  /**
+   * Returns the day group of the call at {@code cursorPosition}. Calls in a call group are
+   * assigned the same day group as the first call in the group. The day group assigns calls to the
+   * buckets: Today, Yesterday, Last week, and Other
+   */
+  public int getDayGroup(int cursorPosition) {
+    if (cursorPosition < 0 || cursorPosition >= rowEnd - rowStart) {
+      return DAY_GROUP_NONE;
+    }
+    return groupDayGroups[getRowGroup(cursorPosition) - groupOffset];
+  }
+
+  /**
+   * Returns the callback action of the call at {@code cursorPosition}. Calls in a call group are
+   * associated with the same callback action as the first call in the group. The value of a
+   * callback action is one of the categories in {@link CallbackAction}.
+   */
+  @CallbackAction
+  public int getCallbackAction(int cursorPosition) {
+    if (cursorPosition < 0 || cursorPosition >= rowEnd - rowStart) {
+      return CallbackAction.NONE;
+    }
+    return groupCallbackActions[getRowGroup(cursorPosition) - groupOffset];
+  }
+
+  private int getRowGroup(int cursorPosition) {
+    return rowGroups[rowEnd - 1 - cursorPosition - rowOffset];
+  }
+
+  /** Returns the sequence number following the one of the newest call of {@code group}. */
+  private int getGroupEnd(int group) {
+    return group + 1 < groupEnd ? groupFirstRows[group + 1 - groupOffset] : rowEnd;
+  }
+
+  /**
+   * Returns the number of calls at the start of {@code cursor} which are newer than the calls of
+   * the previous cursor, or -1 if the cursor doesn't hold the calls of the previous cursor after
+   * them, or the day groups have to be computed again.
+   */
+  private int getNewCallCount(Cursor cursor, long currentTime) {
+    if (rowEnd == rowStart
+        || DateUtils.getDayDifference(TIME, dayGroupsTime, currentTime) != 0) {
+      return -1;
+    }
+    long newestRowId = rowIds[rowEnd - 1 - rowOffset];
+    int newCount = 0;
+    cursor.moveToPosition(-1);
+    while (cursor.moveToNext() && cursor.getLong(CallLogQuery.ID) != newestRowId) {
+      newCount++;
+    }
+    int oldCount = cursor.getCount() - newCount;
+    if (oldCount == 0 || oldCount > rowEnd - rowStart) {
+      return -1;
+    }
+    // Both ends of the remaining calls must match for them to be the same calls, as deleting a
+    // call shifts the oldest ones.
+    cursor.moveToLast();
+    if (cursor.getLong(CallLogQuery.ID) != rowIds[rowEnd - oldCount - rowOffset]) {
+      return -1;
+    }
+    return newCount;
+  }
 
-      // Save the callback action and the day group associated with the current call.
-      final long currentCallId = cursor.getLong(CallLogQuery.ID);
-      groupCreator.setCallbackAction(currentCallId, groupCallbackAction);
-      groupCreator.setDayGroup(currentCallId, groupDayGroup);
+  /** Adds the call at the current position of {@code cursor} as the newest call. */
+  private void addCall(Cursor cursor, long currentTime) {
+    final String number = cursor.getString(CallLogQuery.NUMBER);
+    final String postDialDigits = cursor.getString(CallLogQuery.POST_DIAL_DIGITS);
+    final String viaNumber = cursor.getString(CallLogQuery.VIA_NUMBER);
+    final String accountComponentName = cursor.getString(CallLogQuery.ACCOUNT_COMPONENT_NAME);
+    final String accountId = cursor.getString(CallLogQuery.ACCOUNT_ID);
+    final int callType = cursor.getInt(CallLogQuery.CALL_TYPE);
+    final int features = cursor.getInt(CallLogQuery.FEATURES);
+    final int callbackAction = CallbackActionHelper.getCallbackAction(number, features);
+    final int dayGroup = getDayGroup(cursor.getLong(CallLogQuery.DATE), currentTime);
+
+    // Group calls with the following criteria:
+    // (1) Calls with the same number, account, and callback action should be in the same group;
+    // (2) Never group voice mails; and
+    // (3) Only group blocked calls with other blocked calls.
+    // (4) Only group calls that were assisted dialed with other calls that were assisted dialed.
+    final boolean isSameGroup =
+        groupEnd > groupStart
+            && equalNumbers(headNumber, number)
+            && isSameAccount(
+                headAccountComponentName, accountComponentName, headAccountId, accountId)
+            && TextUtils.equals(headPostDialDigits, postDialDigits)
+            && TextUtils.equals(headViaNumber, viaNumber)
+            && groupCallbackActions[groupEnd - 1 - groupOffset] == callbackAction
+            && areBothNotVoicemail(callType, headCallType)
+            && (areBothNotBlocked(callType, headCallType) || areBothBlocked(callType, headCallType))
+            && meetsAssistedDialingGroupingCriteria(headFeatures, features);
+
+    if (rowEnd - rowOffset == rowIds.length) {
+      compactRows();
+    }
+    int group;
+    if (isSameGroup) {
+      // The group now starts with this call, whose day group the whole group takes.
+      group = groupEnd - 1;
+    } else {
+      if (groupEnd - groupOffset == groupFirstRows.length) {
+        compactGroups();
+      }
+      group = groupEnd++;
+      groupFirstRows[group - groupOffset] = rowEnd;
+      groupCallbackActions[group - groupOffset] = callbackAction;
     }
+    groupDayGroups[group - groupOffset] = dayGroup;
+    rowIds[rowEnd - rowOffset] = cursor.getLong(CallLogQuery.ID);
+    rowGroups[rowEnd - rowOffset] = group;
+    rowEnd++;
+
+    headNumber = number;
+    headPostDialDigits = postDialDigits;
+    headViaNumber = viaNumber;
+    headAccountComponentName = accountComponentName;
+    headAccountId = accountId;
+    headCallType = callType;
+    headFeatures = features;
+  }
 
-    // Create a group for the last set of calls.
-    groupCreator.addGroup(count - groupSize, groupSize);
+  /** Moves the calls to the start of the row arrays, growing them if they are half full. */
+  private void compactRows() {
+    int size = rowEnd - rowStart;
+    int capacity = size * 2 > rowIds.length ? rowIds.length * 2 : rowIds.length;
+    long[] newRowIds = capacity == rowIds.length ? rowIds : new long[capacity];
+    int[] newRowGroups = capacity == rowGroups.length ? rowGroups : new int[capacity];
+    System.arraycopy(rowIds, rowStart - rowOffset, newRowIds, 0, size);
+    System.arraycopy(rowGroups, rowStart - rowOffset, newRowGroups, 0, size);
+    rowIds = newRowIds;
+    rowGroups = newRowGroups;
+    rowOffset = rowStart;
+  }
+
+  /** Moves the groups to the start of the group arrays, growing them if they are half full. */
+  private void compactGroups() {
+    int size = groupEnd - groupStart;
+    int from = groupStart - groupOffset;
+    if (size * 2 > groupFirstRows.length) {
+      int capacity = groupFirstRows.length * 2;
+      groupFirstRows = Arrays.copyOfRange(groupFirstRows, from, from + capacity);
+      groupDayGroups = Arrays.copyOfRange(groupDayGroups, from, from + capacity);
+      groupCallbackActions = Arrays.copyOfRange(groupCallbackActions, from, from + capacity);
+    } else {
+      System.arraycopy(groupFirstRows, from, groupFirstRows, 0, size);
+      System.arraycopy(groupDayGroups, from, groupDayGroups, 0, size);
+      System.arraycopy(groupCallbackActions, from, groupCallbackActions, 0, size);
+    }
+    groupOffset = groupStart;
   }
 
   /**
@@ -275,39 +415,4 @@ public class CallLogGroupBuilder {
 
     return groupAssisted == callAssisted;
   }
-
-  public interface GroupCreator {
-
-    /**
-     * Defines the interface for adding a group to the call log. The primary group for a call log
-     * groups the calls together based on the number which was dialed.
-     *
-     * @param cursorPosition The starting position of the group in the cursor.
-     * @param size The size of the group.
-     */
-    void addGroup(int cursorPosition, int size);
-
-    /**
-     * Defines the interface for tracking each call's callback action. Calls in a call group are
-     * associated with the same callback action as the first call in the group. The value of a
-     * callback action should be one of the categories in {@link CallbackAction}.
-     *
-     * @param rowId The row ID of the current call.
-     * @param callbackAction The current call's callback action.
-     */
-    void setCallbackAction(long rowId, @CallbackAction int callbackAction);
-
-    /**
-     * Defines the interface for tracking the day group each call belongs to. Calls in a call group
-     * are assigned the same day group as the first call in the group. The day group assigns calls
-     * to the buckets: Today, Yesterday, Last week, and Other
-     *
-     * @param rowId The row ID of the current call.
-     * @param dayGroup The day group the call belongs to.
-     */
-    void setDayGroup(long rowId, int dayGroup);
-
-    /** Defines the interface for clearing the day groupings information on rebind/regroup. */
-    void clearDayGroups();
-  }
 }
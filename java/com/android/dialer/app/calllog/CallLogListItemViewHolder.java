@@ -227,7 +227,6 @@ public final class CallLogListItemViewHolder extends RecyclerView.ViewHolder
   public CharSequence dayGroupHeaderText;
   public boolean isAttachedToWindow;
 
-  public AsyncTask<Void, Void, ?> asyncTask;
   private CallDetailsEntries callDetailsEntries;
 
   private CallLogListItemViewHolder(
@@ -21,7 +21,6 @@ import android.database.Cursor;
 import android.database.DataSetObserver;
 import android.os.Handler;
 import android.support.v7.widget.RecyclerView;
-import android.util.SparseIntArray;
 
 /**
  * Maintains a list that groups items into groups of consecutive elements which are disjoint, that
@@ -52,11 +51,6 @@ abstract class GroupingListAdapter extends RecyclerView.Adapter {
         }
       };
   private Cursor cursor;
-  /**
-   * SparseIntArray, which maps the cursor position of the first element of a group to the size of
-   * the group. The index of a key in this map corresponds to the list position of that group.
-   */
-  private SparseIntArray groupMetadata;
 
   private int itemCount;
 
@@ -65,10 +59,20 @@ abstract class GroupingListAdapter extends RecyclerView.Adapter {
   }
 
   /**
-   * Finds all groups of adjacent items in the cursor and calls {@link #addGroup} for each of them.
+   * Finds all groups of adjacent items in the cursor, which are then described by {@link
+   * #getGroupCount()}, {@link #getGroupCursorPosition(int)} and {@link #getGroupSize(int)}.
    */
   protected abstract void addGroups(Cursor cursor);
 
+  /** Returns the number of groups found by the last call to {@link #addGroups}. */
+  protected abstract int getGroupCount();
+
+  /** Returns the cursor position of the first item of the group at {@code groupIndex}. */
+  protected abstract int getGroupCursorPosition(int groupIndex);
+
+  /** Returns the number of items in the group at {@code groupIndex}. */
+  protected abstract int getGroupItemCount(int groupIndex);
+
   protected abstract void onContentChanged();
 
   public void changeCursor(Cursor cursor) {
@@ -90,7 +94,7 @@ abstract class GroupingListAdapter extends RecyclerView.Adapter {
       addGroups(this.cursor);
 
       // Calculate the item count by subtracting group child counts from the cursor count.
-      itemCount = groupMetadata.size();
+      itemCount = getGroupCount();
 
       cursor.registerContentObserver(changeObserver);
       cursor.registerDataSetObserver(dataSetObserver);
@@ -98,20 +102,6 @@ abstract class GroupingListAdapter extends RecyclerView.Adapter {
     }
   }
 
-  /**
-   * Records information about grouping in the list. Should be called by the overridden {@link
-   * #addGroups} method.
-   */
-  public void addGroup(int cursorPosition, int groupSize) {
-    int lastIndex = groupMetadata.size() - 1;
-    if (lastIndex < 0 || cursorPosition <= groupMetadata.keyAt(lastIndex)) {
-      groupMetadata.put(cursorPosition, groupSize);
-    } else {
-      // Optimization to avoid binary search if adding groups in ascending cursor position.
-      groupMetadata.append(cursorPosition, groupSize);
-    }
-  }
-
   @Override
   public int getItemCount() {
     return itemCount;
@@ -122,11 +112,11 @@ abstract class GroupingListAdapter extends RecyclerView.Adapter {
    * position.
    */
   public int getGroupSize(int listPosition) {
-    if (listPosition < 0 || listPosition >= groupMetadata.size()) {
+    if (listPosition < 0 || listPosition >= itemCount) {
       return 0;
     }
 
-    return groupMetadata.valueAt(listPosition);
+    return getGroupItemCount(listPosition);
   }
 
   /**
@@ -134,11 +124,11 @@ abstract class GroupingListAdapter extends RecyclerView.Adapter {
    * corresponding to that position.
    */
   public Object getItem(int listPosition) {
-    if (cursor == null || listPosition < 0 || listPosition >= groupMetadata.size()) {
+    if (cursor == null || listPosition < 0 || listPosition >= itemCount) {
       return null;
     }
 
-    int cursorPosition = groupMetadata.keyAt(listPosition);
+    int cursorPosition = getGroupCursorPosition(listPosition);
     if (cursor.moveToPosition(cursorPosition)) {
       return cursor;
     } else {
@@ -148,6 +138,5 @@ abstract class GroupingListAdapter extends RecyclerView.Adapter {
 
   private void reset() {
     itemCount = 0;
-    groupMetadata = new SparseIntArray();
   }
 }
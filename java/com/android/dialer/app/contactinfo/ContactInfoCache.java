@@ -22,6 +22,7 @@ import android.os.SystemClock;
 import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.logging.ContactSource.Type;
@@ -30,6 +31,8 @@ import com.android.dialer.phonenumbercache.ContactInfo;
 import com.android.dialer.phonenumbercache.ContactInfoHelper;
 import com.android.dialer.util.ExpirableCache;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
@@ -51,6 +54,8 @@ public class ContactInfoCache {
   private static final int REDRAW = 1;
   private static final int START_THREAD = 2;
   private static final int START_PROCESSING_REQUESTS_DELAY_MS = 1000;
+  /** Maximum number of local requests looked up in the contacts provider with one query. */
+  private static final int MAX_BATCH_SIZE = 50;
 
   private final ExpirableCache<NumberWithCountryIso, ContactInfo> cache;
   private final ContactInfoHelper contactInfoHelper;
@@ -143,6 +148,24 @@ public class ContactInfoCache {
     return info;
   }
 
+  /**
+   * Requests the contact info of a number which is likely to be shown soon, unless it is cached
+   * already. Prefetched numbers are looked up together with the other pending local requests.
+   */
+  public void prefetch(String number, String countryIso, ContactInfo callLogContactInfo) {
+    NumberWithCountryIso numberCountryIso = new NumberWithCountryIso(number, countryIso);
+    if (cache.getCachedValue(numberCountryIso) != null) {
+      return;
+    }
+    cache.put(numberCountryIso, ContactInfo.EMPTY);
+    enqueueRequest(
+        number,
+        countryIso,
+        callLogContactInfo,
+        /* immediate */ true,
+        ContactInfoRequest.TYPE_LOCAL);
+  }
+
   /**
    * Queries the appropriate content provider for the contact associated with the number.
    *
@@ -153,15 +176,20 @@ public class ContactInfoCache {
    *
    * <p>It returns true if it updated the content of the cache and we should therefore tell the view
    * to update its content.
+   *
+   * @param batchInfo the contact found for a local request by {@link
+   *     ContactInfoHelper#lookupNumbersInDefaultDirectory}, or null to look it up now
    */
-  private boolean queryContactInfo(ContactInfoRequest request) {
+  private boolean queryContactInfo(ContactInfoRequest request, @Nullable ContactInfo batchInfo) {
     LogUtil.d(
         "ContactInfoCache.queryContactInfo",
         "request number: %s, type: %d",
         LogUtil.sanitizePhoneNumber(request.number),
         request.type);
     ContactInfo info;
-    if (request.isLocalRequest()) {
+    if (batchInfo != null) {
+      info = batchInfo;
+    } else if (request.isLocalRequest()) {
       info = contactInfoHelper.lookupNumber(request.number, request.countryIso);
       if (info != null && !info.contactExists) {
         // TODO(wangqi): Maybe skip look up if it's already available in cached number lookup
@@ -353,7 +381,11 @@ public class ContactInfoCache {
 
         try {
           ContactInfoRequest request = updateRequests.take();
-          shouldRedraw |= queryContactInfo(request);
+          if (request.isLocalRequest()) {
+            shouldRedraw |= queryLocalRequests(request);
+          } else {
+            shouldRedraw |= queryContactInfo(request, null);
+          }
           if (shouldRedraw
               && (updateRequests.isEmpty()
                   || (request.isLocalRequest() && !updateRequests.peek().isLocalRequest()))) {
@@ -365,5 +397,41 @@ public class ContactInfoCache {
         }
       }
     }
+
+    /**
+     * Looks up {@code first} along with the local requests queued after it, with one query for all
+     * the numbers which can be found by their normalized number.
+     */
+    private boolean queryLocalRequests(ContactInfoRequest first) {
+      List<ContactInfoRequest> batch = new ArrayList<>();
+      batch.add(first);
+      while (batch.size() < MAX_BATCH_SIZE) {
+        ContactInfoRequest next = updateRequests.poll();
+        if (next == null) {
+          break;
+        }
+        if (!next.isLocalRequest()) {
+          // Remote requests are ordered after the local ones, so this was the last local one
+          updateRequests.offer(next);
+          break;
+        }
+        batch.add(next);
+      }
+
+      List<String> numbers = new ArrayList<>(batch.size());
+      List<String> countryIsos = new ArrayList<>(batch.size());
+      for (ContactInfoRequest request : batch) {
+        numbers.add(request.number);
+        countryIsos.add(request.countryIso);
+      }
+      ContactInfo[] batchInfos =
+          contactInfoHelper.lookupNumbersInDefaultDirectory(numbers, countryIsos);
+
+      boolean updated = false;
+      for (int i = 0; i < batch.size(); i++) {
+        updated |= queryContactInfo(batch.get(i), batchInfos[i]);
+      }
+      return updated;
+    }
   }
 }
@@ -26,6 +26,7 @@ import com.android.dialer.common.concurrent.DialerExecutorComponent;
 import com.android.dialer.inject.HasRootComponent;
 import com.android.dialer.notification.NotificationChannelManager;
 import com.android.dialer.persistentlog.PersistentLogger;
+import com.android.dialer.phonenumberutil.PhoneNumberCache;
 
 /** A common application subclass for all Dialer build variants. */
 public abstract class DialerApplication extends Application implements HasRootComponent {
@@ -42,6 +43,7 @@ public abstract class DialerApplication extends Application implements HasRootCo
         .asyncAutoMigrate();
     PersistentLogger.initialize(this);
     NotificationChannelManager.initChannels(this);
+    PhoneNumberCache.getInstance().registerCountryChangeReceiver(this);
     Trace.endSection();
   }
 
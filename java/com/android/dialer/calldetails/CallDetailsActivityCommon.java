@@ -41,7 +41,9 @@ import com.android.dialer.assisteddialing.ui.AssistedDialingSettingActivity;
 import com.android.dialer.calldetails.CallDetailsEntries.CallDetailsEntry;
 import com.android.dialer.callintent.CallInitiationType;
 import com.android.dialer.callintent.CallIntentBuilder;
-import com.android.dialer.callrecord.CallRecordingDataStore;
+import com.android.dialer.callrecord.CallRecordingIndex;
+import com.android.dialer.callrecord.CallRecordingIndex.Recordings;
+import com.android.dialer.callrecord.impl.CallRecorderService;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.common.concurrent.DialerExecutor.FailureListener;
@@ -87,7 +89,7 @@ abstract class CallDetailsActivityCommon extends AppCompatActivity {
   private CallDetailsAdapterCommon adapter;
   private CallDetailsEntries callDetailsEntries;
   private UiListener<ImmutableSet<String>> checkRttTranscriptAvailabilityListener;
-  private CallRecordingDataStore callRecordingDataStore;
+  private UiListener<Recordings> loadRecordingsListener;
 
   /**
    * Handles the intent that launches {@link OldCallDetailsActivity} or {@link CallDetailsActivity},
@@ -100,8 +102,7 @@ abstract class CallDetailsActivityCommon extends AppCompatActivity {
       CallDetailsEntryViewHolder.CallDetailsEntryListener callDetailsEntryListener,
       CallDetailsHeaderViewHolder.CallDetailsHeaderListener callDetailsHeaderListener,
       CallDetailsFooterViewHolder.ReportCallIdListener reportCallIdListener,
-      CallDetailsFooterViewHolder.DeleteCallDetailsListener deleteCallDetailsListener,
-      CallRecordingDataStore callRecordingDataStore);
+      CallDetailsFooterViewHolder.DeleteCallDetailsListener deleteCallDetailsListener);
 
   /** Returns the phone number of the call details. */
   protected abstract String getNumber();
@@ -118,18 +119,13 @@ abstract class CallDetailsActivityCommon extends AppCompatActivity {
     checkRttTranscriptAvailabilityListener =
         DialerExecutorComponent.get(this)
             .createUiListener(getFragmentManager(), "Query RTT transcript availability");
-    callRecordingDataStore = new CallRecordingDataStore();
+    loadRecordingsListener =
+        DialerExecutorComponent.get(this)
+            .createUiListener(getFragmentManager(), "Load call recordings");
     handleIntent(getIntent());
     setupRecyclerViewForEntries();
   }
 
-  @Override
-  @CallSuper
-  protected void onDestroy() {
-    super.onDestroy();
-    callRecordingDataStore.close();
-  }
-
   @Override
   @CallSuper
   protected void onResume() {
@@ -183,12 +179,53 @@ abstract class CallDetailsActivityCommon extends AppCompatActivity {
             callDetailsEntryListener,
             callDetailsHeaderListener,
             reportCallIdListener,
-            deleteCallDetailsListener,
-            callRecordingDataStore);
+            deleteCallDetailsListener);
 
     RecyclerView recyclerView = findViewById(R.id.recycler_view);
     recyclerView.setLayoutManager(new LinearLayoutManager(this));
     recyclerView.setAdapter(adapter);
+    adapter.setRecordings(loadRecordings());
+  }
+
+  /**
+   * Returns the recordings of the entries if they are cached in {@link CallRecordingIndex}.
+   * Otherwise returns null and passes them to the adapter once they are loaded in the background.
+   */
+  @MainThread
+  @Nullable
+  private Recordings loadRecordings() {
+    CallDetailsEntries entries = callDetailsEntries;
+    if (entries.getEntriesCount() == 0 || !CallRecorderService.isEnabled(this)) {
+      return Recordings.EMPTY;
+    }
+
+    long fromCallDate = Long.MAX_VALUE;
+    long toCallDate = Long.MIN_VALUE;
+    for (CallDetailsEntry entry : entries.getEntriesList()) {
+      fromCallDate = Math.min(fromCallDate, entry.getDate());
+      toCallDate = Math.max(toCallDate, entry.getDate());
+    }
+    CallRecordingIndex index = CallRecordingIndex.getInstance(this);
+    Recordings cached = index.getCached(getNumber(), fromCallDate, toCallDate);
+    if (cached != null) {
+      return cached;
+    }
+    loadRecordingsListener.listen(
+        this,
+        index.load(getNumber(), fromCallDate, toCallDate),
+        recordings -> {
+          // Drop the recordings of entries which have been replaced meanwhile
+          if (entries == callDetailsEntries) {
+            adapter.setRecordings(recordings);
+          }
+        },
+        throwable -> {
+          LogUtil.e("CallDetailsActivityCommon.loadRecordings", "failed to load", throwable);
+          if (entries == callDetailsEntries) {
+            adapter.setRecordings(Recordings.EMPTY);
+          }
+        });
+    return null;
   }
 
   final CallDetailsAdapterCommon getAdapter() {
@@ -206,7 +243,8 @@ abstract class CallDetailsActivityCommon extends AppCompatActivity {
     Assert.isMainThread();
     this.callDetailsEntries = entries;
     if (adapter != null) {
-      adapter.updateCallDetailsEntries(entries);
+      // The recordings of the previous entries may not cover the new ones
+      adapter.updateCallDetailsEntries(entries, loadRecordings());
     }
   }
 
@@ -25,6 +25,7 @@ import android.view.ViewGroup;
 
 import androidx.annotation.CallSuper;
 import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
 
 import com.android.dialer.R;
 import com.android.dialer.calldetails.CallDetailsEntries.CallDetailsEntry;
@@ -35,7 +36,7 @@ import com.android.dialer.calldetails.CallDetailsHeaderViewHolder.CallDetailsHea
 import com.android.dialer.calllogutils.CallTypeHelper;
 import com.android.dialer.calllogutils.CallbackActionHelper;
 import com.android.dialer.calllogutils.CallbackActionHelper.CallbackAction;
-import com.android.dialer.callrecord.CallRecordingDataStore;
+import com.android.dialer.callrecord.CallRecordingIndex.Recordings;
 import com.android.dialer.common.Assert;
 import com.android.dialer.glidephotomanager.PhotoInfo;
 
@@ -54,9 +55,10 @@ abstract class CallDetailsAdapterCommon extends RecyclerView.Adapter<RecyclerVie
   private final ReportCallIdListener reportCallIdListener;
   private final DeleteCallDetailsListener deleteCallDetailsListener;
   private final CallTypeHelper callTypeHelper;
-  private final CallRecordingDataStore callRecordingDataStore;
 
   private CallDetailsEntries callDetailsEntries;
+  /** Recordings of the entries, null until they are loaded. */
+  @Nullable private Recordings recordings;
 
   protected abstract void bindCallDetailsHeaderViewHolder(
       CallDetailsHeaderViewHolder viewHolder, int position);
@@ -79,14 +81,12 @@ abstract class CallDetailsAdapterCommon extends RecyclerView.Adapter<RecyclerVie
       CallDetailsEntryListener callDetailsEntryListener,
       CallDetailsHeaderListener callDetailsHeaderListener,
       ReportCallIdListener reportCallIdListener,
-      DeleteCallDetailsListener deleteCallDetailsListener,
-      CallRecordingDataStore callRecordingDataStore) {
+      DeleteCallDetailsListener deleteCallDetailsListener) {
     this.callDetailsEntries = callDetailsEntries;
     this.callDetailsEntryListener = callDetailsEntryListener;
     this.callDetailsHeaderListener = callDetailsHeaderListener;
     this.reportCallIdListener = reportCallIdListener;
     this.deleteCallDetailsListener = deleteCallDetailsListener;
-    this.callRecordingDataStore = callRecordingDataStore;
     this.callTypeHelper = new CallTypeHelper(context.getResources());
   }
 
@@ -123,12 +123,11 @@ abstract class CallDetailsAdapterCommon extends RecyclerView.Adapter<RecyclerVie
       CallDetailsEntryViewHolder viewHolder = (CallDetailsEntryViewHolder) holder;
       CallDetailsEntry entry = callDetailsEntries.getEntries(position - 1);
       viewHolder.setCallDetails(
-          getNumber(),
           getPrimaryText(),
           getPhotoInfo(),
           entry,
           callTypeHelper,
-          callRecordingDataStore);
+          recordings == null ? null : recordings.get(entry.getDate()));
     }
   }
 
@@ -156,10 +155,24 @@ abstract class CallDetailsAdapterCommon extends RecyclerView.Adapter<RecyclerVie
     return callDetailsEntries;
   }
 
+  /** Replaces the entries along with their recordings, or null if these aren't loaded yet. */
   @MainThread
-  final void updateCallDetailsEntries(CallDetailsEntries entries) {
+  final void updateCallDetailsEntries(
+      CallDetailsEntries entries, @Nullable Recordings recordings) {
     Assert.isMainThread();
     callDetailsEntries = entries;
+    this.recordings = recordings;
+    notifyDataSetChanged();
+  }
+
+  /**
+   * Sets the recordings of the entries, or null to hide the recordings of every entry until they
+   * are loaded.
+   */
+  @MainThread
+  final void setRecordings(@Nullable Recordings recordings) {
+    Assert.isMainThread();
+    this.recordings = recordings;
     notifyDataSetChanged();
   }
 
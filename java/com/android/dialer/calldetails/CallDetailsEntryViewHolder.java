@@ -36,6 +36,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.ColorInt;
+import androidx.annotation.Nullable;
 
 import com.android.dialer.R;
 import com.android.dialer.calldetails.CallDetailsEntries.CallDetailsEntry;
@@ -44,8 +45,6 @@ import com.android.dialer.calllogutils.CallLogDurations;
 import com.android.dialer.calllogutils.CallTypeHelper;
 import com.android.dialer.calllogutils.CallTypeIconsView;
 import com.android.dialer.callrecord.CallRecording;
-import com.android.dialer.callrecord.CallRecordingDataStore;
-import com.android.dialer.callrecord.impl.CallRecorderService;
 import com.android.dialer.glidephotomanager.PhotoInfo;
 import com.android.dialer.oem.MotorolaUtils;
 
@@ -90,12 +89,11 @@ public class CallDetailsEntryViewHolder extends ViewHolder {
   }
 
   void setCallDetails(
-      String number,
       String primaryText,
       PhotoInfo photoInfo,
       CallDetailsEntry entry,
       CallTypeHelper callTypeHelper,
-      CallRecordingDataStore callRecordingDataStore) {
+      @Nullable List<CallRecording> recordings) {
     int callType = entry.getCallType();
     boolean isVideoCall = (entry.getFeatures() & Calls.FEATURES_VIDEO) == Calls.FEATURES_VIDEO;
     boolean isPulledCall =
@@ -129,21 +127,19 @@ public class CallDetailsEntryViewHolder extends ViewHolder {
               context, entry.getDuration(), entry.getDataUsage()));
     }
 
-    // do this synchronously to prevent recordings from "popping in" after detail item is displayed
-    final List<CallRecording> recordings;
-    if (CallRecorderService.isEnabled(context)) {
-      callRecordingDataStore.open(context); // opens unless already open
-      recordings = callRecordingDataStore.getRecordings(number, entry.getDate());
+    // The recordings are null until they are loaded in the background, only this row waits for
+    // them.
+    if (recordings == null || recordings.isEmpty()) {
+      playbackButton.setOnClickListener(null);
+      playbackButton.setVisibility(View.GONE);
     } else {
-      recordings = null;
+      int count = recordings.size();
+      playbackButton.setOnClickListener(v -> handleRecordingClick(v, recordings));
+      playbackButton.setText(
+          context.getResources().getQuantityString(R.plurals.play_recordings, count, count));
+      playbackButton.setVisibility(View.VISIBLE);
     }
 
-    int count = recordings != null ? recordings.size() : 0;
-    playbackButton.setOnClickListener(v -> handleRecordingClick(v, recordings));
-    playbackButton.setText(
-        context.getResources().getQuantityString(R.plurals.play_recordings, count, count));
-    playbackButton.setVisibility(count > 0 ? View.VISIBLE : View.GONE);
-
     if (isRttCall) {
       if (entry.getHasRttTranscript()) {
         rttTranscript.setText(R.string.rtt_transcript_link);
@@ -18,7 +18,6 @@ package com.android.dialer.calllog;
 
 import android.content.ContentProviderOperation;
 import android.content.ContentUris;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.OperationApplicationException;
 import android.os.RemoteException;
@@ -29,16 +28,16 @@ import com.android.dialer.DialerPhoneNumber;
 import com.android.dialer.NumberAttributes;
 import com.android.dialer.calllog.database.contract.AnnotatedCallLogContract.AnnotatedCallLog;
 import com.android.dialer.calllog.datasources.CallLogMutations;
+import com.android.dialer.calllog.datasources.MutationColumns;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.common.concurrent.Annotations.BackgroundExecutor;
 import com.android.dialer.inject.ApplicationContext;
-import com.android.dialer.protos.ProtoParsers;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.protobuf.InvalidProtocolBufferException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.stream.Stream;
 import javax.inject.Inject;
 
 /**
@@ -94,48 +93,8 @@ public final class CallLogCacheUpdater {
 
   private void updateCacheInternal(CallLogMutations mutations) {
     ArrayList<ContentProviderOperation> operations = new ArrayList<>();
-    Stream.concat(
-            mutations.getInserts().entrySet().stream(), mutations.getUpdates().entrySet().stream())
-        .limit(CACHE_UPDATE_LIMIT)
-        .forEach(
-            entry -> {
-              ContentValues values = entry.getValue();
-              if (!values.containsKey(AnnotatedCallLog.NUMBER_ATTRIBUTES)
-                  || !values.containsKey(AnnotatedCallLog.NUMBER)) {
-                return;
-              }
-              DialerPhoneNumber dialerPhoneNumber =
-                  ProtoParsers.getTrusted(
-                      values, AnnotatedCallLog.NUMBER, DialerPhoneNumber.getDefaultInstance());
-              NumberAttributes numberAttributes =
-                  ProtoParsers.getTrusted(
-                      values,
-                      AnnotatedCallLog.NUMBER_ATTRIBUTES,
-                      NumberAttributes.getDefaultInstance());
-              operations.add(
-                  ContentProviderOperation.newUpdate(
-                          ContentUris.withAppendedId(Calls.CONTENT_URI, entry.getKey()))
-                      .withValue(
-                          Calls.CACHED_FORMATTED_NUMBER,
-                          values.getAsString(AnnotatedCallLog.FORMATTED_NUMBER))
-                      .withValue(Calls.CACHED_LOOKUP_URI, numberAttributes.getLookupUri())
-                      // Calls.CACHED_MATCHED_NUMBER is not available.
-                      .withValue(Calls.CACHED_NAME, numberAttributes.getName())
-                      .withValue(
-                          Calls.CACHED_NORMALIZED_NUMBER, dialerPhoneNumber.getNormalizedNumber())
-                      .withValue(Calls.CACHED_NUMBER_LABEL, numberAttributes.getNumberTypeLabel())
-                      // NUMBER_TYPE is lost in NumberAttributes when it is converted to a string
-                      // label, Use TYPE_CUSTOM so the label will be displayed.
-                      .withValue(Calls.CACHED_NUMBER_TYPE, Phone.TYPE_CUSTOM)
-                      .withValue(Calls.CACHED_PHOTO_ID, numberAttributes.getPhotoId())
-                      .withValue(Calls.CACHED_PHOTO_URI, numberAttributes.getPhotoUri())
-                      // Avoid writing to the call log for insignificant changes to avoid triggering
-                      // other content observers such as the voicemail client.
-                      .withSelection(
-                          Calls.CACHED_NAME + " IS NOT ?",
-                          new String[] {numberAttributes.getName()})
-                      .build());
-            });
+    int examinedRows = addCacheUpdates(mutations.getInserts(), CACHE_UPDATE_LIMIT, operations);
+    addCacheUpdates(mutations.getUpdates(), CACHE_UPDATE_LIMIT - examinedRows, operations);
     try {
       int count =
           Arrays.stream(appContext.getContentResolver().applyBatch(CallLog.AUTHORITY, operations))
@@ -146,4 +105,50 @@ public final class CallLogCacheUpdater {
       throw new IllegalStateException(e);
     }
   }
+
+  /**
+   * Adds cache updates for up to {@code maxRows} of {@code rows} to {@code operations}, returning
+   * the number of rows examined.
+   */
+  private static int addCacheUpdates(
+      MutationColumns rows, int maxRows, ArrayList<ContentProviderOperation> operations) {
+    int examinedRows = Math.min(rows.size(), maxRows);
+    for (int row = 0; row < examinedRows; row++) {
+      byte[] numberAttributesBytes = rows.getBlob(row, AnnotatedCallLog.NUMBER_ATTRIBUTES);
+      byte[] numberBytes = rows.getBlob(row, AnnotatedCallLog.NUMBER);
+      if (numberAttributesBytes == null || numberBytes == null) {
+        continue;
+      }
+      DialerPhoneNumber dialerPhoneNumber;
+      NumberAttributes numberAttributes;
+      try {
+        dialerPhoneNumber = DialerPhoneNumber.parseFrom(numberBytes);
+        numberAttributes = NumberAttributes.parseFrom(numberAttributesBytes);
+      } catch (InvalidProtocolBufferException e) {
+        throw new IllegalStateException(e);
+      }
+      operations.add(
+          ContentProviderOperation.newUpdate(
+                  ContentUris.withAppendedId(Calls.CONTENT_URI, rows.getId(row)))
+              .withValue(
+                  Calls.CACHED_FORMATTED_NUMBER,
+                  rows.getString(row, AnnotatedCallLog.FORMATTED_NUMBER))
+              .withValue(Calls.CACHED_LOOKUP_URI, numberAttributes.getLookupUri())
+              // Calls.CACHED_MATCHED_NUMBER is not available.
+              .withValue(Calls.CACHED_NAME, numberAttributes.getName())
+              .withValue(Calls.CACHED_NORMALIZED_NUMBER, dialerPhoneNumber.getNormalizedNumber())
+              .withValue(Calls.CACHED_NUMBER_LABEL, numberAttributes.getNumberTypeLabel())
+              // NUMBER_TYPE is lost in NumberAttributes when it is converted to a string
+              // label, Use TYPE_CUSTOM so the label will be displayed.
+              .withValue(Calls.CACHED_NUMBER_TYPE, Phone.TYPE_CUSTOM)
+              .withValue(Calls.CACHED_PHOTO_ID, numberAttributes.getPhotoId())
+              .withValue(Calls.CACHED_PHOTO_URI, numberAttributes.getPhotoUri())
+              // Avoid writing to the call log for insignificant changes to avoid triggering
+              // other content observers such as the voicemail client.
+              .withSelection(
+                  Calls.CACHED_NAME + " IS NOT ?", new String[] {numberAttributes.getName()})
+              .build());
+    }
+    return examinedRows;
+  }
 }
@@ -179,21 +179,25 @@ public class RefreshAnnotatedCallLogWorker {
     String systemEventName = eventNameForFill(systemCallLogDataSource, isBuilt);
     futureTimer.applyTiming(fillFuture, systemEventName);
 
-    // After the system call log data source is filled, call fill sequentially on each remaining
-    // data source. This must be done sequentially because mutations are not threadsafe and are
-    // passed from source to source.
+    // After the system call log data source is filled, call fill on each remaining data source.
+    // Mutations are not threadsafe and are passed from source to source, so this is done
+    // sequentially, except for consecutive data sources which can fill their own copy of the
+    // mutations in parallel.
+    List<CallLogDataSource> parallelDataSources = new ArrayList<>();
     for (CallLogDataSource dataSource : dataSources.getDataSourcesExcludingSystemCallLog()) {
+      if (dataSource.canFillInParallel()) {
+        parallelDataSources.add(dataSource);
+        continue;
+      }
+      fillFuture = fillInParallel(fillFuture, parallelDataSources, mutations, isBuilt);
+      parallelDataSources = new ArrayList<>();
       fillFuture =
           Futures.transformAsync(
               fillFuture,
-              unused -> {
-                ListenableFuture<Void> dataSourceFuture = dataSource.fill(mutations);
-                String eventName = eventNameForFill(dataSource, isBuilt);
-                futureTimer.applyTiming(dataSourceFuture, eventName);
-                return dataSourceFuture;
-              },
+              unused -> fill(dataSource, mutations, isBuilt),
               lightweightExecutorService);
     }
+    fillFuture = fillInParallel(fillFuture, parallelDataSources, mutations, isBuilt);
 
     futureTimer.applyTiming(fillFuture, eventNameForOverallFill(isBuilt));
 
@@ -250,6 +254,62 @@ public class RefreshAnnotatedCallLogWorker {
         backgroundExecutorService);
   }
 
+  private ListenableFuture<Void> fill(
+      CallLogDataSource dataSource, CallLogMutations mutations, boolean isBuilt) {
+    ListenableFuture<Void> dataSourceFuture = dataSource.fill(mutations);
+    futureTimer.applyTiming(dataSourceFuture, eventNameForFill(dataSource, isBuilt));
+    return dataSourceFuture;
+  }
+
+  /**
+   * After {@code previousFillFuture} completes, fills a copy of {@code mutations} with each of the
+   * provided data sources at the same time, then merges the copies back into {@code mutations} in
+   * the order of the data sources.
+   */
+  private ListenableFuture<Void> fillInParallel(
+      ListenableFuture<Void> previousFillFuture,
+      List<CallLogDataSource> parallelDataSources,
+      CallLogMutations mutations,
+      boolean isBuilt) {
+    if (parallelDataSources.isEmpty()) {
+      return previousFillFuture;
+    }
+    if (parallelDataSources.size() == 1) {
+      // Nothing to run in parallel with, skip copying the mutations.
+      CallLogDataSource dataSource = parallelDataSources.get(0);
+      return Futures.transformAsync(
+          previousFillFuture,
+          unused -> fill(dataSource, mutations, isBuilt),
+          lightweightExecutorService);
+    }
+    List<CallLogMutations> filledMutations = new ArrayList<>();
+    // Taken once the previous data sources are filled, to tell what each copy changed.
+    CallLogMutations[] originalMutations = new CallLogMutations[1];
+    ListenableFuture<List<Void>> allFillFutures =
+        Futures.transformAsync(
+            previousFillFuture,
+            unused -> {
+              List<ListenableFuture<Void>> fillFutures = new ArrayList<>();
+              originalMutations[0] = mutations.copy();
+              for (CallLogDataSource dataSource : parallelDataSources) {
+                CallLogMutations dataSourceMutations = originalMutations[0].copy();
+                filledMutations.add(dataSourceMutations);
+                fillFutures.add(fill(dataSource, dataSourceMutations, isBuilt));
+              }
+              return Futures.allAsList(fillFutures);
+            },
+            lightweightExecutorService);
+    return Futures.transform(
+        allFillFutures,
+        unused -> {
+          for (CallLogMutations dataSourceMutations : filledMutations) {
+            mutations.mergeFrom(originalMutations[0], dataSourceMutations);
+          }
+          return null;
+        },
+        lightweightExecutorService);
+  }
+
   private static String eventNameForFill(CallLogDataSource dataSource, boolean isBuilt) {
     return String.format(
         !isBuilt ? Metrics.INITIAL_FILL_TEMPLATE : Metrics.FILL_TEMPLATE,
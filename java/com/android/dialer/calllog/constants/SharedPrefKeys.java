@@ -21,5 +21,8 @@ public final class SharedPrefKeys {
 
   public static final String FORCE_REBUILD = "force_rebuild";
 
+  /** ID of the last row inserted by a streamed apply of mutations which has not completed yet. */
+  public static final String APPLY_MUTATIONS_RESUME_ID = "apply_mutations_resume_id";
+
   private SharedPrefKeys() {}
 }
@@ -22,9 +22,11 @@ import android.provider.CallLog.Calls;
 import androidx.annotation.IntDef;
 
 import com.android.dialer.calllog.database.contract.AnnotatedCallLogContract.AnnotatedCallLog;
+import com.android.dialer.calllog.datasources.MutationColumns;
 import com.android.dialer.common.Assert;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 /** Constraints for columns in the {@link AnnotatedCallLog}. */
@@ -45,10 +47,29 @@ final class AnnotatedCallLogConstraints {
    * {@link IllegalArgumentException} will be thrown if it doesn't.
    */
   public static void check(ContentValues contentValues, @Operation int operationType) {
-    checkBooleanColumn(AnnotatedCallLog.IS_READ, contentValues, operationType);
-    checkBooleanColumn(AnnotatedCallLog.NEW, contentValues, operationType);
-    checkBooleanColumn(AnnotatedCallLog.IS_VOICEMAIL_CALL, contentValues, operationType);
-    checkCallTypeColumn(contentValues, operationType);
+    check(contentValues::containsKey, contentValues::getAsInteger, operationType);
+  }
+
+  /** Like {@link #check(ContentValues, int)}, for a row of {@link MutationColumns}. */
+  public static void check(MutationColumns rows, int row, @Operation int operationType) {
+    check(
+        columnName -> rows.has(row, columnName),
+        columnName ->
+            rows.isNull(row, MutationColumns.getColumnIndex(columnName))
+                ? null
+                : (int) rows.getLong(row, columnName),
+        operationType);
+  }
+
+  private static void check(
+      Predicate<String> containsColumn,
+      Function<String, Integer> integerValue,
+      @Operation int operationType) {
+    checkBooleanColumn(AnnotatedCallLog.IS_READ, containsColumn, integerValue, operationType);
+    checkBooleanColumn(AnnotatedCallLog.NEW, containsColumn, integerValue, operationType);
+    checkBooleanColumn(
+        AnnotatedCallLog.IS_VOICEMAIL_CALL, containsColumn, integerValue, operationType);
+    checkCallTypeColumn(containsColumn, integerValue, operationType);
   }
 
   /**
@@ -58,15 +79,16 @@ final class AnnotatedCallLogConstraints {
    * value has to be an integer).
    */
   private static void checkBooleanColumn(
-      String columnName, ContentValues contentValues, @Operation int operationType) {
+      String columnName,
+      Predicate<String> containsColumn,
+      Function<String, Integer> integerValue,
+      @Operation int operationType) {
     checkColumn(
         columnName,
-        contentValues,
+        containsColumn,
+        integerValue,
         operationType,
-        contentValuesToCheck -> {
-          Integer value = contentValuesToCheck.getAsInteger(columnName);
-          return value != null && (value == 0 || value == 1);
-        });
+        value -> value != null && (value == 0 || value == 1));
   }
 
   /**
@@ -75,41 +97,41 @@ final class AnnotatedCallLogConstraints {
    * <p>Constraints: the value must be one of {@link android.provider.CallLog.Calls#TYPE}.
    */
   private static void checkCallTypeColumn(
-      ContentValues contentValues, @Operation int operationType) {
+      Predicate<String> containsColumn,
+      Function<String, Integer> integerValue,
+      @Operation int operationType) {
     checkColumn(
         AnnotatedCallLog.CALL_TYPE,
-        contentValues,
+        containsColumn,
+        integerValue,
         operationType,
-        contentValuesToCheck -> {
-          Integer callType = contentValuesToCheck.getAsInteger(AnnotatedCallLog.CALL_TYPE);
-          return callType != null
-              && (callType == Calls.INCOMING_TYPE
-                  || callType == Calls.OUTGOING_TYPE
-                  || callType == Calls.MISSED_TYPE
-                  || callType == Calls.VOICEMAIL_TYPE
-                  || callType == Calls.REJECTED_TYPE
-                  || callType == Calls.BLOCKED_TYPE
-                  || callType == Calls.ANSWERED_EXTERNALLY_TYPE);
-        });
+        callType ->
+            callType != null
+                && (callType == Calls.INCOMING_TYPE
+                    || callType == Calls.OUTGOING_TYPE
+                    || callType == Calls.MISSED_TYPE
+                    || callType == Calls.VOICEMAIL_TYPE
+                    || callType == Calls.REJECTED_TYPE
+                    || callType == Calls.BLOCKED_TYPE
+                    || callType == Calls.ANSWERED_EXTERNALLY_TYPE));
   }
 
   private static void checkColumn(
       String columnName,
-      ContentValues contentValues,
+      Predicate<String> containsColumn,
+      Function<String, Integer> integerValue,
       @Operation int operationType,
-      Predicate<ContentValues> predicate) {
+      Predicate<Integer> predicate) {
     switch (operationType) {
       case Operation.UPDATE:
-        if (!contentValues.containsKey(columnName)) {
+        if (!containsColumn.test(columnName)) {
           return;
         }
         // fall through
       case Operation.INSERT:
+        Integer value = integerValue.apply(columnName);
         Assert.checkArgument(
-            predicate.test(contentValues),
-            "Column %s contains invalid value: %s",
-            columnName,
-            contentValues.get(columnName));
+            predicate.test(value), "Column %s contains invalid value: %s", columnName, value);
         return;
       default:
         throw Assert.createUnsupportedOperationFailException(
@@ -15,39 +15,68 @@
  */
 package com.android.dialer.calllog.database;
 
+import android.content.ContentProviderClient;
 import android.content.ContentProviderOperation;
 import android.content.ContentUris;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.OperationApplicationException;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.os.RemoteException;
 import android.text.TextUtils;
+import android.util.SparseArray;
 
 import androidx.annotation.WorkerThread;
 
+import com.android.dialer.calllog.constants.SharedPrefKeys;
+import com.android.dialer.calllog.database.AnnotatedCallLogConstraints.Operation;
 import com.android.dialer.calllog.database.contract.AnnotatedCallLogContract;
 import com.android.dialer.calllog.database.contract.AnnotatedCallLogContract.AnnotatedCallLog;
 import com.android.dialer.calllog.datasources.CallLogMutations;
+import com.android.dialer.calllog.datasources.MutationColumns;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.common.concurrent.Annotations.BackgroundExecutor;
+import com.android.dialer.storage.Unencrypted;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map.Entry;
 import javax.inject.Inject;
 
-/** Applies {@link CallLogMutations} to the annotated call log. */
+/**
+ * Applies {@link CallLogMutations} to the annotated call log.
+ *
+ * <p>Small sets of mutations are applied in a single batch through the {@link
+ * AnnotatedCallLogContentProvider}. Larger ones, typically produced by the initial fill, are
+ * streamed directly into the database with compiled statements when the provider runs in this
+ * process, committing {@link #CHUNK_SIZE} rows per transaction so neither memory nor the time the
+ * database is locked grows with the size of the call log.
+ */
 public class MutationApplier {
 
+  /** Maximum number of rows written in one transaction when streaming mutations. */
+  private static final int CHUNK_SIZE = 250;
+
+  private final AnnotatedCallLogDatabaseHelper databaseHelper;
+  private final SharedPreferences sharedPreferences;
   private final ListeningExecutorService backgroundExecutorService;
 
+  private Boolean isProviderInProcess;
+
   @Inject
-  public MutationApplier(@BackgroundExecutor ListeningExecutorService backgroundExecutorService) {
+  public MutationApplier(
+      AnnotatedCallLogDatabaseHelper databaseHelper,
+      @Unencrypted SharedPreferences sharedPreferences,
+      @BackgroundExecutor ListeningExecutorService backgroundExecutorService) {
+    this.databaseHelper = databaseHelper;
+    this.sharedPreferences = sharedPreferences;
     this.backgroundExecutorService = backgroundExecutorService;
   }
 
@@ -58,11 +87,156 @@ public class MutationApplier {
     }
     return backgroundExecutorService.submit(
         () -> {
-          applyToDatabaseInternal(mutations, appContext);
+          int size =
+              mutations.getInserts().size()
+                  + mutations.getUpdates().size()
+                  + mutations.getDeletes().size();
+          if (size > CHUNK_SIZE && isProviderInProcess(appContext)) {
+            applyToDatabaseStreaming(mutations, appContext);
+          } else {
+            applyToDatabaseInternal(mutations, appContext);
+            sharedPreferences.edit().remove(SharedPrefKeys.APPLY_MUTATIONS_RESUME_ID).apply();
+          }
           return null;
         });
   }
 
+  /** Whether the annotated call log provider, and with it its database, lives in this process. */
+  @WorkerThread
+  private boolean isProviderInProcess(Context appContext) {
+    if (isProviderInProcess == null) {
+      ContentProviderClient client =
+          appContext
+              .getContentResolver()
+              .acquireContentProviderClient(AnnotatedCallLogContract.AUTHORITY);
+      if (client == null) {
+        return false;
+      }
+      try {
+        isProviderInProcess = client.getLocalContentProvider() != null;
+      } finally {
+        client.release();
+      }
+    }
+    return isProviderInProcess;
+  }
+
+  /**
+   * Writes the mutations to the database in transactions of at most {@link #CHUNK_SIZE} rows.
+   *
+   * <p>Unlike {@link #applyToDatabaseInternal(CallLogMutations, Context)}, committed chunks survive
+   * if applying the remaining ones fails or the process is killed. Inserts are written in order of
+   * their IDs and the last committed ID is kept as a resume marker until all mutations have been
+   * applied. The next build finds these rows already present in the annotated call log and
+   * schedules updates for them, which for rows up to the marker are only written if they actually
+   * change the row, so an interrupted initial build continues where it stopped.
+   */
+  @WorkerThread
+  private void applyToDatabaseStreaming(CallLogMutations mutations, Context appContext)
+      throws OperationApplicationException {
+    Assert.isWorkerThread();
+
+    long resumeId = sharedPreferences.getLong(SharedPrefKeys.APPLY_MUTATIONS_RESUME_ID, -1);
+    SQLiteDatabase database = databaseHelper.getWritableDatabase();
+    try (Statements statements = new Statements(database)) {
+      if (!mutations.getInserts().isEmpty()) {
+        LogUtil.i(
+            "MutationApplier.applyToDatabaseStreaming",
+            "inserting %d rows",
+            mutations.getInserts().size());
+        MutationColumns inserts = mutations.getInserts();
+        long[] ids = sortedIds(inserts);
+        for (int start = 0; start < ids.length; start += CHUNK_SIZE) {
+          int end = Math.min(start + CHUNK_SIZE, ids.length);
+          database.beginTransaction();
+          try {
+            for (int i = start; i < end; i++) {
+              int row = inserts.indexOf(ids[i]);
+              AnnotatedCallLogConstraints.check(inserts, row, Operation.INSERT);
+              if (statements.insert(inserts, row) < 0) {
+                throw new OperationApplicationException("error inserting row");
+              }
+            }
+            database.setTransactionSuccessful();
+          } finally {
+            database.endTransaction();
+          }
+          sharedPreferences
+              .edit()
+              .putLong(SharedPrefKeys.APPLY_MUTATIONS_RESUME_ID, Math.max(resumeId, ids[end - 1]))
+              .apply();
+        }
+      }
+
+      if (!mutations.getUpdates().isEmpty()) {
+        LogUtil.i(
+            "MutationApplier.applyToDatabaseStreaming",
+            "updating %d rows, resuming after row %d",
+            mutations.getUpdates().size(),
+            resumeId);
+        MutationColumns updates = mutations.getUpdates();
+        long[] ids = sortedIds(updates);
+        for (int start = 0; start < ids.length; start += CHUNK_SIZE) {
+          int end = Math.min(start + CHUNK_SIZE, ids.length);
+          database.beginTransaction();
+          try {
+            for (int i = start; i < end; i++) {
+              int row = updates.indexOf(ids[i]);
+              AnnotatedCallLogConstraints.check(updates, row, Operation.UPDATE);
+              statements.update(updates, row, /* onlyIfChanged = */ ids[i] <= resumeId);
+            }
+            database.setTransactionSuccessful();
+          } finally {
+            database.endTransaction();
+          }
+        }
+      }
+
+      if (!mutations.getDeletes().isEmpty()) {
+        LogUtil.i(
+            "MutationApplier.applyToDatabaseStreaming",
+            "deleting %d rows",
+            mutations.getDeletes().size());
+        long[] ids = sortedIds(mutations.getDeletes());
+        for (int start = 0; start < ids.length; start += CHUNK_SIZE) {
+          int end = Math.min(start + CHUNK_SIZE, ids.length);
+          database.beginTransaction();
+          try {
+            for (int i = start; i < end; i++) {
+              statements.delete(ids[i]);
+            }
+            database.setTransactionSuccessful();
+          } finally {
+            database.endTransaction();
+          }
+        }
+      }
+    }
+
+    sharedPreferences.edit().remove(SharedPrefKeys.APPLY_MUTATIONS_RESUME_ID).apply();
+    // Like AnnotatedCallLogContentProvider#applyBatch, only notify once for the content URI.
+    appContext.getContentResolver().notifyChange(AnnotatedCallLog.CONTENT_URI, null);
+  }
+
+  private static long[] sortedIds(MutationColumns rows) {
+    long[] result = new long[rows.size()];
+    for (int row = 0; row < result.length; row++) {
+      result[row] = rows.getId(row);
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  private static long[] sortedIds(Collection<Long> ids) {
+    long[] result = new long[ids.size()];
+    int i = 0;
+    for (long id : ids) {
+      result[i++] = id;
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
   @WorkerThread
   private void applyToDatabaseInternal(CallLogMutations mutations, Context appContext)
       throws RemoteException, OperationApplicationException {
@@ -73,13 +247,12 @@ public class MutationApplier {
     if (!mutations.getInserts().isEmpty()) {
       LogUtil.i(
           "MutationApplier.applyToDatabase", "inserting %d rows", mutations.getInserts().size());
-      for (Entry<Long, ContentValues> entry : mutations.getInserts().entrySet()) {
-        long id = entry.getKey();
-        ContentValues contentValues = entry.getValue();
+      MutationColumns inserts = mutations.getInserts();
+      for (int row = 0; row < inserts.size(); row++) {
         operations.add(
             ContentProviderOperation.newInsert(
-                    ContentUris.withAppendedId(AnnotatedCallLog.CONTENT_URI, id))
-                .withValues(contentValues)
+                    ContentUris.withAppendedId(AnnotatedCallLog.CONTENT_URI, inserts.getId(row)))
+                .withValues(inserts.toContentValues(row))
                 .build());
       }
     }
@@ -87,13 +260,12 @@ public class MutationApplier {
     if (!mutations.getUpdates().isEmpty()) {
       LogUtil.i(
           "MutationApplier.applyToDatabase", "updating %d rows", mutations.getUpdates().size());
-      for (Entry<Long, ContentValues> entry : mutations.getUpdates().entrySet()) {
-        long id = entry.getKey();
-        ContentValues contentValues = entry.getValue();
+      MutationColumns updates = mutations.getUpdates();
+      for (int row = 0; row < updates.size(); row++) {
         operations.add(
             ContentProviderOperation.newUpdate(
-                    ContentUris.withAppendedId(AnnotatedCallLog.CONTENT_URI, id))
-                .withValues(contentValues)
+                    ContentUris.withAppendedId(AnnotatedCallLog.CONTENT_URI, updates.getId(row)))
+                .withValues(updates.toContentValues(row))
                 .build());
       }
     }
@@ -126,4 +298,137 @@ public class MutationApplier {
 
     appContext.getContentResolver().applyBatch(AnnotatedCallLogContract.AUTHORITY, operations);
   }
+
+  /**
+   * Compiled statements for writing rows of the annotated call log, one per set of columns.
+   *
+   * <p>Mutations produced by the same data sources almost always have the same columns, so only a
+   * handful of statements are compiled for a whole call log. Values are bound straight from the
+   * {@link MutationColumns}.
+   */
+  private static final class Statements implements Closeable {
+
+    private final SQLiteDatabase database;
+    /** Statements keyed by {@link MutationColumns#getPresentColumns(int)}. */
+    private final SparseArray<SQLiteStatement> inserts = new SparseArray<>();
+    private final SparseArray<SQLiteStatement> updates = new SparseArray<>();
+    private final SparseArray<SQLiteStatement> conditionalUpdates = new SparseArray<>();
+    private SQLiteStatement deleteStatement;
+
+    Statements(SQLiteDatabase database) {
+      this.database = database;
+    }
+
+    /** Inserts a row, returning its ID or -1 on failure. */
+    long insert(MutationColumns rows, int row) {
+      int columns = rows.getPresentColumns(row);
+      SQLiteStatement statement = inserts.get(columns);
+      if (statement == null) {
+        StringBuilder sql =
+            new StringBuilder("insert into ")
+                .append(AnnotatedCallLog.TABLE)
+                .append(" (")
+                .append(AnnotatedCallLog._ID);
+        for (int column = 0; column < MutationColumns.COLUMN_NAMES.length; column++) {
+          if ((columns & (1 << column)) != 0) {
+            sql.append(',').append(MutationColumns.COLUMN_NAMES[column]);
+          }
+        }
+        sql.append(") values (?");
+        for (int i = 0; i < Integer.bitCount(columns); i++) {
+          sql.append(",?");
+        }
+        statement = database.compileStatement(sql.append(')').toString());
+        inserts.put(columns, statement);
+      }
+      statement.clearBindings();
+      statement.bindLong(1, rows.getId(row));
+      bindValues(statement, 2, rows, row);
+      return statement.executeInsert();
+    }
+
+    /**
+     * Updates the columns of a row.
+     *
+     * @param onlyIfChanged whether to skip writing the row if it already has all the values
+     */
+    void update(MutationColumns rows, int row, boolean onlyIfChanged) {
+      int columns = rows.getPresentColumns(row);
+      if (columns == 0) {
+        return;
+      }
+      int columnCount = Integer.bitCount(columns);
+      SparseArray<SQLiteStatement> cache = onlyIfChanged ? conditionalUpdates : updates;
+      SQLiteStatement statement = cache.get(columns);
+      if (statement == null) {
+        StringBuilder sql = new StringBuilder("update ").append(AnnotatedCallLog.TABLE);
+        StringBuilder unchanged = new StringBuilder();
+        for (int column = 0; column < MutationColumns.COLUMN_NAMES.length; column++) {
+          if ((columns & (1 << column)) != 0) {
+            String columnName = MutationColumns.COLUMN_NAMES[column];
+            sql.append(unchanged.length() == 0 ? " set " : ",").append(columnName).append("=?");
+            unchanged.append(unchanged.length() == 0 ? "" : " and ").append(columnName);
+            unchanged.append(" is ?");
+          }
+        }
+        sql.append(" where ").append(AnnotatedCallLog._ID).append("=?");
+        if (onlyIfChanged) {
+          sql.append(" and not (").append(unchanged).append(')');
+        }
+        statement = database.compileStatement(sql.toString());
+        cache.put(columns, statement);
+      }
+      statement.clearBindings();
+      bindValues(statement, 1, rows, row);
+      statement.bindLong(columnCount + 1, rows.getId(row));
+      if (onlyIfChanged) {
+        bindValues(statement, columnCount + 2, rows, row);
+      }
+      if (statement.executeUpdateDelete() == 0 && !onlyIfChanged) {
+        // See AnnotatedCallLogContentProvider#applyBatch, the row may have been cleaned up by the
+        // trigger deleting old rows.
+        LogUtil.w(
+            "MutationApplier.Statements.update",
+            "update failed, possibly because row got cleaned up");
+      }
+    }
+
+    void delete(long id) {
+      if (deleteStatement == null) {
+        deleteStatement =
+            database.compileStatement(
+                "delete from " + AnnotatedCallLog.TABLE + " where " + AnnotatedCallLog._ID + "=?");
+      }
+      deleteStatement.bindLong(1, id);
+      deleteStatement.executeUpdateDelete();
+    }
+
+    @Override
+    public void close() {
+      for (int i = 0; i < inserts.size(); i++) {
+        inserts.valueAt(i).close();
+      }
+      for (int i = 0; i < updates.size(); i++) {
+        updates.valueAt(i).close();
+      }
+      for (int i = 0; i < conditionalUpdates.size(); i++) {
+        conditionalUpdates.valueAt(i).close();
+      }
+      if (deleteStatement != null) {
+        deleteStatement.close();
+      }
+    }
+
+    /** Binds the values of the row in column order, starting at {@code firstIndex}. */
+    private static void bindValues(
+        SQLiteStatement statement, int firstIndex, MutationColumns rows, int row) {
+      int columns = rows.getPresentColumns(row);
+      int index = firstIndex;
+      for (int column = 0; columns != 0; column++, columns >>>= 1) {
+        if ((columns & 1) != 0) {
+          rows.bind(statement, index++, row, column);
+        }
+      }
+    }
+  }
 }
@@ -71,6 +71,20 @@ public interface CallLogDataSource {
    */
   ListenableFuture<Void> fill(CallLogMutations mutations);
 
+  /**
+   * Whether {@link #fill(CallLogMutations)} may run concurrently with the fill of other data
+   * sources.
+   *
+   * <p>A data source returning true is filled with its own {@link CallLogMutations#copy() copy} of
+   * the mutations produced by the system call log, and its changes are merged back afterwards. It
+   * must therefore only read columns written by the system call log data source, must not write
+   * columns written by another data source, and may only add or change column values, inserts,
+   * updates and deletes but never remove them.
+   */
+  default boolean canFillInParallel() {
+    return false;
+  }
+
   /**
    * Called after database mutations have been applied to all data sources. This is useful for
    * saving state such as the timestamp of the last row processed in an underlying database. Note
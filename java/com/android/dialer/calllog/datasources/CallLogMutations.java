@@ -16,51 +16,61 @@
 
 package com.android.dialer.calllog.datasources;
 
-import android.content.ContentValues;
-import android.util.ArrayMap;
 import android.util.ArraySet;
 import com.android.dialer.common.Assert;
 
-/** A collection of mutations to the annotated call log. */
+/**
+ * A collection of mutations to the annotated call log.
+ *
+ * <p>Inserted and updated rows are kept in {@link MutationColumns}, which data sources write to
+ * column by column.
+ */
 public final class CallLogMutations {
 
-  private final ArrayMap<Long, ContentValues> inserts = new ArrayMap<>();
-  private final ArrayMap<Long, ContentValues> updates = new ArrayMap<>();
-  private final ArraySet<Long> deletes = new ArraySet<>();
+  private final MutationColumns inserts;
+  private final MutationColumns updates;
+  private final ArraySet<Long> deletes;
+
+  public CallLogMutations() {
+    this(new MutationColumns(), new MutationColumns(), new ArraySet<>());
+  }
+
+  private CallLogMutations(
+      MutationColumns inserts, MutationColumns updates, ArraySet<Long> deletes) {
+    this.inserts = inserts;
+    this.updates = updates;
+    this.deletes = deletes;
+  }
 
   /**
-   * @param contentValues an entire row not including the ID
+   * Schedules the insert of a row, whose values (not including the ID) should then be written to
+   * the returned row of {@link #getInserts()}.
+   *
    * @throws IllegalStateException if this {@link CallLogMutations} already contains an insert,
    *     update, or delete with the provided id
    */
-  public void insert(long id, ContentValues contentValues) {
-    Assert.checkArgument(!inserts.containsKey(id), "Can't insert row already scheduled for insert");
-    Assert.checkArgument(!updates.containsKey(id), "Can't insert row scheduled for update");
+  public int insert(long id) {
+    Assert.checkArgument(!inserts.contains(id), "Can't insert row already scheduled for insert");
+    Assert.checkArgument(!updates.contains(id), "Can't insert row scheduled for update");
     Assert.checkArgument(!deletes.contains(id), "Can't insert row scheduled for delete");
 
-    inserts.put(id, contentValues);
+    return inserts.addRow(id);
   }
 
   /**
-   * Stores a database update using the provided ID and content values. If this {@link
-   * CallLogMutations} object already contains an update with the specified ID, the existing content
-   * values are merged with the provided ones, with the provided ones overwriting the existing ones
-   * for values with the same key.
+   * Schedules a database update of the row with the provided ID. The columns to update (not
+   * including the ID) should be written to the returned row of {@link #getUpdates()}. If this
+   * {@link CallLogMutations} object already contains an update with the specified ID, the existing
+   * row is returned and newly written values overwrite the existing ones.
    *
-   * @param contentValues the specific columns to update, not including the ID.
    * @throws IllegalStateException if this {@link CallLogMutations} already contains an insert or
    *     delete with the provided id
    */
-  public void update(long id, ContentValues contentValues) {
-    Assert.checkArgument(!inserts.containsKey(id), "Can't update row scheduled for insert");
-    Assert.checkArgument(!deletes.contains(id), "Can't delete row scheduled for delete");
-
-    ContentValues existingContentValues = updates.get(id);
-    if (existingContentValues != null) {
-      existingContentValues.putAll(contentValues);
-    } else {
-      updates.put(id, contentValues);
-    }
+  public int update(long id) {
+    Assert.checkArgument(!inserts.contains(id), "Can't update row scheduled for insert");
+    Assert.checkArgument(!deletes.contains(id), "Can't update row scheduled for delete");
+
+    return updates.getOrAddRow(id);
   }
 
   /**
@@ -68,13 +78,83 @@ public final class CallLogMutations {
    *     update, or delete with the provided id
    */
   public void delete(long id) {
-    Assert.checkArgument(!inserts.containsKey(id), "Can't delete row scheduled for insert");
-    Assert.checkArgument(!updates.containsKey(id), "Can't delete row scheduled for update");
+    Assert.checkArgument(!inserts.contains(id), "Can't delete row scheduled for insert");
+    Assert.checkArgument(!updates.contains(id), "Can't delete row scheduled for update");
     Assert.checkArgument(!deletes.contains(id), "Can't delete row already scheduled for delete");
 
     deletes.add(id);
   }
 
+  /**
+   * Returns a copy of these mutations which a data source can fill without affecting this object.
+   *
+   * <p>The inserts and updates are copied on write, so a data source only pays for the columns it
+   * writes. The deletes are copied right away, they are few compared to the rows.
+   *
+   * @see #mergeFrom(CallLogMutations, CallLogMutations)
+   */
+  public CallLogMutations copy() {
+    return new CallLogMutations(inserts.copy(), updates.copy(), new ArraySet<>(deletes));
+  }
+
+  /**
+   * Adds the changes made to {@code filled}, a {@link #copy()} of {@code original}, to these
+   * mutations. {@code original} is a copy of these mutations taken before the data sources whose
+   * copies are merged were filled, and must be left untouched.
+   *
+   * <p>Only column values which differ from the ones in {@code original} are written, so the
+   * changes of a data source are kept even if the copy of another one, merged afterwards, still
+   * holds the original values. Merging the copies of several data sources one after the other
+   * therefore gives the same result as filling these mutations with each of the data sources in
+   * that order, provided no data source reads or writes columns written by another. Updates of
+   * rows another data source deletes are dropped, as the row is gone anyway.
+   */
+  public void mergeFrom(CallLogMutations original, CallLogMutations filled) {
+    for (int filledRow = 0; filledRow < filled.inserts.size(); filledRow++) {
+      long id = filled.inserts.getId(filledRow);
+      int row = inserts.indexOf(id);
+      mergeChangedValues(
+          row >= 0 ? row : insert(id),
+          inserts,
+          original.inserts,
+          filledRow,
+          filled.inserts);
+    }
+    for (int filledRow = 0; filledRow < filled.updates.size(); filledRow++) {
+      long id = filled.updates.getId(filledRow);
+      if (!deletes.contains(id)) {
+        mergeChangedValues(update(id), updates, original.updates, filledRow, filled.updates);
+      }
+    }
+    for (int i = 0; i < filled.deletes.size(); i++) {
+      long id = filled.deletes.valueAt(i);
+      if (!deletes.contains(id)) {
+        delete(id);
+      }
+    }
+  }
+
+  /**
+   * Copies the values of {@code filledRow} to {@code row}, if they are missing from or differ in
+   * the row with the same ID of {@code originalRows}.
+   */
+  private static void mergeChangedValues(
+      int row,
+      MutationColumns rows,
+      MutationColumns originalRows,
+      int filledRow,
+      MutationColumns filledRows) {
+    int originalRow = originalRows.indexOf(filledRows.getId(filledRow));
+    int columns = filledRows.getPresentColumns(filledRow);
+    for (int column = 0; columns != 0; column++, columns >>>= 1) {
+      if ((columns & 1) != 0
+          && (originalRow < 0
+              || !originalRows.valueEquals(originalRow, column, filledRows, filledRow))) {
+        rows.copyValue(row, column, filledRows, filledRow);
+      }
+    }
+  }
+
   public boolean isEmpty() {
     return inserts.isEmpty() && updates.isEmpty() && deletes.isEmpty();
   }
@@ -82,20 +162,20 @@ public final class CallLogMutations {
   /**
    * Get the pending inserts.
    *
-   * @return the pending inserts where the key is the annotated call log database ID and the values
-   *     are values to be inserted (not including the ID)
+   * @return the pending inserts, one row per annotated call log database ID holding the values to
+   *     be inserted (not including the ID)
    */
-  public ArrayMap<Long, ContentValues> getInserts() {
+  public MutationColumns getInserts() {
     return inserts;
   }
 
   /**
    * Get the pending updates.
    *
-   * @return the pending updates where the key is the annotated call log database ID and the values
-   *     are values to be updated (not including the ID)
+   * @return the pending updates, one row per annotated call log database ID holding the values to
+   *     be updated (not including the ID)
    */
-  public ArrayMap<Long, ContentValues> getUpdates() {
+  public MutationColumns getUpdates() {
     return updates;
   }
 
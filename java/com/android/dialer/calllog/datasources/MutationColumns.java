@@ -0,0 +1,447 @@
+/*
+ * SPDX-FileCopyrightText: The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.android.dialer.calllog.datasources;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteProgram;
+
+import androidx.annotation.Nullable;
+
+import com.android.dialer.calllog.database.contract.AnnotatedCallLogContract.AnnotatedCallLog;
+import com.android.dialer.common.Assert;
+import java.util.Arrays;
+
+/**
+ * Rows of the annotated call log keyed by their ID, stored column by column.
+ *
+ * <p>Every column of {@link AnnotatedCallLog} has a typed slot: integer columns are kept in a
+ * {@code long[]}, text and blob columns in an {@code Object[]}, each allocated when the column is
+ * first written. Which columns a row has is tracked in one bit mask per row, and IDs are mapped to
+ * rows with an open addressing table of primitive longs. Writing a full row therefore allocates no
+ * objects besides the values themselves, unlike a {@link ContentValues} which boxes every integer
+ * and keeps a hash map entry per column.
+ *
+ * <p>Columns are addressed either by their name or by their index in {@link #COLUMN_NAMES}. Rows
+ * are numbered in the order they were added. Not thread safe.
+ */
+public final class MutationColumns {
+
+  private static final int TYPE_INTEGER = 0;
+  private static final int TYPE_TEXT = 1;
+  private static final int TYPE_BLOB = 2;
+
+  /** All columns of the annotated call log except the ID. */
+  public static final String[] COLUMN_NAMES = {
+    AnnotatedCallLog.TIMESTAMP,
+    AnnotatedCallLog.NUMBER,
+    AnnotatedCallLog.FORMATTED_NUMBER,
+    AnnotatedCallLog.NUMBER_PRESENTATION,
+    AnnotatedCallLog.DURATION,
+    AnnotatedCallLog.DATA_USAGE,
+    AnnotatedCallLog.IS_READ,
+    AnnotatedCallLog.NEW,
+    AnnotatedCallLog.GEOCODED_LOCATION,
+    AnnotatedCallLog.PHONE_ACCOUNT_COMPONENT_NAME,
+    AnnotatedCallLog.PHONE_ACCOUNT_ID,
+    AnnotatedCallLog.FEATURES,
+    AnnotatedCallLog.VOICEMAIL_URI,
+    AnnotatedCallLog.CALL_TYPE,
+    AnnotatedCallLog.NUMBER_ATTRIBUTES,
+    AnnotatedCallLog.IS_VOICEMAIL_CALL,
+    AnnotatedCallLog.VOICEMAIL_CALL_TAG,
+    AnnotatedCallLog.CALL_MAPPING_ID
+  };
+
+  /** Storage type of the columns in {@link #COLUMN_NAMES}, matching the database schema. */
+  private static final int[] COLUMN_TYPES = {
+    TYPE_INTEGER,
+    TYPE_BLOB,
+    TYPE_TEXT,
+    TYPE_INTEGER,
+    TYPE_INTEGER,
+    TYPE_INTEGER,
+    TYPE_INTEGER,
+    TYPE_INTEGER,
+    TYPE_TEXT,
+    TYPE_TEXT,
+    TYPE_TEXT,
+    TYPE_INTEGER,
+    TYPE_TEXT,
+    TYPE_INTEGER,
+    TYPE_BLOB,
+    TYPE_INTEGER,
+    TYPE_TEXT,
+    TYPE_TEXT
+  };
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private long[] ids = new long[INITIAL_CAPACITY];
+  /** Bit {@code c} is set if the row has a value for column {@code c}. */
+  private int[] presentColumns = new int[INITIAL_CAPACITY];
+  /** Bit {@code c} is set if the value of the row for integer column {@code c} is null. */
+  private int[] nullColumns = new int[INITIAL_CAPACITY];
+  private final long[][] longValues = new long[COLUMN_NAMES.length][];
+  private final Object[][] objectValues = new Object[COLUMN_NAMES.length][];
+  private int size;
+
+  /** Open addressing table from ID to row + 1, 0 marking an empty slot. */
+  private long[] tableIds = new long[INITIAL_CAPACITY * 2];
+  private int[] tableRows = new int[INITIAL_CAPACITY * 2];
+
+  /** Whether the IDs, masks and table are shared with a {@link #copy()} and must be cloned. */
+  private boolean rowsShared;
+  /** Bit {@code c} is set if the values of column {@code c} are shared with a {@link #copy()}. */
+  private int sharedColumns;
+
+  /** Returns the index of {@code columnName} in {@link #COLUMN_NAMES}. */
+  public static int getColumnIndex(String columnName) {
+    for (int column = 0; column < COLUMN_NAMES.length; column++) {
+      // The names are almost always the constants of the contract, compare identity first.
+      if (COLUMN_NAMES[column] == columnName || COLUMN_NAMES[column].equals(columnName)) {
+        return column;
+      }
+    }
+    throw new IllegalArgumentException("Unknown column: " + columnName);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public long getId(int row) {
+    return ids[row];
+  }
+
+  /** Returns the row with the given ID, or -1 if there is none. */
+  public int indexOf(long id) {
+    int mask = tableIds.length - 1;
+    for (int slot = slotFor(id, mask); tableRows[slot] != 0; slot = (slot + 1) & mask) {
+      if (tableIds[slot] == id) {
+        return tableRows[slot] - 1;
+      }
+    }
+    return -1;
+  }
+
+  public boolean contains(long id) {
+    return indexOf(id) >= 0;
+  }
+
+  /** Adds an empty row with the given ID, which must not be in this buffer yet. */
+  public int addRow(long id) {
+    Assert.checkArgument(!contains(id), "Row %d already exists", id);
+    ownRows();
+    if (size == ids.length) {
+      growRows();
+    }
+    if ((size + 1) * 2 > tableIds.length) {
+      growTable();
+    }
+    int row = size++;
+    ids[row] = id;
+    presentColumns[row] = 0;
+    nullColumns[row] = 0;
+    putInTable(id, row);
+    return row;
+  }
+
+  /** Returns the row with the given ID, adding an empty one if there is none. */
+  public int getOrAddRow(long id) {
+    int row = indexOf(id);
+    return row >= 0 ? row : addRow(id);
+  }
+
+  /** Returns a bit mask of the columns the row has a value for, bit {@code c} for column c. */
+  public int getPresentColumns(int row) {
+    return presentColumns[row];
+  }
+
+  public boolean has(int row, String columnName) {
+    return has(row, getColumnIndex(columnName));
+  }
+
+  public boolean has(int row, int column) {
+    return (presentColumns[row] & (1 << column)) != 0;
+  }
+
+  /** Whether the row has no value or a null value for the column. */
+  public boolean isNull(int row, int column) {
+    if (!has(row, column)) {
+      return true;
+    }
+    if (COLUMN_TYPES[column] == TYPE_INTEGER) {
+      return (nullColumns[row] & (1 << column)) != 0;
+    }
+    return objectValues[column][row] == null;
+  }
+
+  public void putLong(int row, String columnName, long value) {
+    int column = getColumnIndex(columnName);
+    Assert.checkArgument(COLUMN_TYPES[column] == TYPE_INTEGER, "%s is not an integer", columnName);
+    longColumn(column)[row] = value;
+    presentColumns[row] |= 1 << column;
+    nullColumns[row] &= ~(1 << column);
+  }
+
+  public void putString(int row, String columnName, @Nullable String value) {
+    int column = getColumnIndex(columnName);
+    Assert.checkArgument(COLUMN_TYPES[column] == TYPE_TEXT, "%s is not text", columnName);
+    putObject(row, column, value);
+  }
+
+  public void putBlob(int row, String columnName, @Nullable byte[] value) {
+    int column = getColumnIndex(columnName);
+    Assert.checkArgument(COLUMN_TYPES[column] == TYPE_BLOB, "%s is not a blob", columnName);
+    putObject(row, column, value);
+  }
+
+  public void putNull(int row, String columnName) {
+    int column = getColumnIndex(columnName);
+    if (COLUMN_TYPES[column] == TYPE_INTEGER) {
+      longColumn(column);
+      presentColumns[row] |= 1 << column;
+      nullColumns[row] |= 1 << column;
+    } else {
+      putObject(row, column, null);
+    }
+  }
+
+  /** Returns the value of an integer column, 0 if it is null or missing. */
+  public long getLong(int row, String columnName) {
+    int column = getColumnIndex(columnName);
+    return isNull(row, column) ? 0 : longValues[column][row];
+  }
+
+  @Nullable
+  public String getString(int row, String columnName) {
+    int column = getColumnIndex(columnName);
+    return has(row, column) ? (String) objectValues[column][row] : null;
+  }
+
+  @Nullable
+  public byte[] getBlob(int row, String columnName) {
+    int column = getColumnIndex(columnName);
+    return has(row, column) ? (byte[]) objectValues[column][row] : null;
+  }
+
+  /**
+   * Returns the value of the column as stored in {@link ContentValues}: a {@link Long}, {@link
+   * String} or {@code byte[]}, or null.
+   */
+  @Nullable
+  public Object get(int row, int column) {
+    if (isNull(row, column)) {
+      return null;
+    }
+    return COLUMN_TYPES[column] == TYPE_INTEGER
+        ? (Object) longValues[column][row]
+        : objectValues[column][row];
+  }
+
+  /** Binds the value of the column to {@code program} at the given index, without boxing. */
+  public void bind(SQLiteProgram program, int index, int row, int column) {
+    if (isNull(row, column)) {
+      program.bindNull(index);
+      return;
+    }
+    switch (COLUMN_TYPES[column]) {
+      case TYPE_INTEGER:
+        program.bindLong(index, longValues[column][row]);
+        break;
+      case TYPE_TEXT:
+        program.bindString(index, (String) objectValues[column][row]);
+        break;
+      default:
+        program.bindBlob(index, (byte[]) objectValues[column][row]);
+        break;
+    }
+  }
+
+  /** Whether the row has the same value for the column as {@code otherRow} of {@code other}. */
+  public boolean valueEquals(int row, int column, MutationColumns other, int otherRow) {
+    if (!has(row, column) || !other.has(otherRow, column)) {
+      return false;
+    }
+    boolean isNull = isNull(row, column);
+    if (isNull || other.isNull(otherRow, column)) {
+      return isNull == other.isNull(otherRow, column);
+    }
+    switch (COLUMN_TYPES[column]) {
+      case TYPE_INTEGER:
+        return longValues[column][row] == other.longValues[column][otherRow];
+      case TYPE_TEXT:
+        return objectValues[column][row].equals(other.objectValues[column][otherRow]);
+      default:
+        return Arrays.equals(
+            (byte[]) objectValues[column][row], (byte[]) other.objectValues[column][otherRow]);
+    }
+  }
+
+  /** Sets the column of the row to the value of {@code fromRow} in {@code from}. */
+  public void copyValue(int row, int column, MutationColumns from, int fromRow) {
+    if (!from.has(fromRow, column)) {
+      return;
+    }
+    if (COLUMN_TYPES[column] == TYPE_INTEGER) {
+      longColumn(column)[row] = from.longValues[column][fromRow];
+      if ((from.nullColumns[fromRow] & (1 << column)) != 0) {
+        nullColumns[row] |= 1 << column;
+      } else {
+        nullColumns[row] &= ~(1 << column);
+      }
+      presentColumns[row] |= 1 << column;
+    } else {
+      putObject(row, column, from.objectValues[column][fromRow]);
+    }
+  }
+
+  /** Copies all values of {@code fromRow} in {@code from} to the row, overwriting existing ones. */
+  public void putAll(int row, MutationColumns from, int fromRow) {
+    int columns = from.presentColumns[fromRow];
+    for (int column = 0; columns != 0; column++, columns >>>= 1) {
+      if ((columns & 1) != 0) {
+        copyValue(row, column, from, fromRow);
+      }
+    }
+  }
+
+  /**
+   * Returns a copy of this buffer. Values are shared, which is fine as they are immutable.
+   *
+   * <p>The arrays are copied on write: this buffer and the copy share them until either of them
+   * adds a row or writes a column, which then clones the row arrays and that column only. A copy
+   * that is only read, or only written in a few columns, therefore costs a fraction of the rows.
+   */
+  public MutationColumns copy() {
+    MutationColumns copy = new MutationColumns();
+    copy.ids = ids;
+    copy.presentColumns = presentColumns;
+    copy.nullColumns = nullColumns;
+    System.arraycopy(longValues, 0, copy.longValues, 0, COLUMN_NAMES.length);
+    System.arraycopy(objectValues, 0, copy.objectValues, 0, COLUMN_NAMES.length);
+    copy.size = size;
+    copy.tableIds = tableIds;
+    copy.tableRows = tableRows;
+    copy.rowsShared = rowsShared = true;
+    copy.sharedColumns = sharedColumns = -1;
+    return copy;
+  }
+
+  /** Returns the row as {@link ContentValues}, for consumers which need them. */
+  public ContentValues toContentValues(int row) {
+    ContentValues contentValues = new ContentValues(Integer.bitCount(presentColumns[row]));
+    int columns = presentColumns[row];
+    for (int column = 0; columns != 0; column++, columns >>>= 1) {
+      if ((columns & 1) == 0) {
+        continue;
+      }
+      String columnName = COLUMN_NAMES[column];
+      if (isNull(row, column)) {
+        contentValues.putNull(columnName);
+        continue;
+      }
+      switch (COLUMN_TYPES[column]) {
+        case TYPE_INTEGER:
+          contentValues.put(columnName, longValues[column][row]);
+          break;
+        case TYPE_TEXT:
+          contentValues.put(columnName, (String) objectValues[column][row]);
+          break;
+        default:
+          contentValues.put(columnName, (byte[]) objectValues[column][row]);
+          break;
+      }
+    }
+    return contentValues;
+  }
+
+  private void putObject(int row, int column, @Nullable Object value) {
+    objectColumn(column)[row] = value;
+    presentColumns[row] |= 1 << column;
+  }
+
+  /** Returns the values of an integer column to write to, along with the row masks. */
+  private long[] longColumn(int column) {
+    ownRows();
+    if (longValues[column] == null) {
+      longValues[column] = new long[ids.length];
+    } else if ((sharedColumns & (1 << column)) != 0) {
+      longValues[column] = longValues[column].clone();
+    }
+    sharedColumns &= ~(1 << column);
+    return longValues[column];
+  }
+
+  /** Returns the values of a text or blob column to write to, along with the row masks. */
+  private Object[] objectColumn(int column) {
+    ownRows();
+    if (objectValues[column] == null) {
+      objectValues[column] = new Object[ids.length];
+    } else if ((sharedColumns & (1 << column)) != 0) {
+      objectValues[column] = objectValues[column].clone();
+    }
+    sharedColumns &= ~(1 << column);
+    return objectValues[column];
+  }
+
+  /** Clones the row arrays if they are shared with a copy, before they are written. */
+  private void ownRows() {
+    if (!rowsShared) {
+      return;
+    }
+    ids = ids.clone();
+    presentColumns = presentColumns.clone();
+    nullColumns = nullColumns.clone();
+    tableIds = tableIds.clone();
+    tableRows = tableRows.clone();
+    rowsShared = false;
+  }
+
+  private void growRows() {
+    int capacity = ids.length * 2;
+    ids = Arrays.copyOf(ids, capacity);
+    presentColumns = Arrays.copyOf(presentColumns, capacity);
+    nullColumns = Arrays.copyOf(nullColumns, capacity);
+    for (int column = 0; column < COLUMN_NAMES.length; column++) {
+      if (longValues[column] != null) {
+        longValues[column] = Arrays.copyOf(longValues[column], capacity);
+      }
+      if (objectValues[column] != null) {
+        objectValues[column] = Arrays.copyOf(objectValues[column], capacity);
+      }
+    }
+    // All columns have just been copied.
+    sharedColumns = 0;
+  }
+
+  private void growTable() {
+    tableIds = new long[tableIds.length * 2];
+    tableRows = new int[tableRows.length * 2];
+    for (int row = 0; row < size; row++) {
+      putInTable(ids[row], row);
+    }
+  }
+
+  private void putInTable(long id, int row) {
+    int mask = tableIds.length - 1;
+    int slot = slotFor(id, mask);
+    while (tableRows[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    tableIds[slot] = id;
+    tableRows[slot] = row + 1;
+  }
+
+  private static int slotFor(long id, int mask) {
+    // Call log IDs are mostly consecutive, spread them over the table.
+    return (Long.hashCode(id) * 0x9E3779B9) & mask;
+  }
+}
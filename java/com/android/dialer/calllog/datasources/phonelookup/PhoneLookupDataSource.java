@@ -33,6 +33,7 @@ import com.android.dialer.DialerPhoneNumber;
 import com.android.dialer.calllog.database.contract.AnnotatedCallLogContract.AnnotatedCallLog;
 import com.android.dialer.calllog.datasources.CallLogDataSource;
 import com.android.dialer.calllog.datasources.CallLogMutations;
+import com.android.dialer.calllog.datasources.MutationColumns;
 import com.android.dialer.calllogutils.NumberAttributesBuilder;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
@@ -246,6 +247,12 @@ public final class PhoneLookupDataSource implements CallLogDataSource {
         lightweightExecutorService);
   }
 
+  @Override
+  public boolean canFillInParallel() {
+    // Only writes NUMBER_ATTRIBUTES, based on the numbers from the system call log.
+    return true;
+  }
+
   @Override
   public ListenableFuture<Void> onSuccessfulFill() {
     // First update and/or delete the appropriate rows in PhoneLookupHistory.
@@ -361,14 +368,13 @@ public final class PhoneLookupDataSource implements CallLogDataSource {
       Context appContext, CallLogMutations mutations) {
     Map<DialerPhoneNumber, Set<Long>> idsByNumber = new ArrayMap<>();
     // First add any pending inserts to the map.
-    for (Entry<Long, ContentValues> entry : mutations.getInserts().entrySet()) {
-      long id = entry.getKey();
-      ContentValues insertedContentValues = entry.getValue();
+    MutationColumns inserts = mutations.getInserts();
+    for (int row = 0; row < inserts.size(); row++) {
+      long id = inserts.getId(row);
       DialerPhoneNumber dialerPhoneNumber;
       try {
         dialerPhoneNumber =
-            DialerPhoneNumber.parseFrom(
-                insertedContentValues.getAsByteArray(AnnotatedCallLog.NUMBER));
+            DialerPhoneNumber.parseFrom(inserts.getBlob(row, AnnotatedCallLog.NUMBER));
       } catch (InvalidProtocolBufferException e) {
         throw new IllegalStateException(e);
       }
@@ -491,13 +497,12 @@ public final class PhoneLookupDataSource implements CallLogDataSource {
 
   private void populateInserts(
       ImmutableMap<Long, PhoneLookupInfo> existingInfo, CallLogMutations mutations) {
-    for (Entry<Long, ContentValues> entry : mutations.getInserts().entrySet()) {
-      long id = entry.getKey();
-      ContentValues contentValues = entry.getValue();
-      PhoneLookupInfo phoneLookupInfo = existingInfo.get(id);
+    MutationColumns inserts = mutations.getInserts();
+    for (int row = 0; row < inserts.size(); row++) {
+      PhoneLookupInfo phoneLookupInfo = existingInfo.get(inserts.getId(row));
       // Existing info might be missing if data was cleared or for other reasons.
       if (phoneLookupInfo != null) {
-        updateContentValues(contentValues, phoneLookupInfo);
+        putNumberAttributes(inserts, row, phoneLookupInfo);
       }
     }
   }
@@ -507,8 +512,8 @@ public final class PhoneLookupDataSource implements CallLogDataSource {
     for (Entry<Long, PhoneLookupInfo> entry : updatesToApply.entrySet()) {
       long id = entry.getKey();
       PhoneLookupInfo phoneLookupInfo = entry.getValue();
-      ContentValues contentValuesToInsert = mutations.getInserts().get(id);
-      if (contentValuesToInsert != null) {
+      int insertRow = mutations.getInserts().indexOf(id);
+      if (insertRow >= 0) {
         /*
          * This is a confusing case. Consider:
          *
@@ -537,18 +542,15 @@ public final class PhoneLookupDataSource implements CallLogDataSource {
          * mutations from PhoneLookupHistory; in this case "John" would be copied during
          * populateInserts() and there wouldn't be further updates needed here.
          */
-        updateContentValues(contentValuesToInsert, phoneLookupInfo);
+        putNumberAttributes(mutations.getInserts(), insertRow, phoneLookupInfo);
         continue;
       }
-      ContentValues contentValuesToUpdate = mutations.getUpdates().get(id);
-      if (contentValuesToUpdate != null) {
-        updateContentValues(contentValuesToUpdate, phoneLookupInfo);
+      // Rows deleted by this batch were also read from the annotated call log, skip them.
+      if (mutations.getDeletes().contains(id)) {
         continue;
       }
-      // Else this row is not already scheduled for insert or update and we need to schedule it.
-      ContentValues contentValues = new ContentValues();
-      updateContentValues(contentValues, phoneLookupInfo);
-      mutations.getUpdates().put(id, contentValues);
+      // Else add the column to the update of the row, scheduling one if there is none yet.
+      putNumberAttributes(mutations.getUpdates(), mutations.update(id), phoneLookupInfo);
     }
   }
 
@@ -587,8 +589,10 @@ public final class PhoneLookupDataSource implements CallLogDataSource {
     return normalizedNumbersToDelete;
   }
 
-  private void updateContentValues(ContentValues contentValues, PhoneLookupInfo phoneLookupInfo) {
-    contentValues.put(
+  private void putNumberAttributes(
+      MutationColumns rows, int row, PhoneLookupInfo phoneLookupInfo) {
+    rows.putBlob(
+        row,
         AnnotatedCallLog.NUMBER_ATTRIBUTES,
         NumberAttributesBuilder.fromPhoneLookupInfo(phoneLookupInfo).build().toByteArray());
   }
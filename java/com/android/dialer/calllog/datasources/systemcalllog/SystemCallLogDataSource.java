@@ -17,7 +17,6 @@
 package com.android.dialer.calllog.datasources.systemcalllog;
 
 import android.Manifest.permission;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.database.Cursor;
@@ -37,6 +36,7 @@ import com.android.dialer.calllog.database.AnnotatedCallLogDatabaseHelper;
 import com.android.dialer.calllog.database.contract.AnnotatedCallLogContract.AnnotatedCallLog;
 import com.android.dialer.calllog.datasources.CallLogDataSource;
 import com.android.dialer.calllog.datasources.CallLogMutations;
+import com.android.dialer.calllog.datasources.MutationColumns;
 import com.android.dialer.calllog.observer.MarkDirtyObserver;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
@@ -303,8 +303,16 @@ public class SystemCallLogDataSource implements CallLogDataSource {
         int features = cursor.getInt(featuresColumn);
         String postDialDigits = cursor.getString(postDialDigitsColumn);
 
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(AnnotatedCallLog.TIMESTAMP, date);
+        MutationColumns rows;
+        int row;
+        if (existingAnnotatedCallLogIds.contains(id)) {
+          rows = mutations.getUpdates();
+          row = mutations.update(id);
+        } else {
+          rows = mutations.getInserts();
+          row = mutations.insert(id);
+        }
+        rows.putLong(row, AnnotatedCallLog.TIMESTAMP, date);
 
         if (!TextUtils.isEmpty(numberAsStr)) {
           String numberWithPostDialDigits =
@@ -312,36 +320,31 @@ public class SystemCallLogDataSource implements CallLogDataSource {
           DialerPhoneNumber dialerPhoneNumber =
               dialerPhoneNumberUtil.parse(numberWithPostDialDigits, countryIso);
 
-          contentValues.put(AnnotatedCallLog.NUMBER, dialerPhoneNumber.toByteArray());
+          rows.putBlob(row, AnnotatedCallLog.NUMBER, dialerPhoneNumber.toByteArray());
           String formattedNumber =
               PhoneNumberUtils.formatNumber(numberWithPostDialDigits, countryIso);
           if (formattedNumber == null) {
             formattedNumber = numberWithPostDialDigits;
           }
-          contentValues.put(AnnotatedCallLog.FORMATTED_NUMBER, formattedNumber);
-        } else {
-          contentValues.put(
-              AnnotatedCallLog.NUMBER, DialerPhoneNumber.getDefaultInstance().toByteArray());
-        }
-        contentValues.put(AnnotatedCallLog.NUMBER_PRESENTATION, presentation);
-        contentValues.put(AnnotatedCallLog.CALL_TYPE, type);
-        contentValues.put(AnnotatedCallLog.IS_READ, isRead);
-        contentValues.put(AnnotatedCallLog.NEW, isNew);
-        contentValues.put(AnnotatedCallLog.GEOCODED_LOCATION, geocodedLocation);
-        contentValues.put(AnnotatedCallLog.PHONE_ACCOUNT_COMPONENT_NAME, phoneAccountComponentName);
-        contentValues.put(AnnotatedCallLog.PHONE_ACCOUNT_ID, phoneAccountId);
-        contentValues.put(AnnotatedCallLog.FEATURES, features);
-        contentValues.put(AnnotatedCallLog.DURATION, duration);
-        contentValues.put(AnnotatedCallLog.DATA_USAGE, dataUsage);
-        contentValues.put(AnnotatedCallLog.VOICEMAIL_URI, voicemailUri);
-
-        contentValues.put(AnnotatedCallLog.CALL_MAPPING_ID, String.valueOf(date));
-
-        if (existingAnnotatedCallLogIds.contains(id)) {
-          mutations.update(id, contentValues);
+          rows.putString(row, AnnotatedCallLog.FORMATTED_NUMBER, formattedNumber);
         } else {
-          mutations.insert(id, contentValues);
+          rows.putBlob(
+              row, AnnotatedCallLog.NUMBER, DialerPhoneNumber.getDefaultInstance().toByteArray());
         }
+        rows.putLong(row, AnnotatedCallLog.NUMBER_PRESENTATION, presentation);
+        rows.putLong(row, AnnotatedCallLog.CALL_TYPE, type);
+        rows.putLong(row, AnnotatedCallLog.IS_READ, isRead);
+        rows.putLong(row, AnnotatedCallLog.NEW, isNew);
+        rows.putString(row, AnnotatedCallLog.GEOCODED_LOCATION, geocodedLocation);
+        rows.putString(
+            row, AnnotatedCallLog.PHONE_ACCOUNT_COMPONENT_NAME, phoneAccountComponentName);
+        rows.putString(row, AnnotatedCallLog.PHONE_ACCOUNT_ID, phoneAccountId);
+        rows.putLong(row, AnnotatedCallLog.FEATURES, features);
+        rows.putLong(row, AnnotatedCallLog.DURATION, duration);
+        rows.putLong(row, AnnotatedCallLog.DATA_USAGE, dataUsage);
+        rows.putString(row, AnnotatedCallLog.VOICEMAIL_URI, voicemailUri);
+
+        rows.putString(row, AnnotatedCallLog.CALL_MAPPING_ID, String.valueOf(date));
       } while (cursor.moveToNext());
     }
   }
@@ -16,7 +16,6 @@
 
 package com.android.dialer.calllog.datasources.voicemail;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.telecom.PhoneAccountHandle;
 import android.telecom.TelecomManager;
@@ -25,6 +24,7 @@ import com.android.dialer.DialerPhoneNumber;
 import com.android.dialer.calllog.database.contract.AnnotatedCallLogContract.AnnotatedCallLog;
 import com.android.dialer.calllog.datasources.CallLogDataSource;
 import com.android.dialer.calllog.datasources.CallLogMutations;
+import com.android.dialer.calllog.datasources.MutationColumns;
 import com.android.dialer.common.concurrent.Annotations.BackgroundExecutor;
 import com.android.dialer.compat.telephony.TelephonyManagerCompat;
 import com.android.dialer.inject.ApplicationContext;
@@ -34,7 +34,6 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.protobuf.InvalidProtocolBufferException;
-import java.util.Map.Entry;
 import javax.inject.Inject;
 
 /** Provide information for whether the call is a call to the voicemail inbox. */
@@ -63,8 +62,9 @@ public class VoicemailDataSource implements CallLogDataSource {
   @SuppressWarnings("missingPermission")
   public ListenableFuture<Void> fill(CallLogMutations mutations) {
     if (!PermissionsUtil.hasReadPhoneStatePermissions(appContext)) {
-      for (Entry<Long, ContentValues> insert : mutations.getInserts().entrySet()) {
-        insert.getValue().put(AnnotatedCallLog.IS_VOICEMAIL_CALL, 0);
+      MutationColumns inserts = mutations.getInserts();
+      for (int row = 0; row < inserts.size(); row++) {
+        inserts.putLong(row, AnnotatedCallLog.IS_VOICEMAIL_CALL, 0);
       }
       return Futures.immediateFuture(null);
     }
@@ -72,36 +72,44 @@ public class VoicemailDataSource implements CallLogDataSource {
     return backgroundExecutor.submit(
         () -> {
           TelecomManager telecomManager = appContext.getSystemService(TelecomManager.class);
-          for (Entry<Long, ContentValues> insert : mutations.getInserts().entrySet()) {
-            ContentValues values = insert.getValue();
+          MutationColumns inserts = mutations.getInserts();
+          for (int row = 0; row < inserts.size(); row++) {
             PhoneAccountHandle phoneAccountHandle =
                 TelecomUtil.composePhoneAccountHandle(
-                    values.getAsString(AnnotatedCallLog.PHONE_ACCOUNT_COMPONENT_NAME),
-                    values.getAsString(AnnotatedCallLog.PHONE_ACCOUNT_ID));
+                    inserts.getString(row, AnnotatedCallLog.PHONE_ACCOUNT_COMPONENT_NAME),
+                    inserts.getString(row, AnnotatedCallLog.PHONE_ACCOUNT_ID));
             DialerPhoneNumber dialerPhoneNumber;
             try {
               dialerPhoneNumber =
-                  DialerPhoneNumber.parseFrom(values.getAsByteArray(AnnotatedCallLog.NUMBER));
+                  DialerPhoneNumber.parseFrom(inserts.getBlob(row, AnnotatedCallLog.NUMBER));
             } catch (InvalidProtocolBufferException e) {
               throw new IllegalStateException(e);
             }
 
             if (telecomManager.isVoiceMailNumber(
                 phoneAccountHandle, dialerPhoneNumber.getNormalizedNumber())) {
-              values.put(AnnotatedCallLog.IS_VOICEMAIL_CALL, 1);
+              inserts.putLong(row, AnnotatedCallLog.IS_VOICEMAIL_CALL, 1);
               TelephonyManager telephonyManager =
                   TelephonyManagerCompat.getTelephonyManagerForPhoneAccountHandle(
                       appContext, phoneAccountHandle);
-              values.put(
-                  AnnotatedCallLog.VOICEMAIL_CALL_TAG, telephonyManager.getVoiceMailAlphaTag());
+              inserts.putString(
+                  row,
+                  AnnotatedCallLog.VOICEMAIL_CALL_TAG,
+                  telephonyManager.getVoiceMailAlphaTag());
             } else {
-              values.put(AnnotatedCallLog.IS_VOICEMAIL_CALL, 0);
+              inserts.putLong(row, AnnotatedCallLog.IS_VOICEMAIL_CALL, 0);
             }
           }
           return null;
         });
   }
 
+  @Override
+  public boolean canFillInParallel() {
+    // Only writes voicemail columns of inserts, based on the system call log columns.
+    return true;
+  }
+
   @Override
   public ListenableFuture<Void> onSuccessfulFill() {
     return Futures.immediateFuture(null);
@@ -23,7 +23,7 @@ import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Environment;
 import android.provider.MediaStore;
-import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.SparseArray;
 
 import androidx.annotation.NonNull;
@@ -41,6 +41,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
+import java.util.Map;
 
 public class CallRecordingAutoMigrator {
   private static final String TAG = "CallRecordingAutoMigrator";
@@ -57,83 +58,30 @@ public class CallRecordingAutoMigrator {
   }
 
   public void asyncAutoMigrate() {
+    // Migrating copies the recordings, so it runs entirely in the background.
     dialerExecutorFactory
-        .createNonUiTaskBuilder(new ShouldAttemptAutoMigrate(appContext))
-        .onSuccess(this::autoMigrate)
+        .createNonUiTaskBuilder(new AutoMigrate(appContext))
         .build()
         .executeParallel(null);
   }
 
-  private void autoMigrate(boolean shouldAttemptAutoMigrate) {
-    if (!shouldAttemptAutoMigrate) {
-      return;
-    }
-
-    final CallRecordingDataStore store = new CallRecordingDataStore();
-    store.open(appContext);
-
-    final ContentResolver cr = appContext.getContentResolver();
-    final SparseArray<CallRecording> oldRecordingData = store.getUnmigratedRecordingData();
-    final File dir = Environment.getExternalStoragePublicDirectory("CallRecordings");
-    for (File recording : dir.listFiles()) {
-      OutputStream os = null;
-      try {
-        // determine data store ID and call creation time of recording
-        int id = -1;
-        long creationTime = System.currentTimeMillis();
-        for (int i = 0; i < oldRecordingData.size(); i++) {
-          if (TextUtils.equals(recording.getName(), oldRecordingData.valueAt(i).fileName)) {
-            creationTime = oldRecordingData.valueAt(i).creationTime;
-            id = oldRecordingData.keyAt(i);
-            break;
-          }
-        }
-
-        // create media store entry for recording
-        Uri uri = cr.insert(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
-            CallRecording.generateMediaInsertValues(recording.getName(), creationTime));
-        os = cr.openOutputStream(uri);
-
-        // copy file contents to media store stream
-        Files.copy(recording.toPath(), os);
-
-        // insert media store id to store
-        if (id >= 0) {
-          store.updateMigratedRecording(id, Integer.parseInt(uri.getLastPathSegment()));
-        }
-
-        // mark recording as complete
-        cr.update(uri, CallRecording.generateCompletedValues(), null, null);
-
-        // delete file
-        LogUtils.i(TAG, "Successfully migrated recording " + recording + " (ID " + id + ")");
-        recording.delete();
-      } catch (IOException e) {
-        LogUtils.w(TAG, "Failed migrating call recording " + recording, e);
-      } finally {
-        if (os != null) {
-          IOUtils.closeQuietly(os);
-        }
-      }
-    }
-
-    if (dir.listFiles().length == 0) {
-      dir.delete();
-    }
-
-    store.close();
-  }
-
-  private static class ShouldAttemptAutoMigrate implements Worker<Void, Boolean> {
+  private static class AutoMigrate implements Worker<Void, Void> {
     private final Context appContext;
 
-    ShouldAttemptAutoMigrate(Context appContext) {
+    AutoMigrate(Context appContext) {
       this.appContext = appContext;
     }
 
     @Nullable
     @Override
-    public Boolean doInBackground(@Nullable Void input) {
+    public Void doInBackground(@Nullable Void input) {
+      if (shouldAttemptAutoMigrate()) {
+        autoMigrate();
+      }
+      return null;
+    }
+
+    private boolean shouldAttemptAutoMigrate() {
       if (appContext.checkSelfPermission(android.Manifest.permission.WRITE_EXTERNAL_STORAGE)
           != PackageManager.PERMISSION_GRANTED) {
         LogUtil.i(TAG, "not attempting auto-migrate: no storage permission");
@@ -148,5 +96,70 @@ public class CallRecordingAutoMigrator {
 
       return true;
     }
+
+    private void autoMigrate() {
+      final CallRecordingDataStore store = new CallRecordingDataStore();
+      store.open(appContext);
+
+      final ContentResolver cr = appContext.getContentResolver();
+      final SparseArray<CallRecording> oldRecordingData = store.getUnmigratedRecordingData();
+      // index the unmigrated rows by file name, instead of scanning them for every file
+      final Map<String, Integer> oldRecordingIndexes = new ArrayMap<>(oldRecordingData.size());
+      for (int i = 0; i < oldRecordingData.size(); i++) {
+        oldRecordingIndexes.putIfAbsent(oldRecordingData.valueAt(i).fileName, i);
+      }
+      final File dir = Environment.getExternalStoragePublicDirectory("CallRecordings");
+      boolean migrated = false;
+      for (File recording : dir.listFiles()) {
+        OutputStream os = null;
+        try {
+          // determine data store ID and call creation time of recording
+          int id = -1;
+          long creationTime = System.currentTimeMillis();
+          Integer index = oldRecordingIndexes.get(recording.getName());
+          if (index != null) {
+            creationTime = oldRecordingData.valueAt(index).creationTime;
+            id = oldRecordingData.keyAt(index);
+          }
+
+          // create media store entry for recording
+          Uri uri = cr.insert(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+              CallRecording.generateMediaInsertValues(recording.getName(), creationTime));
+          os = cr.openOutputStream(uri);
+
+          // copy file contents to media store stream
+          Files.copy(recording.toPath(), os);
+
+          // insert media store id to store
+          if (id >= 0) {
+            store.updateMigratedRecording(id, Integer.parseInt(uri.getLastPathSegment()));
+            migrated = true;
+          }
+
+          // mark recording as complete
+          cr.update(uri, CallRecording.generateCompletedValues(), null, null);
+
+          // delete file
+          LogUtils.i(TAG, "Successfully migrated recording " + recording + " (ID " + id + ")");
+          recording.delete();
+        } catch (IOException e) {
+          LogUtils.w(TAG, "Failed migrating call recording " + recording, e);
+        } finally {
+          if (os != null) {
+            IOUtils.closeQuietly(os);
+          }
+        }
+      }
+
+      if (dir.listFiles().length == 0) {
+        dir.delete();
+      }
+
+      store.close();
+      if (migrated) {
+        // the migrated recordings can now be played from call details
+        CallRecordingIndex.getInstance(appContext).invalidate();
+      }
+    }
   }
 }
@@ -25,6 +25,7 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteStatement;
 import android.provider.BaseColumns;
 import android.util.Log;
+import android.util.LongSparseArray;
 import android.util.SparseArray;
 
 import java.util.ArrayList;
@@ -103,39 +104,61 @@ public class CallRecordingDataStore {
    * @return list of recordings
    */
   public List<CallRecording> getRecordings(String phoneNumber, long callCreationDate) {
-    List<CallRecording> resultList = new ArrayList<CallRecording>();
+    List<CallRecording> resultList =
+        getRecordings(phoneNumber, callCreationDate, callCreationDate).get(callCreationDate);
+    return resultList != null ? resultList : new ArrayList<CallRecording>();
+  }
+
+  /**
+   * Get all recordings associated with the phone calls of a number in a time window, using a
+   * single query
+   *
+   * @param phoneNumber phone number no spaces
+   * @param fromCallCreationDate creation time of the oldest call, included
+   * @param toCallCreationDate creation time of the newest call, included
+   * @return lists of recordings, keyed by the time that their call was created
+   */
+  public LongSparseArray<List<CallRecording>> getRecordings(
+      String phoneNumber, long fromCallCreationDate, long toCallCreationDate) {
+    LongSparseArray<List<CallRecording>> result = new LongSparseArray<>();
 
     final String query = "SELECT " +
+        CallRecordingsContract.CallRecording.COLUMN_NAME_CALL_DATE + "," +
         CallRecordingsContract.CallRecording.COLUMN_NAME_RECORDING_FILENAME + "," +
         CallRecordingsContract.CallRecording.COLUMN_NAME_CREATION_DATE + "," +
         CallRecordingsContract.CallRecording.COLUMN_NAME_MEDIA_ID +
         " FROM " + CallRecordingsContract.CallRecording.TABLE_NAME +
         " WHERE " + CallRecordingsContract.CallRecording.COLUMN_NAME_PHONE_NUMBER + " = ?" +
-        " AND " + CallRecordingsContract.CallRecording.COLUMN_NAME_CALL_DATE + " = ?" +
+        " AND " + CallRecordingsContract.CallRecording.COLUMN_NAME_CALL_DATE +
+        " BETWEEN ? AND ?" +
         " AND " + CallRecordingsContract.CallRecording.COLUMN_NAME_MEDIA_ID + " != 0" +
         " ORDER BY " + CallRecordingsContract.CallRecording.COLUMN_NAME_CREATION_DATE;
 
     String args[] = {
-      phoneNumber, String.valueOf(callCreationDate)
+      phoneNumber, String.valueOf(fromCallCreationDate), String.valueOf(toCallCreationDate)
     };
 
-    try {
-      Cursor cursor = mDatabase.rawQuery(query, args);
+    try (Cursor cursor = mDatabase.rawQuery(query, args)) {
       while (cursor.moveToNext()) {
-        String fileName = cursor.getString(0);
-        long creationDate = cursor.getLong(1);
-        long mediaId = cursor.getLong(2);
+        long callCreationDate = cursor.getLong(0);
+        String fileName = cursor.getString(1);
+        long creationDate = cursor.getLong(2);
+        long mediaId = cursor.getLong(3);
+        List<CallRecording> resultList = result.get(callCreationDate);
+        if (resultList == null) {
+          resultList = new ArrayList<CallRecording>(1);
+          result.put(callCreationDate, resultList);
+        }
         // FIXME: need to check whether media entry still exists?
         resultList.add(
             new CallRecording(phoneNumber, callCreationDate, fileName, creationDate, mediaId));
       }
-      cursor.close();
     } catch (SQLiteException e) {
       Log.w(TAG, "Failed to fetch recordings for number " + phoneNumber +
-          ", date " + callCreationDate, e);
+          ", dates " + fromCallCreationDate + " to " + toCallCreationDate, e);
     }
 
-    return resultList;
+    return result;
   }
 
   public SparseArray<CallRecording> getUnmigratedRecordingData() {
@@ -0,0 +1,143 @@
+/*
+ * SPDX-FileCopyrightText: The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.android.dialer.callrecord;
+
+import android.content.Context;
+import android.util.LongSparseArray;
+import android.util.LruCache;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index of the call recordings shown in call details, so that they can be bound without reading
+ * {@link CallRecordingDataStore} on the main thread.
+ *
+ * <p>The recordings of all calls with a number in a time window are loaded with a single query
+ * in the background and cached by number and window. The cache is invalidated whenever a
+ * recording is stored or migrated.
+ */
+public final class CallRecordingIndex {
+
+  private static final int MAX_CACHED_WINDOWS = 8;
+
+  private static CallRecordingIndex instance;
+
+  private final Context appContext;
+  private final LruCache<String, Recordings> cache = new LruCache<>(MAX_CACHED_WINDOWS);
+
+  private CallRecordingDataStore dataStore;
+
+  /** Recordings of the calls with a number in a time window. */
+  public static final class Recordings {
+    public static final Recordings EMPTY = new Recordings(new LongSparseArray<>());
+
+    private final LongSparseArray<List<CallRecording>> recordingsByCallDate;
+
+    private Recordings(LongSparseArray<List<CallRecording>> recordingsByCallDate) {
+      this.recordingsByCallDate = recordingsByCallDate;
+    }
+
+    /** Returns the recordings of the call created at {@code callDate}, oldest first. */
+    public List<CallRecording> get(long callDate) {
+      return recordingsByCallDate.get(callDate, Collections.emptyList());
+    }
+  }
+
+  private CallRecordingIndex(Context appContext) {
+    this.appContext = appContext;
+  }
+
+  public static synchronized CallRecordingIndex getInstance(Context context) {
+    if (instance == null) {
+      instance = new CallRecordingIndex(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the recordings of the calls with {@code number} created between {@code fromCallDate}
+   * and {@code toCallDate} included, or null if they haven't been loaded.
+   */
+  @MainThread
+  @Nullable
+  public Recordings getCached(String number, long fromCallDate, long toCallDate) {
+    return cache.get(getKey(number, fromCallDate, toCallDate));
+  }
+
+  /**
+   * Loads the recordings of the calls with {@code number} created between {@code fromCallDate}
+   * and {@code toCallDate} included, in the background unless they are cached.
+   */
+  @MainThread
+  public ListenableFuture<Recordings> load(String number, long fromCallDate, long toCallDate) {
+    String key = getKey(number, fromCallDate, toCallDate);
+    Recordings cached = cache.get(key);
+    if (cached != null) {
+      return Futures.immediateFuture(cached);
+    }
+    return DialerExecutorComponent.get(appContext)
+        .backgroundExecutor()
+        .submit(() -> query(key, number, fromCallDate, toCallDate));
+  }
+
+  /** Stores {@code recording} in the background and invalidates the cached recordings. */
+  public void putRecording(CallRecording recording) {
+    DialerExecutorComponent.get(appContext)
+        .backgroundExecutor()
+        .execute(
+            () -> {
+              synchronized (this) {
+                getDataStore().putRecording(recording);
+              }
+              invalidate();
+            });
+  }
+
+  /**
+   * Drops the cached recordings, e.g. after the data store was changed by another instance. As
+   * this waits for running queries, results read before the change don't stay cached.
+   */
+  public synchronized void invalidate() {
+    cache.evictAll();
+  }
+
+  @WorkerThread
+  private synchronized Recordings query(
+      String key, String number, long fromCallDate, long toCallDate) {
+    Recordings recordings =
+        new Recordings(getDataStore().getRecordings(number, fromCallDate, toCallDate));
+    LogUtil.d(
+        "CallRecordingIndex.query",
+        "loaded recordings of %d calls",
+        recordings.recordingsByCallDate.size());
+    cache.put(key, recordings);
+    return recordings;
+  }
+
+  @WorkerThread
+  private CallRecordingDataStore getDataStore() {
+    if (dataStore == null) {
+      dataStore = new CallRecordingDataStore();
+      // Kept open for the lifetime of the process, like the other databases of the app.
+      dataStore.open(appContext);
+    }
+    return dataStore;
+  }
+
+  private static String getKey(String number, long fromCallDate, long toCallDate) {
+    return number + '/' + fromCallDate + '/' + toCallDate;
+  }
+}
@@ -0,0 +1,366 @@
+/*
+ * SPDX-FileCopyrightText: The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.android.dialer.callstats;
+
+import android.database.Cursor;
+import android.provider.CallLog.Calls;
+import android.telecom.PhoneAccountHandle;
+import android.telephony.PhoneNumberUtils;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+
+import com.android.dialer.phonenumbercache.ContactInfo;
+import com.android.dialer.telecom.TelecomUtil;
+import com.android.dialer.util.UriUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Groups the calls of a date range by number and sums up their counts and durations per call type.
+ *
+ * <p>Numbers are grouped in a single pass by a canonical key: the normalized number cached in the
+ * call log, the number formatted to E164, or the SIP address with a lower case domain. Only the
+ * numbers without such a key are then compared with {@link PhoneNumberUtils#compare(String,
+ * String)}, and only to the numbers sharing their caller ID min match.
+ *
+ * <p>The calls are kept sorted by date, so that the statistics of any range within the loaded one
+ * can be computed again without querying the call log.
+ */
+final class CallStatsAggregator {
+  private static final int INCOMING = 0;
+  private static final int OUTGOING = 1;
+  private static final int MISSED = 2;
+  private static final int BLOCKED = 3;
+  private static final int TYPE_COUNT = 4;
+
+  /** Details of the latest call of a group, which the group is shown with. */
+  private static final class Group {
+    String number;
+    int numberPresentation;
+    String postDialDigits;
+    PhoneAccountHandle accountHandle;
+    ContactInfo info;
+    String countryIso;
+    String geocode;
+    int latestPosition;
+    long latestDate;
+  }
+
+  private final long mFrom;
+  private final long mTo;
+  private final PhoneAccountHandle mAccount;
+
+  // One entry per counted call, sorted by date
+  private final int mCallCount;
+  private final long[] mDates;
+  private final long[] mDurations;
+  private final int[] mTypes;
+  private final int[] mGroupIndexes;
+
+  private final Group[] mGroups;
+  /** Durations and counts of the whole loaded range, {@link #TYPE_COUNT} entries per group. */
+  private final long[] mTotalDurations;
+  private final int[] mTotalCounts;
+
+  private CallStatsAggregator(long from, long to, PhoneAccountHandle account, int callCount,
+      long[] dates, long[] durations, int[] types, int[] groupIndexes, Group[] groups) {
+    mFrom = from;
+    mTo = to;
+    mAccount = account;
+    mCallCount = callCount;
+    mDates = dates;
+    mDurations = durations;
+    mTypes = types;
+    mGroupIndexes = groupIndexes;
+    mGroups = groups;
+    mTotalDurations = new long[groups.length * TYPE_COUNT];
+    mTotalCounts = new int[groups.length * TYPE_COUNT];
+    sum(0, callCount, mTotalDurations, mTotalCounts);
+  }
+
+  /**
+   * Reads the calls from {@code cursor}, which must be sorted by ascending date and hold the
+   * columns of {@link CallStatsQuery}. The cursor is not closed.
+   */
+  static CallStatsAggregator load(
+      Cursor cursor, long from, long to, PhoneAccountHandle account) {
+    final int capacity = cursor.getCount();
+    final long[] dates = new long[capacity];
+    final long[] durations = new long[capacity];
+    final int[] types = new int[capacity];
+    final int[] groupIndexes = new int[capacity];
+    ArrayList<Group> groups = new ArrayList<>();
+    Map<String, Integer> groupsByKey = new HashMap<>();
+    Map<String, String> keysByNumber = new HashMap<>();
+    // Groups of the numbers without canonical key, which are compared loosely afterwards
+    List<Integer> looseGroups = new ArrayList<>();
+
+    int callCount = 0;
+    cursor.moveToPosition(-1);
+    while (cursor.moveToNext()) {
+      final int type = getCountedType(cursor.getInt(CallStatsQuery.CALL_TYPE));
+      if (type < 0) {
+        continue;
+      }
+      final String number = cursor.getString(CallStatsQuery.NUMBER);
+      final String countryIso = cursor.getString(CallStatsQuery.COUNTRY_ISO);
+      String key = cursor.getString(CallStatsQuery.CACHED_NORMALIZED_NUMBER);
+      if (TextUtils.isEmpty(key)) {
+        final String numberKey = number + '|' + countryIso;
+        key = keysByNumber.get(numberKey);
+        if (key == null) {
+          key = getCanonicalKey(number, countryIso);
+          keysByNumber.put(numberKey, key);
+        }
+      }
+
+      Integer groupIndex = groupsByKey.get(key);
+      if (groupIndex == null) {
+        groupIndex = groups.size();
+        groups.add(new Group());
+        groupsByKey.put(key, groupIndex);
+        if (key.startsWith("raw:")) {
+          looseGroups.add(groupIndex);
+        }
+      }
+      Group group = groups.get(groupIndex);
+      group.number = number;
+      group.latestPosition = cursor.getPosition();
+
+      dates[callCount] = cursor.getLong(CallStatsQuery.DATE);
+      durations[callCount] = cursor.getLong(CallStatsQuery.DURATION);
+      types[callCount] = type;
+      groupIndexes[callCount] = groupIndex;
+      group.latestDate = dates[callCount];
+      callCount++;
+    }
+
+    int[] targets = mergeLooseGroups(groups, looseGroups);
+
+    // Drop the merged groups and read the details of the latest call of the others
+    int[] newIndexes = new int[groups.size()];
+    ArrayList<Group> mergedGroups = new ArrayList<>(groups.size());
+    for (int i = 0; i < groups.size(); i++) {
+      if (targets[i] == i) {
+        newIndexes[i] = mergedGroups.size();
+        Group group = groups.get(i);
+        cursor.moveToPosition(group.latestPosition);
+        readLatestCall(cursor, group);
+        mergedGroups.add(group);
+      }
+    }
+    for (int i = 0; i < callCount; i++) {
+      groupIndexes[i] = newIndexes[targets[groupIndexes[i]]];
+    }
+
+    return new CallStatsAggregator(from, to, account, callCount, dates, durations, types,
+        groupIndexes, mergedGroups.toArray(new Group[0]));
+  }
+
+  /**
+   * Returns whether the calls of the given range and account are all loaded, so that they can be
+   * aggregated without querying the call log again.
+   */
+  boolean covers(long from, long to, PhoneAccountHandle account) {
+    return Objects.equals(account, mAccount)
+        && (mFrom == -1 || (from != -1 && from >= mFrom))
+        && (mTo == -1 || (to != -1 && to <= mTo));
+  }
+
+  /**
+   * Returns the statistics of the calls made after {@code from} and before {@code to}, either of
+   * which can be -1 for no limit. The range must be {@link #covers covered}.
+   */
+  Map<ContactInfo, CallStatsDetails> aggregate(long from, long to) {
+    long[] durations = mTotalDurations;
+    int[] counts = mTotalCounts;
+    if (from != mFrom || to != mTo) {
+      durations = new long[mTotalDurations.length];
+      counts = new int[mTotalCounts.length];
+      int start = from == -1 ? 0 : upperBound(from);
+      int end = to == -1 ? mCallCount : lowerBound(to);
+      sum(start, end, durations, counts);
+    }
+
+    final Map<ContactInfo, CallStatsDetails> result = new HashMap<>();
+    for (int i = 0; i < mGroups.length; i++) {
+      final int offset = i * TYPE_COUNT;
+      if (counts[offset + INCOMING] + counts[offset + OUTGOING] + counts[offset + MISSED]
+          + counts[offset + BLOCKED] == 0) {
+        continue;
+      }
+      final Group group = mGroups[i];
+      final CallStatsDetails details = new CallStatsDetails(group.number,
+          group.numberPresentation, group.postDialDigits, group.accountHandle, group.info,
+          group.countryIso, group.geocode, group.latestDate);
+      details.inDuration = durations[offset + INCOMING];
+      details.outDuration = durations[offset + OUTGOING];
+      details.incomingCount = counts[offset + INCOMING];
+      details.outgoingCount = counts[offset + OUTGOING];
+      details.missedCount = counts[offset + MISSED];
+      details.blockedCount = counts[offset + BLOCKED];
+      result.put(group.info, details);
+    }
+    return result;
+  }
+
+  private void sum(int start, int end, long[] durations, int[] counts) {
+    for (int i = start; i < end; i++) {
+      final int index = mGroupIndexes[i] * TYPE_COUNT + mTypes[i];
+      durations[index] += mDurations[i];
+      counts[index]++;
+    }
+  }
+
+  /** Returns the index of the first call made after {@code date}. */
+  private int upperBound(long date) {
+    int index = Arrays.binarySearch(mDates, 0, mCallCount, date + 1);
+    if (index < 0) {
+      return -index - 1;
+    }
+    while (index > 0 && mDates[index - 1] > date) {
+      index--;
+    }
+    return index;
+  }
+
+  /** Returns the index of the first call made at or after {@code date}. */
+  private int lowerBound(long date) {
+    int index = Arrays.binarySearch(mDates, 0, mCallCount, date);
+    if (index < 0) {
+      return -index - 1;
+    }
+    while (index > 0 && mDates[index - 1] >= date) {
+      index--;
+    }
+    return index;
+  }
+
+  /**
+   * Merges each group without canonical key into the first other group whose number matches it
+   * loosely, and returns the group each group ended up in.
+   */
+  private static int[] mergeLooseGroups(List<Group> groups, List<Integer> looseGroups) {
+    int[] targets = new int[groups.size()];
+    for (int i = 0; i < targets.length; i++) {
+      targets[i] = i;
+    }
+    if (looseGroups.isEmpty()) {
+      return targets;
+    }
+
+    ArrayMap<String, List<Integer>> groupsByMinMatch = new ArrayMap<>();
+    for (int i = 0; i < groups.size(); i++) {
+      String number = groups.get(i).number;
+      if (TextUtils.isEmpty(number) || PhoneNumberUtils.isUriNumber(number)) {
+        continue;
+      }
+      String minMatch = PhoneNumberUtils.toCallerIDMinMatch(number);
+      if (TextUtils.isEmpty(minMatch)) {
+        continue;
+      }
+      List<Integer> groupsForMinMatch = groupsByMinMatch.get(minMatch);
+      if (groupsForMinMatch == null) {
+        groupsForMinMatch = new ArrayList<>(1);
+        groupsByMinMatch.put(minMatch, groupsForMinMatch);
+      }
+      groupsForMinMatch.add(i);
+    }
+
+    for (int looseGroup : looseGroups) {
+      String number = groups.get(looseGroup).number;
+      if (TextUtils.isEmpty(number)) {
+        continue;
+      }
+      List<Integer> candidates =
+          groupsByMinMatch.get(PhoneNumberUtils.toCallerIDMinMatch(number));
+      if (candidates == null) {
+        continue;
+      }
+      for (int candidate : candidates) {
+        if (candidate != looseGroup
+            && targets[candidate] == candidate
+            && PhoneNumberUtils.compare(groups.get(candidate).number, number)) {
+          targets[looseGroup] = candidate;
+          break;
+        }
+      }
+    }
+
+    // A group may have been merged into one which was merged later on itself
+    for (int i = 0; i < targets.length; i++) {
+      int target = targets[i];
+      while (targets[target] != target) {
+        target = targets[target];
+      }
+      targets[i] = target;
+    }
+    return targets;
+  }
+
+  /** Returns the key grouping the calls of {@code number}, prefixed with "raw:" if loose. */
+  private static String getCanonicalKey(String number, String countryIso) {
+    if (TextUtils.isEmpty(number)) {
+      return "raw:";
+    }
+    if (PhoneNumberUtils.isUriNumber(number)) {
+      // SIP addresses are case sensitive, except for their domain
+      int index = number.indexOf('@');
+      return index == -1
+          ? "sip:" + number
+          : "sip:" + number.substring(0, index) + number.substring(index).toLowerCase(Locale.US);
+    }
+    String e164 = PhoneNumberUtils.formatNumberToE164(number, countryIso);
+    return e164 != null ? e164 : "raw:" + number;
+  }
+
+  /** Returns the index the durations and counts of a call type are summed at, or -1. */
+  private static int getCountedType(int callType) {
+    switch (callType) {
+      case Calls.INCOMING_TYPE:
+        return INCOMING;
+      case Calls.OUTGOING_TYPE:
+        return OUTGOING;
+      case Calls.MISSED_TYPE:
+        return MISSED;
+      case Calls.BLOCKED_TYPE:
+        return BLOCKED;
+      default:
+        return -1;
+    }
+  }
+
+  private static void readLatestCall(Cursor c, Group group) {
+    group.numberPresentation = c.getInt(CallStatsQuery.NUMBER_PRESENTATION);
+    group.postDialDigits = c.getString(CallStatsQuery.POST_DIAL_DIGITS);
+    group.countryIso = c.getString(CallStatsQuery.COUNTRY_ISO);
+    group.geocode = c.getString(CallStatsQuery.GEOCODED_LOCATION);
+    group.accountHandle = TelecomUtil.composePhoneAccountHandle(
+        c.getString(CallStatsQuery.ACCOUNT_COMPONENT_NAME),
+        c.getString(CallStatsQuery.ACCOUNT_ID));
+
+    ContactInfo info = new ContactInfo();
+    info.lookupUri = UriUtils.parseUriOrNull(c.getString(CallStatsQuery.CACHED_LOOKUP_URI));
+    info.name = c.getString(CallStatsQuery.CACHED_NAME);
+    info.type = c.getInt(CallStatsQuery.CACHED_NUMBER_TYPE);
+    info.label = c.getString(CallStatsQuery.CACHED_NUMBER_LABEL);
+
+    final String matchedNumber = c.getString(CallStatsQuery.CACHED_MATCHED_NUMBER);
+    info.number = matchedNumber == null ? c.getString(CallStatsQuery.NUMBER) : matchedNumber;
+    info.normalizedNumber = c.getString(CallStatsQuery.CACHED_NORMALIZED_NUMBER);
+    info.formattedNumber = c.getString(CallStatsQuery.CACHED_FORMATTED_NUMBER);
+
+    info.photoId = c.getLong(CallStatsQuery.CACHED_PHOTO_ID);
+    info.photoUri = null; // We do not cache the photo URI.
+    group.info = info;
+  }
+}
@@ -84,6 +84,9 @@ public class CallStatsFragment extends Fragment implements
     @Override
     public void onChange(boolean selfChange) {
       mRefreshDataRequired = true;
+      // A fetch for another date range can happen before the next refresh, don't serve it from
+      // the calls aggregated before this change.
+      mCallStatsQueryHandler.invalidate();
     }
   };
 
@@ -304,6 +307,7 @@ public class CallStatsFragment extends Fragment implements
       // Mark all entries in the contact info cache as out of date, so
       // they will be looked up again once being shown.
       mAdapter.invalidateCache();
+      mCallStatsQueryHandler.invalidate();
       fetchCalls();
       mRefreshDataRequired = false;
     }
@@ -29,17 +29,14 @@ import android.os.Looper;
 import android.os.Message;
 import android.provider.CallLog.Calls;
 import android.telecom.PhoneAccountHandle;
-import android.telephony.PhoneNumberUtils;
 import android.util.Log;
+import android.util.Pair;
 
 import com.android.dialer.phonenumbercache.ContactInfo;
-import com.android.dialer.telecom.TelecomUtil;
-import com.android.dialer.util.UriUtils;
 
 import com.google.common.collect.Lists;
 
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +48,7 @@ public class CallStatsQueryHandler extends AsyncQueryHandler {
   private static final String[] EMPTY_STRING_ARRAY = new String[0];
 
   private static final int EVENT_PROCESS_DATA = 10;
+  private static final int EVENT_AGGREGATE = 11;
 
   private static final int QUERY_CALLS_TOKEN = 100;
 
@@ -59,6 +57,28 @@ public class CallStatsQueryHandler extends AsyncQueryHandler {
   private final WeakReference<Listener> mListener;
   private Handler mWorkerThreadHandler;
 
+  /** Calls of the last query, only accessed on the worker thread. */
+  private CallStatsAggregator mAggregator;
+  /** Set when the call log changed, so that the calls have to be queried again. */
+  private volatile boolean mAggregatorStale;
+  /** Incremented on each fetch, to drop the results of the previous ones. */
+  private int mFetchGeneration;
+
+  /** Range and account filter of a fetch. */
+  private static final class FetchRequest {
+    final long from;
+    final long to;
+    final PhoneAccountHandle account;
+    final int generation;
+
+    FetchRequest(long from, long to, PhoneAccountHandle account, int generation) {
+      this.from = from;
+      this.to = to;
+      this.account = account;
+      this.generation = generation;
+    }
+  }
+
   /**
    * Simple handler that wraps background calls to catch
    * {@link SQLiteException}, such as when the disk is full.
@@ -70,12 +90,22 @@ public class CallStatsQueryHandler extends AsyncQueryHandler {
 
     @Override
     public void handleMessage(Message msg) {
+      if (msg.arg1 == EVENT_AGGREGATE) {
+        FetchRequest request = (FetchRequest) msg.obj;
+        if (mAggregatorStale) {
+          mAggregatorStale = false;
+          mAggregator = null;
+        }
+        if (mAggregator != null && mAggregator.covers(request.from, request.to, request.account)) {
+          sendCalls(msg.what, request, mAggregator.aggregate(request.from, request.to));
+        } else {
+          startCallsQuery(request);
+        }
+        return;
+      }
       if (msg.arg1 == EVENT_PROCESS_DATA) {
-        Cursor cursor = (Cursor) msg.obj;
-        Message reply = CallStatsQueryHandler.this.obtainMessage(msg.what);
-        reply.obj = processData(cursor);
-        reply.arg1 = msg.arg1;
-        reply.sendToTarget();
+        Pair<FetchRequest, Cursor> result = (Pair<FetchRequest, Cursor>) msg.obj;
+        sendCalls(msg.what, result.first, processData(result.first, result.second));
         return;
       }
 
@@ -104,9 +134,28 @@ public class CallStatsQueryHandler extends AsyncQueryHandler {
     mListener = new WeakReference<Listener>(listener);
   }
 
+  /**
+   * Fetches the statistics of the calls of a date range, from the calls of the previous fetch if
+   * they cover it, or from the call log otherwise.
+   */
   public void fetchCalls(long from, long to, PhoneAccountHandle account) {
     cancelOperation(QUERY_CALLS_TOKEN);
 
+    Message msg = mWorkerThreadHandler.obtainMessage(QUERY_CALLS_TOKEN);
+    msg.arg1 = EVENT_AGGREGATE;
+    msg.obj = new FetchRequest(from, to, account, ++mFetchGeneration);
+    mWorkerThreadHandler.sendMessage(msg);
+  }
+
+  /** Makes the next fetch query the call log, as it changed since the previous one. */
+  public void invalidate() {
+    mAggregatorStale = true;
+  }
+
+  private void startCallsQuery(FetchRequest request) {
+    final long from = request.from;
+    final long to = request.to;
+    final PhoneAccountHandle account = request.account;
     StringBuilder selection = new StringBuilder();
     List<String> selectionArgs = Lists.newArrayList();
 
@@ -129,17 +178,24 @@ public class CallStatsQueryHandler extends AsyncQueryHandler {
       selectionArgs.add(account.getId());
     }
 
-    startQuery(QUERY_CALLS_TOKEN, null, Calls.CONTENT_URI_WITH_VOICEMAIL,
+    startQuery(QUERY_CALLS_TOKEN, request, Calls.CONTENT_URI_WITH_VOICEMAIL,
         CallStatsQuery._PROJECTION, selection.toString(),
-        selectionArgs.toArray(EMPTY_STRING_ARRAY), Calls.NUMBER + " ASC");
+        selectionArgs.toArray(EMPTY_STRING_ARRAY), Calls.DATE + " ASC");
   }
 
   @Override
   protected synchronized void onQueryComplete(int token, Object cookie, Cursor cursor) {
     if (token == QUERY_CALLS_TOKEN) {
+      final FetchRequest request = (FetchRequest) cookie;
+      if (request.generation != mFetchGeneration) {
+        if (cursor != null) {
+          cursor.close();
+        }
+        return;
+      }
       Message msg = mWorkerThreadHandler.obtainMessage(token);
       msg.arg1 = EVENT_PROCESS_DATA;
-      msg.obj = cursor;
+      msg.obj = Pair.create(request, cursor);
 
       mWorkerThreadHandler.sendMessage(msg);
     }
@@ -147,9 +203,14 @@ public class CallStatsQueryHandler extends AsyncQueryHandler {
 
   @Override
   public void handleMessage(Message msg) {
-    if (msg.arg1 == EVENT_PROCESS_DATA) {
-      final Map<ContactInfo, CallStatsDetails> calls =
-          (Map<ContactInfo, CallStatsDetails>) msg.obj;
+    if (msg.arg1 == EVENT_AGGREGATE) {
+      final Pair<FetchRequest, Map<ContactInfo, CallStatsDetails>> result =
+          (Pair<FetchRequest, Map<ContactInfo, CallStatsDetails>>) msg.obj;
+      if (result.first.generation != mFetchGeneration) {
+        // A newer fetch is in progress
+        return;
+      }
+      final Map<ContactInfo, CallStatsDetails> calls = result.second;
       final Listener listener = mListener.get();
       if (listener != null) {
         listener.onCallsFetched(calls);
@@ -159,136 +220,25 @@ public class CallStatsQueryHandler extends AsyncQueryHandler {
     }
   }
 
-  private Map<ContactInfo, CallStatsDetails> processData(Cursor cursor) {
-    final Map<ContactInfo, CallStatsDetails> result = new HashMap<ContactInfo, CallStatsDetails>();
-    final ArrayList<ContactInfo> infos = new ArrayList<ContactInfo>();
-    final ArrayList<CallStatsDetails> calls = new ArrayList<CallStatsDetails>();
-    CallStatsDetails pending = null;
-
-    cursor.moveToFirst();
-
-    while (!cursor.isAfterLast()) {
-      final String number = cursor.getString(CallStatsQuery.NUMBER);
-      final long duration = cursor.getLong(CallStatsQuery.DURATION);
-      final int callType = cursor.getInt(CallStatsQuery.CALL_TYPE);
-
-      if (pending == null || !phoneNumbersEqual(pending.number.toString(), number)) {
-        final long date = cursor.getLong(CallStatsQuery.DATE);
-        final int numberPresentation = cursor.getInt(CallStatsQuery.NUMBER_PRESENTATION);
-        final String countryIso = cursor.getString(CallStatsQuery.COUNTRY_ISO);
-        final String geocode = cursor.getString(CallStatsQuery.GEOCODED_LOCATION);
-        final String postDialDigits = cursor.getString(CallStatsQuery.POST_DIAL_DIGITS);
-        final ContactInfo info = getContactInfoFromCallStats(cursor);
-        final PhoneAccountHandle accountHandle = TelecomUtil.composePhoneAccountHandle(
-            cursor.getString(CallStatsQuery.ACCOUNT_COMPONENT_NAME),
-            cursor.getString(CallStatsQuery.ACCOUNT_ID));
-
-        pending = new CallStatsDetails(number, numberPresentation, postDialDigits,
-            accountHandle, info, countryIso, geocode, date);
-        infos.add(info);
-        calls.add(pending);
-      }
-
-      pending.addTimeOrMissed(callType, duration);
-      cursor.moveToNext();
+  private Map<ContactInfo, CallStatsDetails> processData(FetchRequest request, Cursor cursor) {
+    if (cursor == null) {
+      return new HashMap<ContactInfo, CallStatsDetails>();
     }
-
-    cursor.close();
-    mergeItemsByNumber(calls, infos);
-
-    for (int i = 0; i < calls.size(); i++) {
-      result.put(infos.get(i), calls.get(i));
+    try {
+      mAggregator = CallStatsAggregator.load(cursor, request.from, request.to, request.account);
+    } finally {
+      cursor.close();
     }
-
-    return result;
+    return mAggregator.aggregate(request.from, request.to);
   }
 
-  private void mergeItemsByNumber(List<CallStatsDetails> calls, List<ContactInfo> infos) {
-    // temporarily store items marked for removal
-    final ArrayList<CallStatsDetails> callsToRemove = new ArrayList<CallStatsDetails>();
-    final ArrayList<ContactInfo> infosToRemove = new ArrayList<ContactInfo>();
-
-    for (int i = 0; i < calls.size(); i++) {
-      final CallStatsDetails outerItem = calls.get(i);
-      final String currentFormattedNumber = outerItem.number.toString();
-
-      for (int j = calls.size() - 1; j > i; j--) {
-        final CallStatsDetails innerItem = calls.get(j);
-        final String innerNumber = innerItem.number.toString();
-
-        if (phoneNumbersEqual(currentFormattedNumber, innerNumber)) {
-          outerItem.mergeWith(innerItem);
-          //make sure we're not counting twice in case we're dealing with
-          //multiple different formats
-          innerItem.reset();
-          callsToRemove.add(innerItem);
-          infosToRemove.add(infos.get(j));
-        }
-      }
-    }
-
-    for (CallStatsDetails call : callsToRemove) {
-      calls.remove(call);
-    }
-    for (ContactInfo info : infosToRemove) {
-      infos.remove(info);
-    }
-  }
-
-  private ContactInfo getContactInfoFromCallStats(Cursor c) {
-    ContactInfo info = new ContactInfo();
-    info.lookupUri = UriUtils.parseUriOrNull(c.getString(CallStatsQuery.CACHED_LOOKUP_URI));
-    info.name = c.getString(CallStatsQuery.CACHED_NAME);
-    info.type = c.getInt(CallStatsQuery.CACHED_NUMBER_TYPE);
-    info.label = c.getString(CallStatsQuery.CACHED_NUMBER_LABEL);
-
-    final String matchedNumber = c.getString(CallStatsQuery.CACHED_MATCHED_NUMBER);
-    info.number = matchedNumber == null ? c.getString(CallStatsQuery.NUMBER) : matchedNumber;
-    info.normalizedNumber = c.getString(CallStatsQuery.CACHED_NORMALIZED_NUMBER);
-    info.formattedNumber = c.getString(CallStatsQuery.CACHED_FORMATTED_NUMBER);
-
-    info.photoId = c.getLong(CallStatsQuery.CACHED_PHOTO_ID);
-    info.photoUri = null; // We do not cache the photo URI.
-
-    return info;
-  }
-
-  private static boolean phoneNumbersEqual(String number1, String number2) {
-    if (PhoneNumberUtils.isUriNumber(number1) || PhoneNumberUtils.isUriNumber(number2)) {
-      return sipAddressesEqual(number1, number2);
-    } else {
-      return PhoneNumberUtils.compare(number1, number2);
-    }
-  }
-
-  private static boolean sipAddressesEqual(String number1, String number2) {
-    if (number1 == null || number2 == null) {
-      return number1 == number2;
-    }
-
-    int index1 = number1.indexOf('@');
-    final String userinfo1;
-    final String rest1;
-    if (index1 != -1) {
-      userinfo1 = number1.substring(0, index1);
-      rest1 = number1.substring(index1);
-    } else {
-      userinfo1 = number1;
-      rest1 = "";
-    }
-
-    int index2 = number2.indexOf('@');
-    final String userinfo2;
-    final String rest2;
-    if (index2 != -1) {
-      userinfo2 = number2.substring(0, index2);
-      rest2 = number2.substring(index2);
-    } else {
-      userinfo2 = number2;
-      rest2 = "";
-    }
-
-    return userinfo1.equals(userinfo2) && rest1.equalsIgnoreCase(rest2);
+  /** Sends the statistics of a fetch from the worker thread to the listener. */
+  private void sendCalls(int token, FetchRequest request,
+      Map<ContactInfo, CallStatsDetails> calls) {
+    Message reply = obtainMessage(token);
+    reply.obj = Pair.create(request, calls);
+    reply.arg1 = EVENT_AGGREGATE;
+    reply.sendToTarget();
   }
 
   public interface Listener {
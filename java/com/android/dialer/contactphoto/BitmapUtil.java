@@ -24,6 +24,7 @@ import android.graphics.PorterDuff.Mode;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.graphics.RectF;
+import androidx.annotation.Nullable;
 
 /** Provides static functions to decode bitmaps at the optimal size */
 public class BitmapUtil {
@@ -88,6 +89,25 @@ public class BitmapUtil {
     return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
   }
 
+  /**
+   * Decodes the bitmap with the given sample size into {@code inBitmap} if it is large enough, or
+   * into a new mutable bitmap which can be reused the same way.
+   */
+  public static Bitmap decodeBitmapFromBytes(
+      byte[] bytes, int sampleSize, @Nullable Bitmap inBitmap) {
+    final BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inSampleSize = Math.max(sampleSize, 1);
+    options.inMutable = true;
+    options.inBitmap = inBitmap;
+    try {
+      return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    } catch (IllegalArgumentException e) {
+      // inBitmap is too small or has an incompatible config
+      options.inBitmap = null;
+      return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    }
+  }
+
   /**
    * Given an input bitmap, scales it to the given width/height and makes it round.
    *
@@ -0,0 +1,413 @@
+/*
+ * SPDX-FileCopyrightText: The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.android.dialer.contactphoto;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.provider.ContactsContract;
+import android.provider.ContactsContract.CommonDataKinds.Photo;
+import android.provider.ContactsContract.Contacts;
+import android.provider.ContactsContract.Data;
+import android.util.LongSparseArray;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thumbnails of contact photos kept on disk, scaled to the extent they are displayed at, so that
+ * they don't have to be read from the contacts provider again after the process restarts.
+ *
+ * <p>Entries are keyed by photo ID or URI and the requested extent, and tagged with the version of
+ * the photo they were made from: the data version of its row in the contacts provider. A thumbnail
+ * is only returned while its photo has the same version, so editing a contact only invalidates the
+ * thumbnails of its own photo. The versions of all photos are read with a single query in the
+ * background when the cache is created and again after the contacts change. The least recently
+ * used entries are evicted once the thumbnails exceed {@link #MAX_SIZE_BYTES}.
+ */
+public final class ContactPhotoDiskCache {
+
+  private static final String DIRECTORY = "contact_photos";
+  private static final int MAX_SIZE_BYTES = 4 * 1024 * 1024;
+  private static final int WEBP_QUALITY = 90;
+  /** Length of the hex SHA-1 of the key, which file names start with. */
+  private static final int KEY_HASH_LENGTH = 40;
+
+  /** Version of display photos, whose URI already changes whenever the photo does. */
+  private static final String DISPLAY_PHOTO_VERSION = "0";
+
+  private static final String[] PHOTO_VERSION_PROJECTION = {
+    Data._ID, Data.CONTACT_ID, Data.PHOTO_ID, Data.DATA_VERSION
+  };
+
+  private static ContactPhotoDiskCache instance;
+
+  private final Context appContext;
+  private final File directory;
+  /** File of each thumbnail by key hash and extent, in order of access. Loaded on first use. */
+  private LinkedHashMap<String, Entry> entries;
+
+  private long sizeBytes;
+  /** Versions of the photos, null until they are read from the contacts provider. */
+  @Nullable private volatile PhotoVersions versions;
+
+  private volatile boolean versionsStale = true;
+
+  /** Thumbnail stored on disk. */
+  private static final class Entry {
+    final String version;
+    final long sizeBytes;
+
+    Entry(String version, long sizeBytes) {
+      this.version = version;
+      this.sizeBytes = sizeBytes;
+    }
+  }
+
+  /** Data versions of the photos, by photo ID and by the ID of the contact they are shown for. */
+  private static final class PhotoVersions {
+    final LongSparseArray<String> byPhotoId = new LongSparseArray<>();
+    final LongSparseArray<String> byContactId = new LongSparseArray<>();
+  }
+
+  private ContactPhotoDiskCache(Context appContext) {
+    this.appContext = appContext;
+    this.directory = new File(appContext.getCacheDir(), DIRECTORY);
+    appContext
+        .getContentResolver()
+        .registerContentObserver(
+            Contacts.CONTENT_URI,
+            true,
+            new ContentObserver(null) {
+              @Override
+              public void onChange(boolean selfChange) {
+                versionsStale = true;
+                updateVersionsInBackground();
+              }
+            });
+    // Read the versions before the first photo is requested, so that it can be found on disk.
+    updateVersionsInBackground();
+  }
+
+  public static synchronized ContactPhotoDiskCache getInstance(Context context) {
+    if (instance == null) {
+      instance = new ContactPhotoDiskCache(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  /**
+   * Returns whether the photo of {@code key} is versioned, i.e. whether it is a photo of the
+   * contacts provider that can be cached on disk.
+   */
+  public static boolean isVersioned(Object key) {
+    return key instanceof Long || (key instanceof Uri && isVersionedUri((Uri) key));
+  }
+
+  /**
+   * Returns the version of the photo of {@code key}, without blocking, or null if it isn't known
+   * yet or if the photo may have changed since it was read. Other photo caches can add it to their
+   * keys to be invalidated together with this one, and should not cache the photo on disk if it is
+   * null.
+   */
+  @Nullable
+  public String peekVersion(Object key) {
+    PhotoVersions currentVersions = versions;
+    if (currentVersions == null || versionsStale) {
+      return null;
+    }
+    return getVersion(currentVersions, key);
+  }
+
+  /** Returns whether a thumbnail is cached, without reading it. */
+  @WorkerThread
+  public synchronized boolean contains(Object key, int extent) {
+    return getFile(key, extent) != null;
+  }
+
+  /** Returns the encoded thumbnail of {@code key} at {@code extent}, or null if it isn't cached. */
+  @WorkerThread
+  @Nullable
+  public byte[] get(Object key, int extent) {
+    File file;
+    synchronized (this) {
+      file = getFile(key, extent);
+      if (file == null) {
+        return null;
+      }
+    }
+    try {
+      byte[] bytes = Files.readAllBytes(file.toPath());
+      file.setLastModified(System.currentTimeMillis());
+      return bytes;
+    } catch (IOException e) {
+      // Evicted or replaced since it was looked up
+      return null;
+    }
+  }
+
+  /**
+   * Caches {@code bitmap} as the thumbnail of {@code key}, scaled down to {@code extent} unless it
+   * is smaller already.
+   */
+  @WorkerThread
+  public void put(Object key, int extent, Bitmap bitmap) {
+    Bitmap thumbnail = bitmap;
+    int largerExtent = Math.max(bitmap.getWidth(), bitmap.getHeight());
+    if (extent > 0 && largerExtent > extent) {
+      thumbnail =
+          Bitmap.createScaledBitmap(
+              bitmap,
+              Math.max(bitmap.getWidth() * extent / largerExtent, 1),
+              Math.max(bitmap.getHeight() * extent / largerExtent, 1),
+              true);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    thumbnail.compress(Bitmap.CompressFormat.WEBP_LOSSY, WEBP_QUALITY, out);
+    if (thumbnail != bitmap) {
+      thumbnail.recycle();
+    }
+    put(key, extent, out.toByteArray());
+  }
+
+  /** Caches {@code bytes}, an encoded image already at the right extent, as the thumbnail. */
+  @WorkerThread
+  public synchronized void put(Object key, int extent, byte[] bytes) {
+    String version = getVersion(key);
+    if (version == null || bytes.length > MAX_SIZE_BYTES) {
+      return;
+    }
+    String name = getName(key, extent);
+    File file = new File(directory, getFileName(name, version));
+    File tempFile = new File(directory, file.getName() + ".tmp");
+    directory.mkdirs();
+    try (FileOutputStream out = new FileOutputStream(tempFile)) {
+      out.write(bytes);
+    } catch (IOException e) {
+      LogUtil.w("ContactPhotoDiskCache.put", "failed to write thumbnail", e);
+      tempFile.delete();
+      return;
+    }
+    if (!tempFile.renameTo(file)) {
+      tempFile.delete();
+      return;
+    }
+
+    Entry previous = getEntries().put(name, new Entry(version, bytes.length));
+    sizeBytes += bytes.length;
+    if (previous != null) {
+      sizeBytes -= previous.sizeBytes;
+      if (!previous.version.equals(version)) {
+        new File(directory, getFileName(name, previous.version)).delete();
+      }
+    }
+    Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+    while (sizeBytes > MAX_SIZE_BYTES && iterator.hasNext()) {
+      Map.Entry<String, Entry> eldest = iterator.next();
+      new File(directory, getFileName(eldest.getKey(), eldest.getValue().version)).delete();
+      sizeBytes -= eldest.getValue().sizeBytes;
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Returns the file of the thumbnail if it was made from the current version of the photo, and
+   * drops it if it was made from an older one.
+   */
+  @Nullable
+  private File getFile(Object key, int extent) {
+    String version = getVersion(key);
+    if (version == null) {
+      return null;
+    }
+    String name = getName(key, extent);
+    Entry entry = getEntries().get(name);
+    if (entry == null) {
+      return null;
+    }
+    if (!entry.version.equals(version)) {
+      new File(directory, getFileName(name, entry.version)).delete();
+      sizeBytes -= entry.sizeBytes;
+      entries.remove(name);
+      return null;
+    }
+    return new File(directory, getFileName(name, version));
+  }
+
+  private LinkedHashMap<String, Entry> getEntries() {
+    if (entries == null) {
+      entries = new LinkedHashMap<>(16, 0.75f, true);
+      sizeBytes = 0;
+      File[] files = directory.listFiles();
+      if (files != null) {
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+          String fileName = file.getName();
+          int versionStart = fileName.lastIndexOf('_') + 1;
+          if (fileName.endsWith(".tmp")
+              || fileName.indexOf('_') != KEY_HASH_LENGTH
+              || versionStart <= KEY_HASH_LENGTH + 1) {
+            // Left over from an interrupted write or an older format
+            file.delete();
+            continue;
+          }
+          String name = fileName.substring(0, versionStart - 1);
+          Entry previous =
+              entries.put(name, new Entry(fileName.substring(versionStart), file.length()));
+          sizeBytes += file.length();
+          if (previous != null) {
+            // Only if a file was left behind, keep the most recent one
+            new File(directory, getFileName(name, previous.version)).delete();
+            sizeBytes -= previous.sizeBytes;
+          }
+        }
+      }
+    }
+    return entries;
+  }
+
+  /** Returns the version of the photo of {@code key}, reading the versions if they changed. */
+  @WorkerThread
+  @Nullable
+  private String getVersion(Object key) {
+    updateVersions();
+    PhotoVersions currentVersions = versions;
+    return currentVersions == null ? null : getVersion(currentVersions, key);
+  }
+
+  @Nullable
+  private static String getVersion(PhotoVersions versions, Object key) {
+    if (key instanceof Long) {
+      return versions.byPhotoId.get((Long) key);
+    }
+    if (!(key instanceof Uri) || !isVersionedUri((Uri) key)) {
+      return null;
+    }
+    List<String> segments = ((Uri) key).getPathSegments();
+    if (segments.get(0).equals(ContactsContract.DisplayPhoto.CONTENT_URI.getLastPathSegment())) {
+      return DISPLAY_PHOTO_VERSION;
+    }
+    // The thumbnail of a contact, whose photo is the one of its photo ID.
+    return versions.byContactId.get(Long.parseLong(segments.get(1)));
+  }
+
+  /**
+   * Returns whether {@code uri} is a display photo, which never changes, or the thumbnail of a
+   * contact, e.g. {@code content://com.android.contacts/contacts/1/photo}.
+   */
+  private static boolean isVersionedUri(Uri uri) {
+    if (!ContactsContract.AUTHORITY.equals(uri.getAuthority())) {
+      return false;
+    }
+    List<String> segments = uri.getPathSegments();
+    if (segments.size() == 2) {
+      return segments.get(0).equals(ContactsContract.DisplayPhoto.CONTENT_URI.getLastPathSegment())
+          && isNumber(segments.get(1));
+    }
+    return segments.size() == 3
+        && segments.get(0).equals(Contacts.CONTENT_URI.getLastPathSegment())
+        && isNumber(segments.get(1))
+        && segments.get(2).equals(Contacts.Photo.CONTENT_DIRECTORY);
+  }
+
+  private static boolean isNumber(String segment) {
+    if (segment.isEmpty() || segment.length() > 18) {
+      return false;
+    }
+    for (int i = 0; i < segment.length(); i++) {
+      if (!Character.isDigit(segment.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void updateVersionsInBackground() {
+    DialerExecutorComponent.get(appContext).backgroundExecutor().execute(this::updateVersions);
+  }
+
+  /** Reads the versions of all photos from the contacts provider if they may have changed. */
+  @WorkerThread
+  private synchronized void updateVersions() {
+    if (!versionsStale) {
+      return;
+    }
+    versionsStale = false;
+    PhotoVersions newVersions = new PhotoVersions();
+    try (Cursor cursor =
+        appContext
+            .getContentResolver()
+            .query(
+                Data.CONTENT_URI,
+                PHOTO_VERSION_PROJECTION,
+                Data.MIMETYPE + " = ?",
+                new String[] {Photo.CONTENT_ITEM_TYPE},
+                null)) {
+      while (cursor != null && cursor.moveToNext()) {
+        long photoId = cursor.getLong(0);
+        String version = Long.toString(cursor.getLong(3));
+        newVersions.byPhotoId.put(photoId, version);
+        if (cursor.getLong(2) == photoId) {
+          // Contacts with the same photo ID show the same photo, only use it for their thumbnails
+          newVersions.byContactId.put(cursor.getLong(1), photoId + "." + version);
+        }
+      }
+    } catch (RuntimeException e) {
+      // No permission to read the contacts, or the provider is unavailable. No photo can be
+      // looked up in that case, so none is cached either.
+      LogUtil.w("ContactPhotoDiskCache.updateVersions", "failed to query photo versions", e);
+    }
+    versions = newVersions;
+    LogUtil.i(
+        "ContactPhotoDiskCache.updateVersions",
+        "read versions of %d photos",
+        newVersions.byPhotoId.size());
+  }
+
+  /** Returns the name of the thumbnail of {@code key} at {@code extent}, without its version. */
+  private static String getName(Object key, int extent) {
+    return sha1(key.toString()) + "_" + extent;
+  }
+
+  private static String getFileName(String name, String version) {
+    return name + "_" + version;
+  }
+
+  private static String sha1(String value) {
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+      StringBuilder builder = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+        builder.append(Character.forDigit(b & 0xf, 16));
+      }
+      return builder.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
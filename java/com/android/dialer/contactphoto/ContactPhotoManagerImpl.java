@@ -38,6 +38,8 @@ import android.os.Handler;
 import android.os.Handler.Callback;
 import android.os.HandlerThread;
 import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.Contacts;
 import android.provider.ContactsContract.Contacts.Photo;
@@ -74,14 +76,31 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
 
   private static final String LOADER_THREAD_NAME = "ContactPhotoLoader";
+  private static final String DECODER_THREAD_NAME = "ContactPhotoDecoder-";
+
+  /** Number of threads decoding photos and loading photos from URIs. */
+  private static final int DECODE_POOL_SIZE = 2;
+
+  private static final long DECODE_THREAD_TIMEOUT_SECONDS = 10;
+
+  /** Priority of the requests for views which are attached to the window. */
+  private static final int PRIORITY_VISIBLE = 0;
+  /** Priority of the requests for views which are bound but not attached yet, e.g. prefetched. */
+  private static final int PRIORITY_NEAR_VISIBLE = 1;
 
   private static final int FADE_TRANSITION_DURATION = 200;
 
+  private static final int BUFFER_SIZE = 1024 * 16;
+
   /**
    * Type of message sent by the UI thread to itself to indicate that some photos need to be loaded.
    */
@@ -105,6 +124,11 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
   private static final int BITMAP_CACHE_SIZE = 36864 * 48; // 1728K
   /** Height/width of a thumbnail image */
   private static int thumbnailSize;
+  /**
+   * Bitmap of each decoder thread which can be decoded into. Photos which aren't square are decoded
+   * and then cropped into a new bitmap, so the decoded one can be reused for the next photo.
+   */
+  private static final ThreadLocal<Bitmap> reusableBitmap = new ThreadLocal<>();
 
   static {
     BITMAP_UNAVAILABLE = new BitmapHolder(new byte[0], 0);
@@ -137,6 +161,40 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
   private final AtomicInteger staleCacheOverwrite = new AtomicInteger();
   /** For debug: How many times we had to reload cached photo for a fresh entry. Should be 0. */
   private final AtomicInteger freshCacheOverwrite = new AtomicInteger();
+  /**
+   * Pool decoding photos and loading photos from URIs, so that several of them are processed at
+   * once, in the order given by {@link PhotoTask}, while {@link LoaderThread} queries thumbnails.
+   */
+  private final ThreadPoolExecutor decodeExecutor;
+  /** Thumbnails kept across process restarts, checked before the contacts provider. */
+  private final ContactPhotoDiskCache diskCache;
+  /** Requests which have a {@link PhotoTask} queued or running. */
+  private final Set<Request> inFlightRequests = ConcurrentHashMap.newKeySet();
+  /** Raises the priority of the request of a view bound ahead of scrolling once it is attached. */
+  private final View.OnAttachStateChangeListener raisePriorityOnAttach =
+      new View.OnAttachStateChangeListener() {
+        @Override
+        public void onViewAttachedToWindow(View view) {
+          view.removeOnAttachStateChangeListener(this);
+          Request request = pendingRequests.get(view);
+          if (request != null && request.priority != PRIORITY_VISIBLE) {
+            request.priority = PRIORITY_VISIBLE;
+            requeuePhotoTask(request);
+          }
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View view) {}
+      };
+
+  private final AtomicInteger decoderThreadCount = new AtomicInteger();
+  private final AtomicLong photoTaskCount = new AtomicLong();
+  /** Number of photo tasks which ran, and the time they spent in the queue and running. */
+  private final AtomicInteger completedPhotoTasks = new AtomicInteger();
+  private final AtomicLong photoTaskQueueMillis = new AtomicLong();
+  private final AtomicLong photoTaskRunMillis = new AtomicLong();
+  /** Number of photo tasks dropped because their view was recycled before they ran. */
+  private final AtomicInteger cancelledPhotoTasks = new AtomicInteger();
   /** {@code true} if ALL entries in {@link #bitmapHolderCache} are NOT fresh. */
   private volatile boolean bitmapHolderCacheAllUnfresh = true;
   /** Thread responsible for loading photos from the database. Created upon the first request. */
@@ -200,6 +258,23 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
     thumbnailSize =
         context.getResources().getDimensionPixelSize(R.dimen.contact_browser_list_item_photo_size);
 
+    diskCache = ContactPhotoDiskCache.getInstance(context);
+    decodeExecutor =
+        new ThreadPoolExecutor(
+            DECODE_POOL_SIZE,
+            DECODE_POOL_SIZE,
+            DECODE_THREAD_TIMEOUT_SECONDS,
+            TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(),
+            runnable ->
+                new Thread(
+                    () -> {
+                      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                      runnable.run();
+                    },
+                    DECODER_THREAD_NAME + decoderThreadCount.incrementAndGet()));
+    decodeExecutor.allowCoreThreadTimeOut(true);
+
     // Get a user agent string to use for URI photo requests.
     userAgent = "";
   }
@@ -245,7 +320,9 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
     }
 
     try {
-      Bitmap bitmap = BitmapUtil.decodeBitmapFromBytes(bytes, sampleSize);
+      Bitmap decodedBitmap =
+          BitmapUtil.decodeBitmapFromBytes(bytes, sampleSize, reusableBitmap.get());
+      Bitmap bitmap = decodedBitmap;
 
       // TODO: As a temporary workaround while framework support is being added to
       // clip non-square bitmaps into a perfect circle, manually crop the bitmap into
@@ -261,6 +338,8 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
         final int dimension = Math.min(height, width);
         bitmap = ThumbnailUtils.extractThumbnail(bitmap, dimension, dimension);
       }
+      // The decoded bitmap can only be decoded into again if it doesn't end up in the caches.
+      reusableBitmap.set(bitmap != decodedBitmap ? decodedBitmap : null);
       // make bitmap mutable and draw size onto it
       if (DEBUG_SIZES) {
         Bitmap original = bitmap;
@@ -362,6 +441,23 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
               + btk(safeDiv(bitmapBytes, numBitmaps)));
       // We don't get from L2 cache, so L2 stats is meaningless.
     }
+
+    {
+      int completed = completedPhotoTasks.get();
+      LogUtil.d(
+          "ContactPhotoManagerImpl.dumpStats",
+          "Photo tasks: "
+              + completed
+              + " completed, "
+              + cancelledPhotoTasks.get()
+              + " cancelled, "
+              + decodeExecutor.getQueue().size()
+              + " queued, avg wait: "
+              + (completed == 0 ? 0 : photoTaskQueueMillis.get() / completed)
+              + "ms, avg run: "
+              + (completed == 0 ? 0 : photoTaskRunMillis.get() / completed)
+              + "ms");
+    }
   }
 
   @Override
@@ -460,6 +556,15 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
     if (loaded) {
       pendingRequests.remove(view);
     } else {
+      // Views which aren't attached yet are bound ahead of scrolling, they can wait until they
+      // are attached. Visibility can't tell them apart, as no view is shown yet when bound.
+      view.removeOnAttachStateChangeListener(raisePriorityOnAttach);
+      if (view.isAttachedToWindow()) {
+        request.priority = PRIORITY_VISIBLE;
+      } else {
+        request.priority = PRIORITY_NEAR_VISIBLE;
+        view.addOnAttachStateChangeListener(raisePriorityOnAttach);
+      }
       pendingRequests.put(view, request);
       if (!paused) {
         // Send a request to start loading photos
@@ -692,8 +797,11 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
     }
   }
 
-  /** Stores the supplied bitmap in cache. */
-  private void cacheBitmap(Object key, byte[] bytes, boolean preloading, int requestedExtent) {
+  /**
+   * Stores the supplied bitmap in cache. It is decoded later by a {@link PhotoTask}, unless it is
+   * only being preloaded.
+   */
+  private BitmapHolder cacheBitmap(Object key, byte[] bytes) {
     if (DEBUG) {
       BitmapHolder prev = bitmapHolderCache.get(key);
       if (prev != null && prev.bytes != null) {
@@ -713,36 +821,29 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
     BitmapHolder holder =
         new BitmapHolder(bytes, bytes == null ? -1 : BitmapUtil.getSmallerExtentFromBytes(bytes));
 
-    // Unless this image is being preloaded, decode it right away while
-    // we are still on the background thread.
-    if (!preloading) {
-      inflateBitmap(holder, requestedExtent);
-    }
-
     if (bytes != null) {
       bitmapHolderCache.put(key, holder);
       if (bitmapHolderCache.get(key) != holder) {
         LogUtil.w("ContactPhotoManagerImpl.cacheBitmap", "bitmap too big to fit in cache.");
-        bitmapHolderCache.put(key, BITMAP_UNAVAILABLE);
+        holder = BITMAP_UNAVAILABLE;
+        bitmapHolderCache.put(key, holder);
       }
     } else {
-      bitmapHolderCache.put(key, BITMAP_UNAVAILABLE);
+      holder = BITMAP_UNAVAILABLE;
+      bitmapHolderCache.put(key, holder);
     }
 
     bitmapHolderCacheAllUnfresh = false;
+    return holder;
   }
 
   /**
-   * Populates an array of photo IDs that need to be loaded. Also decodes bitmaps that we have
-   * already loaded
+   * Populates an array of photo IDs that need to be loaded. Also schedules the decoding of bitmaps
+   * that we have already loaded, and the loading of photos from URIs.
    */
-  private void obtainPhotoIdsAndUrisToLoad(
-      Set<Long> photoIds, Set<String> photoIdsAsStrings, Set<Request> uris) {
+  private void obtainPhotoIdsToLoad(Set<Long> photoIds, Set<String> photoIdsAsStrings) {
     photoIds.clear();
     photoIdsAsStrings.clear();
-    uris.clear();
-
-    boolean jpegsDecoded = false;
 
     /*
      * Since the call is made from the loader thread, the map could be
@@ -759,17 +860,14 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
       if (holder == BITMAP_UNAVAILABLE) {
         continue;
       }
-      if (holder != null
-          && holder.bytes != null
-          && holder.fresh
-          && (holder.bitmapRef == null || holder.bitmapRef.get() == null)) {
+      if (needsInflating(holder)) {
         // This was previously loaded but we don't currently have the inflated Bitmap
-        inflateBitmap(holder, request.getRequestedExtent());
-        jpegsDecoded = true;
+        submitPhotoTask(request);
       } else {
         if (holder == null || !holder.fresh) {
-          if (request.isUriRequest()) {
-            uris.add(request);
+          if (request.isUriRequest()
+              || diskCache.contains(request.getKey(), request.getRequestedExtent())) {
+            submitPhotoTask(request);
           } else {
             photoIds.add(request.getId());
             photoIdsAsStrings.add(String.valueOf(request.id));
@@ -777,9 +875,181 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
         }
       }
     }
+  }
 
-    if (jpegsDecoded) {
-      mainThreadHandler.sendEmptyMessage(MESSAGE_PHOTOS_LOADED);
+  /** Schedules the decoding of the photos which were loaded for pending requests. */
+  private void submitDecodingOfLoadedPhotos() {
+    for (Request request : pendingRequests.values()) {
+      if (needsInflating(bitmapHolderCache.get(request.getKey()))) {
+        submitPhotoTask(request);
+      }
+    }
+  }
+
+  private static boolean needsInflating(BitmapHolder holder) {
+    return holder != null
+        && holder.bytes != null
+        && holder.fresh
+        && (holder.bitmapRef == null || holder.bitmapRef.get() == null);
+  }
+
+  private void submitPhotoTask(Request request) {
+    if (inFlightRequests.add(request)) {
+      decodeExecutor.execute(new PhotoTask(request, photoTaskCount.incrementAndGet()));
+    }
+  }
+
+  /** Queues the task of {@code request} again if it is still queued, to apply its new priority. */
+  @UiThread
+  private void requeuePhotoTask(Request request) {
+    for (Runnable runnable : decodeExecutor.getQueue()) {
+      PhotoTask task = (PhotoTask) runnable;
+      if (task.request == request) {
+        if (decodeExecutor.remove(task)) {
+          decodeExecutor.execute(new PhotoTask(request, photoTaskCount.incrementAndGet()));
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Loads the photo of a request from the disk cache or its URI, if needed, and decodes it. Tasks
+   * run in the order of the priority of their request, and the most recent request first for equal
+   * priorities, as a fast scroll makes the latest ones the most likely to still be on screen.
+   */
+  private final class PhotoTask implements Runnable, Comparable<PhotoTask> {
+
+    private final Request request;
+    /** Priority of the request when the task was queued, which must not change while queued. */
+    private final int priority;
+    private final long sequence;
+    private final long enqueueTimeMillis = SystemClock.elapsedRealtime();
+
+    PhotoTask(Request request, long sequence) {
+      this.request = request;
+      this.priority = request.priority;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(PhotoTask other) {
+      if (priority != other.priority) {
+        return Integer.compare(priority, other.priority);
+      }
+      return Long.compare(other.sequence, sequence);
+    }
+
+    @WorkerThread
+    @Override
+    public void run() {
+      long startTimeMillis = SystemClock.elapsedRealtime();
+      try {
+        if (!pendingRequests.containsValue(request)) {
+          // The view was recycled or bound to another photo since the task was queued.
+          cancelledPhotoTasks.incrementAndGet();
+          return;
+        }
+        Object key = request.getKey();
+        int extent = request.getRequestedExtent();
+        BitmapHolder holder = bitmapHolderCache.get(key);
+        if (holder == null || !holder.fresh) {
+          byte[] cachedBytes = diskCache.get(key, extent);
+          if (cachedBytes != null) {
+            holder = cacheBitmap(key, cachedBytes);
+          } else if (request.isUriRequest()) {
+            holder = loadUriBasedPhoto(request);
+          }
+          // Otherwise the thumbnail was evicted from the disk cache after the request was
+          // scheduled, and will be queried by the loader thread once this task completes.
+        }
+        if (holder != null && holder != BITMAP_UNAVAILABLE) {
+          Bitmap bitmap;
+          synchronized (holder) {
+            inflateBitmap(holder, extent);
+            bitmap = holder.bitmap;
+          }
+          if (bitmap != null && !diskCache.contains(key, extent)) {
+            if (extent <= 0 || holder.originalSmallerExtent <= extent) {
+              diskCache.put(key, extent, holder.bytes);
+            } else {
+              diskCache.put(key, extent, bitmap);
+            }
+          }
+        }
+
+        completedPhotoTasks.incrementAndGet();
+        photoTaskQueueMillis.addAndGet(startTimeMillis - enqueueTimeMillis);
+        photoTaskRunMillis.addAndGet(SystemClock.elapsedRealtime() - startTimeMillis);
+      } finally {
+        inFlightRequests.remove(request);
+        mainThreadHandler.sendEmptyMessage(MESSAGE_PHOTOS_LOADED);
+      }
+    }
+  }
+
+  /**
+   * Loads a photo referenced with a Uri. Those can be remote thumbnails (from directory searches),
+   * display photos etc
+   */
+  @WorkerThread
+  private BitmapHolder loadUriBasedPhoto(Request uriRequest) {
+    // Keep the original URI and use this to key into the cache.  Failure to do so will
+    // result in an image being continually reloaded into cache if the original URI
+    // has a contact type encodedFragment (eg nearby places business photo URLs).
+    Uri originalUri = uriRequest.getUri();
+
+    // Strip off the "contact type" we added to the URI to ensure it was identifiable as
+    // a business photo -- there is no need to pass this on to the server.
+    Uri uri = ContactPhotoManager.removeContactType(originalUri);
+
+    try {
+      if (DEBUG) {
+        LogUtil.d("ContactPhotoManagerImpl.loadUriBasedPhoto", "loading " + uri);
+      }
+      final String scheme = uri.getScheme();
+      InputStream is = null;
+      if (scheme.equals("http") || scheme.equals("https")) {
+        TrafficStats.setThreadStatsTag(TrafficStatsTags.CONTACT_PHOTO_DOWNLOAD_TAG);
+        try {
+          final HttpURLConnection connection =
+              (HttpURLConnection) new URL(uri.toString()).openConnection();
+
+          // Include the user agent if it is specified.
+          if (!TextUtils.isEmpty(userAgent)) {
+            connection.setRequestProperty("User-Agent", userAgent);
+          }
+          try {
+            is = connection.getInputStream();
+          } catch (IOException e) {
+            connection.disconnect();
+            is = null;
+          }
+        } finally {
+          TrafficStats.clearThreadStatsTag();
+        }
+      } else {
+        is = context.getContentResolver().openInputStream(uri);
+      }
+      if (is != null) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try {
+          int size;
+          while ((size = is.read(buffer)) != -1) {
+            baos.write(buffer, 0, size);
+          }
+        } finally {
+          is.close();
+        }
+        return cacheBitmap(originalUri, baos.toByteArray());
+      } else {
+        LogUtil.v("ContactPhotoManagerImpl.loadUriBasedPhoto", "cannot load photo " + uri);
+        return cacheBitmap(originalUri, null);
+      }
+    } catch (final Exception | OutOfMemoryError ex) {
+      LogUtil.v("ContactPhotoManagerImpl.loadUriBasedPhoto", "cannot load photo " + uri, ex);
+      return cacheBitmap(originalUri, null);
     }
   }
 
@@ -814,6 +1084,11 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
     private final DefaultImageProvider defaultProvider;
     /** Whether or not the contact photo is to be displayed as a circle */
     private final boolean isCircular;
+    /**
+     * Order in which the request is processed, lowest first. Not part of equality, as it only
+     * depends on the view which made the request.
+     */
+    private volatile int priority = PRIORITY_VISIBLE;
 
     private Request(
         long id,
@@ -932,7 +1207,6 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
   /** The thread that performs loading of photos from the database. */
   private class LoaderThread extends HandlerThread implements Callback {
 
-    private static final int BUFFER_SIZE = 1024 * 16;
     private static final int MESSAGE_PRELOAD_PHOTOS = 0;
     private static final int MESSAGE_LOAD_PHOTOS = 1;
 
@@ -955,10 +1229,8 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
     private final StringBuilder stringBuilder = new StringBuilder();
     private final Set<Long> photoIds = new HashSet<>();
     private final Set<String> photoIdsAsStrings = new HashSet<>();
-    private final Set<Request> photoUris = new HashSet<>();
     private final List<Long> preloadPhotoIds = new ArrayList<>();
     private Handler loaderThreadHandler;
-    private byte[] buffer;
     private int preloadStatus = PRELOAD_STATUS_NOT_STARTED;
 
     public LoaderThread(ContentResolver resolver) {
@@ -1115,9 +1387,8 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
       if (!PermissionsUtil.hasPermission(context, android.Manifest.permission.READ_CONTACTS)) {
         return;
       }
-      obtainPhotoIdsAndUrisToLoad(photoIds, photoIdsAsStrings, photoUris);
+      obtainPhotoIdsToLoad(photoIds, photoIdsAsStrings);
       loadThumbnails(false);
-      loadUriBasedPhotos();
       requestPreloading();
     }
 
@@ -1168,7 +1439,7 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
           while (cursor.moveToNext()) {
             Long id = cursor.getLong(0);
             byte[] bytes = cursor.getBlob(1);
-            cacheBitmap(id, bytes, preloading, -1);
+            cacheBitmap(id, bytes);
             photoIds.remove(id);
           }
         }
@@ -1187,10 +1458,10 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
                 resolver.query(
                     ContentUris.withAppendedId(Data.CONTENT_URI, id), COLUMNS, null, null, null);
             if (profileCursor != null && profileCursor.moveToFirst()) {
-              cacheBitmap(profileCursor.getLong(0), profileCursor.getBlob(1), preloading, -1);
+              cacheBitmap(profileCursor.getLong(0), profileCursor.getBlob(1));
             } else {
               // Couldn't load a photo this way either.
-              cacheBitmap(id, null, preloading, -1);
+              cacheBitmap(id, null);
             }
           } finally {
             if (profileCursor != null) {
@@ -1199,81 +1470,14 @@ class ContactPhotoManagerImpl extends ContactPhotoManager implements Callback {
           }
         } else {
           // Not a profile photo and not found - mark the cache accordingly
-          cacheBitmap(id, null, preloading, -1);
+          cacheBitmap(id, null);
         }
       }
 
-      mainThreadHandler.sendEmptyMessage(MESSAGE_PHOTOS_LOADED);
-    }
-
-    /**
-     * Loads photos referenced with Uris. Those can be remote thumbnails (from directory searches),
-     * display photos etc
-     */
-    @WorkerThread
-    private void loadUriBasedPhotos() {
-      for (Request uriRequest : photoUris) {
-        // Keep the original URI and use this to key into the cache.  Failure to do so will
-        // result in an image being continually reloaded into cache if the original URI
-        // has a contact type encodedFragment (eg nearby places business photo URLs).
-        Uri originalUri = uriRequest.getUri();
-
-        // Strip off the "contact type" we added to the URI to ensure it was identifiable as
-        // a business photo -- there is no need to pass this on to the server.
-        Uri uri = ContactPhotoManager.removeContactType(originalUri);
-
-        if (buffer == null) {
-          buffer = new byte[BUFFER_SIZE];
-        }
-        try {
-          if (DEBUG) {
-            LogUtil.d("ContactPhotoManagerImpl.loadUriBasedPhotos", "loading " + uri);
-          }
-          final String scheme = uri.getScheme();
-          InputStream is = null;
-          if (scheme.equals("http") || scheme.equals("https")) {
-            TrafficStats.setThreadStatsTag(TrafficStatsTags.CONTACT_PHOTO_DOWNLOAD_TAG);
-            try {
-              final HttpURLConnection connection =
-                  (HttpURLConnection) new URL(uri.toString()).openConnection();
-
-              // Include the user agent if it is specified.
-              if (!TextUtils.isEmpty(userAgent)) {
-                connection.setRequestProperty("User-Agent", userAgent);
-              }
-              try {
-                is = connection.getInputStream();
-              } catch (IOException e) {
-                connection.disconnect();
-                is = null;
-              }
-            } finally {
-              TrafficStats.clearThreadStatsTag();
-            }
-          } else {
-            is = resolver.openInputStream(uri);
-          }
-          if (is != null) {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try {
-              int size;
-              while ((size = is.read(buffer)) != -1) {
-                baos.write(buffer, 0, size);
-              }
-            } finally {
-              is.close();
-            }
-            cacheBitmap(originalUri, baos.toByteArray(), false, uriRequest.getRequestedExtent());
-            mainThreadHandler.sendEmptyMessage(MESSAGE_PHOTOS_LOADED);
-          } else {
-            LogUtil.v("ContactPhotoManagerImpl.loadUriBasedPhotos", "cannot load photo " + uri);
-            cacheBitmap(originalUri, null, false, uriRequest.getRequestedExtent());
-          }
-        } catch (final Exception | OutOfMemoryError ex) {
-          LogUtil.v("ContactPhotoManagerImpl.loadUriBasedPhotos", "cannot load photo " + uri, ex);
-          cacheBitmap(originalUri, null, false, uriRequest.getRequestedExtent());
-        }
+      if (!preloading) {
+        submitDecodingOfLoadedPhotos();
       }
+      mainThreadHandler.sendEmptyMessage(MESSAGE_PHOTOS_LOADED);
     }
   }
 }
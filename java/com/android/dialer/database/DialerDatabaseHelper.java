@@ -32,6 +32,7 @@ import android.provider.ContactsContract.CommonDataKinds.Phone;
 import android.provider.ContactsContract.Contacts;
 import android.provider.ContactsContract.Data;
 import android.provider.ContactsContract.Directory;
+import android.support.v4.util.SimpleArrayMap;
 import android.text.TextUtils;
 
 import androidx.annotation.WorkerThread;
@@ -42,6 +43,7 @@ import com.android.dialer.common.concurrent.DialerExecutorComponent;
 import com.android.dialer.common.concurrent.DialerFutureSerializer;
 import com.android.dialer.common.database.Selection;
 import com.android.dialer.contacts.resources.R;
+import com.android.dialer.dialpadview.DialpadCharMappings;
 import com.android.dialer.smartdial.util.SmartDialNameMatcher;
 import com.android.dialer.smartdial.util.SmartDialPrefix;
 import com.android.dialer.util.PermissionsUtil;
@@ -84,6 +86,18 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
   private final Context context;
   private final DialerFutureSerializer dialerFutureSerializer = new DialerFutureSerializer();
 
+  /**
+   * In-memory copy of the smart dial tables used to answer {@link #getLooseMatches}. Loaded lazily
+   * from the database and replaced after every {@link #updateSmartDialDatabase(boolean)}.
+   */
+  private volatile SmartDialIndex smartDialIndex;
+
+  /** Incremental search over {@link #smartDialIndex}, guarded by {@link #getLooseMatches}. */
+  private SmartDialSearchSession searchSession;
+
+  /** Set when the dialpad closes, so that the next search starts a new session. */
+  private volatile boolean searchSessionEnded;
+
   protected DialerDatabaseHelper(Context context, String databaseName, int dbVersion) {
     super(context, databaseName, null, dbVersion);
     this.context = Objects.requireNonNull(context, "Context must not be null");
@@ -161,6 +175,7 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
 
     setProperty(db, DATABASE_VERSION_PROPERTY, String.valueOf(DATABASE_VERSION));
     resetSmartDialLastUpdatedTime();
+    smartDialIndex = null;
   }
 
   public void dropTables(SQLiteDatabase db) {
@@ -340,8 +355,10 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
    * @param db Database to operate on.
    * @param lastUpdatedTimeMillis the last time at which an update to the smart dial database was
    *     run.
+   * @param changedContactIds Receives the ids of the contacts whose rows were removed.
    */
-  private void removeDeletedContacts(SQLiteDatabase db, String lastUpdatedTimeMillis) {
+  private void removeDeletedContacts(
+      SQLiteDatabase db, String lastUpdatedTimeMillis, Set<Long> changedContactIds) {
     Cursor deletedContactCursor = getDeletedContactCursor(lastUpdatedTimeMillis);
 
     if (deletedContactCursor == null) {
@@ -366,17 +383,22 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
 
         Selection smartDialSelection =
             Selection.column(SmartDialDbColumns.CONTACT_ID).is("=", deleteContactId);
-        db.delete(
-            Tables.SMARTDIAL_TABLE,
-            smartDialSelection.getSelection(),
-            smartDialSelection.getSelectionArgs());
+        int removedRows =
+            db.delete(
+                Tables.SMARTDIAL_TABLE,
+                smartDialSelection.getSelection(),
+                smartDialSelection.getSelectionArgs());
 
         Selection prefixSelection =
             Selection.column(PrefixColumns.CONTACT_ID).is("=", deleteContactId);
-        db.delete(
-            Tables.PREFIX_TABLE,
-            prefixSelection.getSelection(),
-            prefixSelection.getSelectionArgs());
+        removedRows +=
+            db.delete(
+                Tables.PREFIX_TABLE,
+                prefixSelection.getSelection(),
+                prefixSelection.getSelectionArgs());
+        if (removedRows > 0) {
+          changedContactIds.add(deleteContactId);
+        }
       } while (deletedContactCursor.moveToNext());
 
       db.setTransactionSuccessful();
@@ -404,26 +426,30 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
    *
    * @param db Database pointer to the dialer database.
    * @param last_update_time Time stamp of last successful update of the dialer database.
+   * @return The number of rows removed.
    */
-  private void removePotentiallyCorruptedContacts(SQLiteDatabase db, String last_update_time) {
-    db.delete(
-        Tables.PREFIX_TABLE,
-        PrefixColumns.CONTACT_ID
-            + " IN "
-            + "(SELECT "
-            + SmartDialDbColumns.CONTACT_ID
-            + " FROM "
-            + Tables.SMARTDIAL_TABLE
-            + " WHERE "
-            + SmartDialDbColumns.LAST_SMARTDIAL_UPDATE_TIME
-            + " > "
-            + last_update_time
-            + ")",
-        null);
-    db.delete(
-        Tables.SMARTDIAL_TABLE,
-        SmartDialDbColumns.LAST_SMARTDIAL_UPDATE_TIME + " > " + last_update_time,
-        null);
+  private int removePotentiallyCorruptedContacts(SQLiteDatabase db, String last_update_time) {
+    int removedRows =
+        db.delete(
+            Tables.PREFIX_TABLE,
+            PrefixColumns.CONTACT_ID
+                + " IN "
+                + "(SELECT "
+                + SmartDialDbColumns.CONTACT_ID
+                + " FROM "
+                + Tables.SMARTDIAL_TABLE
+                + " WHERE "
+                + SmartDialDbColumns.LAST_SMARTDIAL_UPDATE_TIME
+                + " > "
+                + last_update_time
+                + ")",
+            null);
+    removedRows +=
+        db.delete(
+            Tables.SMARTDIAL_TABLE,
+            SmartDialDbColumns.LAST_SMARTDIAL_UPDATE_TIME + " > " + last_update_time,
+            null);
+    return removedRows;
   }
 
   /**
@@ -431,8 +457,10 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
    *
    * @param db Database pointer to the smartdial database
    * @param updatedContactCursor Cursor pointing to the list of recently updated contacts.
+   * @param changedContactIds Receives the ids of the contacts whose rows were removed.
    */
-  private void removeUpdatedContacts(SQLiteDatabase db, Cursor updatedContactCursor) {
+  private void removeUpdatedContacts(
+      SQLiteDatabase db, Cursor updatedContactCursor, Set<Long> changedContactIds) {
     db.beginTransaction();
     try {
       updatedContactCursor.moveToPosition(-1);
@@ -446,8 +474,14 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
 
         final Long contactId = updatedContactCursor.getLong(UpdatedContactQuery.UPDATED_CONTACT_ID);
 
-        db.delete(Tables.SMARTDIAL_TABLE, SmartDialDbColumns.CONTACT_ID + "=" + contactId, null);
-        db.delete(Tables.PREFIX_TABLE, PrefixColumns.CONTACT_ID + "=" + contactId, null);
+        int removedRows =
+            db.delete(
+                Tables.SMARTDIAL_TABLE, SmartDialDbColumns.CONTACT_ID + "=" + contactId, null);
+        removedRows +=
+            db.delete(Tables.PREFIX_TABLE, PrefixColumns.CONTACT_ID + "=" + contactId, null);
+        if (removedRows > 0) {
+          changedContactIds.add(contactId);
+        }
       }
 
       db.setTransactionSuccessful();
@@ -462,9 +496,13 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
    * @param db Database pointer to the smartdial database.
    * @param updatedContactCursor Cursor pointing to the list of recently updated contacts.
    * @param currentMillis Current time to be recorded in the smartdial table as update timestamp.
+   * @param changedContactIds Receives the ids of the contacts whose phone numbers were inserted.
    */
   private void insertUpdatedContactsAndNumberPrefix(
-      SQLiteDatabase db, Cursor updatedContactCursor, Long currentMillis) {
+      SQLiteDatabase db,
+      Cursor updatedContactCursor,
+      Long currentMillis,
+      Set<Long> changedContactIds) {
     db.beginTransaction();
     try {
       final String sqlInsert =
@@ -559,6 +597,7 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
         insert.bindLong(13, updatedContactCursor.getInt(PhoneQuery.PHONE_CARRIER_PRESENCE));
         insert.bindLong(14, currentMillis);
         insert.executeInsert();
+        changedContactIds.add(updatedContactCursor.getLong(PhoneQuery.PHONE_CONTACT_ID));
         final String contactPhoneNumber = updatedContactCursor.getString(PhoneQuery.PHONE_NUMBER);
         final ArrayList<String> numberPrefixes =
             SmartDialPrefix.parseToNumberTokens(context, contactPhoneNumber);
@@ -658,8 +697,11 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
     final Long currentMillis = System.currentTimeMillis();
 
     /** Removes contacts that have been deleted. */
-    removeDeletedContacts(db, lastUpdateMillis);
-    removePotentiallyCorruptedContacts(db, lastUpdateMillis);
+    final Set<Long> changedContactIds = new HashSet<>();
+    removeDeletedContacts(db, lastUpdateMillis, changedContactIds);
+    /** Which contacts the corrupted rows belonged to is unknown, so they require a full reload. */
+    final boolean removedCorruptedContacts =
+        removePotentiallyCorruptedContacts(db, lastUpdateMillis) > 0;
 
     /**
      * If the database did not exist before, jump through deletion as there is nothing to delete.
@@ -687,7 +729,7 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
         return;
       }
       try {
-        removeUpdatedContacts(db, updatedContactCursor);
+        removeUpdatedContacts(db, updatedContactCursor, changedContactIds);
       } finally {
         updatedContactCursor.close();
       }
@@ -715,35 +757,39 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
 
     try {
       /** Inserts recently updated phone numbers to the smartdial database. */
-      insertUpdatedContactsAndNumberPrefix(db, updatedPhoneCursor, currentMillis);
+      insertUpdatedContactsAndNumberPrefix(
+          db, updatedPhoneCursor, currentMillis, changedContactIds);
     } finally {
       updatedPhoneCursor.close();
     }
 
-    /**
-     * Gets a list of distinct contacts which have been updated, and adds the name prefixes of these
-     * contacts to the prefix table.
-     */
-    final Cursor nameCursor =
-        db.rawQuery(
-            "SELECT DISTINCT "
-                + SmartDialDbColumns.DISPLAY_NAME_PRIMARY
-                + ", "
-                + SmartDialDbColumns.CONTACT_ID
-                + " FROM "
-                + Tables.SMARTDIAL_TABLE
-                + " WHERE "
-                + SmartDialDbColumns.LAST_SMARTDIAL_UPDATE_TIME
-                + " = "
-                + currentMillis,
-            new String[] {});
-    if (nameCursor != null) {
-      try {
+    /** Only rebuilds the name prefixes if contacts changed, as no rows were updated otherwise. */
+    if (!changedContactIds.isEmpty()) {
+      /**
+       * Gets a list of distinct contacts which have been updated, and adds the name prefixes of
+       * these contacts to the prefix table.
+       */
+      final Cursor nameCursor =
+          db.rawQuery(
+              "SELECT DISTINCT "
+                  + SmartDialDbColumns.DISPLAY_NAME_PRIMARY
+                  + ", "
+                  + SmartDialDbColumns.CONTACT_ID
+                  + " FROM "
+                  + Tables.SMARTDIAL_TABLE
+                  + " WHERE "
+                  + SmartDialDbColumns.LAST_SMARTDIAL_UPDATE_TIME
+                  + " = "
+                  + currentMillis,
+              new String[] {});
+      if (nameCursor != null) {
+        try {
 
-        /** Inserts prefixes of names into the prefix table. */
-        insertNamePrefixes(db, nameCursor);
-      } finally {
-        nameCursor.close();
+          /** Inserts prefixes of names into the prefix table. */
+          insertNamePrefixes(db, nameCursor);
+        } finally {
+          nameCursor.close();
+        }
       }
     }
 
@@ -809,6 +855,23 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
     editor.putLong(LAST_UPDATED_MILLIS, currentMillis);
     editor.apply();
 
+    /**
+     * The main activity calls this on every resume, which is usually a no-op. Keep the loaded
+     * index in that case, and only read the changed contacts back into it when a few contacts
+     * changed. Otherwise replace it with the contents of the database, which also warms the index
+     * after a cold start, so that the first search does not have to load it.
+     */
+    final SmartDialIndex index = smartDialIndex;
+    if (index == null || removedCorruptedContacts) {
+      smartDialIndex = SmartDialIndex.load(db);
+    } else if (changedContactIds.isEmpty()) {
+      LogUtil.i("DialerDatabaseHelper.updateSmartDialDatabase", "no changes since last update");
+    } else {
+      smartDialIndex = SmartDialIndex.update(db, index, changedContactIds);
+    }
+    // Recently used numbers may be ranked differently now, even if no contact changed.
+    endSmartDialSearchSession();
+
     LogUtil.i("DialerDatabaseHelper.updateSmartDialDatabase", "broadcasting smart dial update");
 
     // Notify content observers that smart dial database has been updated.
@@ -827,110 +890,46 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
   @WorkerThread
   public synchronized ArrayList<ContactNumber> getLooseMatches(
       String query, SmartDialNameMatcher nameMatcher) {
-    final SQLiteDatabase db = getReadableDatabase();
-
-    /** Uses SQL query wildcard '%' to represent prefix matching. */
-    final String looseQuery = query + "%";
-
-    final ArrayList<ContactNumber> result = new ArrayList<>();
-
-    final String currentTimeStamp = Long.toString(System.currentTimeMillis());
-
-    /** Queries the database to find contacts that have an index matching the query prefix. */
-    final Cursor cursor =
-        db.rawQuery(
-            "SELECT "
-                + SmartDialDbColumns.DATA_ID
-                + ", "
-                + SmartDialDbColumns.DISPLAY_NAME_PRIMARY
-                + ", "
-                + SmartDialDbColumns.PHOTO_ID
-                + ", "
-                + SmartDialDbColumns.NUMBER
-                + ", "
-                + SmartDialDbColumns.CONTACT_ID
-                + ", "
-                + SmartDialDbColumns.LOOKUP_KEY
-                + ", "
-                + SmartDialDbColumns.CARRIER_PRESENCE
-                + " FROM "
-                + Tables.SMARTDIAL_TABLE
-                + " WHERE "
-                + SmartDialDbColumns.CONTACT_ID
-                + " IN "
-                + " (SELECT "
-                + PrefixColumns.CONTACT_ID
-                + " FROM "
-                + Tables.PREFIX_TABLE
-                + " WHERE "
-                + Tables.PREFIX_TABLE
-                + "."
-                + PrefixColumns.PREFIX
-                + " LIKE '"
-                + looseQuery
-                + "')"
-                + " ORDER BY "
-                + SmartDialSortingOrder.SORT_ORDER,
-            new String[] {currentTimeStamp});
-    if (cursor == null) {
-      return result;
+    /**
+     * Reuses the candidates of the previous keystroke if the query extends or shortens the last
+     * one, and starts a new session whenever the index has been reloaded, the language of the
+     * names has changed or the dialpad has been closed.
+     */
+    final SmartDialIndex index = getSmartDialIndex();
+    final SimpleArrayMap<Character, Character> charToKeyMap =
+        DialpadCharMappings.getCharToKeyMap(context);
+    if (searchSessionEnded || searchSession == null || !searchSession.isFor(index, charToKeyMap)) {
+      searchSessionEnded = false;
+      searchSession = new SmartDialSearchSession(index, charToKeyMap);
     }
-    try {
-      /** Gets the column ID from the cursor. */
-      final int columnDataId = 0;
-      final int columnDisplayNamePrimary = 1;
-      final int columnPhotoId = 2;
-      final int columnNumber = 3;
-      final int columnId = 4;
-      final int columnLookupKey = 5;
-      final int columnCarrierPresence = 6;
-
-      final Set<ContactMatch> duplicates = new HashSet<>();
-      int counter = 0;
-      /** Iterates the cursor to find top contact suggestions without duplication. */
-      while ((cursor.moveToNext()) && (counter < MAX_ENTRIES)) {
-        if (cursor.isNull(columnDataId)) {
-          LogUtil.i(
-              "DialerDatabaseHelper.getLooseMatches",
-              "_id column null. Row was deleted during iteration, skipping");
-          continue;
-        }
-        final long dataID = cursor.getLong(columnDataId);
-        final String displayName = cursor.getString(columnDisplayNamePrimary);
-        final String phoneNumber = cursor.getString(columnNumber);
-        final long id = cursor.getLong(columnId);
-        final long photoId = cursor.getLong(columnPhotoId);
-        final String lookupKey = cursor.getString(columnLookupKey);
-        final int carrierPresence = cursor.getInt(columnCarrierPresence);
-
-        /**
-         * If a contact already exists and another phone number of the contact is being processed,
-         * skip the second instance.
-         */
-        final ContactMatch contactMatch = new ContactMatch(lookupKey, id);
-        if (duplicates.contains(contactMatch)) {
-          continue;
-        }
+    return searchSession.search(context, query, nameMatcher, MAX_ENTRIES);
+  }
 
-        /**
-         * If the contact has either the name or number that matches the query, add to the result.
-         */
-        final boolean nameMatches = nameMatcher.matches(context, displayName);
-        final boolean numberMatches =
-            (nameMatcher.matchesNumber(context, phoneNumber, query) != null);
-        if (nameMatches || numberMatches) {
-          /** If a contact has not been added, add it to the result and the hash set. */
-          duplicates.add(contactMatch);
-          result.add(
-              new ContactNumber(
-                  id, dataID, displayName, phoneNumber, lookupKey, photoId, carrierPresence));
-          counter++;
-        }
+  /**
+   * Drops the results cached for the queries typed so far, e.g. when the dialpad is closed. Does
+   * not wait for a running search.
+   */
+  public void endSmartDialSearchSession() {
+    searchSessionEnded = true;
+  }
+
+  /**
+   * Returns the in-memory smart dial index, loading it from the database if this is the first
+   * query since the process started.
+   */
+  @WorkerThread
+  private SmartDialIndex getSmartDialIndex() {
+    SmartDialIndex index = smartDialIndex;
+    if (index == null) {
+      try {
+        index = SmartDialIndex.load(getReadableDatabase());
+      } catch (SQLiteException e) {
+        LogUtil.e("DialerDatabaseHelper.getSmartDialIndex", "failed to load index", e);
+        return SmartDialIndex.empty();
       }
-    } finally {
-      cursor.close();
+      smartDialIndex = index;
     }
-    return result;
+    return index;
   }
 
   public interface Tables {
@@ -1074,73 +1073,22 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
   }
 
   /**
-   * Gets the sorting order for the smartdial table. This computes a SQL "ORDER BY" argument by
-   * composing contact status and recent contact details together.
+   * Sorting order for smart dial suggestions, composing contact status and recent contact details
+   * together. Rows are ordered by starred, is super primary, data usage, times used, in visible
+   * group, display name, contact id and is primary. This is similar to the order used by the
+   * ContactsProvider when returning a list of frequently called contacts, and is applied in memory
+   * by {@link SmartDialIndex}.
+   *
+   * <p>Contacts that have been used in the past 3 days rank higher than contacts that have been
+   * used in the past 30 days, which rank higher than contacts that have not been used in recent 30
+   * days.
    */
-  private interface SmartDialSortingOrder {
+  interface SmartDialSortingOrder {
 
     /** Current contacts - those contacted within the last 3 days (in milliseconds) */
     long LAST_TIME_USED_CURRENT_MS = 3L * 24 * 60 * 60 * 1000;
     /** Recent contacts - those contacted within the last 30 days (in milliseconds) */
     long LAST_TIME_USED_RECENT_MS = 30L * 24 * 60 * 60 * 1000;
-
-    /** Time since last contact. */
-    String TIME_SINCE_LAST_USED_MS =
-        "( ?1 - " + Tables.SMARTDIAL_TABLE + "." + SmartDialDbColumns.LAST_TIME_USED + ")";
-
-    /**
-     * Contacts that have been used in the past 3 days rank higher than contacts that have been used
-     * in the past 30 days, which rank higher than contacts that have not been used in recent 30
-     * days.
-     */
-    String SORT_BY_DATA_USAGE =
-        "(CASE WHEN "
-            + TIME_SINCE_LAST_USED_MS
-            + " < "
-            + LAST_TIME_USED_CURRENT_MS
-            + " THEN 0 "
-            + " WHEN "
-            + TIME_SINCE_LAST_USED_MS
-            + " < "
-            + LAST_TIME_USED_RECENT_MS
-            + " THEN 1 "
-            + " ELSE 2 END)";
-
-    /**
-     * This sort order is similar to that used by the ContactsProvider when returning a list of
-     * frequently called contacts.
-     */
-    String SORT_ORDER =
-        Tables.SMARTDIAL_TABLE
-            + "."
-            + SmartDialDbColumns.STARRED
-            + " DESC, "
-            + Tables.SMARTDIAL_TABLE
-            + "."
-            + SmartDialDbColumns.IS_SUPER_PRIMARY
-            + " DESC, "
-            + SORT_BY_DATA_USAGE
-            + ", "
-            + Tables.SMARTDIAL_TABLE
-            + "."
-            + SmartDialDbColumns.TIMES_USED
-            + " DESC, "
-            + Tables.SMARTDIAL_TABLE
-            + "."
-            + SmartDialDbColumns.IN_VISIBLE_GROUP
-            + " DESC, "
-            + Tables.SMARTDIAL_TABLE
-            + "."
-            + SmartDialDbColumns.DISPLAY_NAME_PRIMARY
-            + ", "
-            + Tables.SMARTDIAL_TABLE
-            + "."
-            + SmartDialDbColumns.CONTACT_ID
-            + ", "
-            + Tables.SMARTDIAL_TABLE
-            + "."
-            + SmartDialDbColumns.IS_PRIMARY
-            + " DESC";
   }
 
   /**
@@ -1200,7 +1148,7 @@ public class DialerDatabaseHelper extends SQLiteOpenHelper {
   }
 
   /** Data format for finding duplicated contacts. */
-  private static class ContactMatch {
+  static class ContactMatch {
 
     private final String lookupKey;
     private final long id;
@@ -0,0 +1,756 @@
+/*
+ * SPDX-FileCopyrightText: The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.android.dialer.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.dialer.common.LogUtil;
+import com.android.dialer.database.DialerDatabaseHelper.ContactNumber;
+import com.android.dialer.database.DialerDatabaseHelper.PrefixColumns;
+import com.android.dialer.database.DialerDatabaseHelper.SmartDialDbColumns;
+import com.android.dialer.database.DialerDatabaseHelper.SmartDialSortingOrder;
+import com.android.dialer.database.DialerDatabaseHelper.Tables;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable in-memory snapshot of the smart dial tables.
+ *
+ * <p>The prefix table is held as a sorted array of distinct dialpad prefixes, each pointing to a
+ * range of int postings into the contacts of the snapshot. A query is a binary search for the
+ * start of the prefix range followed by a scan of the matching postings, so no SQL is run while
+ * the user is typing. {@link DialerDatabaseHelper} replaces the snapshot whenever the smart dial
+ * database has been updated: when only a few contacts changed, only those are read back from
+ * SQLite and merged with the rest of the previous snapshot.
+ *
+ * <p>Queries reuse scratch arrays of the snapshot rather than allocating arrays sized to all of its
+ * contacts, so they must not run concurrently; {@link DialerDatabaseHelper} serializes them.
+ */
+final class SmartDialIndex {
+
+  /** Bit offsets used to pack the sort key of a row into a single long. */
+  private static final int STARRED_SHIFT = 35;
+
+  private static final int SUPER_PRIMARY_SHIFT = 34;
+  private static final int USAGE_SHIFT = 32;
+  private static final long RANK_MASK = 0xffffffffL;
+
+  /** Bit offsets used to pack the time independent sort key of a row into a single long. */
+  private static final int TIMES_USED_SHIFT = 33;
+
+  private static final int NOT_IN_VISIBLE_GROUP_SHIFT = 32;
+
+  /**
+   * Share of the contacts above which an update reloads the whole index, as the changed contacts
+   * are then read back with a large query anyway.
+   */
+  private static final int MAX_UPDATED_CONTACTS_DIVISOR = 4;
+
+  private static final String[] ROW_PROJECTION =
+      new String[] {
+        SmartDialDbColumns.DATA_ID, // 0
+        SmartDialDbColumns.DISPLAY_NAME_PRIMARY, // 1
+        SmartDialDbColumns.PHOTO_ID, // 2
+        SmartDialDbColumns.NUMBER, // 3
+        SmartDialDbColumns.CONTACT_ID, // 4
+        SmartDialDbColumns.LOOKUP_KEY, // 5
+        SmartDialDbColumns.CARRIER_PRESENCE, // 6
+        SmartDialDbColumns.STARRED, // 7
+        SmartDialDbColumns.IS_SUPER_PRIMARY, // 8
+        SmartDialDbColumns.LAST_TIME_USED, // 9
+        SmartDialDbColumns.TIMES_USED, // 10
+        SmartDialDbColumns.IN_VISIBLE_GROUP, // 11
+        SmartDialDbColumns.IS_PRIMARY, // 12
+      };
+
+  private static final int COLUMN_DATA_ID = 0;
+  private static final int COLUMN_DISPLAY_NAME = 1;
+  private static final int COLUMN_PHOTO_ID = 2;
+  private static final int COLUMN_NUMBER = 3;
+  private static final int COLUMN_CONTACT_ID = 4;
+  private static final int COLUMN_LOOKUP_KEY = 5;
+  private static final int COLUMN_CARRIER_PRESENCE = 6;
+  private static final int COLUMN_STARRED = 7;
+  private static final int COLUMN_IS_SUPER_PRIMARY = 8;
+  private static final int COLUMN_LAST_TIME_USED = 9;
+  private static final int COLUMN_TIMES_USED = 10;
+  private static final int COLUMN_IN_VISIBLE_GROUP = 11;
+  private static final int COLUMN_IS_PRIMARY = 12;
+
+  private static final SmartDialIndex EMPTY =
+      new SmartDialIndex(
+          new Rows(0), new long[0], new int[] {0}, new String[0], new int[] {0}, new int[0]);
+
+  /** Per phone number data, grouped by contact. */
+  private final Rows rows;
+
+  /** Sorted distinct contact ids; the position of an id is its contact ordinal. */
+  private final long[] contactIds;
+
+  /** Rows of contact ordinal {@code c} are {@code [contactRowStart[c], contactRowStart[c + 1])}. */
+  private final int[] contactRowStart;
+
+  /** Contact ordinal of every row. */
+  private final int[] rowContact;
+
+  /** Sorted distinct dialpad prefixes. */
+  private final String[] prefixes;
+
+  /** Postings of prefix {@code p} are {@code [postingStart[p], postingStart[p + 1])}. */
+  private final int[] postingStart;
+
+  /** Contact ordinals referenced by the prefixes. */
+  private final int[] postings;
+
+  /** Contacts found by the last query are those whose mark is {@link #markGeneration}. */
+  private final int[] contactMarks;
+
+  private int markGeneration;
+
+  /** Contact ordinals found by the last query, in the order they were found. */
+  private final int[] markedContacts;
+
+  private SmartDialIndex(
+      Rows rows,
+      long[] contactIds,
+      int[] contactRowStart,
+      String[] prefixes,
+      int[] postingStart,
+      int[] postings) {
+    this.rows = rows;
+    this.contactIds = contactIds;
+    this.contactRowStart = contactRowStart;
+    this.rowContact = new int[rows.size];
+    for (int contact = 0; contact + 1 < contactRowStart.length; contact++) {
+      Arrays.fill(rowContact, contactRowStart[contact], contactRowStart[contact + 1], contact);
+    }
+    this.prefixes = prefixes;
+    this.postingStart = postingStart;
+    this.postings = postings;
+    this.contactMarks = new int[contactIds.length];
+    this.markedContacts = new int[contactIds.length];
+  }
+
+  /** Returns an index with no entries. */
+  static SmartDialIndex empty() {
+    return EMPTY;
+  }
+
+  /** Builds an index from the persisted smart dial and prefix tables. */
+  @WorkerThread
+  static SmartDialIndex load(SQLiteDatabase db) {
+    long startMillis = System.currentTimeMillis();
+
+    Rows rows = queryRows(db, null);
+    if (rows == null) {
+      return EMPTY;
+    }
+    int[] contactRowStart = contactRowStarts(rows);
+    long[] contactIds = contactIdsOf(rows, contactRowStart);
+    rows.computeStaticRank();
+
+    ArrayList<String> prefixList = new ArrayList<>();
+    int[] postingStart;
+    int[] postings;
+    try (Cursor cursor = queryPrefixes(db, null)) {
+      if (cursor == null) {
+        return EMPTY;
+      }
+      postingStart = new int[cursor.getCount() + 1];
+      postings = new int[cursor.getCount()];
+      int postingCount = 0;
+      String previous = null;
+      while (cursor.moveToNext()) {
+        String prefix = cursor.getString(0);
+        if (prefix == null || cursor.isNull(1)) {
+          continue;
+        }
+        int contact = Arrays.binarySearch(contactIds, cursor.getLong(1));
+        if (contact < 0) {
+          // The contact has no phone number rows left, so it can never be suggested.
+          continue;
+        }
+        if (!prefix.equals(previous)) {
+          postingStart[prefixList.size()] = postingCount;
+          prefixList.add(prefix);
+          previous = prefix;
+        }
+        postings[postingCount++] = contact;
+      }
+      postingStart[prefixList.size()] = postingCount;
+      postingStart = Arrays.copyOf(postingStart, prefixList.size() + 1);
+      postings = Arrays.copyOf(postings, postingCount);
+    }
+
+    LogUtil.i(
+        "SmartDialIndex.load",
+        "indexed %d numbers, %d contacts, %d prefixes in %d ms",
+        rows.size,
+        contactIds.length,
+        prefixList.size(),
+        System.currentTimeMillis() - startMillis);
+    return new SmartDialIndex(
+        rows,
+        contactIds,
+        contactRowStart,
+        prefixList.toArray(new String[prefixList.size()]),
+        postingStart,
+        postings);
+  }
+
+  /**
+   * Returns a copy of {@code index} in which the contacts with the given ids are read again from
+   * the persisted tables, while the other contacts are copied over. Contacts which have no phone
+   * number rows left are dropped. Falls back to {@link #load} when many contacts changed.
+   */
+  @WorkerThread
+  static SmartDialIndex update(
+      SQLiteDatabase db, SmartDialIndex index, Collection<Long> changedContactIds) {
+    if (changedContactIds.size() > index.contactIds.length / MAX_UPDATED_CONTACTS_DIVISOR) {
+      return load(db);
+    }
+    long startMillis = System.currentTimeMillis();
+
+    long[] changed = new long[changedContactIds.size()];
+    int changedCount = 0;
+    for (long contactId : changedContactIds) {
+      changed[changedCount++] = contactId;
+    }
+    Arrays.sort(changed);
+    StringBuilder selection = new StringBuilder(" IN (");
+    for (int i = 0; i < changed.length; i++) {
+      selection.append(i == 0 ? "" : ",").append(changed[i]);
+    }
+    selection.append(')');
+
+    Rows changedRows = queryRows(db, SmartDialDbColumns.CONTACT_ID + selection);
+    if (changedRows == null) {
+      return load(db);
+    }
+    // Merge the rows of the changed contacts into those of the others, ordered by contact id.
+    Rows rows = new Rows(index.rows.size + changedRows.size);
+    int oldRow = 0;
+    int newRow = 0;
+    while (oldRow < index.rows.size || newRow < changedRows.size) {
+      if (oldRow < index.rows.size
+          && Arrays.binarySearch(changed, index.rows.contactId[oldRow]) >= 0) {
+        oldRow++;
+      } else if (newRow == changedRows.size
+          || (oldRow < index.rows.size
+              && index.rows.contactId[oldRow] < changedRows.contactId[newRow])) {
+        rows.addFrom(index.rows, oldRow++);
+      } else {
+        rows.addFrom(changedRows, newRow++);
+      }
+    }
+    int[] contactRowStart = contactRowStarts(rows);
+    long[] contactIds = contactIdsOf(rows, contactRowStart);
+    rows.computeStaticRank();
+
+    int[] contactForOldContact = new int[index.contactIds.length];
+    for (int contact = 0; contact < contactForOldContact.length; contact++) {
+      long contactId = index.contactIds[contact];
+      contactForOldContact[contact] =
+          Arrays.binarySearch(changed, contactId) >= 0
+              ? -1
+              : Arrays.binarySearch(contactIds, contactId);
+    }
+
+    ArrayList<String> changedPrefixes = new ArrayList<>();
+    int[] changedPostings;
+    try (Cursor cursor = queryPrefixes(db, PrefixColumns.CONTACT_ID + selection)) {
+      if (cursor == null) {
+        return load(db);
+      }
+      changedPostings = new int[cursor.getCount()];
+      while (cursor.moveToNext()) {
+        String prefix = cursor.getString(0);
+        int contact = cursor.isNull(1) ? -1 : Arrays.binarySearch(contactIds, cursor.getLong(1));
+        if (prefix == null || contact < 0) {
+          continue;
+        }
+        changedPostings[changedPrefixes.size()] = contact;
+        changedPrefixes.add(prefix);
+      }
+    }
+
+    // Merge the postings of the changed contacts into the remaining ones, prefix by prefix.
+    ArrayList<String> prefixList = new ArrayList<>(index.prefixes.length);
+    int[] postingStart = new int[index.prefixes.length + changedPrefixes.size() + 1];
+    int[] postings = new int[index.postings.length + changedPrefixes.size()];
+    int postingCount = 0;
+    int oldPrefix = 0;
+    int changedPrefix = 0;
+    while (oldPrefix < index.prefixes.length || changedPrefix < changedPrefixes.size()) {
+      String prefix =
+          changedPrefix == changedPrefixes.size()
+                  || (oldPrefix < index.prefixes.length
+                      && index.prefixes[oldPrefix].compareTo(changedPrefixes.get(changedPrefix))
+                          <= 0)
+              ? index.prefixes[oldPrefix]
+              : changedPrefixes.get(changedPrefix);
+      int start = postingCount;
+      if (oldPrefix < index.prefixes.length && index.prefixes[oldPrefix].equals(prefix)) {
+        for (int i = index.postingStart[oldPrefix]; i < index.postingStart[oldPrefix + 1]; i++) {
+          int contact = contactForOldContact[index.postings[i]];
+          if (contact >= 0) {
+            postings[postingCount++] = contact;
+          }
+        }
+        oldPrefix++;
+      }
+      while (changedPrefix < changedPrefixes.size()
+          && changedPrefixes.get(changedPrefix).equals(prefix)) {
+        postings[postingCount++] = changedPostings[changedPrefix++];
+      }
+      if (postingCount > start) {
+        postingStart[prefixList.size()] = start;
+        prefixList.add(prefix);
+      }
+    }
+    postingStart[prefixList.size()] = postingCount;
+
+    LogUtil.i(
+        "SmartDialIndex.update",
+        "updated %d contacts, indexed %d numbers, %d contacts, %d prefixes in %d ms",
+        changed.length,
+        rows.size,
+        contactIds.length,
+        prefixList.size(),
+        System.currentTimeMillis() - startMillis);
+    return new SmartDialIndex(
+        rows,
+        contactIds,
+        contactRowStart,
+        prefixList.toArray(new String[prefixList.size()]),
+        Arrays.copyOf(postingStart, prefixList.size() + 1),
+        Arrays.copyOf(postings, postingCount));
+  }
+
+  /**
+   * Reads the smart dial rows matching {@code selection}, ordered by contact id, or returns null
+   * if they can't be read.
+   */
+  private static Rows queryRows(SQLiteDatabase db, String selection) {
+    try (Cursor cursor =
+        db.query(
+            Tables.SMARTDIAL_TABLE,
+            ROW_PROJECTION,
+            selection,
+            null,
+            null,
+            null,
+            SmartDialDbColumns.CONTACT_ID + ", " + SmartDialDbColumns._ID)) {
+      if (cursor == null) {
+        return null;
+      }
+      Rows rows = new Rows(cursor.getCount());
+      while (cursor.moveToNext()) {
+        if (cursor.isNull(COLUMN_DATA_ID)) {
+          continue;
+        }
+        rows.add(cursor);
+      }
+      return rows;
+    }
+  }
+
+  /** Queries the prefixes and contact ids of the prefix table matching {@code selection}. */
+  private static Cursor queryPrefixes(SQLiteDatabase db, String selection) {
+    return db.query(
+        Tables.PREFIX_TABLE,
+        new String[] {PrefixColumns.PREFIX, PrefixColumns.CONTACT_ID},
+        selection,
+        null,
+        null,
+        null,
+        PrefixColumns.PREFIX);
+  }
+
+  /**
+   * Returns the start of the rows of every contact, followed by the number of rows. Rows are
+   * ordered by contact id, so every contact occupies a contiguous range.
+   */
+  private static int[] contactRowStarts(Rows rows) {
+    int[] contactRowStart = new int[rows.size + 1];
+    int contactCount = 0;
+    for (int row = 0; row < rows.size; row++) {
+      if (contactCount == 0 || rows.contactId[row - 1] != rows.contactId[row]) {
+        contactRowStart[contactCount++] = row;
+      }
+    }
+    contactRowStart[contactCount] = rows.size;
+    return Arrays.copyOf(contactRowStart, contactCount + 1);
+  }
+
+  /** Returns the sorted distinct contact ids of {@code rows}. */
+  private static long[] contactIdsOf(Rows rows, int[] contactRowStart) {
+    long[] contactIds = new long[contactRowStart.length - 1];
+    for (int contact = 0; contact < contactIds.length; contact++) {
+      contactIds[contact] = rows.contactId[contactRowStart[contact]];
+    }
+    return contactIds;
+  }
+
+  /** Returns the number of phone number rows in the index. */
+  int size() {
+    return rows.size;
+  }
+
+  /**
+   * Returns the rows of all contacts with a prefix that starts with {@code query}, in no particular
+   * order. Only the postings of the matching prefixes are visited.
+   *
+   * @param query The prefix of a contact's dialpad index.
+   * @see #rankCandidates(int[], int, long)
+   */
+  int[] findCandidates(String query) {
+    int contactCount = markContacts(query);
+    int rowCount = 0;
+    for (int i = 0; i < contactCount; i++) {
+      int contact = markedContacts[i];
+      rowCount += contactRowStart[contact + 1] - contactRowStart[contact];
+    }
+    int[] result = new int[rowCount];
+    int count = 0;
+    for (int i = 0; i < contactCount; i++) {
+      int contact = markedContacts[i];
+      for (int row = contactRowStart[contact]; row < contactRowStart[contact + 1]; row++) {
+        result[count++] = row;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the subset of {@code candidates} whose contact has a prefix that starts with {@code
+   * query}, keeping their order. Because every prefix starting with a query also starts with any
+   * prefix of that query, this gives the same rows as {@link #findCandidates} when {@code
+   * candidates} were found for a prefix of {@code query}, while only visiting those candidates.
+   */
+  int[] narrowCandidates(int[] candidates, String query) {
+    if (markContacts(query) == 0) {
+      return new int[0];
+    }
+    int[] result = new int[candidates.length];
+    int count = 0;
+    for (int row : candidates) {
+      if (contactMarks[rowContact[row]] == markGeneration) {
+        result[count++] = row;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  /**
+   * Returns the first {@code limit} of {@code candidates} ordered the same way as {@link
+   * SmartDialSortingOrder}. A bounded heap keeps the best candidates seen so far, so only those
+   * are sorted.
+   *
+   * @param nowMillis Current time, used to rank recently used numbers higher.
+   */
+  int[] rankCandidates(int[] candidates, int limit, long nowMillis) {
+    // Pack the time dependent part of the order together with the precomputed rank of every row,
+    // so that the heap and the sort work on primitive longs.
+    int heapSize = Math.min(limit, candidates.length);
+    long[] heap = new long[heapSize];
+    for (int i = 0; i < heapSize; i++) {
+      heap[i] = sortKey(candidates[i], nowMillis);
+    }
+    if (heapSize < candidates.length) {
+      // A max-heap, whose root is the worst of the best candidates so far.
+      for (int i = heapSize / 2 - 1; i >= 0; i--) {
+        siftDown(heap, i);
+      }
+      for (int i = heapSize; i < candidates.length && heapSize > 0; i++) {
+        long key = sortKey(candidates[i], nowMillis);
+        if (key < heap[0]) {
+          heap[0] = key;
+          siftDown(heap, 0);
+        }
+      }
+    }
+    Arrays.sort(heap);
+
+    int[] result = new int[heapSize];
+    for (int i = 0; i < heapSize; i++) {
+      result[i] = rows.rowForRank[(int) (heap[i] & RANK_MASK)];
+    }
+    return result;
+  }
+
+  /** Restores the max-heap order of {@code heap} below {@code i}. */
+  private static void siftDown(long[] heap, int i) {
+    long key = heap[i];
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= heap.length) {
+        break;
+      }
+      if (child + 1 < heap.length && heap[child + 1] > heap[child]) {
+        child++;
+      }
+      if (heap[child] <= key) {
+        break;
+      }
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = key;
+  }
+
+  /** Creates a {@link ContactNumber} for the given row. */
+  ContactNumber getContactNumber(int row) {
+    return new ContactNumber(
+        rows.contactId[row],
+        rows.dataId[row],
+        rows.displayName[row],
+        rows.number[row],
+        rows.lookupKey[row],
+        rows.photoId[row],
+        rows.carrierPresence[row]);
+  }
+
+  String getDisplayName(int row) {
+    return rows.displayName[row];
+  }
+
+  String getNumber(int row) {
+    return rows.number[row];
+  }
+
+  long getContactId(int row) {
+    return rows.contactId[row];
+  }
+
+  String getLookupKey(int row) {
+    return rows.lookupKey[row];
+  }
+
+  /**
+   * Marks the ordinals of all contacts with a prefix that starts with {@code query}, and lists them
+   * in {@link #markedContacts}. The marks of the previous query are dropped by starting a new
+   * generation, rather than by clearing them.
+   *
+   * @return The number of contacts marked.
+   */
+  private int markContacts(String query) {
+    if (++markGeneration == 0) {
+      Arrays.fill(contactMarks, 0);
+      markGeneration = 1;
+    }
+    int contactCount = 0;
+    for (int p = lowerBound(query); p < prefixes.length && prefixes[p].startsWith(query); p++) {
+      for (int i = postingStart[p]; i < postingStart[p + 1]; i++) {
+        int contact = postings[i];
+        if (contactMarks[contact] != markGeneration) {
+          contactMarks[contact] = markGeneration;
+          markedContacts[contactCount++] = contact;
+        }
+      }
+    }
+    return contactCount;
+  }
+
+  private long sortKey(int row, long nowMillis) {
+    long timeSinceLastUsed = nowMillis - rows.lastTimeUsed[row];
+    long usage;
+    if (timeSinceLastUsed < SmartDialSortingOrder.LAST_TIME_USED_CURRENT_MS) {
+      usage = 0;
+    } else if (timeSinceLastUsed < SmartDialSortingOrder.LAST_TIME_USED_RECENT_MS) {
+      usage = 1;
+    } else {
+      usage = 2;
+    }
+    return ((rows.starred[row] != 0 ? 0L : 1L) << STARRED_SHIFT)
+        | ((rows.isSuperPrimary[row] != 0 ? 0L : 1L) << SUPER_PRIMARY_SHIFT)
+        | (usage << USAGE_SHIFT)
+        | rows.staticRank[row];
+  }
+
+  /** Returns the position of the first prefix that is not smaller than {@code query}. */
+  private int lowerBound(String query) {
+    int low = 0;
+    int high = prefixes.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (prefixes[mid].compareTo(query) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /** Column oriented storage of the smart dial table. */
+  private static final class Rows {
+
+    int size;
+    long[] dataId;
+    long[] contactId;
+    long[] photoId;
+    long[] lastTimeUsed;
+    int[] timesUsed;
+    int[] carrierPresence;
+    byte[] starred;
+    byte[] isSuperPrimary;
+    byte[] inVisibleGroup;
+    byte[] isPrimary;
+    String[] displayName;
+    String[] number;
+    String[] lookupKey;
+
+    /** Position of each row in the time independent part of {@link SmartDialSortingOrder}. */
+    int[] staticRank;
+
+    /** Inverse of {@link #staticRank}. */
+    int[] rowForRank;
+
+    Rows(int capacity) {
+      dataId = new long[capacity];
+      contactId = new long[capacity];
+      photoId = new long[capacity];
+      lastTimeUsed = new long[capacity];
+      timesUsed = new int[capacity];
+      carrierPresence = new int[capacity];
+      starred = new byte[capacity];
+      isSuperPrimary = new byte[capacity];
+      inVisibleGroup = new byte[capacity];
+      isPrimary = new byte[capacity];
+      displayName = new String[capacity];
+      number = new String[capacity];
+      lookupKey = new String[capacity];
+      staticRank = new int[0];
+      rowForRank = new int[0];
+    }
+
+    void add(Cursor cursor) {
+      dataId[size] = cursor.getLong(COLUMN_DATA_ID);
+      displayName[size] = cursor.getString(COLUMN_DISPLAY_NAME);
+      photoId[size] = cursor.getLong(COLUMN_PHOTO_ID);
+      number[size] = cursor.getString(COLUMN_NUMBER);
+      contactId[size] = cursor.getLong(COLUMN_CONTACT_ID);
+      lookupKey[size] = cursor.getString(COLUMN_LOOKUP_KEY);
+      carrierPresence[size] = cursor.getInt(COLUMN_CARRIER_PRESENCE);
+      starred[size] = (byte) (cursor.getInt(COLUMN_STARRED) != 0 ? 1 : 0);
+      isSuperPrimary[size] = (byte) (cursor.getInt(COLUMN_IS_SUPER_PRIMARY) != 0 ? 1 : 0);
+      lastTimeUsed[size] = cursor.getLong(COLUMN_LAST_TIME_USED);
+      timesUsed[size] = cursor.getInt(COLUMN_TIMES_USED);
+      inVisibleGroup[size] = (byte) (cursor.getInt(COLUMN_IN_VISIBLE_GROUP) != 0 ? 1 : 0);
+      isPrimary[size] = (byte) (cursor.getInt(COLUMN_IS_PRIMARY) != 0 ? 1 : 0);
+      size++;
+    }
+
+    /** Appends {@code row} of {@code from}. */
+    void addFrom(Rows from, int row) {
+      dataId[size] = from.dataId[row];
+      displayName[size] = from.displayName[row];
+      photoId[size] = from.photoId[row];
+      number[size] = from.number[row];
+      contactId[size] = from.contactId[row];
+      lookupKey[size] = from.lookupKey[row];
+      carrierPresence[size] = from.carrierPresence[row];
+      starred[size] = from.starred[row];
+      isSuperPrimary[size] = from.isSuperPrimary[row];
+      lastTimeUsed[size] = from.lastTimeUsed[row];
+      timesUsed[size] = from.timesUsed[row];
+      inVisibleGroup[size] = from.inVisibleGroup[row];
+      isPrimary[size] = from.isPrimary[row];
+      size++;
+    }
+
+    /**
+     * Ranks the rows by the columns of {@link SmartDialSortingOrder} that do not depend on the
+     * current time: times used, visibility, display name, contact id and primary flag. Ties are
+     * broken by insertion order to keep the result stable.
+     *
+     * <p>The columns are packed into primitive longs, which are sorted without a comparator. The
+     * display name, contact id, primary flag and insertion order are first reduced to a single
+     * rank, which is then packed with the times used and visibility.
+     */
+    void computeStaticRank() {
+      // Rows are added ordered by contact id, so ordering the rows of each contact by primary flag
+      // and insertion order gives their rank after the display name.
+      int[] rowForTieRank = new int[size];
+      int tieRank = 0;
+      for (int start = 0, end; start < size; start = end) {
+        end = start + 1;
+        while (end < size && contactId[end] == contactId[start]) {
+          end++;
+        }
+        for (int row = start; row < end; row++) {
+          if (isPrimary[row] != 0) {
+            rowForTieRank[tieRank++] = row;
+          }
+        }
+        for (int row = start; row < end; row++) {
+          if (isPrimary[row] == 0) {
+            rowForTieRank[tieRank++] = row;
+          }
+        }
+      }
+
+      String[] names = distinctNames();
+      long[] keys = new long[size];
+      for (int i = 0; i < size; i++) {
+        int row = rowForTieRank[i];
+        // Nulls first, like SQLite does.
+        long nameRank =
+            displayName[row] == null ? 0 : Arrays.binarySearch(names, displayName[row]) + 1;
+        keys[i] = (nameRank << 32) | i;
+      }
+      Arrays.sort(keys);
+      int[] rowForNameRank = new int[size];
+      for (int i = 0; i < size; i++) {
+        rowForNameRank[i] = rowForTieRank[(int) (keys[i] & RANK_MASK)];
+      }
+
+      for (int i = 0; i < size; i++) {
+        int row = rowForNameRank[i];
+        long timesUsedRank = Integer.MAX_VALUE - Math.max(timesUsed[row], 0);
+        // Flip the sign bit, so that the signed sort orders the keys as unsigned values.
+        keys[i] =
+            ((timesUsedRank << TIMES_USED_SHIFT)
+                    | ((inVisibleGroup[row] != 0 ? 0L : 1L) << NOT_IN_VISIBLE_GROUP_SHIFT)
+                    | i)
+                ^ Long.MIN_VALUE;
+      }
+      Arrays.sort(keys);
+
+      staticRank = new int[size];
+      rowForRank = new int[size];
+      for (int rank = 0; rank < size; rank++) {
+        int row = rowForNameRank[(int) (keys[rank] & RANK_MASK)];
+        staticRank[row] = rank;
+        rowForRank[rank] = row;
+      }
+    }
+
+    /** Returns the distinct non-null display names, sorted. */
+    private String[] distinctNames() {
+      String[] names = new String[size];
+      int count = 0;
+      for (int row = 0; row < size; row++) {
+        if (displayName[row] != null) {
+          names[count++] = displayName[row];
+        }
+      }
+      Arrays.sort(names, 0, count);
+      int distinctCount = 0;
+      for (int i = 0; i < count; i++) {
+        if (distinctCount == 0 || !names[i].equals(names[distinctCount - 1])) {
+          names[distinctCount++] = names[i];
+        }
+      }
+      return Arrays.copyOf(names, distinctCount);
+    }
+  }
+}
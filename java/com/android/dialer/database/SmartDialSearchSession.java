@@ -0,0 +1,196 @@
+/*
+ * SPDX-FileCopyrightText: The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.android.dialer.database;
+
+import android.content.Context;
+import android.support.v4.util.SimpleArrayMap;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.dialer.database.DialerDatabaseHelper.ContactMatch;
+import com.android.dialer.database.DialerDatabaseHelper.ContactNumber;
+import com.android.dialer.smartdial.util.SmartDialNameMatcher;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Incremental smart dial search over a {@link SmartDialIndex}.
+ *
+ * <p>The candidates for a query are always a subset of the candidates for any prefix of that
+ * query. The session therefore keeps one state per typed digit: appending a digit narrows the
+ * candidates of the previous state instead of searching the whole index again, and removing a
+ * digit returns the result cached for the shorter query. Typing a number digit by digit costs one
+ * full search for the first digit plus a cheap filter for every following one. The candidates are
+ * kept unordered, and only the best of them are ranked to pick the result.
+ *
+ * <p>Not thread safe; {@link DialerDatabaseHelper} serializes access to it.
+ */
+final class SmartDialSearchSession {
+
+  /** Candidates ranked per requested entry at first, some of which may not match the query. */
+  private static final int RANKED_CANDIDATES_PER_ENTRY = 4;
+
+  private final SmartDialIndex index;
+
+  /** Character-key map of the language the names are matched in, or null for Latin only. */
+  @Nullable private final SimpleArrayMap<Character, Character> charToKeyMap;
+
+  /** Searches for the queries of the current session, the longest query on top. */
+  private final ArrayDeque<State> states = new ArrayDeque<>();
+
+  /** Time used to rank recently used numbers, set whenever the states are started again. */
+  private long nowMillis;
+
+  SmartDialSearchSession(
+      SmartDialIndex index, @Nullable SimpleArrayMap<Character, Character> charToKeyMap) {
+    this.index = index;
+    this.charToKeyMap = charToKeyMap;
+  }
+
+  /**
+   * Returns whether this session searches the given index with the given character-key map, as
+   * the cached results depend on both.
+   */
+  boolean isFor(
+      SmartDialIndex index, @Nullable SimpleArrayMap<Character, Character> charToKeyMap) {
+    return this.index == index && this.charToKeyMap == charToKeyMap;
+  }
+
+  /**
+   * Returns the top candidate contacts where the query is a prefix of the dialpad index of the
+   * contact's name or phone number.
+   *
+   * @param query The prefix of a contact's dialpad index.
+   * @param nameMatcher Matcher configured with {@code query}.
+   * @param maxEntries The maximum number of contacts to return.
+   */
+  @WorkerThread
+  ArrayList<ContactNumber> search(
+      Context context, String query, SmartDialNameMatcher nameMatcher, int maxEntries) {
+    if (query.isEmpty()) {
+      // The result for an empty query depends on the configuration of the matcher, don't cache it.
+      return select(
+          context,
+          query,
+          nameMatcher,
+          index.findCandidates(query),
+          maxEntries,
+          System.currentTimeMillis());
+    }
+
+    /**
+     * A query that neither extends nor shortens the last one was not typed on the same dialpad,
+     * e.g. it was pasted or the dialpad was cleared. Start a new session for it.
+     */
+    State head = states.peek();
+    if (head != null && !query.startsWith(head.query) && !head.query.startsWith(query)) {
+      states.clear();
+    }
+
+    /** Drops the states of digits that have been removed since the last search. */
+    while (!states.isEmpty() && !query.startsWith(states.peek().query)) {
+      states.pop();
+    }
+
+    State previous = states.peek();
+    if (previous != null && previous.query.equals(query)) {
+      return new ArrayList<>(previous.result);
+    }
+
+    int[] candidates;
+    if (previous == null) {
+      // A new session starts, rank recently used numbers against the current time.
+      nowMillis = System.currentTimeMillis();
+      candidates = index.findCandidates(query);
+    } else {
+      candidates = index.narrowCandidates(previous.candidates, query);
+    }
+
+    ArrayList<ContactNumber> result =
+        select(context, query, nameMatcher, candidates, maxEntries, nowMillis);
+    states.push(new State(query, candidates, result));
+    return new ArrayList<>(result);
+  }
+
+  /**
+   * Picks the best ranked contacts in {@code candidates} that actually match the query. Only a few
+   * candidates per entry are ranked at first; more are ranked if too few of those match.
+   */
+  private ArrayList<ContactNumber> select(
+      Context context,
+      String query,
+      SmartDialNameMatcher nameMatcher,
+      int[] candidates,
+      int maxEntries,
+      long nowMillis) {
+    int limit = maxEntries * RANKED_CANDIDATES_PER_ENTRY;
+    while (true) {
+      int[] ranked = index.rankCandidates(candidates, limit, nowMillis);
+      ArrayList<ContactNumber> result = select(context, query, nameMatcher, ranked, maxEntries);
+      if (result.size() >= maxEntries || ranked.length == candidates.length) {
+        return result;
+      }
+      limit = (int) Math.min(candidates.length, (long) limit * RANKED_CANDIDATES_PER_ENTRY);
+    }
+  }
+
+  /** Picks the first contacts in the ranked {@code candidates} that actually match the query. */
+  private ArrayList<ContactNumber> select(
+      Context context,
+      String query,
+      SmartDialNameMatcher nameMatcher,
+      int[] candidates,
+      int maxEntries) {
+    final ArrayList<ContactNumber> result = new ArrayList<>();
+    final Set<ContactMatch> duplicates = new HashSet<>();
+    int counter = 0;
+    /** Iterates the candidates to find top contact suggestions without duplication. */
+    for (int i = 0; i < candidates.length && counter < maxEntries; i++) {
+      final int row = candidates[i];
+
+      /**
+       * If a contact already exists and another phone number of the contact is being processed,
+       * skip the second instance.
+       */
+      final ContactMatch contactMatch =
+          new ContactMatch(index.getLookupKey(row), index.getContactId(row));
+      if (duplicates.contains(contactMatch)) {
+        continue;
+      }
+
+      /**
+       * If the contact has either the name or number that matches the query, add to the result.
+       */
+      final boolean nameMatches = nameMatcher.matches(context, index.getDisplayName(row));
+      final boolean numberMatches =
+          (nameMatcher.matchesNumber(context, index.getNumber(row), query) != null);
+      if (nameMatches || numberMatches) {
+        /** If a contact has not been added, add it to the result and the hash set. */
+        duplicates.add(contactMatch);
+        result.add(index.getContactNumber(row));
+        counter++;
+      }
+    }
+    return result;
+  }
+
+  /** Candidates and result of a single query. */
+  private static final class State {
+
+    final String query;
+    final int[] candidates;
+    final ArrayList<ContactNumber> result;
+
+    State(String query, int[] candidates, ArrayList<ContactNumber> result) {
+      this.query = query;
+      this.candidates = candidates;
+      this.result = result;
+    }
+  }
+}
@@ -153,9 +153,12 @@ public final class CallLogPopulator {
 
     abstract long getTimeMillis();
 
+    abstract long getDurationSeconds();
+
     static Builder builder() {
       return new AutoValue_CallLogPopulator_CallEntry.Builder()
-          .setPresentation(Calls.PRESENTATION_ALLOWED);
+          .setPresentation(Calls.PRESENTATION_ALLOWED)
+          .setDurationSeconds(0);
     }
 
     ContentValues getAsContentValues() {
@@ -164,6 +167,7 @@ public final class CallLogPopulator {
       values.put(Calls.NUMBER, getNumber());
       values.put(Calls.NUMBER_PRESENTATION, getPresentation());
       values.put(Calls.DATE, getTimeMillis());
+      values.put(Calls.DURATION, getDurationSeconds());
       return values;
     }
 
@@ -177,6 +181,8 @@ public final class CallLogPopulator {
 
       abstract Builder setTimeMillis(long timeMillis);
 
+      abstract Builder setDurationSeconds(long durationSeconds);
+
       abstract CallEntry build();
     }
   }
@@ -184,7 +184,7 @@ public final class ContactsPopulator {
     }
   }
 
-  private static void addContact(Contact contact, List<ContentProviderOperation> operations) {
+  static void addContact(Contact contact, List<ContentProviderOperation> operations) {
     int index = operations.size();
 
     operations.add(
@@ -0,0 +1,532 @@
+/*
+ * SPDX-FileCopyrightText: The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.android.dialer.databasepopulator;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.provider.BlockedNumberContract;
+import android.provider.BlockedNumberContract.BlockedNumbers;
+import android.provider.CallLog;
+import android.provider.CallLog.Calls;
+import android.provider.ContactsContract;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.VoicemailContract.Voicemails;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.dialer.common.Assert;
+import com.android.dialer.common.LogUtil;
+import com.android.dialer.databasepopulator.CallLogPopulator.CallEntry;
+import com.android.dialer.databasepopulator.ContactsPopulator.Contact;
+import com.android.dialer.databasepopulator.ContactsPopulator.Email;
+import com.android.dialer.databasepopulator.ContactsPopulator.PhoneNumber;
+import com.android.dialer.databasepopulator.VoicemailPopulator.Voicemail;
+import com.google.auto.value.AutoValue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Populates the device database with a large generated data set, to reproduce the performance of
+ * devices with thousands of contacts and tens of thousands of calls.
+ *
+ * <p>The rows only depend on the {@link Config}: the same seed, counts and end time always produce
+ * the same contacts, calls, voicemails and blocked numbers, so that benchmark runs can be compared.
+ * The data set includes names in Latin, Cyrillic and other scripts, contacts with several numbers,
+ * invalid numbers and short codes, and a few numbers with very long call histories. Rows are
+ * inserted in bounded batches, so that no transaction exceeds the binder limits.
+ */
+public final class LargeDatasetPopulator {
+
+  /** Maximum number of operations applied at once, rounded up to whole contacts. */
+  private static final int MAX_CONTACT_OPERATIONS_PER_BATCH = 400;
+
+  private static final int MAX_ROWS_PER_BATCH = 500;
+
+  /** Time span of the generated calls and voicemails, ending at {@link Config#getEndTimeMillis}. */
+  private static final long HISTORY_MILLIS = TimeUnit.DAYS.toMillis(2 * 365);
+
+  /** Maximum number of distinct numbers in the call log. */
+  private static final int MAX_CALL_NUMBERS = 5000;
+
+  private static final String[] LATIN_FIRST_NAMES = {
+    "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "William",
+    "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah",
+    "Charles", "Karen", "Daniel", "Nancy", "Matthew", "Lisa", "Anthony", "Emma", "José", "María",
+    "Luis", "Ana", "Jürgen", "Zoë", "François", "Chloé", "Søren", "Łukasz", "Ömer", "Giulia",
+    "Siobhán", "Minh"
+  };
+
+  private static final String[] LATIN_LAST_NAMES = {
+    "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez",
+    "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Taylor", "Moore",
+    "Jackson", "Martin", "Lee", "Perez", "Thompson", "White", "Harris", "Clark", "Müller",
+    "Schmidt", "Dubois", "Rossi", "Nowak", "O'Brien", "van der Berg", "Da Silva", "Jørgensen",
+    "Kowalczyk", "Yılmaz", "Núñez", "Smith-Jones", "McDonald", "Le"
+  };
+
+  private static final String[] RUSSIAN_FIRST_NAMES = {
+    "Александр", "Сергей", "Дмитрий", "Андрей", "Алексей", "Максим", "Иван", "Михаил", "Никита",
+    "Артём", "Елена", "Ольга", "Наталья", "Татьяна", "Анна", "Мария", "Екатерина", "Юлия",
+    "Светлана", "Ксения"
+  };
+
+  private static final String[] RUSSIAN_LAST_NAMES = {
+    "Иванов", "Смирнов", "Кузнецов", "Попов", "Васильев", "Петров", "Соколов", "Михайлов",
+    "Новиков", "Фёдоров", "Морозов", "Волков", "Алексеев", "Лебедев", "Семёнов", "Егоров",
+    "Павлов", "Козлов", "Щербаков", "Эйдельман"
+  };
+
+  private static final String[] BULGARIAN_FIRST_NAMES = {
+    "Георги", "Иван", "Димитър", "Николай", "Петър", "Христо", "Стоян", "Тодор", "Йордан", "Васил",
+    "Мария", "Иванка", "Елена", "Йорданка", "Пенка", "Десислава", "Цветелина", "Радка", "Гергана",
+    "Живка"
+  };
+
+  private static final String[] BULGARIAN_LAST_NAMES = {
+    "Иванов", "Георгиев", "Димитров", "Петров", "Николов", "Христов", "Стоянов", "Тодоров",
+    "Йорданов", "Илиев", "Ангелов", "Атанасов", "Василев", "Костадинов", "Маринов", "Цветков",
+    "Щерев", "Жеков", "Шишков", "Цанков"
+  };
+
+  private static final String[] UKRAINIAN_FIRST_NAMES = {
+    "Олександр", "Андрій", "Сергій", "Юрій", "Дмитро", "Іван", "Тарас", "Богдан", "Ігор", "Євген",
+    "Олена", "Ірина", "Наталія", "Оксана", "Юлія", "Тетяна", "Ганна", "Марія", "Катерина",
+    "Світлана"
+  };
+
+  private static final String[] UKRAINIAN_LAST_NAMES = {
+    "Шевченко", "Коваленко", "Бондаренко", "Ткаченко", "Кравченко", "Олійник", "Шевчук",
+    "Поліщук", "Лисенко", "Мельник", "Ґудзь", "Гнатюк", "Їжакевич", "Євтушенко", "Іваненко",
+    "Савчук", "Марченко", "Руденко", "Мороз", "Павленко"
+  };
+
+  /** Names in scripts without a smart dial map, in their usual order. */
+  private static final String[] OTHER_NAMES = {
+    "山田 太郎", "佐藤 花子", "スパイク・スピーゲル", "王伟", "李娜", "김민준", "이서연", "דוד כהן", "שרה לוי",
+    "محمد أحمد", "فاطمة علي", "Γιώργος Παπαδόπουλος"
+  };
+
+  /** Valid numbers, where each {@code #} is replaced by a random digit. */
+  private static final String[] VALID_NUMBER_PATTERNS = {
+    "+1 650-2##-####",
+    "+1 (415) 5##-####",
+    "(425) 7##-####",
+    "212-5##-####",
+    "+1303#######",
+    "+1 206-##3-####",
+    "+7 9## ###-##-##",
+    "8 (916) ###-##-##",
+    "+359 88 ### ####",
+    "+359 2 ### ####",
+    "+380 67 ### ## ##",
+    "+380 44 ### ## ##",
+    "+44 (0) 20 7### ####",
+    "+44 7700 9#####",
+    "+49 30 #######",
+    "+33 (0)1 42 ## ## ##",
+    "+61 2 9### ####",
+    "+971 4 ### ####",
+    "+55 31 2###-####",
+    "+81 3-####-####",
+  };
+
+  /** Numbers that can't be parsed or aren't valid, or have post-dial digits. */
+  private static final String[] INVALID_NUMBER_PATTERNS = {
+    "12###", "+999 ######", "0000####", "+1 650-###", "###-###-###-###-###", "+1 650-253-####;###",
+    "+1 650-253-####,,##",
+  };
+
+  private static final String[] SHORT_CODES = {
+    "611", "411", "311", "*86", "#31#", "*#06#", "22###", "1###",
+  };
+
+  private static final int[] PHONE_TYPES = {
+    Phone.TYPE_MOBILE, Phone.TYPE_MOBILE, Phone.TYPE_MOBILE, Phone.TYPE_HOME, Phone.TYPE_WORK,
+    Phone.TYPE_WORK_MOBILE, Phone.TYPE_FAX_WORK, Phone.TYPE_OTHER,
+  };
+
+  private static final String[] TRANSCRIPTIONS = {
+    "",
+    "Hi, it's me. Call me back when you get this.",
+    "Hello, this is a reminder of your appointment tomorrow at ten.",
+    "Привет, перезвони мне, пожалуйста.",
+    "Здравей, обади ми се, когато можеш.",
+    "Привіт, передзвони мені, будь ласка.",
+    "هزاران دوست کم اند و یک دشمن زیاد",
+  };
+
+  /** Counts, seed and time of a generated data set. */
+  @AutoValue
+  public abstract static class Config {
+    public abstract long getSeed();
+
+    public abstract int getContactCount();
+
+    public abstract int getCallCount();
+
+    public abstract int getVoicemailCount();
+
+    public abstract int getBlockedNumberCount();
+
+    /** Time of the most recent call and voicemail. */
+    public abstract long getEndTimeMillis();
+
+    /**
+     * Returns a builder for a data set of the size of the largest ones reported by users, ending
+     * now. Benchmarks should set a fixed end time to always insert the same rows.
+     */
+    public static Builder builder() {
+      return new AutoValue_LargeDatasetPopulator_Config.Builder()
+          .setSeed(0)
+          .setContactCount(15000)
+          .setCallCount(50000)
+          .setVoicemailCount(500)
+          .setBlockedNumberCount(200)
+          .setEndTimeMillis(System.currentTimeMillis());
+    }
+
+    /** Builder for {@link Config}. */
+    @AutoValue.Builder
+    public abstract static class Builder {
+      public abstract Builder setSeed(long seed);
+
+      public abstract Builder setContactCount(int contactCount);
+
+      public abstract Builder setCallCount(int callCount);
+
+      public abstract Builder setVoicemailCount(int voicemailCount);
+
+      public abstract Builder setBlockedNumberCount(int blockedNumberCount);
+
+      public abstract Builder setEndTimeMillis(long endTimeMillis);
+
+      public abstract Config build();
+    }
+  }
+
+  @WorkerThread
+  public static void populate(@NonNull Context context, @NonNull Config config) {
+    Assert.isWorkerThread();
+    long startTime = SystemClock.elapsedRealtime();
+    Random random = new Random(config.getSeed());
+    List<String> contactNumbers = populateContacts(context, random, config.getContactCount());
+    List<String> callNumbers = createCallNumbers(random, contactNumbers, config.getCallCount());
+    populateCallLog(context, random, callNumbers, config);
+    populateVoicemail(context, random, callNumbers, config);
+    populateBlockedNumbers(context, random, config.getBlockedNumberCount());
+    LogUtil.i(
+        "LargeDatasetPopulator.populate",
+        "populated %d contacts, %d calls, %d voicemails and %d blocked numbers in %d ms",
+        config.getContactCount(),
+        config.getCallCount(),
+        config.getVoicemailCount(),
+        config.getBlockedNumberCount(),
+        SystemClock.elapsedRealtime() - startTime);
+  }
+
+  /** Inserts {@code count} contacts and returns all of their numbers. */
+  private static List<String> populateContacts(Context context, Random random, int count) {
+    List<String> numbers = new ArrayList<>();
+    ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+    int pinnedCount = 0;
+    for (int i = 0; i < count; i++) {
+      Contact.Builder builder = Contact.builder();
+      String name = nextName(random);
+      if (name != null) {
+        builder.setName(name);
+      }
+
+      int phoneNumberCount = nextPhoneNumberCount(random);
+      for (int j = 0; j < phoneNumberCount; j++) {
+        String number;
+        if (!numbers.isEmpty() && random.nextInt(50) == 0) {
+          // Number shared with another contact, e.g. the landline of a household
+          number = numbers.get(random.nextInt(numbers.size()));
+        } else {
+          number = nextContactNumber(random);
+        }
+        numbers.add(number);
+        builder.addPhoneNumber(
+            new PhoneNumber(number, PHONE_TYPES[random.nextInt(PHONE_TYPES.length)]));
+      }
+
+      if (random.nextInt(5) == 0) {
+        builder.addEmail(new Email(String.format(Locale.ENGLISH, "contact%d@example.com", i)));
+      }
+      if (random.nextInt(200) == 0) {
+        builder.setIsStarred(true).setPinned(++pinnedCount);
+      }
+      switch (random.nextInt(200)) {
+        case 0:
+          builder.setRedPhoto();
+          break;
+        case 1:
+          builder.setBluePhoto();
+          break;
+        case 2:
+          builder.setOrangePhoto();
+          break;
+        case 3:
+          builder.setPurplePhoto();
+          break;
+        default:
+          break;
+      }
+
+      ContactsPopulator.addContact(builder.build(), operations);
+      if (operations.size() >= MAX_CONTACT_OPERATIONS_PER_BATCH) {
+        applyBatch(context, ContactsContract.AUTHORITY, operations);
+      }
+    }
+    applyBatch(context, ContactsContract.AUTHORITY, operations);
+    return numbers;
+  }
+
+  /**
+   * Returns the numbers that calls are made with, most frequent first: numbers of contacts,
+   * unknown numbers, invalid numbers, short codes and SIP addresses.
+   */
+  private static List<String> createCallNumbers(
+      Random random, List<String> contactNumbers, int callCount) {
+    int size = Math.max(1, Math.min(callCount / 10, MAX_CALL_NUMBERS));
+    List<String> numbers = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      int kind = random.nextInt(100);
+      if (kind < 60 && !contactNumbers.isEmpty()) {
+        numbers.add(contactNumbers.get(random.nextInt(contactNumbers.size())));
+      } else if (kind < 90) {
+        numbers.add(nextNumber(random, VALID_NUMBER_PATTERNS));
+      } else if (kind < 95) {
+        numbers.add(nextNumber(random, INVALID_NUMBER_PATTERNS));
+      } else if (kind < 98) {
+        numbers.add(nextNumber(random, SHORT_CODES));
+      } else {
+        numbers.add(String.format(Locale.ENGLISH, "user%d@sip.example.com", random.nextInt(100)));
+      }
+    }
+    return numbers;
+  }
+
+  private static void populateCallLog(
+      Context context, Random random, List<String> numbers, Config config) {
+    ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+    // Inserted oldest first, so that the IDs of the calls increase with their dates like on devices
+    long timeMillis = config.getEndTimeMillis() - HISTORY_MILLIS;
+    long averageIntervalMillis = HISTORY_MILLIS / Math.max(config.getCallCount(), 1);
+    String number = null;
+    for (int i = 0; i < config.getCallCount(); i++) {
+      timeMillis += (long) (random.nextDouble() * 2 * averageIntervalMillis);
+      // Calls are often repeated, e.g. after a missed call, which makes groups in the call log
+      if (number == null || random.nextInt(10) != 0) {
+        number = nextFrequentNumber(random, numbers);
+      }
+
+      CallEntry.Builder builder = CallEntry.builder().setNumber(number);
+      int presentation = random.nextInt(100);
+      if (presentation == 0) {
+        builder.setNumber("").setPresentation(Calls.PRESENTATION_RESTRICTED);
+      } else if (presentation == 1) {
+        builder.setNumber("").setPresentation(Calls.PRESENTATION_UNKNOWN);
+      }
+      int type = nextCallType(random);
+      boolean answered =
+          (type == Calls.INCOMING_TYPE || type == Calls.OUTGOING_TYPE) && random.nextInt(5) != 0;
+      CallEntry callEntry =
+          builder
+              .setType(type)
+              .setTimeMillis(Math.min(timeMillis, config.getEndTimeMillis()))
+              .setDurationSeconds(answered ? nextDurationSeconds(random, 180) : 0)
+              .build();
+
+      operations.add(
+          ContentProviderOperation.newInsert(Calls.CONTENT_URI)
+              .withValues(callEntry.getAsContentValues())
+              .withYieldAllowed(true)
+              .build());
+      if (operations.size() >= MAX_ROWS_PER_BATCH) {
+        applyBatch(context, CallLog.AUTHORITY, operations);
+      }
+    }
+    applyBatch(context, CallLog.AUTHORITY, operations);
+  }
+
+  private static void populateVoicemail(
+      Context context, Random random, List<String> numbers, Config config) {
+    if (config.getVoicemailCount() == 0) {
+      return;
+    }
+    String componentName = VoicemailPopulator.enableVoicemail(context);
+    List<ContentValues> values = new ArrayList<>();
+    long timeMillis = config.getEndTimeMillis() - HISTORY_MILLIS;
+    long averageIntervalMillis = HISTORY_MILLIS / config.getVoicemailCount();
+    for (int i = 0; i < config.getVoicemailCount(); i++) {
+      timeMillis += (long) (random.nextDouble() * 2 * averageIntervalMillis);
+      Voicemail voicemail =
+          Voicemail.builder()
+              .setPhoneNumber(nextFrequentNumber(random, numbers))
+              .setTranscription(TRANSCRIPTIONS[random.nextInt(TRANSCRIPTIONS.length)])
+              .setDurationSeconds(nextDurationSeconds(random, 30))
+              .setTimeMillis(Math.min(timeMillis, config.getEndTimeMillis()))
+              .setIsRead(random.nextInt(5) != 0)
+              .setPhoneAccountComponentName(componentName)
+              .build();
+      values.add(voicemail.getAsContentValues(context));
+      if (values.size() >= MAX_ROWS_PER_BATCH || i == config.getVoicemailCount() - 1) {
+        context
+            .getContentResolver()
+            .bulkInsert(
+                Voicemails.buildSourceUri(context.getPackageName()),
+                values.toArray(new ContentValues[values.size()]));
+        values.clear();
+      }
+    }
+  }
+
+  private static void populateBlockedNumbers(Context context, Random random, int count) {
+    ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      ContentValues values = new ContentValues();
+      values.put(
+          BlockedNumbers.COLUMN_ORIGINAL_NUMBER,
+          random.nextInt(20) == 0
+              ? nextNumber(random, SHORT_CODES)
+              : nextNumber(random, VALID_NUMBER_PATTERNS));
+      operations.add(
+          ContentProviderOperation.newInsert(BlockedNumbers.CONTENT_URI)
+              .withValues(values)
+              .withYieldAllowed(true)
+              .build());
+      if (operations.size() >= MAX_ROWS_PER_BATCH) {
+        applyBatch(context, BlockedNumberContract.AUTHORITY, operations);
+      }
+    }
+    applyBatch(context, BlockedNumberContract.AUTHORITY, operations);
+  }
+
+  private static void applyBatch(
+      Context context, String authority, ArrayList<ContentProviderOperation> operations) {
+    if (operations.isEmpty()) {
+      return;
+    }
+    try {
+      context.getContentResolver().applyBatch(authority, operations);
+    } catch (RemoteException | OperationApplicationException e) {
+      Assert.fail("error adding entries to " + authority + ": " + e);
+    }
+    operations.clear();
+  }
+
+  /** Returns a name in one of the supported scripts, mostly Latin, or null for no name. */
+  @Nullable
+  private static String nextName(Random random) {
+    int script = random.nextInt(100);
+    if (script < 2) {
+      return null;
+    } else if (script < 5) {
+      return nextFrequent(random, LATIN_FIRST_NAMES);
+    } else if (script < 72) {
+      return nextFrequent(random, LATIN_FIRST_NAMES) + " " + nextFrequent(random, LATIN_LAST_NAMES);
+    } else if (script < 82) {
+      return nextFrequent(random, RUSSIAN_FIRST_NAMES)
+          + " "
+          + nextFrequent(random, RUSSIAN_LAST_NAMES);
+    } else if (script < 88) {
+      return nextFrequent(random, BULGARIAN_FIRST_NAMES)
+          + " "
+          + nextFrequent(random, BULGARIAN_LAST_NAMES);
+    } else if (script < 94) {
+      return nextFrequent(random, UKRAINIAN_FIRST_NAMES)
+          + " "
+          + nextFrequent(random, UKRAINIAN_LAST_NAMES);
+    } else {
+      return nextFrequent(random, OTHER_NAMES);
+    }
+  }
+
+  /** Returns the number of phone numbers of a contact, usually one and rarely up to five. */
+  private static int nextPhoneNumberCount(Random random) {
+    int value = random.nextInt(100);
+    if (value < 70) {
+      return 1;
+    } else if (value < 90) {
+      return 2;
+    } else if (value < 98) {
+      return 3;
+    } else {
+      return 4 + random.nextInt(2);
+    }
+  }
+
+  private static String nextContactNumber(Random random) {
+    int kind = random.nextInt(100);
+    if (kind < 2) {
+      return nextNumber(random, INVALID_NUMBER_PATTERNS);
+    } else if (kind < 4) {
+      return nextNumber(random, SHORT_CODES);
+    } else {
+      return nextNumber(random, VALID_NUMBER_PATTERNS);
+    }
+  }
+
+  /** Returns a number following one of {@code patterns}, with random digits for each {@code #}. */
+  private static String nextNumber(Random random, String[] patterns) {
+    String pattern = patterns[random.nextInt(patterns.length)];
+    StringBuilder number = new StringBuilder(pattern.length());
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      number.append(c == '#' ? (char) ('0' + random.nextInt(10)) : c);
+    }
+    return number.toString();
+  }
+
+  private static int nextCallType(Random random) {
+    int value = random.nextInt(100);
+    if (value < 38) {
+      return Calls.INCOMING_TYPE;
+    } else if (value < 78) {
+      return Calls.OUTGOING_TYPE;
+    } else if (value < 92) {
+      return Calls.MISSED_TYPE;
+    } else if (value < 96) {
+      return Calls.REJECTED_TYPE;
+    } else if (value < 98) {
+      return Calls.BLOCKED_TYPE;
+    } else {
+      return Calls.ANSWERED_EXTERNALLY_TYPE;
+    }
+  }
+
+  /** Returns an exponentially distributed duration with the given mean. */
+  private static long nextDurationSeconds(Random random, int meanSeconds) {
+    return 1 + (long) (-Math.log(1 - random.nextDouble()) * meanSeconds);
+  }
+
+  /**
+   * Returns a number of {@code numbers}, mostly one of the first ones, so that a few numbers have
+   * thousands of calls while most only have a few.
+   */
+  private static String nextFrequentNumber(Random random, List<String> numbers) {
+    double value = random.nextDouble();
+    return numbers.get((int) (numbers.size() * value * value * value));
+  }
+
+  /** Returns an element of {@code values}, mostly one of the first ones like common names. */
+  private static String nextFrequent(Random random, String[] values) {
+    double value = random.nextDouble();
+    return values[(int) (values.length * value * value)];
+  }
+
+  private LargeDatasetPopulator() {}
+}
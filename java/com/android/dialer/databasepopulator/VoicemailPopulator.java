@@ -111,7 +111,8 @@ public final class VoicemailPopulator {
         .delete(Voicemails.buildSourceUri(context.getPackageName()), null, null);
   }
 
-  private static void enableVoicemail(@NonNull Context context) {
+  /** Registers the voicemail source and returns the component name of its phone account. */
+  static String enableVoicemail(@NonNull Context context) {
     PhoneAccountHandle handle =
         new PhoneAccountHandle(new ComponentName(context, VoicemailPopulator.class), ACCOUNT_ID);
     componentName = handle.getComponentName().toString();
@@ -124,6 +125,7 @@ public final class VoicemailPopulator {
     values.put(Status.DATA_CHANNEL_STATE, Status.DATA_CHANNEL_STATE_OK);
     values.put(Status.NOTIFICATION_CHANNEL_STATE, Status.NOTIFICATION_CHANNEL_STATE_OK);
     context.getContentResolver().insert(Status.buildSourceUri(context.getPackageName()), values);
+    return componentName;
   }
 
   /** Data for a single voicemail entry. */
@@ -32,6 +32,7 @@ import androidx.annotation.Nullable;
 
 import com.android.dialer.R;
 import com.android.dialer.common.Assert;
+import com.android.dialer.contactphoto.ContactPhotoDiskCache;
 import com.android.dialer.glide.GlideApp;
 import com.android.dialer.glide.GlideRequest;
 import com.android.dialer.glide.GlideRequests;
@@ -40,6 +41,8 @@ import com.android.dialer.glidephotomanager.PhotoInfo;
 import com.android.dialer.i18n.DialerBidiFormatter;
 import com.android.dialer.inject.ApplicationContext;
 import com.android.dialer.lettertile.LetterTileDrawable;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.signature.ObjectKey;
 import java.util.List;
 import javax.inject.Inject;
 
@@ -50,10 +53,16 @@ public class GlidePhotoManagerImpl implements GlidePhotoManager {
       Contacts.CONTENT_LOOKUP_URI.getPathSegments().size();
 
   private final Context appContext;
+  /**
+   * Provides the version of each contact photo, so that the thumbnails Glide keeps on disk are
+   * invalidated along with the ones of {@link ContactPhotoDiskCache}.
+   */
+  private final ContactPhotoDiskCache diskCache;
 
   @Inject
   public GlidePhotoManagerImpl(@ApplicationContext Context appContext) {
     this.appContext = appContext;
+    this.diskCache = ContactPhotoDiskCache.getInstance(appContext);
   }
 
   @MainThread
@@ -99,11 +108,12 @@ public class GlidePhotoManagerImpl implements GlidePhotoManager {
       circleCrop = false; // The spam icon is an octagon so we don't crop it.
 
     } else if (!TextUtils.isEmpty(photoInfo.getPhotoUri())) {
-      request = requestManager.load(parseUri(photoInfo.getPhotoUri()));
+      Uri photoUri = parseUri(photoInfo.getPhotoUri());
+      request = withPhotoVersion(requestManager.load(photoUri), photoUri);
 
     } else if (photoInfo.getPhotoId() != 0) {
-      request =
-          requestManager.load(ContentUris.withAppendedId(Data.CONTENT_URI, photoInfo.getPhotoId()));
+      Uri photoUri = ContentUris.withAppendedId(Data.CONTENT_URI, photoInfo.getPhotoId());
+      request = withPhotoVersion(requestManager.load(photoUri), photoInfo.getPhotoId());
 
     } else {
       // load null to indicate fallback should be used.
@@ -122,6 +132,23 @@ public class GlidePhotoManagerImpl implements GlidePhotoManager {
     return request;
   }
 
+  /**
+   * Signs {@code request} with the version of the photo of {@code key}, so that Glide doesn't keep
+   * returning a thumbnail from its disk cache once the photo has changed. Photos whose version
+   * isn't known yet are not cached on disk. Other photos, e.g. from a lookup service, are cached as
+   * usual.
+   */
+  private GlideRequest<Drawable> withPhotoVersion(GlideRequest<Drawable> request, Object key) {
+    if (!ContactPhotoDiskCache.isVersioned(key)) {
+      return request;
+    }
+    String version = diskCache.peekVersion(key);
+    if (version == null) {
+      return request.diskCacheStrategy(DiskCacheStrategy.NONE);
+    }
+    return request.signature(new ObjectKey(version));
+  }
+
   /**
    * Generate the default drawable when photos are not available. Used when the photo is loading or
    * no photo is available.
@@ -16,35 +16,45 @@
 
 package com.android.dialer.lookup;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.provider.ContactsContract.Contacts;
 import android.telephony.PhoneNumberUtils;
 import android.telephony.TelephonyManager;
-import android.util.JsonReader;
-import android.util.JsonWriter;
 import android.util.Log;
+import android.util.LruCache;
 
 import com.android.dialer.phonenumbercache.ContactInfo;
-import com.android.dialer.util.DialerUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.InputStreamReader;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Cache of reverse lookup results and their images.
+ *
+ * <p>Entries are kept in a {@link LookupCacheDatabaseHelper database}, bounded in size by evicting
+ * the least recently used entries and expired after {@link #MAX_AGE_MILLIS}. Images expire on their
+ * own, as they may be cached before the contact of their number, and are deleted along with that
+ * contact. The most recently read contacts, and numbers known not to be cached, are additionally
+ * kept in memory so that binding the call log doesn't hit the database for every row. Reads only
+ * record the access time in memory, which is written along with the next write, before the least
+ * recently used entries are evicted.
+ */
 public class LookupCache {
   private static final String TAG = LookupCache.class.getSimpleName();
 
+  // Keys of the JSON files written by earlier versions of the cache
   public static final String NAME = "Name";
   public static final String TYPE = "Type";
   public static final String LABEL = "Label";
@@ -54,66 +64,88 @@ public class LookupCache {
   public static final String PHOTO_ID = "PhotoID";
   public static final String LOOKUP_URI = "LookupURI";
 
+  private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(30);
+  /** Time numbers are remembered as not cached, in case another process caches them. */
+  private static final long NOT_CACHED_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  private static final int MAX_CONTACTS = 1000;
+  private static final int MAX_IMAGE_BYTES = 4 * 1024 * 1024;
+  private static final int MEMORY_CACHE_SIZE = 128;
+
+  private static final String[] CONTACT_PROJECTION = {
+    LookupCacheDatabaseHelper.NAME,
+    LookupCacheDatabaseHelper.TYPE,
+    LookupCacheDatabaseHelper.LABEL,
+    LookupCacheDatabaseHelper.NUMBER,
+    LookupCacheDatabaseHelper.FORMATTED_NUMBER,
+    LookupCacheDatabaseHelper.PHOTO_ID,
+    LookupCacheDatabaseHelper.LOOKUP_URI,
+    LookupCacheDatabaseHelper.CREATED,
+    "(SELECT i." + LookupCacheDatabaseHelper.CREATED + " FROM "
+        + LookupCacheDatabaseHelper.TABLE_IMAGES + " i WHERE i."
+        + LookupCacheDatabaseHelper.NORMALIZED_NUMBER + " = "
+        + LookupCacheDatabaseHelper.TABLE_CONTACTS + "."
+        + LookupCacheDatabaseHelper.NORMALIZED_NUMBER + ")"
+  };
+  private static final String NUMBER_SELECTION =
+      LookupCacheDatabaseHelper.NORMALIZED_NUMBER + " = ?";
+  /** Selects the image of a number if it was written after the given time. */
+  private static final String IMAGE_SELECTION =
+      NUMBER_SELECTION + " AND " + LookupCacheDatabaseHelper.CREATED + " >= ?";
+  private static final String CREATED_BEFORE_SELECTION =
+      LookupCacheDatabaseHelper.CREATED + " < ?";
+
+  /** Contacts by normalized number. Entries without info record numbers that aren't cached. */
+  private static final LruCache<String, MemoryEntry> memoryCache =
+      new LruCache<>(MEMORY_CACHE_SIZE);
+  /** Time each contact was last read, by normalized number, until it is written. */
+  private static final Map<String, Long> pendingContactAccesses = new HashMap<>();
+  /** Time each image was last read, by normalized number, until it is written. */
+  private static final Map<String, Long> pendingImageAccesses = new HashMap<>();
+
   public static boolean hasCachedContact(Context context, String number) {
     String normalizedNumber = formatE164(context, number);
     if (normalizedNumber == null) {
         return false;
     }
 
-    File file = getFilePath(context, normalizedNumber);
-    return file.exists();
+    return getEntry(context, normalizedNumber).info != null;
   }
 
   public static void cacheContact(Context context, ContactInfo info) {
-    File file = getFilePath(context, info.normalizedNumber);
-
-    if (file.exists()) {
-      file.delete();
+    if (info.normalizedNumber == null) {
+      Log.w(TAG, "Not caching contact without normalized number");
+      return;
     }
 
-    FileOutputStream out = null;
-    JsonWriter writer = null;
-
+    long now = System.currentTimeMillis();
+    ContentValues values = new ContentValues();
+    values.put(LookupCacheDatabaseHelper.NORMALIZED_NUMBER, info.normalizedNumber);
+    values.put(LookupCacheDatabaseHelper.NAME, info.name);
+    values.put(LookupCacheDatabaseHelper.TYPE, info.type);
+    values.put(LookupCacheDatabaseHelper.LABEL, info.label);
+    values.put(LookupCacheDatabaseHelper.NUMBER, info.number);
+    values.put(LookupCacheDatabaseHelper.FORMATTED_NUMBER, info.formattedNumber);
+    values.put(LookupCacheDatabaseHelper.PHOTO_ID, info.photoId);
+    // We do not save the photo URI. If there's a cached image, that
+    // will be used when the contact is retrieved. Otherwise, photoUri
+    // will be set to null.
+    values.put(LookupCacheDatabaseHelper.LOOKUP_URI,
+        info.lookupUri != null ? info.lookupUri.toString() : null);
+    values.put(LookupCacheDatabaseHelper.CREATED, now);
+    values.put(LookupCacheDatabaseHelper.LAST_ACCESS, now);
+
+    SQLiteDatabase db = getDatabase(context);
+    db.beginTransaction();
     try {
-      out = new FileOutputStream(file);
-      writer = new JsonWriter(new OutputStreamWriter(out, "UTF-8"));
-      writer.setIndent("  ");
-      List messages = new ArrayList();
-
-      writer.beginObject();
-      if (info.name != null) {
-        writer.name(NAME).value(info.name);
-      }
-      writer.name(TYPE).value(info.type);
-      if (info.label != null) {
-        writer.name(LABEL).value(info.label);
-      }
-      if (info.number != null) {
-        writer.name(NUMBER).value(info.number);
-      }
-      if (info.formattedNumber != null) {
-          writer.name(FORMATTED_NUMBER).value(info.formattedNumber);
-      }
-      if (info.normalizedNumber != null) {
-          writer.name(NORMALIZED_NUMBER).value(info.normalizedNumber);
-      }
-      writer.name(PHOTO_ID).value(info.photoId);
-
-      if (info.lookupUri != null) {
-          writer.name(LOOKUP_URI).value(info.lookupUri.toString());
-      }
-
-      // We do not save the photo URI. If there's a cached image, that
-      // will be used when the contact is retrieved. Otherwise, photoUri
-      // will be set to null.
-
-      writer.endObject();
-    } catch (IOException e) {
-      e.printStackTrace();
+      db.insertWithOnConflict(LookupCacheDatabaseHelper.TABLE_CONTACTS, null, values,
+          SQLiteDatabase.CONFLICT_REPLACE);
+      writeAccesses(db, LookupCacheDatabaseHelper.TABLE_CONTACTS, pendingContactAccesses);
+      trimContacts(db, now);
+      db.setTransactionSuccessful();
     } finally {
-      DialerUtils.closeQuietly(writer);
-      DialerUtils.closeQuietly(out);
+      db.endTransaction();
     }
+    memoryCache.remove(info.normalizedNumber);
   }
 
   public static ContactInfo getCachedContact(Context context, String number) {
@@ -122,152 +154,263 @@ public class LookupCache {
       return null;
     }
 
-    File file = getFilePath(context, normalizedNumber);
-    if (!file.exists()) {
-      // Whatever is calling this should probably check anyway
-      return null;
-    }
+    ContactInfo cached = getEntry(context, normalizedNumber).info;
+    // Whatever is calling this should probably check anyway
+    return cached != null ? copyOf(cached) : null;
+  }
 
-    ContactInfo info = new ContactInfo();
+  public static void deleteCachedContacts(Context context) {
+    memoryCache.evictAll();
+    if (!LookupCacheDatabaseHelper.exists(context)) {
+      LookupCacheDatabaseHelper.deleteLegacyFiles(context);
+      return;
+    }
 
-    FileInputStream in = null;
-    JsonReader reader = null;
+    SQLiteDatabase db = getDatabase(context);
+    db.beginTransaction();
+    try {
+      db.delete(LookupCacheDatabaseHelper.TABLE_CONTACTS, null, null);
+      db.delete(LookupCacheDatabaseHelper.TABLE_IMAGES, null, null);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
 
+  public static void deleteCachedContact(Context context, String normalizedNumber) {
+    String[] selectionArgs = {normalizedNumber};
+    SQLiteDatabase db = getDatabase(context);
+    db.beginTransaction();
     try {
-      in = new FileInputStream(file);
-      reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
-
-      reader.beginObject();
-      while (reader.hasNext()) {
-        String name = reader.nextName();
-
-        if (NAME.equals(name)) {
-          info.name = reader.nextString();
-        } else if (TYPE.equals(name)) {
-          info.type = reader.nextInt();
-        } else if (LABEL.equals(name)) {
-          info.label = reader.nextString();
-        } else if (NUMBER.equals(name)) {
-          info.number = reader.nextString();
-        } else if (FORMATTED_NUMBER.equals(name)) {
-          info.formattedNumber = reader.nextString();
-        } else if (NORMALIZED_NUMBER.equals(name)) {
-          info.normalizedNumber = reader.nextString();
-        } else if (PHOTO_ID.equals(name)) {
-          info.photoId = reader.nextInt();
-        } else if (LOOKUP_URI.equals(name)) {
-          Uri lookupUri = Uri.parse(reader.nextString());
-
-          if (hasCachedImage(context, normalizedNumber)) {
-            // Insert cached photo URI
-            Uri image = Uri.withAppendedPath(LookupProvider.IMAGE_CACHE_URI,
-                Uri.encode(normalizedNumber));
-
-            String json = lookupUri.getEncodedFragment();
-            if (json != null) {
-              try {
-                JSONObject jsonObj = new JSONObject(json);
-                jsonObj.putOpt(Contacts.PHOTO_URI, image.toString());
-                lookupUri = lookupUri.buildUpon()
-                    .encodedFragment(jsonObj.toString())
-                    .build();
-              } catch (JSONException e) {
-                Log.e(TAG, "Failed to add image URI to json", e);
-              }
-            }
+      db.delete(LookupCacheDatabaseHelper.TABLE_CONTACTS, NUMBER_SELECTION, selectionArgs);
+      db.delete(LookupCacheDatabaseHelper.TABLE_IMAGES, NUMBER_SELECTION, selectionArgs);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    memoryCache.remove(normalizedNumber);
+  }
 
-            info.photoUri = image;
-          }
+  public static Uri cacheImage(Context context, String normalizedNumber, Bitmap bmp) {
+    // Compress the cached images to save space
+    if (bmp == null) {
+      Log.e(TAG, "Failed to cache image");
+      return null;
+    }
 
-          info.lookupUri = lookupUri;
-        }
-      }
-      reader.endObject();
-    } catch (IOException e) {
-      e.printStackTrace();
-    } finally {
-      DialerUtils.closeQuietly(reader);
-      DialerUtils.closeQuietly(in);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    if (!bmp.compress(Bitmap.CompressFormat.WEBP, 100, out)) {
+      Log.e(TAG, "Failed to compress image");
+      return null;
+    }
+    if (out.size() > LookupCacheDatabaseHelper.MAX_IMAGE_SIZE) {
+      Log.w(TAG, "Not caching image of " + out.size() + " bytes");
+      return null;
     }
 
-    return info;
+    long now = System.currentTimeMillis();
+    ContentValues values = new ContentValues();
+    values.put(LookupCacheDatabaseHelper.NORMALIZED_NUMBER, normalizedNumber);
+    values.put(LookupCacheDatabaseHelper.DATA, out.toByteArray());
+    values.put(LookupCacheDatabaseHelper.CREATED, now);
+    values.put(LookupCacheDatabaseHelper.LAST_ACCESS, now);
+
+    SQLiteDatabase db = getDatabase(context);
+    db.beginTransaction();
+    try {
+      db.insertWithOnConflict(LookupCacheDatabaseHelper.TABLE_IMAGES, null, values,
+          SQLiteDatabase.CONFLICT_REPLACE);
+      writeAccesses(db, LookupCacheDatabaseHelper.TABLE_IMAGES, pendingImageAccesses);
+      trimImages(db, now);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    // The photo URI of the cached contact changes
+    memoryCache.remove(normalizedNumber);
+    return getImageUri(normalizedNumber);
   }
 
-  public static void deleteCachedContacts(Context context) {
-    File dir = new File(context.getCacheDir(), "lookup");
-    if (!dir.exists()) {
-      Log.v(TAG, "Lookup cache directory does not exist. Not clearing it.");
-      return;
+  /** Returns the compressed image cached for {@code normalizedNumber}, or null if there is none. */
+  public static byte[] getCachedImageData(Context context, String normalizedNumber) {
+    long now = System.currentTimeMillis();
+    try (Cursor cursor = getDatabase(context).query(LookupCacheDatabaseHelper.TABLE_IMAGES,
+        new String[] {LookupCacheDatabaseHelper.DATA}, IMAGE_SELECTION,
+        getImageSelectionArgs(normalizedNumber, now), null, null, null)) {
+      if (!cursor.moveToFirst()) {
+        return null;
+      }
+      recordAccess(pendingImageAccesses, normalizedNumber, now);
+      return cursor.getBlob(0);
     }
+  }
 
-    if (!dir.isDirectory()) {
-      Log.e(TAG, "Path " + dir + " is not a directory");
-      return;
+  private static MemoryEntry getEntry(Context context, String normalizedNumber) {
+    MemoryEntry entry = memoryCache.get(normalizedNumber);
+    long now = System.currentTimeMillis();
+    if (entry == null || now >= entry.expiresAt) {
+      entry = queryContact(context, normalizedNumber, now);
+      memoryCache.put(normalizedNumber, entry);
+    }
+    if (entry.info != null) {
+      recordAccess(pendingContactAccesses, normalizedNumber, now);
     }
+    return entry;
+  }
 
-    File[] files = dir.listFiles();
-    if (files != null) {
-      for (File file : files) {
-        if (file.isFile()) {
-          file.delete();
+  private static MemoryEntry queryContact(Context context, String normalizedNumber, long now) {
+    String[] selectionArgs = {normalizedNumber};
+    SQLiteDatabase db = getDatabase(context);
+    try (Cursor cursor = db.query(LookupCacheDatabaseHelper.TABLE_CONTACTS, CONTACT_PROJECTION,
+        NUMBER_SELECTION, selectionArgs, null, null, null)) {
+      long created = cursor.moveToFirst() ? cursor.getLong(7) : 0;
+      if (created == 0 || isExpired(created, now)) {
+        // Expired contacts are deleted with the next write.
+        return new MemoryEntry(null, now + NOT_CACHED_MAX_AGE_MILLIS);
+      }
+
+      ContactInfo info = new ContactInfo();
+      info.name = cursor.getString(0);
+      info.type = cursor.getInt(1);
+      info.label = cursor.getString(2);
+      info.number = cursor.getString(3);
+      info.formattedNumber = cursor.getString(4);
+      info.normalizedNumber = normalizedNumber;
+      info.photoId = cursor.getLong(5);
+
+      long expiresAt = created + MAX_AGE_MILLIS;
+      String lookupUriString = cursor.getString(6);
+      if (lookupUriString != null) {
+        Uri lookupUri = Uri.parse(lookupUriString);
+
+        long imageCreated = cursor.isNull(8) ? 0 : cursor.getLong(8);
+        if (imageCreated != 0 && !isExpired(imageCreated, now)) {
+          // The photo URI goes away when the image expires
+          expiresAt = Math.min(expiresAt, imageCreated + MAX_AGE_MILLIS);
+          // Insert cached photo URI
+          Uri image = getImageUri(normalizedNumber);
+
+          String json = lookupUri.getEncodedFragment();
+          if (json != null) {
+            try {
+              JSONObject jsonObj = new JSONObject(json);
+              jsonObj.putOpt(Contacts.PHOTO_URI, image.toString());
+              lookupUri = lookupUri.buildUpon()
+                  .encodedFragment(jsonObj.toString())
+                  .build();
+            } catch (JSONException e) {
+              Log.e(TAG, "Failed to add image URI to json", e);
+            }
+          }
+
+          info.photoUri = image;
         }
+
+        info.lookupUri = lookupUri;
       }
+      return new MemoryEntry(info, expiresAt);
     }
   }
 
-  public static void deleteCachedContact(Context context, String normalizedNumber) {
-    File f = getFilePath(context, normalizedNumber);
-    if (f.exists()) {
-      f.delete();
+  /** Records that an entry was read, so that it is evicted after less recently used ones. */
+  private static void recordAccess(Map<String, Long> accesses, String normalizedNumber, long now) {
+    synchronized (accesses) {
+      accesses.put(normalizedNumber, now);
     }
+  }
 
-    f = getImagePath(context, normalizedNumber);
-    if (f.exists()) {
-      f.delete();
+  /** Writes the access times recorded for {@code table} since it was last written. */
+  private static void writeAccesses(SQLiteDatabase db, String table, Map<String, Long> accesses) {
+    List<Map.Entry<String, Long>> entries;
+    synchronized (accesses) {
+      entries = new ArrayList<>(accesses.entrySet());
+      accesses.clear();
+    }
+    ContentValues values = new ContentValues(1);
+    for (Map.Entry<String, Long> entry : entries) {
+      values.put(LookupCacheDatabaseHelper.LAST_ACCESS, entry.getValue());
+      db.update(table, values, NUMBER_SELECTION, new String[] {entry.getKey()});
     }
   }
 
-  public static boolean hasCachedImage(Context context, String number) {
-    String normalizedNumber = formatE164(context, number);
-    if (normalizedNumber == null) {
-      return false;
-    }
+  /**
+   * Deletes expired contacts and the least recently used ones beyond {@link #MAX_CONTACTS}, along
+   * with their images.
+   */
+  private static void trimContacts(SQLiteDatabase db, long now) {
+    deleteContacts(db, CREATED_BEFORE_SELECTION,
+        new String[] {Long.toString(now - MAX_AGE_MILLIS)});
+    deleteContacts(db, LookupCacheDatabaseHelper.NORMALIZED_NUMBER + " IN (SELECT "
+        + LookupCacheDatabaseHelper.NORMALIZED_NUMBER + " FROM "
+        + LookupCacheDatabaseHelper.TABLE_CONTACTS + " ORDER BY "
+        + LookupCacheDatabaseHelper.LAST_ACCESS + " DESC LIMIT -1 OFFSET " + MAX_CONTACTS + ")",
+        null);
+  }
 
-    File file = getImagePath(context, normalizedNumber);
-    return file.exists();
+  /** Deletes the contacts matching {@code selection} and their images. */
+  private static void deleteContacts(SQLiteDatabase db, String selection, String[] selectionArgs) {
+    db.delete(LookupCacheDatabaseHelper.TABLE_IMAGES,
+        LookupCacheDatabaseHelper.NORMALIZED_NUMBER + " IN (SELECT "
+            + LookupCacheDatabaseHelper.NORMALIZED_NUMBER + " FROM "
+            + LookupCacheDatabaseHelper.TABLE_CONTACTS + " WHERE " + selection + ")",
+        selectionArgs);
+    db.delete(LookupCacheDatabaseHelper.TABLE_CONTACTS, selection, selectionArgs);
   }
 
-  public static Uri cacheImage(Context context, String normalizedNumber, Bitmap bmp) {
-    // Compress the cached images to save space
-    if (bmp == null) {
-      Log.e(TAG, "Failed to cache image");
-      return null;
+  /** Deletes expired images and the least recently used ones beyond {@link #MAX_IMAGE_BYTES}. */
+  private static void trimImages(SQLiteDatabase db, long now) {
+    db.delete(LookupCacheDatabaseHelper.TABLE_IMAGES, CREATED_BEFORE_SELECTION,
+        new String[] {Long.toString(now - MAX_AGE_MILLIS)});
+    List<String> evicted = new ArrayList<>();
+    long totalBytes = 0;
+    try (Cursor cursor = db.query(LookupCacheDatabaseHelper.TABLE_IMAGES,
+        new String[] {
+          LookupCacheDatabaseHelper.NORMALIZED_NUMBER,
+          "length(" + LookupCacheDatabaseHelper.DATA + ")"
+        },
+        null, null, null, null, LookupCacheDatabaseHelper.LAST_ACCESS + " DESC")) {
+      while (cursor.moveToNext()) {
+        totalBytes += cursor.getLong(1);
+        if (totalBytes > MAX_IMAGE_BYTES) {
+          evicted.add(cursor.getString(0));
+        }
+      }
     }
+    for (String normalizedNumber : evicted) {
+      db.delete(LookupCacheDatabaseHelper.TABLE_IMAGES, NUMBER_SELECTION,
+          new String[] {normalizedNumber});
+      memoryCache.remove(normalizedNumber);
+    }
+  }
 
-    File image = getImagePath(context, normalizedNumber);
-    FileOutputStream out = null;
+  private static boolean isExpired(long created, long now) {
+    return created < now - MAX_AGE_MILLIS;
+  }
 
-    try {
-      out = new FileOutputStream(image);
-      bmp.compress(Bitmap.CompressFormat.WEBP, 100, out);
-      return Uri.fromFile(image);
-    } catch (Exception e) {
-      e.printStackTrace();
-    } finally {
-      DialerUtils.closeQuietly(out);
-    }
-    return null;
+  private static String[] getImageSelectionArgs(String normalizedNumber, long now) {
+    return new String[] {normalizedNumber, Long.toString(now - MAX_AGE_MILLIS)};
   }
 
-  public static Bitmap getCachedImage(Context context, String normalizedNumber) {
-    File image = getImagePath(context, normalizedNumber);
-    if (!image.exists()) {
-      return null;
-    }
+  private static ContactInfo copyOf(ContactInfo cached) {
+    ContactInfo info = new ContactInfo();
+    info.name = cached.name;
+    info.type = cached.type;
+    info.label = cached.label;
+    info.number = cached.number;
+    info.formattedNumber = cached.formattedNumber;
+    info.normalizedNumber = cached.normalizedNumber;
+    info.photoId = cached.photoId;
+    info.photoUri = cached.photoUri;
+    info.lookupUri = cached.lookupUri;
+    return info;
+  }
 
-    BitmapFactory.Options options = new BitmapFactory.Options();
-    options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-    return BitmapFactory.decodeFile(image.getPath(), options);
+  private static Uri getImageUri(String normalizedNumber) {
+    return Uri.withAppendedPath(LookupProvider.IMAGE_CACHE_URI, Uri.encode(normalizedNumber));
+  }
+
+  private static SQLiteDatabase getDatabase(Context context) {
+    return LookupCacheDatabaseHelper.getInstance(context).getWritableDatabase();
   }
 
   private static String formatE164(Context context, String number) {
@@ -276,21 +419,14 @@ public class LookupCache {
     return PhoneNumberUtils.formatNumberToE164(number, countryIso);
   }
 
-  private static File getFilePath(Context context, String normalizedNumber) {
-    File dir = new File(context.getCacheDir(), "lookup");
-    if (!dir.exists()) {
-      dir.mkdirs();
-    }
+  private static class MemoryEntry {
+    /** Null for numbers which aren't cached. */
+    final ContactInfo info;
+    final long expiresAt;
 
-    return new File(dir, normalizedNumber + ".json");
-  }
-
-  public static File getImagePath(Context context, String normalizedNumber) {
-    File dir = new File(context.getCacheDir(), "lookup");
-    if (!dir.exists()) {
-      dir.mkdirs();
+    MemoryEntry(ContactInfo info, long expiresAt) {
+      this.info = info;
+      this.expiresAt = expiresAt;
     }
-
-    return new File(dir, normalizedNumber + ".webp");
   }
 }
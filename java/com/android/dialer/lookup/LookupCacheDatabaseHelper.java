@@ -0,0 +1,212 @@
+/*
+ * SPDX-FileCopyrightText: The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.android.dialer.lookup;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.JsonReader;
+import android.util.Log;
+
+import com.android.dialer.util.DialerUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+
+/**
+ * Database holding the reverse lookup results and images cached by {@link LookupCache}.
+ *
+ * <p>Earlier versions kept one JSON file and one WEBP file per number in the "lookup" cache
+ * directory. Those are imported when the database is created and deleted afterwards.
+ */
+final class LookupCacheDatabaseHelper extends SQLiteOpenHelper {
+  private static final String TAG = LookupCacheDatabaseHelper.class.getSimpleName();
+
+  static final String DATABASE_NAME = "lookup_cache.db";
+  private static final int DATABASE_VERSION = 1;
+
+  static final String TABLE_CONTACTS = "contacts";
+  static final String TABLE_IMAGES = "images";
+
+  static final String NORMALIZED_NUMBER = "normalized_number";
+  static final String NAME = "name";
+  static final String TYPE = "type";
+  static final String LABEL = "label";
+  static final String NUMBER = "number";
+  static final String FORMATTED_NUMBER = "formatted_number";
+  static final String PHOTO_ID = "photo_id";
+  static final String LOOKUP_URI = "lookup_uri";
+  static final String DATA = "data";
+  /** Time the entry was written, used to expire it. */
+  static final String CREATED = "created";
+  /** Time the entry was last read, used to evict the least recently used entries. */
+  static final String LAST_ACCESS = "last_access";
+
+  /** Legacy images larger than this are dropped rather than imported. */
+  static final int MAX_IMAGE_SIZE = 256 * 1024;
+
+  private static final String LEGACY_DIRECTORY = "lookup";
+
+  private static LookupCacheDatabaseHelper instance;
+
+  private final Context context;
+
+  private LookupCacheDatabaseHelper(Context context) {
+    super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    this.context = context;
+  }
+
+  static synchronized LookupCacheDatabaseHelper getInstance(Context context) {
+    if (instance == null) {
+      instance = new LookupCacheDatabaseHelper(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  /** Whether the database has been created, so that clearing it can be skipped when it wasn't. */
+  static boolean exists(Context context) {
+    return context.getDatabasePath(DATABASE_NAME).exists();
+  }
+
+  @Override
+  public void onCreate(SQLiteDatabase db) {
+    db.execSQL("CREATE TABLE " + TABLE_CONTACTS + " ("
+        + NORMALIZED_NUMBER + " TEXT PRIMARY KEY, "
+        + NAME + " TEXT, "
+        + TYPE + " INTEGER NOT NULL DEFAULT 0, "
+        + LABEL + " TEXT, "
+        + NUMBER + " TEXT, "
+        + FORMATTED_NUMBER + " TEXT, "
+        + PHOTO_ID + " INTEGER NOT NULL DEFAULT 0, "
+        + LOOKUP_URI + " TEXT, "
+        + CREATED + " INTEGER NOT NULL, "
+        + LAST_ACCESS + " INTEGER NOT NULL);");
+    db.execSQL("CREATE TABLE " + TABLE_IMAGES + " ("
+        + NORMALIZED_NUMBER + " TEXT PRIMARY KEY, "
+        + DATA + " BLOB NOT NULL, "
+        + CREATED + " INTEGER NOT NULL, "
+        + LAST_ACCESS + " INTEGER NOT NULL);");
+    db.execSQL("CREATE INDEX " + TABLE_CONTACTS + "_" + LAST_ACCESS + "_index ON "
+        + TABLE_CONTACTS + " (" + LAST_ACCESS + ");");
+    db.execSQL("CREATE INDEX " + TABLE_IMAGES + "_" + LAST_ACCESS + "_index ON "
+        + TABLE_IMAGES + " (" + LAST_ACCESS + ");");
+
+    importLegacyFiles(db);
+  }
+
+  @Override
+  public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {}
+
+  /** Deletes the per-number files written by earlier versions, if there are any. */
+  static void deleteLegacyFiles(Context context) {
+    File dir = new File(context.getCacheDir(), LEGACY_DIRECTORY);
+    if (!dir.isDirectory()) {
+      return;
+    }
+
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  private void importLegacyFiles(SQLiteDatabase db) {
+    File dir = new File(context.getCacheDir(), LEGACY_DIRECTORY);
+    File[] files = dir.isDirectory() ? dir.listFiles() : null;
+    if (files == null) {
+      return;
+    }
+
+    int imported = 0;
+    for (File file : files) {
+      String fileName = file.getName();
+      ContentValues values = null;
+      String table = null;
+      if (fileName.endsWith(".json")) {
+        values = readLegacyContact(file);
+        table = TABLE_CONTACTS;
+      } else if (fileName.endsWith(".webp") && file.length() <= MAX_IMAGE_SIZE) {
+        values = readLegacyImage(file);
+        table = TABLE_IMAGES;
+      }
+      if (values == null) {
+        continue;
+      }
+
+      String normalizedNumber = fileName.substring(0, fileName.lastIndexOf('.'));
+      values.put(NORMALIZED_NUMBER, normalizedNumber);
+      values.put(CREATED, file.lastModified());
+      values.put(LAST_ACCESS, file.lastModified());
+      if (db.insertWithOnConflict(table, null, values, SQLiteDatabase.CONFLICT_REPLACE) != -1) {
+        imported++;
+      }
+    }
+    Log.v(TAG, "Imported " + imported + " of " + files.length + " legacy cache files");
+
+    deleteLegacyFiles(context);
+  }
+
+  private static ContentValues readLegacyContact(File file) {
+    ContentValues values = new ContentValues();
+    FileInputStream in = null;
+    JsonReader reader = null;
+
+    try {
+      in = new FileInputStream(file);
+      reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+
+        if (LookupCache.NAME.equals(name)) {
+          values.put(NAME, reader.nextString());
+        } else if (LookupCache.TYPE.equals(name)) {
+          values.put(TYPE, reader.nextInt());
+        } else if (LookupCache.LABEL.equals(name)) {
+          values.put(LABEL, reader.nextString());
+        } else if (LookupCache.NUMBER.equals(name)) {
+          values.put(NUMBER, reader.nextString());
+        } else if (LookupCache.FORMATTED_NUMBER.equals(name)) {
+          values.put(FORMATTED_NUMBER, reader.nextString());
+        } else if (LookupCache.PHOTO_ID.equals(name)) {
+          values.put(PHOTO_ID, reader.nextLong());
+        } else if (LookupCache.LOOKUP_URI.equals(name)) {
+          values.put(LOOKUP_URI, reader.nextString());
+        } else {
+          // The normalized number is also the file name
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      return values;
+    } catch (IOException | IllegalStateException e) {
+      Log.w(TAG, "Failed to import " + file, e);
+      return null;
+    } finally {
+      DialerUtils.closeQuietly(reader);
+      DialerUtils.closeQuietly(in);
+    }
+  }
+
+  private static ContentValues readLegacyImage(File file) {
+    try {
+      ContentValues values = new ContentValues();
+      values.put(DATA, Files.readAllBytes(file.toPath()));
+      return values;
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to import " + file, e);
+      return null;
+    }
+  }
+}
@@ -47,8 +47,9 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.concurrent.Callable;
@@ -211,19 +212,25 @@ public class LookupProvider extends ContentProvider {
   public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
     switch (uriMatcher.match(uri)) {
       case IMAGE:
-        String number = uri.getLastPathSegment();
-        File image = LookupCache.getImagePath(getContext(), number);
-
-        if (mode.equals("r")) {
-          if (image == null || !image.exists() || !image.isFile()) {
-            throw new FileNotFoundException("Cached image does not exist");
-          }
-
-          return ParcelFileDescriptor.open(image, ParcelFileDescriptor.MODE_READ_ONLY);
-        } else {
+        if (!mode.equals("r")) {
           throw new FileNotFoundException("The URI is read only");
         }
 
+        String number = uri.getLastPathSegment();
+        byte[] image = LookupCache.getCachedImageData(getContext(), number);
+        if (image == null) {
+          throw new FileNotFoundException("Cached image does not exist");
+        }
+
+        return openPipeHelper(uri, "image/webp", null, image,
+            (output, imageUri, mimeType, opts, data) -> {
+              try (OutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(output)) {
+                out.write(data);
+              } catch (IOException e) {
+                Log.w(TAG, "Failed to write cached image for " + imageUri, e);
+              }
+            });
+
       default:
         throw new FileNotFoundException("Invalid URI: " + uri);
     }
@@ -18,12 +18,13 @@ package com.android.dialer.lookup;
 
 import android.text.Html;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.Charset;
@@ -32,6 +33,7 @@ import java.nio.charset.UnsupportedCharsetException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -39,10 +41,18 @@ public class LookupUtils {
   private static final String USER_AGENT =
       "Mozilla/5.0 (X11; Linux x86_64; rv:42.0) Gecko/20100101 Firefox/42.0";
 
+  private static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(10);
+  private static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(15);
+  private static final int BUFFER_SIZE = 8192;
+  /** Upper bound of the initial buffer for a response, whatever its announced length. */
+  private static final int MAX_INITIAL_BUFFER_SIZE = 256 * 1024;
+
   private static HttpURLConnection prepareHttpConnection(String url, Map<String, String> headers)
       throws IOException {
     // open connection
     HttpURLConnection urlConnection = (HttpURLConnection) new URL(url).openConnection();
+    urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+    urlConnection.setReadTimeout(READ_TIMEOUT_MILLIS);
     // set user agent (default value is null)
     urlConnection.setRequestProperty("User-Agent", USER_AGENT);
     // set all other headers if not null
@@ -55,24 +65,54 @@ public class LookupUtils {
     return urlConnection;
   }
 
+  /*
+   * The response readers below close the response stream once it is fully read, which hands the
+   * connection back to the keep-alive pool of HttpURLConnection, so that subsequent lookups on the
+   * same host skip the TCP and TLS handshakes. disconnect() would close the socket instead, so it
+   * is only called to drop connections whose response failed.
+   */
+
   private static byte[] httpFetch(HttpURLConnection urlConnection) throws IOException {
-    // query url, read and return buffered response body
-    // we want to make sure that the connection gets closed here
-    InputStream is = new BufferedInputStream(urlConnection.getInputStream());
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    byte[] result = null;
-    try {
-      byte[] partial = new byte[4096];
+    boolean success = false;
+    try (InputStream is = urlConnection.getInputStream()) {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream(initialBufferSize(urlConnection));
+      byte[] partial = new byte[BUFFER_SIZE];
       int read;
-      while ((read = is.read(partial, 0, 4096)) != -1) {
+      while ((read = is.read(partial)) != -1) {
         baos.write(partial, 0, read);
       }
-      result = baos.toByteArray();
+      success = true;
+      return baos.toByteArray();
+    } finally {
+      if (!success) {
+        urlConnection.disconnect();
+      }
+    }
+  }
+
+  /** Reads the response decoded as it arrives, rather than copying its bytes first. */
+  private static String httpFetchString(HttpURLConnection urlConnection) throws IOException {
+    boolean success = false;
+    try (Reader reader = new InputStreamReader(urlConnection.getInputStream(),
+        determineCharset(urlConnection))) {
+      StringBuilder sb = new StringBuilder(initialBufferSize(urlConnection));
+      char[] partial = new char[BUFFER_SIZE];
+      int read;
+      while ((read = reader.read(partial)) != -1) {
+        sb.append(partial, 0, read);
+      }
+      success = true;
+      return sb.toString();
     } finally {
-      is.close();
-      baos.close();
+      if (!success) {
+        urlConnection.disconnect();
+      }
     }
-    return result;
+  }
+
+  private static int initialBufferSize(HttpURLConnection connection) {
+    int contentLength = connection.getContentLength();
+    return contentLength > 0 ? Math.min(contentLength, MAX_INITIAL_BUFFER_SIZE) : BUFFER_SIZE;
   }
 
   private static Charset determineCharset(HttpURLConnection connection) {
@@ -94,53 +134,43 @@ public class LookupUtils {
   }
 
   public static String httpGet(String url, Map<String, String> headers) throws IOException {
-    HttpURLConnection connection = prepareHttpConnection(url, headers);
-    try {
-      byte[] response = httpFetch(connection);
-      return new String(response, determineCharset(connection));
-    } finally {
-      connection.disconnect();
-    }
+    return httpFetchString(prepareHttpConnection(url, headers));
   }
 
   public static byte[] httpGetBytes(String url, Map<String, String> headers) throws IOException {
-    HttpURLConnection connection = prepareHttpConnection(url, headers);
-    try {
-      return httpFetch(connection);
-    } finally {
-      connection.disconnect();
-    }
+    return httpFetch(prepareHttpConnection(url, headers));
   }
 
   public static String httpPost(String url, Map<String, String> headers, String postData)
       throws IOException {
     HttpURLConnection connection = prepareHttpConnection(url, headers);
 
-    try {
-      // write postData to buffered output stream
-      if (postData != null) {
-        connection.setDoOutput(true);
-        BufferedWriter bw = new BufferedWriter(
-            new OutputStreamWriter(connection.getOutputStream()));
-        try {
-          bw.write(postData, 0, postData.length());
-          // close connection and re-throw exception
-        } finally {
-          bw.close();
-        }
+    // write postData to buffered output stream
+    if (postData != null) {
+      connection.setDoOutput(true);
+      try (BufferedWriter bw = new BufferedWriter(
+          new OutputStreamWriter(connection.getOutputStream()))) {
+        bw.write(postData, 0, postData.length());
+      } catch (IOException e) {
+        connection.disconnect();
+        throw e;
       }
-      byte[] response = httpFetch(connection);
-      return new String(response, determineCharset(connection));
-    } finally {
-      connection.disconnect();
     }
+    return httpFetchString(connection);
   }
 
   public static List<String> allRegexResults(String input, String regex, boolean dotall) {
+    return allRegexResults(input, Pattern.compile(regex, dotall ? Pattern.DOTALL : 0));
+  }
+
+  /**
+   * Returns the trimmed first group of all matches of {@code pattern}. Providers should keep their
+   * patterns in constants, so that they are compiled once rather than for every lookup.
+   */
+  public static List<String> allRegexResults(String input, Pattern pattern) {
     if (input == null) {
       return null;
     }
-    Pattern pattern = Pattern.compile(regex, dotall ? Pattern.DOTALL : 0);
     Matcher matcher = pattern.matcher(input);
 
     List<String> regexResults = new ArrayList<String>();
@@ -151,10 +181,14 @@ public class LookupUtils {
   }
 
   public static String firstRegexResult(String input, String regex, boolean dotall) {
+    return firstRegexResult(input, Pattern.compile(regex, dotall ? Pattern.DOTALL : 0));
+  }
+
+  /** Returns the trimmed first group of the first match of {@code pattern}. */
+  public static String firstRegexResult(String input, Pattern pattern) {
     if (input == null) {
       return null;
     }
-    Pattern pattern = Pattern.compile(regex, dotall ? Pattern.DOTALL : 0);
     Matcher m = pattern.matcher(input);
     return m.find() ? m.group(1).trim() : null;
   }
@@ -33,7 +33,7 @@ public abstract class ReverseLookup {
 
   private static ReverseLookup INSTANCE = null;
 
-  public static ReverseLookup getInstance(Context context) {
+  public static synchronized ReverseLookup getInstance(Context context) {
     String provider = LookupSettings.getReverseLookupProvider(context);
 
     if (INSTANCE == null || !isInstance(provider)) {
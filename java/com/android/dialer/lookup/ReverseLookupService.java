@@ -17,13 +17,14 @@
 package com.android.dialer.lookup;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.net.Uri;
 import android.os.Handler;
-import android.os.HandlerThread;
+import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.telephony.PhoneNumberUtils;
 import android.telephony.TelephonyManager;
+import android.util.ArrayMap;
+import android.util.Log;
 
 import com.android.dialer.location.GeoUtil;
 import com.android.dialer.logging.ContactLookupResult;
@@ -31,27 +32,69 @@ import com.android.dialer.phonenumbercache.ContactInfo;
 import com.android.incallui.bindings.PhoneNumberService;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Looks up numbers of calls with the configured {@link ReverseLookup} provider.
+ *
+ * <p>Lookups run on a small pool of threads, so that a slow provider response for one number
+ * doesn't hold back the others. The most recent request is served first, as it belongs to the
+ * call which just started ringing, and requests for a number which is already being looked up
+ * share the running lookup. Requests which waited longer than {@link #LOOKUP_DEADLINE_MILLIS} are
+ * dropped, since their call has most likely ended by then. Provider calls run on threads of their
+ * own, so that a lookup whose call is still in flight at the deadline can be abandoned; the call is
+ * cancelled, but keeps its provider permit until it returns.
+ */
 public class ReverseLookupService implements PhoneNumberService, Handler.Callback {
-  private final HandlerThread backgroundThread;
-  private final Handler backgroundHandler;
+  private static final String TAG = ReverseLookupService.class.getSimpleName();
+
+  private static final int MAX_CONCURRENT_LOOKUPS = 4;
+  /** Bound on the lookups sent to one provider at a time, to stay within its rate limits. */
+  private static final int MAX_CONCURRENT_LOOKUPS_PER_PROVIDER = 2;
+  private static final long LOOKUP_DEADLINE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+
+  private final ThreadPoolExecutor executor;
+  /** Runs the provider calls, which are bounded by the provider permits. */
+  private final ExecutorService providerExecutor;
   private final Handler handler;
   private final Context context;
   private final TelephonyManager telephonyManager;
 
-  private static final int MSG_LOOKUP = 1;
+  private final AtomicInteger threadCount = new AtomicInteger();
+  /** Requests which are queued or running, by normalized number. */
+  private final Map<String, LookupRequest> inFlightRequests = new ArrayMap<>();
+  private final Map<String, Semaphore> providerPermits = new ArrayMap<>();
+  private long requestCount;
+
   private static final int MSG_NOTIFY_NUMBER = 2;
 
   public ReverseLookupService(Context context) {
     this.context = context;
     telephonyManager = context.getSystemService(TelephonyManager.class);
 
-    // TODO: stop after a while?
-    backgroundThread = new HandlerThread("ReverseLookup");
-    backgroundThread.start();
+    executor = new ThreadPoolExecutor(MAX_CONCURRENT_LOOKUPS, MAX_CONCURRENT_LOOKUPS,
+        IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<>(),
+        runnable -> new Thread(runnable, "ReverseLookup-" + threadCount.incrementAndGet()));
+    executor.allowCoreThreadTimeOut(true);
+    providerExecutor = Executors.newCachedThreadPool(
+        runnable -> new Thread(runnable, "ReverseLookupProvider-" + threadCount.incrementAndGet()));
 
-    backgroundHandler = new Handler(backgroundThread.getLooper(), this);
-    handler = new Handler(this);
+    handler = new Handler(Looper.getMainLooper(), this);
   }
 
   @Override
@@ -70,33 +113,44 @@ public class ReverseLookupService implements PhoneNumberService, Handler.Callbac
       return;
     }
 
-    LookupRequest request = new LookupRequest();
-    request.normalizedNumber = normalizedNumber;
-    request.formattedNumber = PhoneNumberUtils.formatNumber(phoneNumber,
-        request.normalizedNumber, GeoUtil.getCurrentCountryIso(context));
-    request.numberListener = numberListener;
+    long deadline = SystemClock.elapsedRealtime() + LOOKUP_DEADLINE_MILLIS;
+    synchronized (inFlightRequests) {
+      LookupRequest request = inFlightRequests.get(normalizedNumber);
+      if (request != null) {
+        request.numberListeners.add(numberListener);
+        request.deadline = deadline;
+        // Move a request which is still queued to the front, as its call is the latest one
+        if (executor.remove(request)) {
+          request.sequence = requestCount++;
+          executor.execute(request);
+        }
+        return;
+      }
 
-    backgroundHandler.obtainMessage(MSG_LOOKUP, request).sendToTarget();
+      request = new LookupRequest();
+      request.normalizedNumber = normalizedNumber;
+      request.formattedNumber = PhoneNumberUtils.formatNumber(phoneNumber,
+          request.normalizedNumber, GeoUtil.getCurrentCountryIso(context));
+      request.numberListeners.add(numberListener);
+      request.deadline = deadline;
+      request.sequence = requestCount++;
+      inFlightRequests.put(normalizedNumber, request);
+      executor.execute(request);
+    }
   }
 
   @Override
   public boolean handleMessage(Message msg) {
     switch (msg.what) {
-      case MSG_LOOKUP: {
-        // background thread
-        LookupRequest request = (LookupRequest) msg.obj;
-        request.contactInfo = doLookup(request);
-        if (request.contactInfo != null) {
-          handler.obtainMessage(MSG_NOTIFY_NUMBER, request).sendToTarget();
-        }
-        break;
-      }
       case MSG_NOTIFY_NUMBER: {
         // main thread
         LookupRequest request = (LookupRequest) msg.obj;
-        if (request.numberListener != null) {
-          LookupNumberInfo info = new LookupNumberInfo(request.contactInfo);
-          request.numberListener.onPhoneNumberInfoComplete(info);
+        LookupNumberInfo info = request.contactInfo != null
+            ? new LookupNumberInfo(request.contactInfo) : null;
+        for (NumberLookupListener numberListener : request.numberListeners) {
+          if (numberListener != null) {
+            numberListener.onPhoneNumberInfoComplete(info);
+          }
         }
         break;
       }
@@ -118,36 +172,119 @@ public class ReverseLookupService implements PhoneNumberService, Handler.Callbac
       }
     }
 
+    Semaphore permits = getProviderPermits(LookupSettings.getReverseLookupProvider(context));
     try {
-      ReverseLookup inst = ReverseLookup.getInstance(context);
-      ContactInfo info = inst.lookupNumber(context, number, request.formattedNumber);
-      if (info != null && !info.equals(ContactInfo.EMPTY)) {
-        LookupCache.cacheContact(context, info);
-        return info;
+      long timeout = request.deadline - SystemClock.elapsedRealtime();
+      if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+        Log.d(TAG, "Provider busy until the lookup deadline, dropping lookup");
+        return null;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+
+    ProviderLookup providerLookup = new ProviderLookup(request, permits);
+    FutureTask<ContactInfo> future = new FutureTask<>(providerLookup);
+    providerExecutor.execute(future);
+    try {
+      long timeout = request.deadline - SystemClock.elapsedRealtime();
+      return future.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      Log.d(TAG, "Lookup deadline passed while waiting for the provider, dropping lookup");
+      providerLookup.cancel(future);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      providerLookup.cancel(future);
+    } catch (ExecutionException e) {
+      if (!(e.getCause() instanceof IOException)) {
+        Log.w(TAG, "Lookup failed", e.getCause());
       }
-    } catch (IOException e) {
-      // ignored
     }
 
     return null;
   }
 
-  private Bitmap fetchImage(LookupRequest request, Uri uri) {
-    if (!LookupCache.hasCachedImage(context, request.normalizedNumber)) {
-      Bitmap bmp = ReverseLookup.getInstance(context).lookupImage(context, uri);
-      if (bmp != null) {
-        LookupCache.cacheImage(context, request.normalizedNumber, bmp);
+  private Semaphore getProviderPermits(String provider) {
+    synchronized (providerPermits) {
+      Semaphore permits = providerPermits.get(provider);
+      if (permits == null) {
+        permits = new Semaphore(MAX_CONCURRENT_LOOKUPS_PER_PROVIDER);
+        providerPermits.put(provider, permits);
       }
+      return permits;
     }
+  }
+
+  /** Call to the provider, which releases its permit once it returns or is cancelled. */
+  private class ProviderLookup implements Callable<ContactInfo> {
+    private final LookupRequest request;
+    private final Semaphore permits;
+    /** Set by whichever of the call and its cancellation comes first. */
+    private final AtomicBoolean started = new AtomicBoolean();
 
-    return LookupCache.getCachedImage(context, request.normalizedNumber);
+    ProviderLookup(LookupRequest request, Semaphore permits) {
+      this.request = request;
+      this.permits = permits;
+    }
+
+    @Override
+    public ContactInfo call() throws IOException {
+      if (!started.compareAndSet(false, true)) {
+        return null;
+      }
+      try {
+        ReverseLookup inst = ReverseLookup.getInstance(context);
+        ContactInfo info =
+            inst.lookupNumber(context, request.normalizedNumber, request.formattedNumber);
+        if (info != null && !info.equals(ContactInfo.EMPTY)) {
+          // Cached even past the deadline, for the next call from the number
+          LookupCache.cacheContact(context, info);
+          return info;
+        }
+        return null;
+      } finally {
+        permits.release();
+      }
+    }
+
+    void cancel(FutureTask<ContactInfo> future) {
+      future.cancel(true);
+      // A call which never started won't release the permit
+      if (started.compareAndSet(false, true)) {
+        permits.release();
+      }
+    }
   }
 
-  private static class LookupRequest {
+  private class LookupRequest implements Runnable, Comparable<LookupRequest> {
     String normalizedNumber;
     String formattedNumber;
-    NumberLookupListener numberListener;
+    // Guarded by inFlightRequests until the request is removed from it
+    final List<NumberLookupListener> numberListeners = new ArrayList<>(1);
+    volatile long deadline;
+    long sequence;
     ContactInfo contactInfo;
+
+    @Override
+    public void run() {
+      // background thread
+      if (SystemClock.elapsedRealtime() < deadline) {
+        contactInfo = doLookup(this);
+      } else {
+        Log.d(TAG, "Lookup deadline passed, dropping lookup");
+      }
+      synchronized (inFlightRequests) {
+        inFlightRequests.remove(normalizedNumber);
+      }
+      handler.obtainMessage(MSG_NOTIFY_NUMBER, this).sendToTarget();
+    }
+
+    @Override
+    public int compareTo(LookupRequest other) {
+      // Latest request first
+      return Long.compare(other.sequence, sequence);
+    }
   }
 
   private static class LookupNumberInfo implements PhoneNumberInfo {
@@ -22,6 +22,7 @@ import android.net.Uri;
 import com.android.dialer.lookup.LookupUtils;
 
 import java.io.IOException;
+import java.util.regex.Pattern;
 
 public class TelefonbuchApi {
   private static final String TAG = TelefonbuchApi.class.getSimpleName();
@@ -29,12 +30,18 @@ public class TelefonbuchApi {
   private static final String REVERSE_LOOKUP_URL =
           "https://www.dastelefonbuch.de/R%C3%BCckw%C3%A4rts-Suche/";
 
-  private static String RELEVANT_CONTENT_REGEX =
-          "<div class=\"vcard\">(.*)<div class=\"additional\">";
-  private static String NAME_REGEX ="<div class=\"name\" title=\"(.*?)\">";
-  private static String NUMBER_REGEX = "<!-- phoneTo: (.*?) -->";
-  private static String ADDRESS_REGEX = "<address.*?>\n?(.*?)</address>";
-  private static String WEBSITE_REGEX = "<div.*class=\"url\">.*<a.*?href=\"(.*?)\"";
+  private static final Pattern RELEVANT_CONTENT_PATTERN = Pattern.compile(
+          "<div class=\"vcard\">(.*)<div class=\"additional\">", Pattern.DOTALL);
+  private static final Pattern NAME_PATTERN = Pattern.compile(
+          "<div class=\"name\" title=\"(.*?)\">", Pattern.DOTALL);
+  private static final Pattern NUMBER_PATTERN = Pattern.compile("<!-- phoneTo: (.*?) -->");
+  private static final Pattern ADDRESS_PATTERN = Pattern.compile(
+          "<address.*?>\n?(.*?)</address>", Pattern.DOTALL);
+  private static final Pattern WEBSITE_PATTERN = Pattern.compile(
+          "<div.*class=\"url\">.*<a.*?href=\"(.*?)\"", Pattern.DOTALL);
+  private static final Pattern HIDDEN_SPAN_PATTERN =
+          Pattern.compile("<span class=\"hide\".*?\\/span>");
+  private static final Pattern SPAN_WRAPPER_PATTERN = Pattern.compile("</?span.*?>");
 
   private TelefonbuchApi() {
   }
@@ -47,16 +54,16 @@ public class TelefonbuchApi {
     // Cut out everything we're not interested in (scripts etc.) to
     // speed up the subsequent matching.
     String output = LookupUtils.firstRegexResult(
-            LookupUtils.httpGet(uri.toString(), null), RELEVANT_CONTENT_REGEX, true);
+            LookupUtils.httpGet(uri.toString(), null), RELEVANT_CONTENT_PATTERN);
 
-    String name = parseValue(output, NAME_REGEX, true, false);
+    String name = parseValue(output, NAME_PATTERN, false);
     if (name == null) {
       return null;
     }
 
-    String phoneNumber = parseValue(output, NUMBER_REGEX, false, true);
-    String address = parseValue(output, ADDRESS_REGEX, true, true);
-    String website = parseValue(output, WEBSITE_REGEX, true, false);
+    String phoneNumber = parseValue(output, NUMBER_PATTERN, true);
+    String address = parseValue(output, ADDRESS_PATTERN, true);
+    String website = parseValue(output, WEBSITE_PATTERN, false);
 
     ContactInfo info = new ContactInfo();
     info.name = name;
@@ -67,14 +74,13 @@ public class TelefonbuchApi {
     return info;
   }
 
-  private static String parseValue(String output, String regex,
-      boolean dotall, boolean removeSpans) {
-    String result = LookupUtils.firstRegexResult(output, regex, dotall);
+  private static String parseValue(String output, Pattern pattern, boolean removeSpans) {
+    String result = LookupUtils.firstRegexResult(output, pattern);
     if (result != null && removeSpans) {
       // completely remove hidden spans (including contents) ...
-      result = result.replaceAll("<span class=\"hide\".*?\\/span>", "");
+      result = HIDDEN_SPAN_PATTERN.matcher(result).replaceAll("");
       // ... and remove span wrappers around data content
-      result = result.replaceAll("</?span.*?>", "");
+      result = SPAN_WRAPPER_PATTERN.matcher(result).replaceAll("");
     }
     return LookupUtils.fromHtml(result);
   }
@@ -41,6 +41,7 @@ import com.android.dialer.app.settings.DialerSettingsActivity;
 import com.android.dialer.callintent.CallInitiationType;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.constants.ActivityRequestCodes;
+import com.android.dialer.database.Database;
 import com.android.dialer.dialpadview.DialpadFragment;
 import com.android.dialer.dialpadview.DialpadFragment.DialpadListener;
 import com.android.dialer.dialpadview.DialpadFragment.OnDialpadQueryChangedListener;
@@ -210,6 +211,9 @@ public class MainSearchController implements SearchBarListener {
       return;
     }
 
+    // The next dialpad query is typed in a new session, don't reuse the results of this one.
+    Database.get(activity).getDatabaseHelper(activity).endSmartDialSearchSession();
+
     fab.show();
     toolbar.slideDown(animate, fragmentContainer);
     toolbar.transferQueryFromDialpad(dialpadFragment.getQuery());
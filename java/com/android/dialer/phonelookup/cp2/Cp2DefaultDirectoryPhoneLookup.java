@@ -69,6 +69,14 @@ public final class Cp2DefaultDirectoryPhoneLookup implements PhoneLookup<Cp2Info
   private static final String PREF_LAST_TIMESTAMP_PROCESSED =
       "cp2DefaultDirectoryPhoneLookupLastTimestampProcessed";
 
+  /**
+   * Up to this many invalid numbers are looked up with one PHONE_LOOKUP query each. More are
+   * matched in memory in a single pass over the PHONE table, see {@link LooseNumberMatcher}, which
+   * is only done by the bulk update. It is also the limit of invalid numbers {@link #isDirty}
+   * checks, as it must stay lightweight.
+   */
+  private static final int MAX_INDIVIDUAL_INVALID_NUMBER_QUERIES = 5;
+
   private final Context appContext;
   private final SharedPreferences sharedPreferences;
   private final ListeningExecutorService backgroundExecutorService;
@@ -155,7 +163,7 @@ public final class Cp2DefaultDirectoryPhoneLookup implements PhoneLookup<Cp2Info
     }
 
     PartitionedNumbers partitionedNumbers = new PartitionedNumbers(phoneNumbers);
-    if (partitionedNumbers.invalidNumbers().size() > getMaxSupportedInvalidNumbers()) {
+    if (partitionedNumbers.invalidNumbers().size() > MAX_INDIVIDUAL_INVALID_NUMBER_QUERIES) {
       // If there are N invalid numbers, we can't determine determine dirtiness without running N
       // queries; since running this many queries is not feasible for the (lightweight) isDirty
       // check, simply return true. The expectation is that this should rarely be the case as the
@@ -252,7 +260,7 @@ public final class Cp2DefaultDirectoryPhoneLookup implements PhoneLookup<Cp2Info
     // Then run a separate query for each invalid number. Separate queries are done to accomplish
     // loose matching which couldn't be accomplished with a batch query.
     Assert.checkState(
-        partitionedNumbers.invalidNumbers().size() <= getMaxSupportedInvalidNumbers());
+        partitionedNumbers.invalidNumbers().size() <= MAX_INDIVIDUAL_INVALID_NUMBER_QUERIES);
     for (String invalidNumber : partitionedNumbers.invalidNumbers()) {
       queryFutures.add(queryPhoneLookupTableForContactIdsBasedOnRawNumber(invalidNumber));
     }
@@ -696,8 +704,8 @@ public final class Cp2DefaultDirectoryPhoneLookup implements PhoneLookup<Cp2Info
           }
 
           // Divide the numbers into those that are valid and those that are not. Issue a single
-          // batch query for the valid numbers against the PHONE table, and in parallel issue
-          // individual queries against PHONE_LOOKUP for each invalid number.
+          // batch query for the valid numbers against the PHONE table, and in parallel look up the
+          // invalid numbers (see queryForInvalidNumbers).
           // TODO(zachh): These queries are inefficient without a lastModified column to filter on.
           PartitionedNumbers partitionedNumbers =
               new PartitionedNumbers(ImmutableSet.copyOf(updatedNumbers));
@@ -705,19 +713,15 @@ public final class Cp2DefaultDirectoryPhoneLookup implements PhoneLookup<Cp2Info
           ListenableFuture<Map<String, Set<Cp2ContactInfo>>> validNumbersFuture =
               batchQueryForValidNumbers(partitionedNumbers.validE164Numbers());
 
-          List<ListenableFuture<Set<Cp2ContactInfo>>> invalidNumbersFuturesList = new ArrayList<>();
-          for (String invalidNumber : partitionedNumbers.invalidNumbers()) {
-            invalidNumbersFuturesList.add(individualQueryForInvalidNumber(invalidNumber));
-          }
-
-          ListenableFuture<List<Set<Cp2ContactInfo>>> invalidNumbersFuture =
-              Futures.allAsList(invalidNumbersFuturesList);
+          ListenableFuture<Map<String, Set<Cp2ContactInfo>>> invalidNumbersFuture =
+              queryForInvalidNumbers(partitionedNumbers.invalidNumbers());
 
           Callable<Map<DialerPhoneNumber, Set<Cp2ContactInfo>>> computeMap =
               () -> {
                 // These get() calls are safe because we are using whenAllSucceed below.
                 Map<String, Set<Cp2ContactInfo>> validNumbersResult = validNumbersFuture.get();
-                List<Set<Cp2ContactInfo>> invalidNumbersResult = invalidNumbersFuture.get();
+                Map<String, Set<Cp2ContactInfo>> invalidNumbersResult =
+                    invalidNumbersFuture.get();
 
                 Map<DialerPhoneNumber, Set<Cp2ContactInfo>> map = new ArrayMap<>();
 
@@ -738,9 +742,11 @@ public final class Cp2DefaultDirectoryPhoneLookup implements PhoneLookup<Cp2Info
                 }
 
                 // Next update the map with the invalid results.
-                int i = 0;
                 for (String invalidNumber : partitionedNumbers.invalidNumbers()) {
-                  Set<Cp2ContactInfo> cp2Infos = invalidNumbersResult.get(i++);
+                  Set<Cp2ContactInfo> cp2Infos = invalidNumbersResult.get(invalidNumber);
+                  if (cp2Infos == null) {
+                    cp2Infos = ImmutableSet.of();
+                  }
                   Set<DialerPhoneNumber> dialerPhoneNumbers =
                       partitionedNumbers.dialerPhoneNumbersForInvalid(invalidNumber);
 
@@ -801,6 +807,75 @@ public final class Cp2DefaultDirectoryPhoneLookup implements PhoneLookup<Cp2Info
         });
   }
 
+  /**
+   * Looks up contacts for numbers which aren't valid E164 numbers, with the loose matching of
+   * PHONE_LOOKUP. Numbers without any contact are missing from the returned map.
+   */
+  private ListenableFuture<Map<String, Set<Cp2ContactInfo>>> queryForInvalidNumbers(
+      ImmutableSet<String> invalidNumbers) {
+    if (invalidNumbers.size() > MAX_INDIVIDUAL_INVALID_NUMBER_QUERIES) {
+      return batchQueryForInvalidNumbers(invalidNumbers);
+    }
+    List<ListenableFuture<Set<Cp2ContactInfo>>> invalidNumberFutures = new ArrayList<>();
+    for (String invalidNumber : invalidNumbers) {
+      invalidNumberFutures.add(individualQueryForInvalidNumber(invalidNumber));
+    }
+    return Futures.transform(
+        Futures.allAsList(invalidNumberFutures),
+        invalidNumberResults -> {
+          Map<String, Set<Cp2ContactInfo>> cp2ContactInfosByNumber = new ArrayMap<>();
+          int i = 0;
+          for (String invalidNumber : invalidNumbers) {
+            cp2ContactInfosByNumber.put(invalidNumber, invalidNumberResults.get(i++));
+          }
+          return cp2ContactInfosByNumber;
+        },
+        lightweightExecutorService);
+  }
+
+  /**
+   * Matches all {@code invalidNumbers} in a single query of the PHONE table, instead of issuing one
+   * PHONE_LOOKUP query per number.
+   */
+  private ListenableFuture<Map<String, Set<Cp2ContactInfo>>> batchQueryForInvalidNumbers(
+      Set<String> invalidNumbers) {
+    return backgroundExecutorService.submit(
+        () -> {
+          Map<String, Set<Cp2ContactInfo>> cp2ContactInfosByNumber = new ArrayMap<>();
+          LooseNumberMatcher matcher = new LooseNumberMatcher(appContext, invalidNumbers);
+          if (matcher.isEmpty()) {
+            return cp2ContactInfosByNumber;
+          }
+          try (Cursor cursor =
+              queryPhoneTable(Cp2Projections.getProjectionForPhoneTableWithNumber())) {
+            if (cursor == null) {
+              LogUtil.w(
+                  "Cp2DefaultDirectoryPhoneLookup.batchQueryForInvalidNumbers", "null cursor");
+              return cp2ContactInfosByNumber;
+            }
+            while (cursor.moveToNext()) {
+              List<String> matchingNumbers =
+                  matcher.match(Cp2Projections.getNumberFromCursor(cursor));
+              if (matchingNumbers.isEmpty()) {
+                continue;
+              }
+              Cp2ContactInfo cp2ContactInfo =
+                  Cp2Projections.buildCp2ContactInfoFromCursor(
+                      appContext, cursor, Directory.DEFAULT);
+              for (String invalidNumber : matchingNumbers) {
+                Set<Cp2ContactInfo> cp2ContactInfos = cp2ContactInfosByNumber.get(invalidNumber);
+                if (cp2ContactInfos == null) {
+                  cp2ContactInfos = new ArraySet<>();
+                  cp2ContactInfosByNumber.put(invalidNumber, cp2ContactInfos);
+                }
+                cp2ContactInfos.add(cp2ContactInfo);
+              }
+            }
+          }
+          return cp2ContactInfosByNumber;
+        });
+  }
+
   private ListenableFuture<Set<Cp2ContactInfo>> individualQueryForInvalidNumber(
       String invalidNumber) {
     return backgroundExecutorService.submit(
@@ -855,6 +930,10 @@ public final class Cp2DefaultDirectoryPhoneLookup implements PhoneLookup<Cp2Info
             null);
   }
 
+  private Cursor queryPhoneTable(String[] projection) {
+    return appContext.getContentResolver().query(Phone.CONTENT_URI, projection, null, null, null);
+  }
+
   private Cursor queryPhoneLookup(String[] projection, String rawNumber) {
     Uri uri =
         Uri.withAppendedPath(
@@ -963,11 +1042,12 @@ public final class Cp2DefaultDirectoryPhoneLookup implements PhoneLookup<Cp2Info
   }
 
   /**
-   * We cannot efficiently process invalid numbers because batch queries cannot be constructed which
-   * accomplish the necessary loose matching. We'll attempt to process a limited number of them, but
-   * if there are too many we fall back to querying CP2 at render time.
+   * Batch queries cannot be constructed which accomplish the loose matching invalid numbers need,
+   * so more than a few of them are matched in memory against the whole PHONE table. This bounds the
+   * number of invalid numbers held in memory for that; if there are more we fall back to querying
+   * CP2 at render time.
    */
   private long getMaxSupportedInvalidNumbers() {
-    return 5;
+    return 1000;
   }
 }
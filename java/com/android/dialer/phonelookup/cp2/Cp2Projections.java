@@ -24,6 +24,7 @@ import android.provider.ContactsContract.Contacts;
 import android.provider.ContactsContract.PhoneLookup;
 import android.text.TextUtils;
 import com.android.dialer.phonelookup.PhoneLookupInfo.Cp2Info.Cp2ContactInfo;
+import java.util.Arrays;
 
 /**
  * A class providing projection-related functionality for {@link
@@ -46,6 +47,14 @@ final class Cp2Projections {
         Phone.CARRIER_PRESENCE
       };
 
+  // Projection for matching numbers in memory against all rows of the PHONE table
+  private static final String[] PHONE_PROJECTION_WITH_NUMBER;
+
+  static {
+    PHONE_PROJECTION_WITH_NUMBER = Arrays.copyOf(PHONE_PROJECTION, PHONE_PROJECTION.length + 1);
+    PHONE_PROJECTION_WITH_NUMBER[PHONE_PROJECTION.length] = Phone.NUMBER;
+  }
+
   // Projection for performing lookups using the PHONE_LOOKUP table
   private static final String[] PHONE_LOOKUP_PROJECTION =
       new String[] {
@@ -78,6 +87,11 @@ final class Cp2Projections {
     return PHONE_PROJECTION;
   }
 
+  /** Returns {@link #PHONE_PROJECTION} followed by {@link Phone#NUMBER}. */
+  static String[] getProjectionForPhoneTableWithNumber() {
+    return PHONE_PROJECTION_WITH_NUMBER;
+  }
+
   static String[] getProjectionForPhoneLookupTable() {
     return PHONE_LOOKUP_PROJECTION;
   }
@@ -139,6 +153,14 @@ final class Cp2Projections {
     return infoBuilder.build();
   }
 
+  /**
+   * Returns the number in the current row of {@code cursor}, of which the projection is {@link
+   * #PHONE_PROJECTION_WITH_NUMBER}.
+   */
+  static String getNumberFromCursor(Cursor cursor) {
+    return cursor.getString(PHONE_PROJECTION.length);
+  }
+
   /** Returns the normalized number in the current row of {@code cursor}. */
   static String getNormalizedNumberFromCursor(Cursor cursor) {
     return cursor.getString(CP2_INFO_NORMALIZED_NUMBER_INDEX);
@@ -0,0 +1,76 @@
+/*
+ * SPDX-FileCopyrightText: The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.android.dialer.phonelookup.cp2;
+
+import android.content.Context;
+import android.support.v4.util.ArrayMap;
+import android.telephony.PhoneNumberUtils;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matches phone numbers from CP2 against a set of numbers in memory, approximating how {@link
+ * android.provider.ContactsContract.PhoneLookup} matches a single number.
+ *
+ * <p>Like the PHONE_LOOKUP table, candidates are found through the "min match" of a number (its
+ * last digits, reversed). They are then compared with {@link PhoneNumberUtils#compare(Context,
+ * String, String)}, which follows the device's configuration for strict or loose comparison. CP2
+ * compares numbers with its own SQL function instead, so a few numbers, e.g. with a different
+ * country prefix or trunk digit, may match differently than with PHONE_LOOKUP. This allows numbers
+ * which can't be parsed to E164, and therefore can't be found through {@link
+ * android.provider.ContactsContract.CommonDataKinds.Phone#NORMALIZED_NUMBER}, to be resolved with a
+ * single pass over the PHONE table instead of one PHONE_LOOKUP query each.
+ */
+final class LooseNumberMatcher {
+
+  private final Context appContext;
+  private final ArrayMap<String, List<String>> numbersByMinMatch = new ArrayMap<>();
+
+  LooseNumberMatcher(Context appContext, Set<String> numbers) {
+    this.appContext = appContext;
+    for (String number : numbers) {
+      String minMatch = PhoneNumberUtils.toCallerIDMinMatch(number);
+      if (TextUtils.isEmpty(minMatch)) {
+        continue;
+      }
+      List<String> numbersForMinMatch = numbersByMinMatch.get(minMatch);
+      if (numbersForMinMatch == null) {
+        numbersForMinMatch = new ArrayList<>(1);
+        numbersByMinMatch.put(minMatch, numbersForMinMatch);
+      }
+      numbersForMinMatch.add(number);
+    }
+  }
+
+  boolean isEmpty() {
+    return numbersByMinMatch.isEmpty();
+  }
+
+  /** Returns the numbers passed to the constructor which match {@code cp2Number}. */
+  List<String> match(String cp2Number) {
+    if (TextUtils.isEmpty(cp2Number)) {
+      return Collections.emptyList();
+    }
+    List<String> candidates = numbersByMinMatch.get(PhoneNumberUtils.toCallerIDMinMatch(cp2Number));
+    if (candidates == null) {
+      return Collections.emptyList();
+    }
+    List<String> matches = null;
+    for (String candidate : candidates) {
+      if (PhoneNumberUtils.compare(appContext, candidate, cp2Number)) {
+        if (matches == null) {
+          matches = new ArrayList<>(candidates.size());
+        }
+        matches.add(candidate);
+      }
+    }
+    return matches == null ? Collections.emptyList() : matches;
+  }
+}
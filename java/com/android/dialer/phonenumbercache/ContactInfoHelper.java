@@ -28,6 +28,7 @@ import android.provider.ContactsContract.DisplayNameSources;
 import android.provider.ContactsContract.PhoneLookup;
 import android.telephony.PhoneNumberUtils;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
@@ -41,12 +42,15 @@ import com.android.dialer.logging.ContactSource;
 import com.android.dialer.oem.CequintCallerIdManager;
 import com.android.dialer.oem.CequintCallerIdManager.CequintCallerIdContact;
 import com.android.dialer.phonenumbercache.CachedNumberLookupService.CachedContactInfo;
+import com.android.dialer.phonenumberutil.PhoneNumberCache;
 import com.android.dialer.phonenumberutil.PhoneNumberHelper;
 import com.android.dialer.telecom.TelecomUtil;
 import com.android.dialer.util.PermissionsUtil;
 import com.android.dialer.util.UriUtils;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -248,11 +252,99 @@ public class ContactInfoHelper {
     return updatedInfo;
   }
 
+  /**
+   * Looks up several numbers in the default directory with a single query, by their normalized
+   * number.
+   *
+   * <p>Returns the contact info of each number at its index, or null where the number still has to
+   * be looked up with {@link #lookupNumber(String, String)}: if it can't be normalized, or if no
+   * contact has it as normalized number, as {@link PhoneLookup} also matches numbers loosely.
+   */
+  @WorkerThread
+  public ContactInfo[] lookupNumbersInDefaultDirectory(
+      List<String> numbers, List<String> countryIsos) {
+    ContactInfo[] infos = new ContactInfo[numbers.size()];
+    if (!PermissionsUtil.hasContactsReadPermissions(context)) {
+      return infos;
+    }
+
+    Map<String, List<Integer>> indexesByNormalizedNumber = new ArrayMap<>();
+    for (int i = 0; i < numbers.size(); i++) {
+      String number = numbers.get(i);
+      if (TextUtils.isEmpty(number) || PhoneNumberHelper.isUriNumber(number)) {
+        continue;
+      }
+      String countryIso = countryIsos.get(i);
+      String normalizedNumber =
+          PhoneNumberCache.getInstance()
+              .get(number, TextUtils.isEmpty(countryIso) ? currentCountryIso : countryIso)
+              .getE164Number();
+      if (normalizedNumber == null) {
+        continue;
+      }
+      List<Integer> indexes = indexesByNormalizedNumber.get(normalizedNumber);
+      if (indexes == null) {
+        indexes = new ArrayList<>(1);
+        indexesByNormalizedNumber.put(normalizedNumber, indexes);
+      }
+      indexes.add(i);
+    }
+    if (indexesByNormalizedNumber.isEmpty()) {
+      return infos;
+    }
+
+    String[] selectionArgs = indexesByNormalizedNumber.keySet().toArray(new String[0]);
+    String selection =
+        Phone.NORMALIZED_NUMBER
+            + " IN ("
+            + TextUtils.join(",", Collections.nCopies(selectionArgs.length, "?"))
+            + ")";
+    try (Cursor cursor =
+        context
+            .getContentResolver()
+            .query(
+                Phone.CONTENT_URI,
+                PhoneQuery.PHONE_BATCH_PROJECTION,
+                selection,
+                selectionArgs,
+                null /* sortOrder */)) {
+      if (cursor == null) {
+        LogUtil.d("ContactInfoHelper.lookupNumbersInDefaultDirectory", "cursor is null");
+        return infos;
+      }
+      while (cursor.moveToNext()) {
+        List<Integer> indexes =
+            indexesByNormalizedNumber.get(cursor.getString(PhoneQuery.NORMALIZED_NUMBER));
+        if (indexes == null) {
+          continue;
+        }
+        for (int index : indexes) {
+          if (infos[index] != null) {
+            // Keep the first contact, like PhoneLookup does
+            continue;
+          }
+          ContactInfo info =
+              createPhoneLookupContactInfo(cursor, cursor.getString(PhoneQuery.LOOKUP_KEY));
+          info.nameAlternative = cursor.getString(PhoneQuery.BATCH_NAME_ALTERNATIVE);
+          info.carrierPresence = cursor.getInt(PhoneQuery.BATCH_CARRIER_PRESENCE);
+          info.formattedNumber =
+              formatPhoneNumber(numbers.get(index), null, countryIsos.get(index));
+          info.sourceType = ContactSource.Type.SOURCE_TYPE_DIRECTORY;
+          infos[index] = info;
+        }
+      }
+    } catch (SecurityException e) {
+      LogUtil.e("ContactInfoHelper.lookupNumbersInDefaultDirectory", "query failed", e);
+    }
+    return infos;
+  }
+
   private ContactInfo createEmptyContactInfoForNumber(String number, String countryIso) {
     ContactInfo contactInfo = new ContactInfo();
     contactInfo.number = number;
     contactInfo.formattedNumber = formatPhoneNumber(number, null, countryIso);
-    contactInfo.normalizedNumber = PhoneNumberUtils.formatNumberToE164(number, countryIso);
+    contactInfo.normalizedNumber =
+        PhoneNumberCache.getInstance().get(number, countryIso).getE164Number();
     contactInfo.lookupUri = createTemporaryContactUri(contactInfo.formattedNumber);
     return contactInfo;
   }
@@ -66,4 +66,26 @@ final class PhoneQuery {
   static String[] getPhoneLookupProjection() {
       return PHONE_LOOKUP_PROJECTION;
   }
+
+  /**
+   * Projection to look up the ContactInfo of several numbers at once in the PHONE table, by their
+   * normalized number. Includes the columns of {@link #ADDITIONAL_CONTACT_INFO_PROJECTION}.
+   */
+  static final String[] PHONE_BATCH_PROJECTION =
+      new String[] {
+        Phone.CONTACT_ID,
+        Phone.DISPLAY_NAME,
+        Phone.TYPE,
+        Phone.LABEL,
+        Phone.NUMBER,
+        Phone.NORMALIZED_NUMBER,
+        Phone.PHOTO_ID,
+        Phone.LOOKUP_KEY,
+        Phone.PHOTO_URI,
+        Phone.DISPLAY_NAME_ALTERNATIVE,
+        Phone.CARRIER_PRESENCE
+      };
+
+  static final int BATCH_NAME_ALTERNATIVE = 9;
+  static final int BATCH_CARRIER_PRESENCE = 10;
 }
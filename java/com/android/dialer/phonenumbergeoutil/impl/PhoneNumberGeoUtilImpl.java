@@ -21,10 +21,7 @@ import android.text.TextUtils;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.i18n.LocaleUtils;
 import com.android.dialer.phonenumbergeoutil.PhoneNumberGeoUtil;
-import com.google.i18n.phonenumbers.NumberParseException;
-import com.google.i18n.phonenumbers.PhoneNumberUtil;
-import com.google.i18n.phonenumbers.Phonenumber;
-import com.google.i18n.phonenumbers.geocoding.PhoneNumberOfflineGeocoder;
+import com.android.dialer.phonenumberutil.PhoneNumberCache;
 import java.util.Locale;
 import javax.inject.Inject;
 
@@ -42,34 +39,20 @@ public class PhoneNumberGeoUtilImpl implements PhoneNumberGeoUtil {
       return null;
     }
 
-    PhoneNumberUtil util = PhoneNumberUtil.getInstance();
-    PhoneNumberOfflineGeocoder geocoder = PhoneNumberOfflineGeocoder.getInstance();
-
     Locale locale = LocaleUtils.getLocale(context);
-    Phonenumber.PhoneNumber pn = null;
-    try {
-      LogUtil.v(
-          "PhoneNumberGeoUtilImpl.getGeoDescription",
-          "parsing '" + LogUtil.sanitizePii(number) + "' for countryIso '" + countryIso + "'...");
-      pn = util.parse(number, countryIso);
-      LogUtil.v(
-          "PhoneNumberGeoUtilImpl.getGeoDescription",
-          "- parsed number: " + LogUtil.sanitizePii(pn));
-    } catch (NumberParseException e) {
+    PhoneNumberCache.Entry entry = PhoneNumberCache.getInstance().get(number, countryIso);
+    if (entry.getPhoneNumber() == null) {
       LogUtil.e(
           "PhoneNumberGeoUtilImpl.getGeoDescription",
           "getGeoDescription: NumberParseException for incoming number '"
               + LogUtil.sanitizePii(number)
               + "'");
+      return null;
     }
 
-    if (pn != null) {
-      String description = geocoder.getDescriptionForNumber(pn, locale);
-      LogUtil.v(
-          "PhoneNumberGeoUtilImpl.getGeoDescription", "- got description: '" + description + "'");
-      return description;
-    }
-
-    return null;
+    String description = entry.getGeoDescription(locale);
+    LogUtil.v(
+        "PhoneNumberGeoUtilImpl.getGeoDescription", "- got description: '" + description + "'");
+    return description;
   }
 }
@@ -26,10 +26,9 @@ import androidx.annotation.WorkerThread;
 import com.android.dialer.DialerPhoneNumber;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
-import com.google.i18n.phonenumbers.NumberParseException;
+import com.android.dialer.phonenumberutil.PhoneNumberCache;
 import com.google.i18n.phonenumbers.PhoneNumberUtil;
 import com.google.i18n.phonenumbers.PhoneNumberUtil.MatchType;
-import com.google.i18n.phonenumbers.PhoneNumberUtil.PhoneNumberFormat;
 import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
 import com.google.i18n.phonenumbers.ShortNumberInfo;
 
@@ -85,22 +84,19 @@ public class DialerPhoneNumberUtil {
 
     String networkPortion = PhoneNumberUtils.extractNetworkPortion(numberToParse);
 
-    try {
-      PhoneNumber phoneNumber = phoneNumberUtil.parse(networkPortion, defaultRegion);
-      if (phoneNumberUtil.isValidNumber(phoneNumber)) {
-        String validNumber = phoneNumberUtil.format(phoneNumber, PhoneNumberFormat.E164);
-        if (TextUtils.isEmpty(validNumber)) {
-          throw new IllegalStateException(
-              "e164 number should not be empty: " + LogUtil.sanitizePii(numberToParse));
-        }
-        // The E164 representation doesn't contain post-dial digits, but we need to preserve them.
-        if (!postDialPortion.isEmpty()) {
-          validNumber += postDialPortion;
-        }
-        return dialerPhoneNumber.setNormalizedNumber(validNumber).setIsValid(true).build();
+    PhoneNumberCache.Entry entry =
+        PhoneNumberCache.getInstance().get(networkPortion, defaultRegion);
+    if (entry.isValid()) {
+      String validNumber = entry.getE164Number();
+      if (TextUtils.isEmpty(validNumber)) {
+        throw new IllegalStateException(
+            "e164 number should not be empty: " + LogUtil.sanitizePii(numberToParse));
       }
-    } catch (NumberParseException e) {
-      // fall through
+      // The E164 representation doesn't contain post-dial digits, but we need to preserve them.
+      if (!postDialPortion.isEmpty()) {
+        validNumber += postDialPortion;
+      }
+      return dialerPhoneNumber.setNormalizedNumber(validNumber).setIsValid(true).build();
     }
     return dialerPhoneNumber.setNormalizedNumber(networkPortion + postDialPortion).build();
   }
@@ -138,22 +134,15 @@ public class DialerPhoneNumberUtil {
       return false;
     }
 
-    PhoneNumber phoneNumber1 = null;
-    try {
-      phoneNumber1 =
-          phoneNumberUtil.parse(firstNumberIn.getNormalizedNumber(), firstNumberIn.getCountryIso());
-    } catch (NumberParseException e) {
-      // fall through
-    }
-
-    PhoneNumber phoneNumber2 = null;
-    try {
-      phoneNumber2 =
-          phoneNumberUtil.parse(
-              secondNumberIn.getNormalizedNumber(), secondNumberIn.getCountryIso());
-    } catch (NumberParseException e) {
-      // fall through
-    }
+    PhoneNumberCache cache = PhoneNumberCache.getInstance();
+    PhoneNumber phoneNumber1 =
+        cache
+            .get(firstNumberIn.getNormalizedNumber(), firstNumberIn.getCountryIso())
+            .getPhoneNumber();
+    PhoneNumber phoneNumber2 =
+        cache
+            .get(secondNumberIn.getNormalizedNumber(), secondNumberIn.getCountryIso())
+            .getPhoneNumber();
 
     // If either number is a service number or either number can't be parsed by libphonenumber, just
     // fallback to basic textual matching.
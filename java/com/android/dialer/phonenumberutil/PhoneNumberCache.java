@@ -0,0 +1,225 @@
+/*
+ * SPDX-FileCopyrightText: The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.android.dialer.phonenumberutil;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.telephony.PhoneNumberUtils;
+import android.telephony.TelephonyManager;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import com.android.dialer.common.LogUtil;
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.PhoneNumberUtil.PhoneNumberFormat;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+import com.google.i18n.phonenumbers.geocoding.PhoneNumberOfflineGeocoder;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of the results of libphonenumber for a raw number and a country ISO, as the
+ * same numbers are parsed and formatted again and again while binding the call log and calls.
+ *
+ * <p>The number is parsed once, when it is first looked up, and each format or geo description
+ * is computed the first time it is requested. The cache is bounded and thread-safe, and it is
+ * cleared when the network country changes, since lookups then use another country ISO.
+ */
+public final class PhoneNumberCache {
+
+  private static final int MAX_ENTRIES = 512;
+
+  private static final PhoneNumberCache instance = new PhoneNumberCache();
+
+  private final LruCache<String, Entry> entries = new LruCache<>(MAX_ENTRIES);
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  private boolean receiverRegistered;
+
+  /** Results of libphonenumber for a raw number and a country ISO. */
+  public static final class Entry {
+    private final String number;
+    @Nullable private final String countryIso;
+    @Nullable private final PhoneNumber phoneNumber;
+    private final boolean isValid;
+    @Nullable private final String e164Number;
+
+    // Computed on first use. Concurrent uses may compute them more than once, which is harmless.
+    @Nullable private volatile String nationalNumber;
+    @Nullable private volatile String formattedNumber;
+    @Nullable private volatile String formattedNumberWithE164;
+    @Nullable private volatile GeoDescription geoDescription;
+
+    private Entry(String number, @Nullable String countryIso) {
+      this.number = number;
+      this.countryIso = countryIso;
+      PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+      PhoneNumber parsedNumber = null;
+      try {
+        parsedNumber = util.parse(number, countryIso);
+      } catch (NumberParseException e) {
+        // Not a phone number, e.g. a SIP address or a service number
+      }
+      this.phoneNumber = parsedNumber;
+      this.isValid = parsedNumber != null && util.isValidNumber(parsedNumber);
+      this.e164Number = isValid ? util.format(parsedNumber, PhoneNumberFormat.E164) : null;
+    }
+
+    /**
+     * Returns the number parsed by {@link PhoneNumberUtil#parse(CharSequence, String)}, or null if
+     * it can't be parsed. It is shared and must not be modified.
+     */
+    @Nullable
+    public PhoneNumber getPhoneNumber() {
+      return phoneNumber;
+    }
+
+    /** Returns whether the number is valid, see {@link PhoneNumberUtil#isValidNumber}. */
+    public boolean isValid() {
+      return isValid;
+    }
+
+    /**
+     * Returns the number in E164 format if it is valid, or null. This is the same as {@link
+     * PhoneNumberUtils#formatNumberToE164(String, String)}.
+     */
+    @Nullable
+    public String getE164Number() {
+      return e164Number;
+    }
+
+    /** Returns the number in national format if it can be parsed, or null. */
+    @Nullable
+    public String getNationalNumber() {
+      if (phoneNumber == null) {
+        return null;
+      }
+      String result = nationalNumber;
+      if (result == null) {
+        result = PhoneNumberUtil.getInstance().format(phoneNumber, PhoneNumberFormat.NATIONAL);
+        nationalNumber = result;
+      }
+      return result;
+    }
+
+    /**
+     * Returns the number formatted for display, or the number itself if it can't be formatted.
+     *
+     * @param numberE164 the E164 number passed to {@link PhoneNumberUtils#formatNumber(String,
+     *     String, String)}, which is only cached when it is the one of this number.
+     */
+    String getFormattedNumber(@Nullable String numberE164) {
+      if (numberE164 != null && !numberE164.equals(e164Number)) {
+        String result = PhoneNumberUtils.formatNumber(number, numberE164, countryIso);
+        return result != null ? result : number;
+      }
+      String result = numberE164 == null ? formattedNumber : formattedNumberWithE164;
+      if (result == null) {
+        result = PhoneNumberUtils.formatNumber(number, numberE164, countryIso);
+        if (result == null) {
+          result = number;
+        }
+        if (numberE164 == null) {
+          formattedNumber = result;
+        } else {
+          formattedNumberWithE164 = result;
+        }
+      }
+      return result;
+    }
+
+    /** Returns the geographical description of the number in {@code locale}, or null. */
+    @Nullable
+    public String getGeoDescription(Locale locale) {
+      if (phoneNumber == null) {
+        return null;
+      }
+      GeoDescription result = geoDescription;
+      if (result == null || !result.locale.equals(locale)) {
+        result =
+            new GeoDescription(
+                locale,
+                PhoneNumberOfflineGeocoder.getInstance()
+                    .getDescriptionForNumber(phoneNumber, locale));
+        geoDescription = result;
+      }
+      return result.description;
+    }
+  }
+
+  private static final class GeoDescription {
+    final Locale locale;
+    final String description;
+
+    GeoDescription(Locale locale, String description) {
+      this.locale = locale;
+      this.description = description;
+    }
+  }
+
+  private PhoneNumberCache() {}
+
+  public static PhoneNumberCache getInstance() {
+    return instance;
+  }
+
+  /** Returns the results for {@code number} in {@code countryIso}, parsing it if needed. */
+  public Entry get(String number, @Nullable String countryIso) {
+    String key = countryIso + '|' + number;
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      hitCount.incrementAndGet();
+      return entry;
+    }
+    missCount.incrementAndGet();
+    entry = new Entry(number, countryIso);
+    entries.put(key, entry);
+    return entry;
+  }
+
+  /** Clears the cache when the network country changes. Only registers once per process. */
+  public synchronized void registerCountryChangeReceiver(Context context) {
+    if (receiverRegistered) {
+      return;
+    }
+    receiverRegistered = true;
+    context
+        .getApplicationContext()
+        .registerReceiver(
+            new BroadcastReceiver() {
+              @Override
+              public void onReceive(Context context, Intent intent) {
+                invalidate();
+              }
+            },
+            new IntentFilter(TelephonyManager.ACTION_NETWORK_COUNTRY_CHANGED));
+  }
+
+  /** Drops all entries. */
+  public void invalidate() {
+    LogUtil.i(
+        "PhoneNumberCache.invalidate",
+        "hits: %d, misses: %d, size: %d",
+        hitCount.get(),
+        missCount.get(),
+        entries.size());
+    entries.evictAll();
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+}
@@ -285,8 +285,7 @@ public class PhoneNumberHelper {
       return number;
     }
 
-    String formattedNumber = PhoneNumberUtils.formatNumber(number, numberE164, countryIso);
-    return formattedNumber != null ? formattedNumber : number;
+    return PhoneNumberCache.getInstance().get(number, countryIso).getFormattedNumber(numberE164);
   }
 
   /** @see #formatNumber(Context, String, String, String). */
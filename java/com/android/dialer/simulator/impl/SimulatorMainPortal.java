@@ -98,6 +98,9 @@ public class SimulatorMainPortal {
                     .put(
                         "Fast populate voicemail database",
                         () -> SimulatorUtils.populateVoicemailFast(context))
+                    .put(
+                        "Populate large database",
+                        () -> SimulatorUtils.populateLargeDatabase(context))
                     .put("Clean database", () -> SimulatorUtils.cleanDatabase(context))
                     .put("clear preferred SIM", () -> SimulatorUtils.clearPreferredSim(context))
                     .put("Sync voicemail", () -> SimulatorUtils.syncVoicemail(context))
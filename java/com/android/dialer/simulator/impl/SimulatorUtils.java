@@ -31,6 +31,7 @@ import com.android.dialer.common.concurrent.DialerExecutorComponent;
 import com.android.dialer.databasepopulator.BlockedBumberPopulator;
 import com.android.dialer.databasepopulator.CallLogPopulator;
 import com.android.dialer.databasepopulator.ContactsPopulator;
+import com.android.dialer.databasepopulator.LargeDatasetPopulator;
 import com.android.dialer.databasepopulator.VoicemailPopulator;
 import com.android.dialer.persistentlog.PersistentLogger;
 import com.android.dialer.preferredsim.PreferredSimFallbackContract;
@@ -81,6 +82,18 @@ public class SimulatorUtils {
         .executeSerial(new PopulateDatabaseWorkerInput(context, true));
   }
 
+  /**
+   * Populates the databases with thousands of generated contacts, calls, voicemails and blocked
+   * numbers, to reproduce the performance of heavily used devices.
+   */
+  public static void populateLargeDatabase(@NonNull Context context) {
+    DialerExecutorComponent.get(context)
+        .dialerExecutorFactory()
+        .createNonUiTaskBuilder(new PopulateLargeDatabaseWorker())
+        .build()
+        .executeSerial(context);
+  }
+
   /** Clean contacts database. */
   public static void cleanDatabase(@NonNull Context context) {
     DialerExecutorComponent.get(context)
@@ -165,6 +178,15 @@ public class SimulatorUtils {
     }
   }
 
+  private static class PopulateLargeDatabaseWorker implements Worker<Context, Void> {
+    @Nullable
+    @Override
+    public Void doInBackground(Context context) {
+      LargeDatasetPopulator.populate(context, LargeDatasetPopulator.Config.builder().build());
+      return null;
+    }
+  }
+
   private static class CleanDatabaseWorker implements Worker<Context, Void> {
     @Nullable
     @Override
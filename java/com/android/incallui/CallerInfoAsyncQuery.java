@@ -20,12 +20,15 @@ import android.Manifest;
 import android.content.AsyncQueryHandler;
 import android.content.ContentResolver;
 import android.content.Context;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.net.Uri;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.os.Trace;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.Directory;
@@ -45,6 +48,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Helper class to make it easier to run asynchronous caller-id lookup queries.
@@ -79,6 +83,11 @@ public class CallerInfoAsyncQuery {
   private static final boolean ENABLE_UNKNOWN_NUMBER_GEO_DESCRIPTION = true;
   /* Directory lookup related code - START */
   private static final String[] DIRECTORY_PROJECTION = new String[] {Directory._ID};
+  /**
+   * Time after which the result of the default directory is published if no other directory has
+   * found the caller yet, so that a slow remote directory doesn't hold back the in-call screen.
+   */
+  private static final long DIRECTORY_QUERY_DEADLINE_MILLIS = TimeUnit.SECONDS.toMillis(2);
 
   /** Private constructor for factory methods. */
   private CallerInfoAsyncQuery() {}
@@ -102,7 +111,7 @@ public class CallerInfoAsyncQuery {
             // If there are no other directory queries, make sure that the listener is
             // notified of this result.  see a bug
             if ((ci != null && ci.contactExists)
-                || !startOtherDirectoriesQuery(token, context, info, listener, cookie)) {
+                || !startOtherDirectoriesQuery(token, context, info, ci, listener, cookie)) {
               if (listener != null && ci != null) {
                 listener.onQueryComplete(token, cookie, ci);
               }
@@ -187,10 +196,11 @@ public class CallerInfoAsyncQuery {
       int token,
       Context context,
       CallerInfo info,
+      CallerInfo defaultDirectoryCallerInfo,
       OnQueryCompleteListener listener,
       Object cookie) {
     Trace.beginSection("CallerInfoAsyncQuery.startOtherDirectoriesQuery");
-    long[] directoryIds = getDirectoryIds(context);
+    long[] directoryIds = DirectoryIdCache.get(context);
     int size = directoryIds.length;
     if (size == 0) {
       Trace.endSection();
@@ -198,12 +208,11 @@ public class CallerInfoAsyncQuery {
     }
 
     DirectoryQueryCompleteListenerFactory listenerFactory =
-        new DirectoryQueryCompleteListenerFactory(context, size, listener);
+        new DirectoryQueryCompleteListenerFactory(
+            context, size, token, cookie, defaultDirectoryCallerInfo, listener);
 
-    // The current implementation of multiple async query runs in single handler thread
-    // in AsyncQueryHandler.
-    // intermediateListener.onQueryComplete is also called from the same caller thread.
-    // TODO(a bug): use thread pool instead of single thread.
+    // The queries are spread over the worker threads of CallerInfoAsyncQueryHandler, so that they
+    // run in parallel. intermediateListener.onQueryComplete is called from the caller thread.
     for (int i = 0; i < size; i++) {
       long directoryId = directoryIds[i];
       Uri uri = ContactInfoHelper.getContactInfoLookupUri(info.phoneNumber, directoryId);
@@ -213,10 +222,52 @@ public class CallerInfoAsyncQuery {
       OnQueryCompleteListener intermediateListener = listenerFactory.newListener(directoryId);
       startQueryInternal(token, context, info, intermediateListener, cookie, uri);
     }
+    listenerFactory.startDeadline();
     Trace.endSection();
     return true;
   }
 
+  /**
+   * Remote directory IDs, kept until the directories change so that the directory table isn't
+   * queried on the main thread for every call.
+   */
+  private static final class DirectoryIdCache {
+
+    /** Bound on the age of the IDs, as directories of the work profile aren't observed. */
+    private static final long MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static ContentObserver observer;
+    private static long[] directoryIds;
+    private static long loadTimeMillis;
+
+    static synchronized long[] get(Context context) {
+      if (observer == null) {
+        observer =
+            new ContentObserver(null) {
+              @Override
+              public void onChange(boolean selfChange) {
+                invalidate();
+              }
+            };
+        context
+            .getApplicationContext()
+            .getContentResolver()
+            .registerContentObserver(Directory.CONTENT_URI, true, observer);
+      }
+
+      long now = SystemClock.elapsedRealtime();
+      if (directoryIds == null || now - loadTimeMillis > MAX_AGE_MILLIS) {
+        directoryIds = getDirectoryIds(context);
+        loadTimeMillis = now;
+      }
+      return directoryIds;
+    }
+
+    private static synchronized void invalidate() {
+      directoryIds = null;
+    }
+  }
+
   private static long[] getDirectoryIds(Context context) {
     ArrayList<Long> results = new ArrayList<>();
 
@@ -279,41 +330,95 @@ public class CallerInfoAsyncQuery {
     }
   }
 
+  /**
+   * Publishes the first match of the remote directories, the last result if none of them matches,
+   * or the result of the default directory if neither happened before {@link
+   * #DIRECTORY_QUERY_DEADLINE_MILLIS}.
+   */
   private static final class DirectoryQueryCompleteListenerFactory {
 
     private final OnQueryCompleteListener listener;
     private final Context context;
+    private final int token;
+    private final Object cookie;
+    private final CallerInfo defaultDirectoryCallerInfo;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable deadlineRunnable = this::onDeadline;
     // Make sure listener to be called once and only once
     private int count;
     private boolean isListenerCalled;
+    private boolean isDeadlinePassed;
 
     DirectoryQueryCompleteListenerFactory(
-        Context context, int size, OnQueryCompleteListener listener) {
+        Context context,
+        int size,
+        int token,
+        Object cookie,
+        CallerInfo defaultDirectoryCallerInfo,
+        OnQueryCompleteListener listener) {
       count = size;
       this.listener = listener;
       isListenerCalled = false;
       this.context = context;
+      this.token = token;
+      this.cookie = cookie;
+      this.defaultDirectoryCallerInfo = defaultDirectoryCallerInfo;
+    }
+
+    void startDeadline() {
+      // Without a result to fall back on, wait for the directories as before.
+      if (defaultDirectoryCallerInfo != null) {
+        handler.postDelayed(deadlineRunnable, DIRECTORY_QUERY_DEADLINE_MILLIS);
+      }
+    }
+
+    private void onDeadline() {
+      int remaining;
+      synchronized (this) {
+        if (isListenerCalled) {
+          return;
+        }
+        isListenerCalled = true;
+        isDeadlinePassed = true;
+        remaining = count;
+      }
+
+      Log.i(LOG_TAG, "Deadline passed with " + remaining + " directory queries remaining");
+      if (listener != null) {
+        listener.onQueryComplete(token, cookie, defaultDirectoryCallerInfo);
+      }
     }
 
     private void onDirectoryQueryComplete(
         int token, Object cookie, CallerInfo ci, long directoryId) {
       boolean shouldCallListener = false;
+      boolean isLateMatch = false;
       synchronized (this) {
         count = count - 1;
         if (!isListenerCalled && (ci.contactExists || count == 0)) {
           isListenerCalled = true;
           shouldCallListener = true;
+        } else if (isDeadlinePassed && ci.contactExists) {
+          isLateMatch = true;
         }
       }
 
       // Don't call callback in synchronized block because mListener.onQueryComplete may
       // take long time to complete
       if (shouldCallListener && listener != null) {
+        handler.removeCallbacks(deadlineRunnable);
         addCallerInfoIntoCache(ci, directoryId);
         listener.onQueryComplete(token, cookie, ci);
+      } else if (isLateMatch) {
+        // Too late for this call, but the cache makes the caller known to the next one.
+        addCallerInfoIntoCache(ci, directoryId);
       }
     }
 
+    private synchronized boolean isListenerCalled() {
+      return isListenerCalled;
+    }
+
     private void addCallerInfoIntoCache(CallerInfo ci, long directoryId) {
       CachedNumberLookupService cachedNumberLookupService =
           PhoneNumberCache.get(context).getCachedNumberLookupService();
@@ -354,7 +459,10 @@ public class CallerInfoAsyncQuery {
       @Override
       public void onDataLoaded(int token, Object cookie, CallerInfo ci) {
         Log.d(LOG_TAG, "DirectoryQueryCompleteListener.onDataLoaded");
-        listener.onDataLoaded(token, cookie, ci);
+        // Once a result is published, later results must not overwrite it.
+        if (!isListenerCalled()) {
+          listener.onDataLoaded(token, cookie, ci);
+        }
       }
 
       @Override
@@ -368,6 +476,16 @@ public class CallerInfoAsyncQuery {
   /** Our own implementation of the AsyncQueryHandler. */
   private static class CallerInfoAsyncQueryHandler extends AsyncQueryHandler {
 
+    /**
+     * Number of worker threads. AsyncQueryHandler runs the queries of all its instances on one
+     * thread, which would make the queries of the remote directories of a call run one after the
+     * other.
+     */
+    private static final int WORKER_THREAD_COUNT = 3;
+
+    private static final Looper[] workerLoopers = new Looper[WORKER_THREAD_COUNT];
+    private static int nextWorkerLooper;
+
     /**
      * The information relevant to each CallerInfo query. Each query may have multiple listeners, so
      * each AsyncCursorInfo is associated with 2 or more CookieWrapper objects in the queue (one
@@ -417,7 +535,19 @@ public class CallerInfoAsyncQuery {
 
     @Override
     protected Handler createHandler(Looper looper) {
-      return new CallerInfoWorkerHandler(looper);
+      // All messages of one query go through the same worker handler, which keeps them in order.
+      return new CallerInfoWorkerHandler(getWorkerLooper());
+    }
+
+    private static synchronized Looper getWorkerLooper() {
+      int index = nextWorkerLooper;
+      nextWorkerLooper = (index + 1) % WORKER_THREAD_COUNT;
+      if (workerLoopers[index] == null) {
+        HandlerThread thread = new HandlerThread("CallerInfoAsyncQueryWorker" + index);
+        thread.start();
+        workerLoopers[index] = thread.getLooper();
+      }
+      return workerLoopers[index];
     }
 
     /**
@@ -88,6 +88,9 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
   private final Map<String, Set<ContactInfoCacheCallback>> callBacks = new ArrayMap<>();
   private int queryId;
   private final DialerExecutor<CnapInformationWrapper> cachedNumberLookupExecutor;
+  private final WarmCallerIdCache warmCallerIdCache;
+  /** Start time of the lookups which haven't produced a name yet, to log the time to a name. */
+  private final Map<String, Long> lookupStartTimes = new ArrayMap<>();
 
   private static class CachedNumberLookupWorker implements Worker<CnapInformationWrapper, Void> {
     @Nullable
@@ -131,6 +134,8 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
             .dialerExecutorFactory()
             .createNonUiTaskBuilder(new CachedNumberLookupWorker())
             .build();
+    warmCallerIdCache = new WarmCallerIdCache(context);
+    warmCallerIdCache.refreshIfStale();
     Trace.endSection();
   }
 
@@ -393,6 +398,9 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
       callBacks = new ArraySet<>();
       callBacks.add(callback);
       this.callBacks.put(callId, callBacks);
+      if (cacheEntry == null) {
+        lookupStartTimes.put(callId, SystemClock.elapsedRealtime());
+      }
     }
 
     Trace.beginSection("prepare query");
@@ -423,11 +431,41 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
       ContactCacheEntry initialCacheEntry =
           updateCallerInfoInCacheOnAnyThread(
               callId, call.getNumberPresentation(), callerInfo, false, queryToken);
+      maybeApplyWarmCallerId(call, initialCacheEntry);
       sendInfoNotifications(callId, initialCacheEntry);
     }
     Trace.endSection();
   }
 
+  /**
+   * Shows the name and photo of a recent caller until the lookup started by {@link #findInfo}
+   * replaces them, so that they don't have to wait for the contacts provider while the phone rings.
+   */
+  @MainThread
+  private void maybeApplyWarmCallerId(DialerCall call, ContactCacheEntry entry) {
+    if (!TextUtils.isEmpty(entry.namePrimary)
+        || call.getNumberPresentation() != TelecomManager.PRESENTATION_ALLOWED
+        || entry.isEmergencyNumber
+        || entry.isVoicemailNumber
+        || entry.isSipCall) {
+      return;
+    }
+    WarmCallerIdCache.Entry warmEntry = warmCallerIdCache.get(entry.originalPhoneNumber);
+    if (warmEntry == null) {
+      return;
+    }
+    Log.d(TAG, "Contact lookup. Recent caller found in warm cache.");
+    entry.isFromWarmCallerIdCache = true;
+    entry.namePrimary = warmEntry.name;
+    entry.label = warmEntry.label;
+    if (warmEntry.photo != null) {
+      entry.photo = new BitmapDrawable(context.getResources(), warmEntry.photo);
+      entry.photoType = ContactPhotoType.CONTACT;
+      // Lets the lookup keep the photo rather than load it again if it is the same.
+      entry.displayPhotoUri = warmEntry.photoUri;
+    }
+  }
+
   @AnyThread
   private ContactCacheEntry updateCallerInfoInCacheOnAnyThread(
       String callId,
@@ -475,6 +513,8 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
         // we will still trigger force query so that the number can be updated on
         // the calling screen. We need not query the image again if the previous
         // query already has the image to avoid flickering.
+        // The new entry still replaces the existing one, which may only be a first guess from the
+        // warm caller ID cache.
         if (existingCacheEntry != null
             && existingCacheEntry.displayPhotoUri != null
             && existingCacheEntry.displayPhotoUri.equals(cacheEntry.displayPhotoUri)
@@ -482,19 +522,18 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
           Log.d(TAG, "Same picture. Do not need start image load.");
           cacheEntry.photo = existingCacheEntry.photo;
           cacheEntry.photoType = existingCacheEntry.photoType;
-          return cacheEntry;
+        } else {
+          Log.d(TAG, "Contact lookup. Local contact found, starting image load");
+          // Load the image with a callback to update the image state.
+          // When the load is finished, onImageLoadComplete() will be called.
+          cacheEntry.hasPendingQuery = true;
+          ContactsAsyncHelper.startObtainPhotoAsync(
+              TOKEN_UPDATE_PHOTO_FOR_CALL_STATE,
+              context,
+              cacheEntry.displayPhotoUri,
+              ContactInfoCache.this,
+              queryToken);
         }
-
-        Log.d(TAG, "Contact lookup. Local contact found, starting image load");
-        // Load the image with a callback to update the image state.
-        // When the load is finished, onImageLoadComplete() will be called.
-        cacheEntry.hasPendingQuery = true;
-        ContactsAsyncHelper.startObtainPhotoAsync(
-            TOKEN_UPDATE_PHOTO_FOR_CALL_STATE,
-            context,
-            cacheEntry.displayPhotoUri,
-            ContactInfoCache.this,
-            queryToken);
       }
       Log.d(TAG, "put entry into map: " + cacheEntry);
       infoMap.put(callId, cacheEntry);
@@ -619,7 +658,10 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
   public void clearCache() {
     infoMap.clear();
     callBacks.clear();
+    lookupStartTimes.clear();
     queryId = 0;
+    // Pick up the calls which just ended for the next time.
+    warmCallerIdCache.refreshIfStale();
   }
 
   private ContactCacheEntry buildEntry(Context context, CallerInfo info, int presentation) {
@@ -662,6 +704,7 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
   private void sendInfoNotifications(String callId, ContactCacheEntry entry) {
     Trace.beginSection("ContactInfoCache.sendInfoNotifications");
     Assert.isMainThread();
+    logTimeToFirstName(callId, entry);
     final Set<ContactInfoCacheCallback> callBacks = this.callBacks.get(callId);
     if (callBacks != null) {
       for (ContactInfoCacheCallback callBack : callBacks) {
@@ -671,6 +714,19 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
     Trace.endSection();
   }
 
+  private void logTimeToFirstName(String callId, ContactCacheEntry entry) {
+    if (TextUtils.isEmpty(entry.namePrimary) || !lookupStartTimes.containsKey(callId)) {
+      return;
+    }
+    long startTime = lookupStartTimes.remove(callId);
+    Log.i(
+        TAG,
+        "Time to first name: "
+            + (SystemClock.elapsedRealtime() - startTime)
+            + "ms, from warm cache: "
+            + entry.isFromWarmCallerIdCache);
+  }
+
   @MainThread
   private void sendImageNotifications(String callId, ContactCacheEntry entry) {
     Trace.beginSection("ContactInfoCache.sendImageNotifications");
@@ -686,6 +742,7 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
 
   private void clearCallbacks(String callId) {
     callBacks.remove(callId);
+    lookupStartTimes.remove(callId);
   }
 
   /** Callback interface for the contact query. */
@@ -728,6 +785,8 @@ public class ContactInfoCache implements OnImageLoadCompleteListener {
     boolean isBusiness;
     boolean isEmergencyNumber;
     boolean isVoicemailNumber;
+    /** Whether the name and photo are those of a recent caller, pending the actual lookup. */
+    boolean isFromWarmCallerIdCache;
 
     public boolean isLocalContact() {
       return contactLookupResult == ContactLookupResult.Type.LOCAL_CONTACT;
@@ -0,0 +1,254 @@
+/*
+ * SPDX-FileCopyrightText: The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.android.incallui;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.provider.CallLog.Calls;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.telephony.PhoneNumberUtils;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.dialer.R;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
+import com.android.dialer.location.GeoUtil;
+import com.android.dialer.util.PermissionsUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Names and photos of recent callers, loaded in the background so that an incoming call from one
+ * of them can show who is calling before the contacts provider has been queried.
+ *
+ * <p>Entries are read from the contact info the call log caches for each call, most recent call
+ * first. They are only a first guess: {@link ContactInfoCache} still performs its regular lookup,
+ * whose result replaces the one from this cache.
+ */
+final class WarmCallerIdCache {
+
+  private static final String TAG = WarmCallerIdCache.class.getSimpleName();
+
+  private static final int MAX_ENTRIES = 200;
+  /** Number of the most recent callers whose photo is decoded ahead of time. */
+  private static final int MAX_PHOTOS = 24;
+  /** Maximum size of the cache, counting the pixels of its photos. */
+  private static final int MAX_SIZE_BYTES = 4 * 1024 * 1024;
+  /** Rough size of an entry without its photo. */
+  private static final int ENTRY_SIZE_BYTES = 256;
+  /** Minimum time between two refreshes, as they are requested whenever the in-call UI closes. */
+  private static final long MIN_REFRESH_INTERVAL_MILLIS = 60_000;
+
+  /** Number of the most recent calls read, which may repeat the same callers. */
+  private static final int MAX_CALLS = 1000;
+
+  private static final String[] CALL_LOG_PROJECTION = {
+    Calls.CACHED_NORMALIZED_NUMBER,
+    Calls.NUMBER,
+    Calls.COUNTRY_ISO,
+    Calls.CACHED_NAME,
+    Calls.CACHED_NUMBER_TYPE,
+    Calls.CACHED_NUMBER_LABEL,
+    Calls.CACHED_PHOTO_URI
+  };
+
+  /** Identity of a recent caller. */
+  static final class Entry {
+    final String name;
+    @Nullable final String label;
+    @Nullable final Uri photoUri;
+    @Nullable Bitmap photo;
+
+    private Entry(String name, @Nullable String label, @Nullable Uri photoUri) {
+      this.name = name;
+      this.label = label;
+      this.photoUri = photoUri;
+    }
+  }
+
+  private final Context appContext;
+  private volatile LruCache<String, Entry> entries = newLruCache();
+  private long lastRefreshMillis = -MIN_REFRESH_INTERVAL_MILLIS;
+
+  WarmCallerIdCache(Context appContext) {
+    this.appContext = appContext;
+  }
+
+  /** Reloads the cache in the background, unless it was reloaded recently. */
+  void refreshIfStale() {
+    long now = SystemClock.elapsedRealtime();
+    synchronized (this) {
+      if (now - lastRefreshMillis < MIN_REFRESH_INTERVAL_MILLIS) {
+        return;
+      }
+      lastRefreshMillis = now;
+    }
+    DialerExecutorComponent.get(appContext).backgroundExecutor().execute(this::refresh);
+  }
+
+  /** Returns the cached identity of {@code number}, or null if it isn't a recent caller. */
+  @Nullable
+  Entry get(@Nullable String number) {
+    if (TextUtils.isEmpty(number)) {
+      return null;
+    }
+    String normalizedNumber = normalizeNumber(number, GeoUtil.getCurrentCountryIso(appContext));
+    return normalizedNumber == null ? null : entries.get(normalizedNumber);
+  }
+
+  @WorkerThread
+  private void refresh() {
+    if (!PermissionsUtil.hasCallLogReadPermissions(appContext)) {
+      return;
+    }
+    long startTime = SystemClock.elapsedRealtime();
+    List<String> numbers = new ArrayList<>(MAX_ENTRIES);
+    Map<String, Entry> entriesByNumber = new HashMap<>();
+    try {
+      readCallLog(numbers, entriesByNumber);
+    } catch (RuntimeException e) {
+      // The call log may be unavailable, e.g. while the user is locked.
+      Log.w(TAG, "Failed to load recent callers: " + e);
+      return;
+    }
+
+    int photoSize = getPhotoSize();
+    if (photoSize > 0 && PermissionsUtil.hasContactsReadPermissions(appContext)) {
+      int photoCount = 0;
+      for (int i = 0; i < numbers.size() && photoCount < MAX_PHOTOS; i++) {
+        Entry entry = entriesByNumber.get(numbers.get(i));
+        if (entry.photoUri != null) {
+          entry.photo = decodePhoto(entry.photoUri, photoSize);
+          photoCount++;
+        }
+      }
+    }
+
+    // Photos are decoded before the entries are added, as the size of an entry includes its photo.
+    // The most recent caller is added last, so that it is evicted last.
+    LruCache<String, Entry> newEntries = newLruCache();
+    for (int i = numbers.size() - 1; i >= 0; i--) {
+      newEntries.put(numbers.get(i), entriesByNumber.get(numbers.get(i)));
+    }
+    entries = newEntries;
+    Log.d(
+        TAG,
+        "Loaded "
+            + numbers.size()
+            + " recent callers in "
+            + (SystemClock.elapsedRealtime() - startTime)
+            + "ms");
+  }
+
+  private void readCallLog(List<String> numbers, Map<String, Entry> entriesByNumber) {
+    try (Cursor cursor =
+        appContext
+            .getContentResolver()
+            .query(
+                Calls.CONTENT_URI
+                    .buildUpon()
+                    .appendQueryParameter(Calls.LIMIT_PARAM_KEY, Integer.toString(MAX_CALLS))
+                    .build(),
+                CALL_LOG_PROJECTION,
+                Calls.CACHED_NAME + " IS NOT NULL AND " + Calls.CACHED_NAME + " != ''",
+                null,
+                Calls.DATE + " DESC")) {
+      if (cursor == null) {
+        return;
+      }
+      while (numbers.size() < MAX_ENTRIES && cursor.moveToNext()) {
+        String normalizedNumber = cursor.getString(0);
+        if (TextUtils.isEmpty(normalizedNumber)) {
+          normalizedNumber = normalizeNumber(cursor.getString(1), cursor.getString(2));
+        }
+        if (TextUtils.isEmpty(normalizedNumber) || entriesByNumber.containsKey(normalizedNumber)) {
+          continue;
+        }
+        int numberType = cursor.getInt(4);
+        String numberLabel = cursor.getString(5);
+        CharSequence label =
+            numberType == Phone.TYPE_CUSTOM && TextUtils.isEmpty(numberLabel)
+                ? null
+                : Phone.getTypeLabel(appContext.getResources(), numberType, numberLabel);
+        String photoUri = cursor.getString(6);
+        numbers.add(normalizedNumber);
+        entriesByNumber.put(
+            normalizedNumber,
+            new Entry(
+                cursor.getString(3),
+                TextUtils.isEmpty(label) ? null : label.toString(),
+                TextUtils.isEmpty(photoUri) ? null : Uri.parse(photoUri)));
+      }
+    }
+  }
+
+  /** Returns the E164 form of {@code number}, or its digits if it can't be formatted. */
+  @Nullable
+  private static String normalizeNumber(@Nullable String number, @Nullable String countryIso) {
+    if (TextUtils.isEmpty(number)) {
+      return null;
+    }
+    String normalizedNumber = PhoneNumberUtils.formatNumberToE164(number, countryIso);
+    return normalizedNumber != null ? normalizedNumber : PhoneNumberUtils.normalizeNumber(number);
+  }
+
+  private static LruCache<String, Entry> newLruCache() {
+    return new LruCache<String, Entry>(MAX_SIZE_BYTES) {
+      @Override
+      protected int sizeOf(String normalizedNumber, Entry entry) {
+        return ENTRY_SIZE_BYTES + (entry.photo != null ? entry.photo.getAllocationByteCount() : 0);
+      }
+    };
+  }
+
+  /** Returns the size in pixels of the largest avatar of the in-call UI, or 0 if none is shown. */
+  private int getPhotoSize() {
+    return Math.max(
+        appContext.getResources().getDimensionPixelSize(R.dimen.incall_avatar_size),
+        appContext.getResources().getDimensionPixelSize(R.dimen.answer_avatar_size));
+  }
+
+  /** Decodes {@code photoUri}, downsampled as long as both sides remain at least {@code size}. */
+  @Nullable
+  private Bitmap decodePhoto(Uri photoUri, int size) {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    try {
+      options.inJustDecodeBounds = true;
+      try (InputStream in = appContext.getContentResolver().openInputStream(photoUri)) {
+        if (in == null) {
+          return null;
+        }
+        BitmapFactory.decodeStream(in, null, options);
+      }
+      if (options.outWidth <= 0 || options.outHeight <= 0) {
+        return null;
+      }
+      options.inJustDecodeBounds = false;
+      options.inSampleSize = 1;
+      while (Math.min(options.outWidth, options.outHeight) / (options.inSampleSize * 2) >= size) {
+        options.inSampleSize *= 2;
+      }
+      try (InputStream in = appContext.getContentResolver().openInputStream(photoUri)) {
+        return in != null ? BitmapFactory.decodeStream(in, null, options) : null;
+      }
+    } catch (IOException | SecurityException e) {
+      Log.d(TAG, "Failed to load photo of recent caller: " + e);
+      return null;
+    }
+  }
+}
@@ -50,11 +50,14 @@ class AccelerationClassifier extends StrokeClassifier {
 
     for (int i = 0; i < event.getPointerCount(); i++) {
       Stroke stroke = classifierData.getStroke(event.getPointerId(i));
-      Point point = stroke.getPoints().get(stroke.getPoints().size() - 1);
+      int last = stroke.getCount() - 1;
+      float x = stroke.getX(last);
+      float y = stroke.getY(last);
+      long timeOffsetNano = stroke.getTimeOffsetNano(last);
       if (strokeMap.get(stroke) == null) {
-        strokeMap.put(stroke, new Data(point));
+        strokeMap.put(stroke, new Data(x, y, timeOffsetNano));
       } else {
-        strokeMap.get(stroke).addPoint(point);
+        strokeMap.get(stroke).addPoint(x, y, timeOffsetNano);
       }
     }
   }
@@ -69,23 +72,25 @@ class AccelerationClassifier extends StrokeClassifier {
 
     static final float MILLIS_TO_NANOS = 1e6f;
 
-    Point previousPoint;
+    float previousX;
+    float previousY;
+    long previousTimeOffsetNano;
     float previousSpeed = 0;
     float maxSpeedRatio = 0;
 
-    public Data(Point point) {
-      previousPoint = point;
+    public Data(float x, float y, long timeOffsetNano) {
+      setPreviousPoint(x, y, timeOffsetNano);
     }
 
-    public void addPoint(Point point) {
-      float distance = previousPoint.dist(point);
-      float duration = (float) (point.timeOffsetNano - previousPoint.timeOffsetNano + 1);
+    public void addPoint(float x, float y, long timeOffsetNano) {
+      float distance = Point.dist(previousX, previousY, x, y);
+      float duration = (float) (timeOffsetNano - previousTimeOffsetNano + 1);
       float speed = distance / duration;
 
       if (duration > 20 * MILLIS_TO_NANOS || duration < 5 * MILLIS_TO_NANOS) {
         // reject this segment and ensure we won't use data about it in the next round.
         previousSpeed = 0;
-        previousPoint = point;
+        setPreviousPoint(x, y, timeOffsetNano);
         return;
       }
       if (previousSpeed != 0.0f) {
@@ -93,7 +98,13 @@ class AccelerationClassifier extends StrokeClassifier {
       }
 
       previousSpeed = speed;
-      previousPoint = point;
+      setPreviousPoint(x, y, timeOffsetNano);
+    }
+
+    private void setPreviousPoint(float x, float y, long timeOffsetNano) {
+      previousX = x;
+      previousY = y;
+      previousTimeOffsetNano = timeOffsetNano;
     }
   }
 }
@@ -18,8 +18,6 @@ package com.android.incallui.answer.impl.classifier;
 
 import android.util.ArrayMap;
 import android.view.MotionEvent;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -72,7 +70,8 @@ class AnglesClassifier extends StrokeClassifier {
       if (strokeMap.get(stroke) == null) {
         strokeMap.put(stroke, new Data());
       }
-      strokeMap.get(stroke).addPoint(stroke.getPoints().get(stroke.getPoints().size() - 1));
+      int last = stroke.getCount() - 1;
+      strokeMap.get(stroke).addPoint(stroke.getX(last), stroke.getY(last));
     }
   }
 
@@ -87,7 +86,9 @@ class AnglesClassifier extends StrokeClassifier {
     private static final float ANGLE_DEVIATION = (float) Math.PI / 20.0f;
     private static final float MIN_MOVE_DIST_DP = .01f;
 
-    private List<Point> lastThreePoints = new ArrayList<>();
+    private final float[] lastThreeXs = new float[3];
+    private final float[] lastThreeYs = new float[3];
+    private int lastCount;
     private float firstAngleVariance;
     private float previousAngle;
     private float biggestAngle;
@@ -115,22 +116,37 @@ class AnglesClassifier extends StrokeClassifier {
       anglesCount = leftAngles = rightAngles = straightAngles = 0.0f;
     }
 
-    public void addPoint(Point point) {
+    public void addPoint(float x, float y) {
       // Checking if the added point is different than the previously added point
       // Repetitions and short distances are being ignored so that proper angles are calculated.
-      if (lastThreePoints.isEmpty()
-          || (!lastThreePoints.get(lastThreePoints.size() - 1).equals(point)
-              && (lastThreePoints.get(lastThreePoints.size() - 1).dist(point)
-                  > MIN_MOVE_DIST_DP))) {
-        if (!lastThreePoints.isEmpty()) {
-          length += lastThreePoints.get(lastThreePoints.size() - 1).dist(point);
-        }
-        lastThreePoints.add(point);
-        if (lastThreePoints.size() == 4) {
-          lastThreePoints.remove(0);
+      float distance =
+          lastCount == 0
+              ? 0.0f
+              : Point.dist(lastThreeXs[lastCount - 1], lastThreeYs[lastCount - 1], x, y);
+      if (lastCount == 0
+          || (!(lastThreeXs[lastCount - 1] == x && lastThreeYs[lastCount - 1] == y)
+              && distance > MIN_MOVE_DIST_DP)) {
+        length += distance;
+        if (lastCount < 3) {
+          lastThreeXs[lastCount] = x;
+          lastThreeYs[lastCount] = y;
+          lastCount++;
+        } else {
+          lastThreeXs[0] = lastThreeXs[1];
+          lastThreeYs[0] = lastThreeYs[1];
+          lastThreeXs[1] = lastThreeXs[2];
+          lastThreeYs[1] = lastThreeYs[2];
+          lastThreeXs[2] = x;
+          lastThreeYs[2] = y;
 
           float angle =
-              lastThreePoints.get(1).getAngle(lastThreePoints.get(0), lastThreePoints.get(2));
+              Point.getAngle(
+                  lastThreeXs[1],
+                  lastThreeYs[1],
+                  lastThreeXs[0],
+                  lastThreeYs[0],
+                  lastThreeXs[2],
+                  lastThreeYs[2]);
 
           anglesCount++;
           if (angle < Math.PI - ANGLE_DEVIATION) {
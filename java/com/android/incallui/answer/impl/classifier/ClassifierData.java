@@ -28,6 +28,10 @@ import java.util.concurrent.TimeUnit;
 class ClassifierData {
   private SparseArray<Stroke> currentStrokes = new SparseArray<>();
   private ArrayList<Stroke> endingStrokes = new ArrayList<>();
+  /** Strokes of the current gesture, recycled when the next one starts. */
+  private final ArrayList<Stroke> gestureStrokes = new ArrayList<>();
+  /** Strokes of previous gestures, which no classifier refers to anymore. */
+  private final ArrayList<Stroke> recycledStrokes = new ArrayList<>();
   private final float dpi;
   private final float screenHeight;
 
@@ -40,15 +44,17 @@ class ClassifierData {
     endingStrokes.clear();
     int action = event.getActionMasked();
     if (action == MotionEvent.ACTION_DOWN) {
+      // Classifiers forget the strokes of the previous gesture on ACTION_DOWN as well
       currentStrokes.clear();
+      recycledStrokes.addAll(gestureStrokes);
+      gestureStrokes.clear();
     }
 
     for (int i = 0; i < event.getPointerCount(); i++) {
       int id = event.getPointerId(i);
       if (currentStrokes.get(id) == null) {
         // TODO (keyboardr): See if there's a way to use event.getEventTimeNanos() instead
-        currentStrokes.put(
-            id, new Stroke(TimeUnit.MILLISECONDS.toNanos(event.getEventTime()), dpi));
+        currentStrokes.put(id, obtainStroke(TimeUnit.MILLISECONDS.toNanos(event.getEventTime())));
       }
       currentStrokes
           .get(id)
@@ -76,6 +82,18 @@ class ClassifierData {
     }
   }
 
+  private Stroke obtainStroke(long eventTimeNano) {
+    Stroke stroke;
+    if (recycledStrokes.isEmpty()) {
+      stroke = new Stroke(eventTimeNano, dpi);
+    } else {
+      stroke = recycledStrokes.remove(recycledStrokes.size() - 1);
+      stroke.reset(eventTimeNano);
+    }
+    gestureStrokes.add(stroke);
+    return stroke;
+  }
+
   /** @return the list of Strokes which are ending in the recently added MotionEvent */
   public ArrayList<Stroke> getEndingStrokes() {
     return endingStrokes;
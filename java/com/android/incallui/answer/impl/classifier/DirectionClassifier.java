@@ -30,8 +30,8 @@ public class DirectionClassifier extends StrokeClassifier {
 
   @Override
   public float getFalseTouchEvaluation(Stroke stroke) {
-    Point firstPoint = stroke.getPoints().get(0);
-    Point lastPoint = stroke.getPoints().get(stroke.getPoints().size() - 1);
-    return DirectionEvaluator.evaluate(lastPoint.x - firstPoint.x, lastPoint.y - firstPoint.y);
+    int last = stroke.getCount() - 1;
+    return DirectionEvaluator.evaluate(
+        stroke.getX(last) - stroke.getX(0), stroke.getY(last) - stroke.getY(0));
   }
 }
@@ -18,8 +18,6 @@ package com.android.incallui.answer.impl.classifier;
 
 import android.util.ArrayMap;
 import android.view.MotionEvent;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -62,7 +60,10 @@ class SpeedAnglesClassifier extends StrokeClassifier {
       if (action != MotionEvent.ACTION_UP
           && action != MotionEvent.ACTION_CANCEL
           && !(action == MotionEvent.ACTION_POINTER_UP && i == event.getActionIndex())) {
-        strokeMap.get(stroke).addPoint(stroke.getPoints().get(stroke.getPoints().size() - 1));
+        int last = stroke.getCount() - 1;
+        strokeMap
+            .get(stroke)
+            .addPoint(stroke.getX(last), stroke.getY(last), stroke.getTimeOffsetNano(last));
       }
     }
   }
@@ -79,8 +80,12 @@ class SpeedAnglesClassifier extends StrokeClassifier {
     private static final float LENGTH_SCALE = 1.0f;
     private static final float ANGLE_DEVIATION = (float) Math.PI / 10.0f;
 
-    private List<Point> lastThreePoints = new ArrayList<>();
-    private Point previousPoint;
+    private final float[] lastThreeXs = new float[3];
+    private final float[] lastThreeYs = new float[3];
+    private int lastCount;
+    private boolean hasPreviousPoint;
+    private float previousX;
+    private float previousY;
     private float previousAngle;
     private float sumSquares;
     private float sum;
@@ -90,7 +95,7 @@ class SpeedAnglesClassifier extends StrokeClassifier {
     private float acceleratingAngles;
 
     public Data() {
-      previousPoint = null;
+      hasPreviousPoint = false;
       previousAngle = (float) Math.PI;
       sumSquares = 0.0f;
       sum = 0.0f;
@@ -99,25 +104,41 @@ class SpeedAnglesClassifier extends StrokeClassifier {
       anglesCount = acceleratingAngles = 0.0f;
     }
 
-    public void addPoint(Point point) {
-      if (previousPoint != null) {
-        dist += previousPoint.dist(point);
+    public void addPoint(float x, float y, long timeOffsetNano) {
+      if (hasPreviousPoint) {
+        dist += Point.dist(previousX, previousY, x, y);
       }
 
-      previousPoint = point;
-      Point speedPoint =
-          new Point((float) point.timeOffsetNano / DURATION_SCALE, dist / LENGTH_SCALE);
+      hasPreviousPoint = true;
+      previousX = x;
+      previousY = y;
+      float speedX = (float) timeOffsetNano / DURATION_SCALE;
+      float speedY = dist / LENGTH_SCALE;
 
       // Checking if the added point is different than the previously added point
       // Repetitions are being ignored so that proper angles are calculated.
-      if (lastThreePoints.isEmpty()
-          || !lastThreePoints.get(lastThreePoints.size() - 1).equals(speedPoint)) {
-        lastThreePoints.add(speedPoint);
-        if (lastThreePoints.size() == 4) {
-          lastThreePoints.remove(0);
+      if (lastCount == 0
+          || !(lastThreeXs[lastCount - 1] == speedX && lastThreeYs[lastCount - 1] == speedY)) {
+        if (lastCount < 3) {
+          lastThreeXs[lastCount] = speedX;
+          lastThreeYs[lastCount] = speedY;
+          lastCount++;
+        } else {
+          lastThreeXs[0] = lastThreeXs[1];
+          lastThreeYs[0] = lastThreeYs[1];
+          lastThreeXs[1] = lastThreeXs[2];
+          lastThreeYs[1] = lastThreeYs[2];
+          lastThreeXs[2] = speedX;
+          lastThreeYs[2] = speedY;
 
           float angle =
-              lastThreePoints.get(1).getAngle(lastThreePoints.get(0), lastThreePoints.get(2));
+              Point.getAngle(
+                  lastThreeXs[1],
+                  lastThreeYs[1],
+                  lastThreeXs[0],
+                  lastThreeYs[0],
+                  lastThreeXs[2],
+                  lastThreeYs[2]);
 
           anglesCount++;
           if (angle >= (float) Math.PI - ANGLE_DEVIATION) {
@@ -16,17 +16,25 @@
 
 package com.android.incallui.answer.impl.classifier;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Contains data about a stroke (a single trace, all the events from a given id from the
  * DOWN/POINTER_DOWN event till the UP/POINTER_UP/CANCEL event.)
+ *
+ * <p>The points are kept in parallel arrays rather than as {@link Point} objects, so that adding a
+ * point doesn't allocate. Strokes are recycled by {@link ClassifierData} once their gesture is
+ * over, which lets the arrays be reused by the following gestures.
  */
 class Stroke {
 
   private static final float NANOS_TO_SECONDS = 1e9f;
+  private static final int INITIAL_CAPACITY = 64;
 
-  private ArrayList<Point> points = new ArrayList<>();
+  private float[] xs = new float[INITIAL_CAPACITY];
+  private float[] ys = new float[INITIAL_CAPACITY];
+  private long[] timeOffsetsNano = new long[INITIAL_CAPACITY];
+  private int count;
   private long startTimeNano;
   private long endTimeNano;
   private float length;
@@ -37,17 +45,47 @@ class Stroke {
     startTimeNano = endTimeNano = eventTimeNano;
   }
 
+  /** Clears this stroke so that it can be reused for a stroke starting at {@code eventTimeNano}. */
+  void reset(long eventTimeNano) {
+    count = 0;
+    length = 0;
+    startTimeNano = endTimeNano = eventTimeNano;
+  }
+
   public void addPoint(float x, float y, long eventTimeNano) {
     endTimeNano = eventTimeNano;
-    Point point = new Point(x / dpi, y / dpi, eventTimeNano - startTimeNano);
-    if (!points.isEmpty()) {
-      length += points.get(points.size() - 1).dist(point);
+    if (count == xs.length) {
+      int capacity = count * 2;
+      xs = Arrays.copyOf(xs, capacity);
+      ys = Arrays.copyOf(ys, capacity);
+      timeOffsetsNano = Arrays.copyOf(timeOffsetsNano, capacity);
     }
-    points.add(point);
+    xs[count] = x / dpi;
+    ys[count] = y / dpi;
+    timeOffsetsNano[count] = eventTimeNano - startTimeNano;
+    if (count > 0) {
+      length += Point.dist(xs[count - 1], ys[count - 1], xs[count], ys[count]);
+    }
+    count++;
   }
 
   public int getCount() {
-    return points.size();
+    return count;
+  }
+
+  /** @return the x coordinate of the point at {@code index}, in inches */
+  public float getX(int index) {
+    return xs[index];
+  }
+
+  /** @return the y coordinate of the point at {@code index}, in inches */
+  public float getY(int index) {
+    return ys[index];
+  }
+
+  /** @return the time of the point at {@code index}, relative to the start of the stroke */
+  public long getTimeOffsetNano(int index) {
+    return timeOffsetsNano[index];
   }
 
   public float getTotalLength() {
@@ -55,7 +93,7 @@ class Stroke {
   }
 
   public float getEndPointLength() {
-    return points.get(0).dist(points.get(points.size() - 1));
+    return Point.dist(xs[0], ys[0], xs[count - 1], ys[count - 1]);
   }
 
   public long getDurationNanos() {
@@ -65,8 +103,4 @@ class Stroke {
   public float getDurationSeconds() {
     return (float) getDurationNanos() / NANOS_TO_SECONDS;
   }
-
-  public ArrayList<Point> getPoints() {
-    return points;
-  }
 }
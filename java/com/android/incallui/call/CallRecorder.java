@@ -31,8 +31,8 @@ import android.util.Log;
 import android.widget.Toast;
 
 import com.android.dialer.R;
-import com.android.dialer.callrecord.CallRecordingDataStore;
 import com.android.dialer.callrecord.CallRecording;
+import com.android.dialer.callrecord.CallRecordingIndex;
 import com.android.dialer.callrecord.ICallRecorderService;
 import com.android.dialer.callrecord.impl.CallRecorderService;
 import com.android.dialer.location.GeoUtil;
@@ -186,12 +186,7 @@ public class CallRecorder implements CallList.Listener {
         final CallRecording recording = service.stopRecording();
         if (recording != null) {
           if (!TextUtils.isEmpty(recording.phoneNumber)) {
-            new Thread(() -> {
-              CallRecordingDataStore dataStore = new CallRecordingDataStore();
-              dataStore.open(context);
-              dataStore.putRecording(recording);
-              dataStore.close();
-            }).start();
+            CallRecordingIndex.getInstance(context).putRecording(recording);
           } else {
             // Data store is an index by number so that we can link recordings in the
             // call detail page.  If phone number is not available (conference call or
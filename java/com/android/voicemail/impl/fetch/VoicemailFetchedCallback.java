@@ -23,13 +23,11 @@ import android.provider.VoicemailContract.Voicemails;
 import android.telecom.PhoneAccountHandle;
 import android.telecom.TelecomManager;
 
-import androidx.annotation.Nullable;
-
 import com.android.dialer.common.Assert;
 import com.android.voicemail.impl.R;
 import com.android.voicemail.impl.VvmLog;
-import com.android.voicemail.impl.imap.VoicemailPayload;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import org.apache.commons.io.IOUtils;
 
@@ -52,39 +50,40 @@ public class VoicemailFetchedCallback {
     this.phoneAccountHandle = phoneAccountHandle;
   }
 
+  /**
+   * Marks the voicemail as having an unsupported format, as no audio was found in the fetched
+   * message.
+   */
+  public void setUnsupportedVoicemailContent() {
+    Assert.isWorkerThread();
+    VvmLog.i(TAG, "Payload not found, message has unsupported format");
+    ContentValues values = new ContentValues();
+    values.put(
+        Voicemails.TRANSCRIPTION,
+        context.getString(
+            R.string.vvm_unsupported_message_format,
+            context.getSystemService(TelecomManager.class).getVoiceMailNumber(phoneAccountHandle)));
+    updateVoicemail(values);
+  }
+
   /**
    * Saves the voicemail payload data into the voicemail provider then sets the "has_content" bit of
    * the voicemail to "1".
    *
-   * @param voicemailPayload The object containing the content data for the voicemail
+   * @param mimeType The MIME type of the payload
+   * @param content The decoded payload, which is copied to the voicemail file as it is read
    */
-  public void setVoicemailContent(@Nullable VoicemailPayload voicemailPayload) {
+  public void setVoicemailContent(String mimeType, InputStream content) {
     Assert.isWorkerThread();
-    if (voicemailPayload == null) {
-      VvmLog.i(TAG, "Payload not found, message has unsupported format");
-      ContentValues values = new ContentValues();
-      values.put(
-          Voicemails.TRANSCRIPTION,
-          context.getString(
-              R.string.vvm_unsupported_message_format,
-              context
-                  .getSystemService(TelecomManager.class)
-                  .getVoiceMailNumber(phoneAccountHandle)));
-      updateVoicemail(values);
-      return;
-    }
-
     VvmLog.d(TAG, String.format("Writing new voicemail content: %s", uri));
     OutputStream outputStream = null;
 
     try {
       outputStream = contentResolver.openOutputStream(uri);
-      byte[] inputBytes = voicemailPayload.getBytes();
-      if (inputBytes != null) {
-        outputStream.write(inputBytes);
-      }
+      long size = IOUtils.copyLarge(content, outputStream);
+      VvmLog.d(TAG, String.format("Wrote %s bytes of data", size));
     } catch (IOException e) {
-      VvmLog.w(TAG, String.format("File not found for %s", uri));
+      VvmLog.w(TAG, String.format("Failed to write content of %s", uri), e);
       return;
     } finally {
       IOUtils.closeQuietly(outputStream);
@@ -92,7 +91,7 @@ public class VoicemailFetchedCallback {
 
     // Update mime_type & has_content after we are done with file update.
     ContentValues values = new ContentValues();
-    values.put(Voicemails.MIME_TYPE, voicemailPayload.getMimeType());
+    values.put(Voicemails.MIME_TYPE, mimeType);
     values.put(Voicemails.HAS_CONTENT, true);
     updateVoicemail(values);
   }
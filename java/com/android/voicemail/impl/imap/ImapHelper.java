@@ -20,6 +20,7 @@ import android.net.ConnectivityManager;
 import android.net.Network;
 import android.net.NetworkInfo;
 import android.telecom.PhoneAccountHandle;
+import android.util.ArrayMap;
 import android.util.Base64;
 
 import androidx.annotation.Nullable;
@@ -44,7 +45,9 @@ import com.android.voicemail.impl.mail.Message;
 import com.android.voicemail.impl.mail.MessagingException;
 import com.android.voicemail.impl.mail.Multipart;
 import com.android.voicemail.impl.mail.TempDirectory;
+import com.android.voicemail.impl.mail.internet.MimeHeader;
 import com.android.voicemail.impl.mail.internet.MimeMessage;
+import com.android.voicemail.impl.mail.internet.MimeUtility;
 import com.android.voicemail.impl.mail.store.ImapConnection;
 import com.android.voicemail.impl.mail.store.ImapFolder;
 import com.android.voicemail.impl.mail.store.ImapFolder.Quota;
@@ -57,11 +60,18 @@ import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import org.apache.commons.io.IOUtils;
+import org.apache.james.mime4j.MimeException;
+import org.apache.james.mime4j.io.EOLConvertingInputStream;
+import org.apache.james.mime4j.parser.AbstractContentHandler;
+import org.apache.james.mime4j.parser.MimeStreamParser;
+import org.apache.james.mime4j.stream.BodyDescriptor;
 
 /** A helper interface to abstract commands sent across IMAP interface for a given account. */
 public class ImapHelper implements Closeable {
@@ -217,12 +227,12 @@ public class ImapHelper implements Closeable {
       // This method retrieves lightweight messages containing only the uid of the message.
       messages = folder.getMessages(null);
 
-      for (Message message : messages) {
-        // Get the voicemail details (message structure).
-        MessageStructureWrapper messageStructureWrapper = fetchMessageStructure(message);
-        if (messageStructureWrapper != null) {
-          result.add(getVoicemailFromMessageStructure(messageStructureWrapper));
-        }
+      // Get the voicemail details (message structure) and transcriptions of all the messages with
+      // as few commands as possible, as each one is a round trip to the server.
+      List<MessageStructureWrapper> messageStructureWrappers = fetchMessageStructures(messages);
+      TranscriptionFetchedListener transcriptions = fetchTranscriptions(messageStructureWrappers);
+      for (MessageStructureWrapper messageStructureWrapper : messageStructureWrappers) {
+        result.add(getVoicemailFromMessageStructure(messageStructureWrapper, transcriptions));
       }
       return result;
     } catch (MessagingException e) {
@@ -234,21 +244,14 @@ public class ImapHelper implements Closeable {
   }
 
   /**
-   * Extract voicemail details from the message structure. Also fetch transcription if a
-   * transcription exists.
+   * Extract voicemail details from the message structure, using the transcription fetched by
+   * {@link #fetchTranscriptions(List)} if a transcription exists.
    */
   private Voicemail getVoicemailFromMessageStructure(
-      MessageStructureWrapper messageStructureWrapper) throws MessagingException {
+      MessageStructureWrapper messageStructureWrapper, TranscriptionFetchedListener transcriptions)
+      throws MessagingException {
     Message messageDetails = messageStructureWrapper.messageStructure;
 
-    TranscriptionFetchedListener listener = new TranscriptionFetchedListener();
-    if (messageStructureWrapper.transcriptionBodyPart != null) {
-      FetchProfile fetchProfile = new FetchProfile();
-      fetchProfile.add(messageStructureWrapper.transcriptionBodyPart);
-
-      folder.fetch(new Message[] {messageDetails}, fetchProfile, listener);
-    }
-
     // Found an audio attachment, this is a valid voicemail.
     long time = messageDetails.getSentDate().getTime();
     String number = getNumber(messageDetails.getFrom());
@@ -260,7 +263,7 @@ public class ImapHelper implements Closeable {
             .setSourcePackage(context.getPackageName())
             .setSourceData(messageDetails.getUid())
             .setIsRead(isRead)
-            .setTranscription(listener.getVoicemailTranscription());
+            .setTranscription(transcriptions.getVoicemailTranscription(messageDetails.getUid()));
     if (duration != null) {
       builder.setDuration(duration);
     }
@@ -297,7 +300,20 @@ public class ImapHelper implements Closeable {
    * @throws MessagingException if fetching the structure of the message fails
    */
   private MessageStructureWrapper fetchMessageStructure(Message message) throws MessagingException {
-    LogUtils.d(TAG, "Fetching message structure for " + message.getUid());
+    List<MessageStructureWrapper> messageStructures =
+        fetchMessageStructures(new Message[] {message});
+    return messageStructures.isEmpty() ? null : messageStructures.get(0);
+  }
+
+  /**
+   * Fetches the structure of the given messages with a single command, and returns a wrapper for
+   * each of them which is a voicemail.
+   *
+   * @throws MessagingException if fetching the structure of the messages fails
+   */
+  private List<MessageStructureWrapper> fetchMessageStructures(Message[] messages)
+      throws MessagingException {
+    LogUtils.d(TAG, "Fetching message structure for " + messages.length + " messages");
 
     MessageStructureFetchedListener listener = new MessageStructureFetchedListener();
 
@@ -306,10 +322,51 @@ public class ImapHelper implements Closeable {
         Arrays.asList(
             FetchProfile.Item.FLAGS, FetchProfile.Item.ENVELOPE, FetchProfile.Item.STRUCTURE));
 
-    // The IMAP folder fetch method will call "messageRetrieved" on the listener when the
+    // The IMAP folder fetch method will call "messageRetrieved" on the listener when each
     // message is successfully retrieved.
-    folder.fetch(new Message[] {message}, fetchProfile, listener);
-    return listener.getMessageStructure();
+    folder.fetch(messages, fetchProfile, listener);
+    return listener.getMessageStructures();
+  }
+
+  /**
+   * Fetches the transcriptions of the given messages. Messages whose transcription is stored in the
+   * same MIME part, which is usually the case of all of them, are fetched with a single command.
+   *
+   * @return the listener holding the fetched transcriptions
+   * @throws MessagingException if fetching the transcriptions fails
+   */
+  private TranscriptionFetchedListener fetchTranscriptions(
+      List<MessageStructureWrapper> messageStructureWrappers) throws MessagingException {
+    ArrayMap<String, List<MessageStructureWrapper>> wrappersByPart = new ArrayMap<>();
+    for (MessageStructureWrapper messageStructureWrapper : messageStructureWrappers) {
+      BodyPart part = messageStructureWrapper.transcriptionBodyPart;
+      if (part == null) {
+        continue;
+      }
+      // The fetch command and the decoding of the result only depend on these two headers.
+      String key =
+          Arrays.toString(part.getHeader(MimeHeader.HEADER_ANDROID_ATTACHMENT_STORE_DATA))
+              + Arrays.toString(part.getHeader(MimeHeader.HEADER_CONTENT_TRANSFER_ENCODING));
+      List<MessageStructureWrapper> wrappers = wrappersByPart.get(key);
+      if (wrappers == null) {
+        wrappers = new ArrayList<>();
+        wrappersByPart.put(key, wrappers);
+      }
+      wrappers.add(messageStructureWrapper);
+    }
+
+    TranscriptionFetchedListener listener = new TranscriptionFetchedListener();
+    for (int i = 0; i < wrappersByPart.size(); i++) {
+      List<MessageStructureWrapper> wrappers = wrappersByPart.valueAt(i);
+      Message[] messages = new Message[wrappers.size()];
+      for (int j = 0; j < messages.length; j++) {
+        messages[j] = wrappers.get(j).messageStructure;
+      }
+      FetchProfile fetchProfile = new FetchProfile();
+      fetchProfile.add(wrappers.get(0).transcriptionBodyPart);
+      folder.fetch(messages, fetchProfile, listener);
+    }
+    return listener;
   }
 
   public boolean fetchVoicemailPayload(VoicemailFetchedCallback callback, final String uid) {
@@ -323,8 +380,12 @@ public class ImapHelper implements Closeable {
       if (message == null) {
         return false;
       }
-      VoicemailPayload voicemailPayload = fetchVoicemailPayload(message);
-      callback.setVoicemailContent(voicemailPayload);
+      ArrayMap<String, VoicemailFetchedCallback> callbacks = new ArrayMap<>(1);
+      callbacks.put(uid, callback);
+      if (fetchVoicemailPayloads(new Message[] {message}, callbacks).isEmpty()) {
+        // The server didn't return the body.
+        callback.setUnsupportedVoicemailContent();
+      }
       return true;
     } catch (MessagingException e) {
     } finally {
@@ -334,20 +395,56 @@ public class ImapHelper implements Closeable {
   }
 
   /**
-   * Fetches the body of the given message and returns the parsed voicemail payload.
+   * Fetches the payloads of several voicemails with a single folder session and command, instead of
+   * one of each per voicemail as {@link #fetchVoicemailPayload(VoicemailFetchedCallback, String)}
+   * does. Each payload is handed to its callback as soon as it has been received, so it doesn't
+   * have to wait for the others.
    *
-   * @throws MessagingException if fetching the body of the message fails
+   * @param callbacks the callback of each voicemail, keyed by its UID. UIDs which are not on the
+   *     server anymore are ignored.
+   * @return {@code true} if the payloads were fetched, {@code false} otherwise.
    */
-  private VoicemailPayload fetchVoicemailPayload(Message message) throws MessagingException {
-    LogUtils.d(TAG, "Fetching message body for " + message.getUid());
+  public boolean fetchVoicemailPayloads(Map<String, VoicemailFetchedCallback> callbacks) {
+    if (callbacks.isEmpty()) {
+      return true;
+    }
+    try {
+      folder = openImapFolder(ImapFolder.MODE_READ_WRITE);
+      if (folder == null) {
+        // This means we were unable to successfully open the folder.
+        return false;
+      }
+      fetchVoicemailPayloads(
+          folder.getMessagesInternal(callbacks.keySet().toArray(new String[callbacks.size()])),
+          callbacks);
+      return true;
+    } catch (MessagingException e) {
+      LogUtils.e(TAG, e, "Messaging Exception");
+      return false;
+    } finally {
+      closeImapFolder();
+    }
+  }
+
+  /**
+   * Fetches the bodies of the given messages and streams their audio attachment to the callback
+   * of each message, keyed by UID.
+   *
+   * @return the UIDs of the messages whose body was received
+   * @throws MessagingException if fetching the bodies of the messages fails
+   */
+  private List<String> fetchVoicemailPayloads(
+      Message[] messages, Map<String, VoicemailFetchedCallback> callbacks)
+      throws MessagingException {
+    LogUtils.d(TAG, "Fetching message body for " + messages.length + " messages");
 
-    MessageBodyFetchedListener listener = new MessageBodyFetchedListener();
+    VoicemailPayloadStreamer listener = new VoicemailPayloadStreamer(callbacks);
 
     FetchProfile fetchProfile = new FetchProfile();
     fetchProfile.add(FetchProfile.Item.BODY);
 
-    folder.fetch(new Message[] {message}, fetchProfile, listener);
-    return listener.getVoicemailPayload();
+    folder.fetch(messages, fetchProfile, listener);
+    return listener.getReceivedUids();
   }
 
   public boolean fetchTranscription(TranscriptionFetchedCallback callback, String uid) {
@@ -526,12 +623,13 @@ public class ImapHelper implements Closeable {
   private final class MessageStructureFetchedListener
       implements ImapFolder.MessageRetrievalListener {
 
-    private MessageStructureWrapper messageStructure;
+    private final List<MessageStructureWrapper> messageStructures = new ArrayList<>();
 
     public MessageStructureFetchedListener() {}
 
-    public MessageStructureWrapper getMessageStructure() {
-      return messageStructure;
+    /** Returns the structures of the retrieved messages which are voicemails. */
+    public List<MessageStructureWrapper> getMessageStructures() {
+      return messageStructures;
     }
 
     @Override
@@ -539,14 +637,15 @@ public class ImapHelper implements Closeable {
       LogUtils.d(TAG, "Fetched message structure for " + message.getUid());
       LogUtils.d(TAG, "Message retrieved: " + message);
       try {
-        messageStructure = getMessageOrNull(message);
+        MessageStructureWrapper messageStructure = getMessageOrNull(message);
         if (messageStructure == null) {
           LogUtils.d(TAG, "This voicemail does not have an attachment...");
           return;
         }
+        messageStructures.add(messageStructure);
       } catch (MessagingException e) {
+        // Skip this message only, the responses for the other ones are still to be read.
         LogUtils.e(TAG, e, "Messaging Exception");
-        closeImapFolder();
       }
     }
 
@@ -589,51 +688,81 @@ public class ImapHelper implements Closeable {
     }
   }
 
-  /** Listener for the message body being fetched. */
-  private final class MessageBodyFetchedListener implements ImapFolder.MessageRetrievalListener {
+  /**
+   * Listener for the message bodies being fetched. The audio attachment of each message is decoded
+   * and written to the voicemail provider while the body is parsed, so that it is neither kept in
+   * memory nor copied to a temp file first.
+   */
+  private static final class VoicemailPayloadStreamer
+      implements ImapFolder.MessageBodyStreamListener {
+
+    private final Map<String, VoicemailFetchedCallback> callbacks;
+    private final List<String> receivedUids = new ArrayList<>();
 
-    private VoicemailPayload voicemailPayload;
+    VoicemailPayloadStreamer(Map<String, VoicemailFetchedCallback> callbacks) {
+      this.callbacks = callbacks;
+    }
 
-    /** Returns the fetch voicemail payload. */
-    public VoicemailPayload getVoicemailPayload() {
-      return voicemailPayload;
+    /** Returns the UIDs of the messages whose body was received. */
+    List<String> getReceivedUids() {
+      return receivedUids;
     }
 
     @Override
-    public void messageRetrieved(Message message) {
-      LogUtils.d(TAG, "Fetched message body for " + message.getUid());
-      LogUtils.d(TAG, "Message retrieved: " + message);
+    public void bodyRetrieved(Message message, InputStream body)
+        throws IOException, MessagingException {
+      receivedUids.add(message.getUid());
+      VoicemailFetchedCallback callback = callbacks.get(message.getUid());
+      AudioPartHandler handler = new AudioPartHandler(callback);
+      MimeStreamParser parser = new MimeStreamParser();
+      parser.setContentHandler(handler);
       try {
-        voicemailPayload = getVoicemailPayloadFromMessage(message);
-      } catch (MessagingException e) {
-        LogUtils.e(TAG, "Messaging Exception:", e);
-      } catch (IOException e) {
-        LogUtils.e(TAG, "IO Exception:", e);
+        parser.parse(new EOLConvertingInputStream(body));
+      } catch (MimeException e) {
+        throw new MessagingException("Unable to parse body", e);
+      }
+
+      if (!handler.audioFound) {
+        LogUtils.e(
+            TAG, "No audio attachment found on this voicemail, mimeTypes:" + handler.mimeTypes);
+        callback.setUnsupportedVoicemailContent();
       }
     }
 
-    private VoicemailPayload getVoicemailPayloadFromMessage(Message message)
-        throws MessagingException, IOException {
-      Multipart multipart = (Multipart) message.getBody();
-      List<String> mimeTypes = new ArrayList<>();
-      for (int i = 0; i < multipart.getCount(); ++i) {
-        BodyPart bodyPart = multipart.getBodyPart(i);
-        String bodyPartMimeType = bodyPart.getMimeType().toLowerCase();
-        mimeTypes.add(bodyPartMimeType);
-        if (bodyPartMimeType.startsWith("audio/")) {
-          byte[] bytes = getDataFromBody(bodyPart.getBody());
-          LogUtils.d(TAG, String.format("Fetched %s bytes of data", bytes.length));
-          return new VoicemailPayload(bodyPartMimeType, bytes);
-        }
+    @Override
+    public void messageRetrieved(Message message) {
+      LogUtils.d(TAG, "Fetched message body for " + message.getUid());
+    }
+  }
+
+  /** Hands the first audio part of a message to a callback as it is parsed. */
+  private static final class AudioPartHandler extends AbstractContentHandler {
+
+    private final VoicemailFetchedCallback callback;
+    private final List<String> mimeTypes = new ArrayList<>();
+    private boolean audioFound;
+
+    AudioPartHandler(VoicemailFetchedCallback callback) {
+      this.callback = callback;
+    }
+
+    @Override
+    public void body(BodyDescriptor bd, InputStream in) {
+      String mimeType = bd.getMimeType().toLowerCase();
+      mimeTypes.add(mimeType);
+      if (!audioFound && mimeType.startsWith("audio/")) {
+        audioFound = true;
+        callback.setVoicemailContent(
+            mimeType,
+            MimeUtility.getInputStreamForContentTransferEncoding(in, bd.getTransferEncoding()));
       }
-      LogUtils.e(TAG, "No audio attachment found on this voicemail, mimeTypes:" + mimeTypes);
-      return null;
     }
   }
 
   /** Listener for the transcription being fetched. */
   private final class TranscriptionFetchedListener implements ImapFolder.MessageRetrievalListener {
 
+    private final ArrayMap<String, String> transcriptions = new ArrayMap<>();
     private String voicemailTranscription;
 
     /** Returns the fetched voicemail transcription. */
@@ -641,11 +770,17 @@ public class ImapHelper implements Closeable {
       return voicemailTranscription;
     }
 
+    /** Returns the fetched transcription of the voicemail with the given UID. */
+    public String getVoicemailTranscription(String uid) {
+      return transcriptions.get(uid);
+    }
+
     @Override
     public void messageRetrieved(Message message) {
       LogUtils.d(TAG, "Fetched transcription for " + message.getUid());
       try {
         voicemailTranscription = new String(getDataFromBody(message.getBody()));
+        transcriptions.put(message.getUid(), voicemailTranscription);
       } catch (MessagingException e) {
         LogUtils.e(TAG, "Messaging Exception:", e);
       } catch (IOException e) {
@@ -82,6 +82,18 @@ public class ImapFolder {
     public void messageRetrieved(Message message);
   }
 
+  /**
+   * Listener which reads the bodies fetched with {@link FetchProfile.Item#BODY} itself, rather than
+   * having them parsed into temp files attached to the message.
+   */
+  public interface MessageBodyStreamListener extends MessageRetrievalListener {
+    /**
+     * Called before {@link #messageRetrieved(Message)} with the raw RFC 822 body of {@code
+     * message}, which can only be read during this call.
+     */
+    void bodyRetrieved(Message message, InputStream body) throws IOException, MessagingException;
+  }
+
   private void destroyResponses() {
     if (connection != null) {
       connection.destroyResponses();
@@ -370,7 +382,11 @@ public class ImapFolder {
             ImapString body = fetchList.getKeyedStringOrEmpty("BODY[]", true);
             InputStream bodyStream = body.getAsStream();
             try {
-              message.parse(bodyStream);
+              if (listener instanceof MessageBodyStreamListener) {
+                ((MessageBodyStreamListener) listener).bodyRetrieved(message, bodyStream);
+              } else {
+                message.parse(bodyStream);
+              }
             } catch (Exception e) {
               VvmLog.e(TAG, "Error parsing body %s", e);
             }
@@ -259,14 +259,16 @@ public class OmtpVvmSyncService {
 
     // The leftover messages are messages that exist on the server but not locally.
     boolean prefetchEnabled = shouldPerformPrefetch(account, imapHelper);
+    Map<String, VoicemailFetchedCallback> fetchedCallbacks = new ArrayMap<>();
     for (Voicemail remoteVoicemail : remoteMap.values()) {
       Uri uri = VoicemailDatabaseUtil.insert(context, remoteVoicemail);
       if (prefetchEnabled) {
-        VoicemailFetchedCallback fetchedCallback =
-            new VoicemailFetchedCallback(context, uri, account);
-        imapHelper.fetchVoicemailPayload(fetchedCallback, remoteVoicemail.getSourceData());
+        fetchedCallbacks.put(
+            remoteVoicemail.getSourceData(), new VoicemailFetchedCallback(context, uri, account));
       }
     }
+    // Fetch all the payloads at once rather than opening the folder again for each of them.
+    imapHelper.fetchVoicemailPayloads(fetchedCallbacks);
 
     return succeeded;
   }